@@ -6,11 +6,14 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.Getter;
 import lombok.Setter;
 import net.sourceforge.jwbf.core.actions.HttpActionClient;
+import net.sourceforge.jwbf.core.contentRep.Article;
 import net.sourceforge.jwbf.mediawiki.bots.MediaWikiBot;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
@@ -18,6 +21,9 @@ public abstract class AbstractBot {
 
   private Logger log = LoggerFactory.getLogger(getClass());
 
+  /** Throttle of all requests to Commons, reads as well as edits. */
+  public static final int COMMONS_REQUESTS_PER_MINUTE = 10;
+
   /**
    * If true, then
    * all creation will be in sandbox rather than real commons pages,
@@ -35,6 +41,26 @@ public abstract class AbstractBot {
   @Setter
   private boolean downloadReferencedWikiDataEntityIdValues = true;
 
+  /**
+   * If set, then Wikidata entities are read from the local store rather than from Wikidata.
+   * Nothing is read from or written to Wikidata or Commons, i.e. implies dry run.
+   */
+  @Getter
+  @Setter
+  private LocalEntityStore localEntityStore;
+
+  /** If true, then SPARQL results are kept in a {@link SparqlCache} in data/cache/sparql-[bot], one per bot as H2 locks the file. */
+  @Getter
+  @Setter
+  private boolean useSparqlCache = true;
+
+  /** If true, then cached SPARQL results are not used but replaced, e.g. for verification runs. */
+  @Getter
+  @Setter
+  private boolean bypassSparqlCache = false;
+
+  private SparqlCache sparqlCache;
+
   private String username;
   private String password;
   private String emailAddress;
@@ -54,9 +80,17 @@ public abstract class AbstractBot {
 
   protected abstract void execute() throws Exception;
 
+  /** Pooled HTTP client shared by Commons, Wikidata API and SPARQL. */
+  @Getter
+  protected HttpTransport transport;
+
   @Getter
   protected MediaWikiBot wikiBot;
 
+  /** Retries and circuit breaker of Commons reads */
+  @Getter
+  protected ResilientCaller commonsCaller;
+
   @Getter
   protected WikiData wikiData;
 
@@ -68,6 +102,23 @@ public abstract class AbstractBot {
 
   public void open() throws Exception {
     log.debug("Opening bot {}", getClass().getSimpleName());
+
+    objectMapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+        .enable(SerializationFeature.INDENT_OUTPUT);
+
+    geometryFactory = new GeometryFactory();
+
+    if (localEntityStore != null) {
+      dryRun = true;
+      wikiData = new WikiData(userAgent, userAgentVersion, emailAddress, username, password);
+      wikiData.setLocalEntityStore(localEntityStore);
+      wikiData.setDefaultRequireEntityIdValue(downloadReferencedWikiDataEntityIdValues);
+      wikiData.open();
+      log.info("Opened bot {} offline using local entity store", getClass().getSimpleName());
+      return;
+    }
+
     if (username == null) {
       username = System.getenv("mwse-bot.username");
       if (username == null) {
@@ -87,32 +138,53 @@ public abstract class AbstractBot {
       }
     }
 
+    transport = new HttpTransport(userAgent, userAgentVersion, emailAddress);
+    transport.open();
+
     HttpActionClient client = HttpActionClient.builder() //
         .withUrl("https://commons.wikimedia.org/w/") //
-        .withUserAgent(userAgent, userAgentVersion, emailAddress) //
-        .withRequestsPerUnit(10, TimeUnit.MINUTES) //
+        .withClient(transport.getClient()) //
+        .withRequestsPerUnit(COMMONS_REQUESTS_PER_MINUTE, TimeUnit.MINUTES) //
         .build();
 
     wikiBot = new MediaWikiBot(client);
+    commonsCaller = new ResilientCaller("Commons", transport);
     wikiBot.login(username, password);
 
     wikiData = new WikiData(userAgent, userAgentVersion, emailAddress, username, password);
+    wikiData.setTransport(transport);
+    if (useSparqlCache) {
+      sparqlCache = new SparqlCache(new File("data/cache/sparql-" + getClass().getSimpleName()));
+      sparqlCache.open();
+      wikiData.setSparqlCache(sparqlCache);
+      wikiData.setBypassSparqlCache(bypassSparqlCache);
+    }
     wikiData.setDefaultRequireEntityIdValue(downloadReferencedWikiDataEntityIdValues);
     wikiData.open();
 
-
-    objectMapper = new ObjectMapper()
-        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
-        .enable(SerializationFeature.INDENT_OUTPUT);
-
-    geometryFactory = new GeometryFactory();
-
     log.info("Opened bot {} using WikiMedia account {} <mailto:{}>", getClass().getSimpleName(), getUsername(), getEmailAddress());
 
   }
 
+  /**
+   * @return The Commons page, read with retries. Not existing if the revision id is empty.
+   */
+  public Article getCommonsArticle(String title) throws IOException {
+    return commonsCaller.execute("read " + title, () -> wikiBot.getArticle(title));
+  }
+
   public void close() throws Exception {
-    wikiData.close();
+    if (wikiData != null) {
+      wikiData.close();
+    }
+    if (transport != null) {
+      transport.close();
+    }
+    if (sparqlCache != null) {
+      log.info("SPARQL cache hits {}, misses {}", sparqlCache.getHits(), sparqlCache.getMisses());
+      sparqlCache.close();
+      sparqlCache = null;
+    }
   }
 
   public static String normalizeArticleNameForCommons(String input) {
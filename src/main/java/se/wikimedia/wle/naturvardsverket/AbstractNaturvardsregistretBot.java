@@ -1,27 +1,25 @@
 package se.wikimedia.wle.naturvardsverket;
 
-import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Getter;
 import lombok.Setter;
 import org.geojson.Feature;
-import org.geojson.FeatureCollection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
 import org.wikidata.wdtk.datamodel.helpers.ItemDocumentBuilder;
-import org.wikidata.wdtk.datamodel.helpers.ReferenceBuilder;
 import org.wikidata.wdtk.datamodel.helpers.StatementBuilder;
-import org.wikidata.wdtk.datamodel.implementation.QuantityValueImpl;
 import org.wikidata.wdtk.datamodel.implementation.StringValueImpl;
 import org.wikidata.wdtk.datamodel.implementation.ValueSnakImpl;
 import org.wikidata.wdtk.datamodel.interfaces.*;
 import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
 
 import java.io.*;
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 public abstract class AbstractNaturvardsregistretBot extends AbstractBot {
 
@@ -42,7 +40,7 @@ public abstract class AbstractNaturvardsregistretBot extends AbstractBot {
   public abstract String commonGeoshapeArticleNameFactory(NaturvardsregistretObject object);
 
   /**
-   * Files to be processed
+   * Files to be processed, GeoJSON, Shapefile or GeoPackage. See {@link NvrFeatureCollection#read(com.fasterxml.jackson.databind.ObjectMapper, File)}
    */
   protected abstract File[] getNaturvardsregistretGeoJsonFiles();
 
@@ -81,71 +79,193 @@ public abstract class AbstractNaturvardsregistretBot extends AbstractBot {
   @Setter
   private Long executePreviouslyExecutedWithSuccessStartedBefore = null; // System.currentTimeMillis();
 
+  /** If true, then features are processed in the order planned by {@link WorkPlanner}, otherwise in file order. */
+  @Setter
+  private boolean prioritizeWork = true;
+
+  /** If set, then no new features are started after this many minutes. */
+  @Setter
+  private Integer maintenanceWindowMinutes = null;
+
+  private Long stopStartingWorkAfter;
+
+  /** Number of rotated copies of the progress file to keep. */
+  @Setter
+  private int progressBackups = 3;
+
+  /** If set, then progress history is compacted to this many executions per NVRID when loaded. */
+  @Setter
+  private Integer compactProgressKeepExecutions = null;
+
+  /** If set, then progress is also kept in an indexed {@link ProgressDatabase} next to the progress file. */
+  @Setter
+  private boolean useProgressDatabase = false;
+
+  /**
+   * If set, then only NVRIDs matching this {@link ProgressDatabase} query will be processed,
+   * whether or not they succeeded previous execution. Implies {@link #useProgressDatabase}.
+   */
+  @Setter
+  private String rerunQuery = null;
+
+  /** If set, then values derived from unchanged geometries are reused from a {@link GeometryCache} next to the progress file. */
+  @Setter
+  private boolean useGeometryCache = true;
+
+  @Getter
+  private GeometryCache geometryCache;
+
+  /** If set, then a JSON {@link RunStatus.Snapshot} is served at http://localhost:port/status while executing. */
+  @Setter
+  private Integer statusPort = null;
+
+  @Getter
+  private RunStatus runStatus;
+
+  /**
+   * If set, then this many of the most recent log events while processing an entity are kept by {@link DebugCapture}
+   * and written to data/progress/[progress name]-debug/[nvrid].log if the entity fails or has warnings.
+   * Raises se.wikimedia.wle to DEBUG while executing, about 10 µs per entity, see DebugCaptureBenchmark.
+   * Set to null to disable.
+   */
+  @Setter
+  private Integer debugCaptureEvents = 5000;
+
+  /** Named properties read by the delta evaluation and {@link GeometryStrategy}, the only ones kept in fetched items. */
+  public static final String[] ITEM_PROPERTIES = {
+      "instance of", "inception date", "IUCN protected areas category", "country", "operator",
+      "area", "coordinate location", "geoshape", "nvrid"
+  };
+
+  /** If set, then fetched items keep statements of all properties rather than only {@link #ITEM_PROPERTIES}. */
+  @Setter
+  private boolean fetchAllItemProperties = false;
+
   @Override
   protected void execute() throws Exception {
 
     initializeWikiData();
 
-    for (File file : getNaturvardsregistretGeoJsonFiles()) {
+    ProgressDatabase progressDatabase = null;
+    if (useProgressDatabase || rerunQuery != null) {
+      progressDatabase = new ProgressDatabase(new File("data/progress/" + getProgressName()));
+      progressDatabase.open();
+    }
+    if (useGeometryCache) {
+      geometryCache = new GeometryCache(new File("data/progress/" + getClass().getSimpleName() + "-geometry"));
+      geometryCache.open();
+    }
+    runStatus = new RunStatus(getClass().getSimpleName());
+    StatusServer statusServer = null;
+    if (statusPort != null) {
+      statusServer = new StatusServer(statusPort, getObjectMapper(), () -> runStatus.snapshot(getTransport()));
+      statusServer.open();
+    }
+    org.apache.log4j.Logger capturedLogger = org.apache.log4j.Logger.getLogger("se.wikimedia.wle");
+    org.apache.log4j.Level capturedLoggerLevel = capturedLogger.getLevel();
+    if (debugCaptureEvents != null && !capturedLogger.isDebugEnabled()) {
+      capturedLogger.setLevel(org.apache.log4j.Level.DEBUG);
+    }
+    try {
+      execute(progressDatabase);
+    } finally {
+      capturedLogger.setLevel(capturedLoggerLevel);
+      if (statusServer != null) {
+        statusServer.close();
+      }
+      if (progressDatabase != null) {
+        progressDatabase.close();
+      }
+      if (geometryCache != null) {
+        log.info("Geometry cache hits {}, misses {}", geometryCache.getHits(), geometryCache.getMisses());
+        geometryCache.close();
+        geometryCache = null;
+      }
+    }
+  }
+
+  /**
+   * @return Name of the progress file, progress database and debug captures in data/progress.
+   * Offline dry runs against a {@link LocalEntityStore} are kept apart from live runs,
+   * or the next live run would skip the items that succeeded offline without applying their edits.
+   */
+  public String getProgressName() {
+    return getClass().getSimpleName() + (getLocalEntityStore() != null ? "-offline" : "");
+  }
+
+  private void execute(ProgressDatabase progressDatabase) throws Exception {
+    if (maintenanceWindowMinutes != null) {
+      stopStartingWorkAfter = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(maintenanceWindowMinutes);
+    }
+    Set<String> rerunNvrids = null;
+
+    File[] files = getNaturvardsregistretGeoJsonFiles();
+    for (int fileIndex = 0; fileIndex < files.length; fileIndex++) {
+      File file = files[fileIndex];
       log.info("Processing {}", file.getAbsolutePath());
-      FeatureCollection featureCollection = getObjectMapper().readValue(file, FeatureCollection.class);
+      NvrFeatureCollection featureCollection = NvrFeatureCollection.read(getObjectMapper(), file);
 
       log.info("Ensure that we are aware of all WikiData operator references");
-      for (Feature feature : featureCollection.getFeatures()) {
-        String operator = (String) feature.getProperties().get("FORVALTARE");
-        if (operatorsByNvrProperty.get(operator) == null) {
+      for (NvrFeature feature : featureCollection.getFeatures()) {
+        String operator = feature.getOperator();
+        if (operator != null && operatorsByNvrProperty.get(operator) == null) {
+          OperatorDictionary.Match match = operatorDictionary.find(operator);
+          if (match != null) {
+            operatorsByNvrProperty.put(operator, getWikiData().getEntityIdValue(match.getItem(), true));
+            log.info("Operator '{}' was resolved as '{}' {}", operator, match.getName(), match.getItem());
+            continue;
+          }
           String operatorId = wikiData.findSingleObjectByUniqueLabel(operator, "sv");
           if (operatorId != null) {
             operatorsByNvrProperty.put(operator, getWikiData().getEntityIdValue(operatorId, true));
             log.info("Operator '{}' was resolved using unique label at WikiData as {}", operator, operatorId);
           } else {
-            log.warn("Operator '{}' is an unknown WikiData object for us. The NVRID using this will not be handled in regard with operator claims.", operator);
+            // fuzzy matches are reported per item by operatorValueFactory, but not applied
+            log.warn("Operator '{}' is an unknown WikiData object for us. The NVRID using this will not be handled in regard with operator claims. {}", operator, describeBestOperator(operator));
           }
         }
       }
 
       Progress progress;
-      File progressBackupFile = new File("data/progress/" + getClass().getSimpleName() + ".backup.1.json");
-      File progressFile = new File("data/progress/" + getClass().getSimpleName() + ".json");
+      File progressFile = new File("data/progress/" + getProgressName() + ".json");
       if (progressFile.exists()) {
         progress = getObjectMapper().readValue(progressFile, Progress.class);
         log.info("Loaded progress from {} with {} previously processed items.", progressFile.getAbsolutePath(), progress.getProcessed().size());
+        if (compactProgressKeepExecutions != null) {
+          new ProgressCompactor(compactProgressKeepExecutions).compact(progress);
+        }
       } else {
         progress = new Progress();
       }
 
+      if (progressDatabase != null) {
+        progressDatabase.synchronize(getProgressName(), progress);
+        if (rerunQuery != null && rerunNvrids == null) {
+          rerunNvrids = progressDatabase.selectNvrids(getProgressName(), rerunQuery);
+          log.info("Query selected {} NVRIDs to be processed again: {}", rerunNvrids.size(), rerunQuery);
+        }
+      }
+
       boolean debugExit = false;
 
-      log.info("Processing entities...");
-      for (Feature feature : featureCollection.getFeatures()) {
-        // filter out null value properties
-        feature.getProperties().entrySet().removeIf(property -> property.getValue() == null);
-
-        String beslutstatus = feature.getProperty("BESLSTATUS");
-        if (!"Gällande".equalsIgnoreCase(beslutstatus)) {
-          log.warn("Status is not active, skipping entry");
-          continue;
-        }
+      WorkPlanner workPlanner = new WorkPlanner(getObjectMapper(), rerunNvrids, executePreviouslyExecutedWithSuccessStartedBefore);
+      workPlanner.setPrioritize(prioritizeWork);
+      List<WorkPlanner.WorkItem> plan = workPlanner.plan(featureCollection.getFeatures(), progress);
+      runStatus.startFile(file.getName(), files.length - fileIndex - 1, plan.size());
 
-        String nvrid = (String) feature.getProperty("NVRID");
-        if (nvrid == null) {
-          log.error("NVRID missing in {}", getObjectMapper().writeValueAsString(feature));
-          continue;
+      log.info("Processing entities...");
+      for (WorkPlanner.WorkItem workItem : plan) {
+        if (stopStartingWorkAfter != null && System.currentTimeMillis() > stopStartingWorkAfter) {
+          log.info("Maintenance window has passed. Not starting any more work.");
+          return;
         }
 
-        Progress.Entity previousExecution = progress.getProcessed().get(nvrid);
-
-        if (previousExecution != null) {
-          if (executePreviouslyExecutedWithSuccessStartedBefore != null && previousExecution.getEpochStarted() < executePreviouslyExecutedWithSuccessStartedBefore) {
-            log.info("{} succeeded last run, but that was way back in the past. Will be processed again.", nvrid);
-          } else if (previousExecution.getError() == null) {
-            log.info("{} is was previously processed without error. Will be skipped", nvrid);
-            continue;
-          } else {
-            log.info("{} was previously processed with errors. Will be processed again.", nvrid);
-          }
-        } else {
-          log.info("{} was never processed before. Will be processed now.", nvrid);
+        String nvrid = workItem.getNvrid();
+        Progress.Entity previousExecution = workItem.getPreviousExecution();
+        log.info("Processing {} due to {}", nvrid, workItem.getReason());
+        runStatus.started(nvrid);
+        if (debugCaptureEvents != null) {
+          DebugCapture.begin(debugCaptureEvents);
         }
 
         // process
@@ -155,20 +275,26 @@ public abstract class AbstractNaturvardsregistretBot extends AbstractBot {
             progressEntity.setPreviousExecution(previousExecution);
             progressEntity.setEpochStarted(System.currentTimeMillis());
             progressEntity.setNvrid(nvrid);
-            process(feature);
+            progressEntity.setFeatureFingerprint(workItem.getFeatureFingerprint());
+            process(workItem.getFeature());
           } catch (Exception e) {
-            StringWriter sw = new StringWriter();
-            PrintWriter pw = new PrintWriter(sw);
-            e.printStackTrace(pw);
-            pw.flush();
-            progressEntity.setError(sw.toString());
+            progress.setError(progressEntity, e);
             log.error("Caught exception", e);
           }
           progressEntity.setEpochEnded(System.currentTimeMillis());
+          if (debugCaptureEvents != null) {
+            if (progressEntity.getError() == null && progressEntity.getWarnings().isEmpty()) {
+              DebugCapture.discard();
+            } else {
+              writeDebugCapture(progressEntity, DebugCapture.end());
+            }
+          }
           progress.add(progressEntity);
-          progressBackupFile.delete();
-          progressFile.renameTo(progressBackupFile);
-          getObjectMapper().writeValue(progressFile, progress); // todo rotate log file, keep a few in case of crash while saving!
+          runStatus.ended(progressEntity);
+          progress.save(getObjectMapper(), progressFile, progressBackups);
+          if (progressDatabase != null) {
+            progressDatabase.add(getProgressName(), progressEntity);
+          }
           System.currentTimeMillis();
           if (debugExit) {
             return;
@@ -178,13 +304,39 @@ public abstract class AbstractNaturvardsregistretBot extends AbstractBot {
     }
   }
 
+  private void writeDebugCapture(Progress.Entity progressEntity, List<String> events) {
+    File file = new File("data/progress/" + getProgressName() + "-debug/" + progressEntity.getNvrid() + ".log");
+    file.getParentFile().mkdirs();
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+      for (String event : events) {
+        writer.write(event);
+      }
+      log.info("Wrote {} captured log events to {}", events.size(), file.getAbsolutePath());
+    } catch (IOException e) {
+      log.error("Unable to write captured log events to {}", file.getAbsolutePath(), e);
+    }
+  }
+
   private Map<String, EntityIdValue> iucnCategories = new HashMap<>();
 
 
   private Map<String, EntityIdValue> operatorsByNvrProperty = new HashMap<>();
 
+  /** Resolves operators not exactly named as in the dictionary files, before falling back to a label query. */
+  private OperatorDictionary operatorDictionary;
+
+  /** Operators of data/forvaltare.json and data/municipalities.json. Also used by {@link CapacityPlanner}. */
+  static OperatorDictionary loadOperatorDictionary(ObjectMapper objectMapper) throws IOException {
+    OperatorDictionary operatorDictionary = new OperatorDictionary();
+    operatorDictionary.load(objectMapper, new File("data/forvaltare.json"), "sv");
+    operatorDictionary.load(objectMapper, new File("data/municipalities.json"), "sv");
+    return operatorDictionary;
+  }
+
+
+  private DeltaRuleEngine deltaRuleEngine;
 
-  private void initializeWikiData() throws MediaWikiApiErrorException, IOException {
+  void initializeWikiData() throws MediaWikiApiErrorException, IOException {
     log.info("Initializing WikiData properties...");
 
     getWikiData().getNamedEntities().put("instance of", getWikiData().getEntityIdValue("P31"));
@@ -240,23 +392,28 @@ public abstract class AbstractNaturvardsregistretBot extends AbstractBot {
 
 
     log.info("Loading operators...");
-    {
-      ArrayNode forvaltare = getObjectMapper().readValue(new File("data/forvaltare.json"), ArrayNode.class);
-      for (int i = 0; i < forvaltare.size(); i++) {
-        operatorsByNvrProperty.put(forvaltare.get(i).get("sv").textValue(), wikiData.getEntityIdValue(forvaltare.get(i).get("item").textValue()));
-      }
+    operatorDictionary = loadOperatorDictionary(getObjectMapper());
+    for (Map.Entry<String, String> operator : operatorDictionary.getItemsByName().entrySet()) {
+      operatorsByNvrProperty.put(operator.getKey(), wikiData.getEntityIdValue(operator.getValue()));
     }
-    {
-      ArrayNode municipality = getObjectMapper().readValue(new File("data/municipalities.json"), ArrayNode.class);
-      for (int i = 0; i < municipality.size(); i++) {
-        operatorsByNvrProperty.put(municipality.get(i).get("sv").textValue(), wikiData.getEntityIdValue(municipality.get(i).get("item").textValue()));
+
+    deltaRuleEngine = new DeltaRuleEngine(this, deltaRulesFactory());
+
+    // labels and descriptions are evaluated in these languages
+    getWikiData().setFetchedLanguages(new HashSet<>(getSupportedDescriptionLanguages()));
+
+    if (!fetchAllItemProperties) {
+      Set<PropertyIdValue> properties = new HashSet<>();
+      for (String property : ITEM_PROPERTIES) {
+        properties.add(getWikiData().property(property));
       }
+      getWikiData().setItemPropertyFilter(properties);
     }
 
-
   }
 
-  private void process(Feature feature) throws Exception {
+  private void process(NvrFeature nvrFeature) throws Exception {
+    Feature feature = nvrFeature.toFeature();
 
     String nvrid = (String) feature.getProperty("NVRID");
     log.info("Processing {}", nvrid);
@@ -264,6 +421,7 @@ public abstract class AbstractNaturvardsregistretBot extends AbstractBot {
     // create object
     NaturvardsregistretObject naturvardsregistretObject = new NaturvardsregistretObject();
     naturvardsregistretObject.setFeature(feature);
+    naturvardsregistretObject.setPackedGeometry(nvrFeature.getPackedGeometry());
 
     // todo this need to be updated with new data!
     naturvardsregistretObject.setPublishedDate(LocalDate.parse("2020-02-25"));
@@ -290,10 +448,7 @@ public abstract class AbstractNaturvardsregistretBot extends AbstractBot {
 */
 
     log.debug("Find unique WikiData item matching (Naturvårdsregistret object id).");
-    String sparqlQuery = "SELECT ?item WHERE { ?item wdt:P3613 ?value. FILTER (?value IN (\""
-        + naturvardsregistretObject.getNvrid() + "\")) SERVICE wikibase:label { bd:serviceParam wikibase:language \"[AUTO_LANGUAGE],en\". }} LIMIT 2";
-
-    naturvardsregistretObject.setWikiDataObjectKey(wikiData.getSingleObject(sparqlQuery));
+    naturvardsregistretObject.setWikiDataObjectKey(wikiData.findItemIdByNvrid(naturvardsregistretObject.getNvrid()));
 
     if (naturvardsregistretObject.getWikiDataObjectKey() == null) {
       log.debug("Creating new WikiData item as there is none describing nvrid {}", naturvardsregistretObject.getNvrid());
@@ -327,6 +482,7 @@ public abstract class AbstractNaturvardsregistretBot extends AbstractBot {
         ));
         naturvardsregistretObject.setWikiDataObjectKey(naturvardsregistretObject.getWikiDataItem().getEntityId().getId());
         progressEntity.setCreatedWikidata(true);
+        wikiData.invalidateNvrid(naturvardsregistretObject.getNvrid());
         log.info("Committed new fairly empty item {} to WikiData", naturvardsregistretObject.getWikiDataItem().getEntityId().getId());
       } else {
         naturvardsregistretObject.setWikiDataItem(builder.build());
@@ -334,10 +490,11 @@ public abstract class AbstractNaturvardsregistretBot extends AbstractBot {
 
     } else {
       log.debug("WikiData item {} is describing nvrid {}", naturvardsregistretObject.getWikiDataObjectKey(), naturvardsregistretObject.getNvrid());
-      naturvardsregistretObject.setWikiDataItem((ItemDocument) getWikiData().getDataFetcher().getEntityDocument(naturvardsregistretObject.getWikiDataObjectKey()));
+      naturvardsregistretObject.setWikiDataItem(getWikiData().fetchItemDocument(naturvardsregistretObject.getWikiDataObjectKey()));
     }
 
     progressEntity.setWikidataIdentity(naturvardsregistretObject.getWikiDataObjectKey());
+    naturvardsregistretObject.setStatementIndex(new ItemStatementIndex(getWikiData(), naturvardsregistretObject.getWikiDataItem()));
 
 /*
     ███████╗██╗   ██╗ █████╗ ██╗     ██╗   ██╗ █████╗ ████████╗███████╗    ██████╗ ███████╗██╗  ████████╗ █████╗
@@ -351,10 +508,13 @@ public abstract class AbstractNaturvardsregistretBot extends AbstractBot {
 
     List<Statement> addStatements = new ArrayList();
     List<Statement> deleteStatements = new ArrayList();
+    List<MonolingualTextValue> addLabels = new ArrayList<>();
+    List<MonolingualTextValue> addDescriptions = new ArrayList<>();
 
     // todo assert instance of nature reserve and nvrid. if not then fail!
 
     evaluateDelta(naturvardsregistretObject, addStatements, deleteStatements);
+    evaluateTermDelta(naturvardsregistretObject, addLabels, addDescriptions);
 
 
 /*
@@ -366,34 +526,52 @@ public abstract class AbstractNaturvardsregistretBot extends AbstractBot {
      ╚═════╝ ╚═════╝ ╚═╝     ╚═╝╚═╝     ╚═╝╚═╝   ╚═╝        ╚══╝╚══╝ ╚═╝╚═╝  ╚═╝╚═╝╚═════╝ ╚═╝  ╚═╝   ╚═╝   ╚═╝  ╚═╝
  */
 
-    if (!addStatements.isEmpty() || !deleteStatements.isEmpty()) {
+    if (!addStatements.isEmpty() || !deleteStatements.isEmpty() || !addLabels.isEmpty() || !addDescriptions.isEmpty()) {
 
-      log.debug("Statements has been updated.");
+      log.debug("Statements or terms has been updated.");
 
       if (!addStatements.isEmpty()) {
         log.debug("Adding {} statements.", addStatements.size());
-        for (Statement statement : addStatements) {
-          log.trace("Adding statement:\n{}", statement);
+        if (log.isTraceEnabled()) {
+          for (Statement statement : addStatements) {
+            log.trace("Adding statement:\n{}", statement);
+          }
         }
       }
       if (!deleteStatements.isEmpty()) {
         log.debug("Deleting {} statements.", deleteStatements.size());
-        for (Statement statement : deleteStatements) {
-          log.trace("{}", statement);
+        if (log.isTraceEnabled()) {
+          for (Statement statement : deleteStatements) {
+            log.trace("{}", statement);
+          }
         }
       }
+      if (!addLabels.isEmpty() || !addDescriptions.isEmpty()) {
+        log.debug("Adding labels {} and descriptions {}", addLabels, addDescriptions);
+      }
 
       if (!isDryRun()) {
         getWikiData().getDataEditor().setMaxLag(10);
         getWikiData().getDataEditor().setMaxLagMaxRetries(1000);
         getWikiData().getDataEditor().setMaxLagFirstWaitTime(6000); // 1000 * 6 seconds = 100 minutes.
         getWikiData().getDataEditor().setMaxLagBackOffFactor(1d);
-        getWikiData().getDataEditor().updateStatements(naturvardsregistretObject.getWikiDataItem().getEntityId(),
-            addStatements,
-            deleteStatements,
-            "Bot updated due to delta found compared to local data from Naturvårdsverket", Collections.emptyList());
-
-        log.info("Committed statements diff to WikiData.");
+        // a single wbeditentity with both terms and statements
+        try {
+          updateTermsStatements(naturvardsregistretObject, addLabels, addDescriptions, addStatements, deleteStatements);
+          log.info("Committed statements and terms diff to WikiData.");
+        } catch (MediaWikiApiErrorException e) {
+          // e.g. another item already has the same label and description
+          if ((addLabels.isEmpty() && addDescriptions.isEmpty()) || !"modification-failed".equals(e.getErrorCode())) {
+            throw e;
+          }
+          log.warn("Terms rejected by WikiData, committing statements only. {}", e.getErrorMessage());
+          progressEntity.getWarnings().add("Terms rejected by WikiData: " + e.getErrorMessage());
+          progressEntity.getCreatedTerms().clear();
+          if (!addStatements.isEmpty() || !deleteStatements.isEmpty()) {
+            updateTermsStatements(naturvardsregistretObject, Collections.emptyList(), Collections.emptyList(), addStatements, deleteStatements);
+            log.info("Committed statements diff to WikiData.");
+          }
+        }
       }
 
     } else {
@@ -402,336 +580,114 @@ public abstract class AbstractNaturvardsregistretBot extends AbstractBot {
     log.trace("Done processing nvrid {}", naturvardsregistretObject.getNvrid());
   }
 
-  protected void evaluateDelta(
+  private void updateTermsStatements(
       NaturvardsregistretObject naturvardsregistretObject,
+      List<MonolingualTextValue> addLabels, List<MonolingualTextValue> addDescriptions,
       List<Statement> addStatements, List<Statement> deleteStatements
-  ) throws Exception {
-
-    // todo labels and descriptions?
-
-    // instance of
-    if (false){
-      // todo this needs work, can be multiple instance of, i.e. not only most recent
-      Statement existingInstanceOf = wikiData.findMostRecentPublishedStatement(naturvardsregistretObject.getWikiDataItem(), getWikiData().property("instance of"));
-      if (existingInstanceOf == null
-          || (!existingInstanceOf.getValue().equals(getWikiData().getEntityIdValue(getNaturvardsregistretObjectTypeEntityId())))) {
-        if (existingInstanceOf != null) {
-          deleteStatements.add(existingInstanceOf);
-          progressEntity.getDeletedClaims().add("instance of");
-        }
+  ) throws IOException, MediaWikiApiErrorException {
+    getWikiData().getDataEditor().updateTermsStatements(naturvardsregistretObject.getWikiDataItem(),
+        addLabels,
+        addDescriptions,
+        Collections.emptyList(),
+        Collections.emptyList(),
+        addStatements,
+        deleteStatements,
+        "Bot updated due to delta found compared to local data from Naturvårdsverket", Collections.emptyList());
+  }
 
-        addStatements.add(addNaturvardsregistretReferences(naturvardsregistretObject, StatementBuilder
-            .forSubjectAndProperty(ItemIdValue.NULL, getWikiData().property("instance of"))
-            .withValue(wikiData.getEntityIdValue(getNaturvardsregistretObjectTypeEntityId()))
-        ).build());
+  /**
+   * @return Claims evaluated by {@link #evaluateDelta(NaturvardsregistretObject, List, List)}, in order.
+   */
+  protected List<DeltaRule> deltaRulesFactory() {
+    List<DeltaRule> rules = new ArrayList<>();
+
+    // todo instance of needs work, can be multiple instance of, i.e. not only most recent
+
+    // there should only be one inception date.
+    // remove any that is not of the value from the delta.
+    // add if current is missing.
+    rules.add(new DeltaRule("inception date", "Inception date", "inception date", DeltaRule.Policy.UNIQUE)
+        .setSkipWhenFresherAtWikidata(false)
+        .setValueFactory(this::inceptionDateValueFactory)
+        .setValueComparator((local, existing) -> existing != null
+            && wikiData.toLocalDateTime((TimeValue) local).equals(wikiData.toLocalDateTime((TimeValue) existing))));
+
+    rules.add(new DeltaRule("iucn category", "IUCN", "IUCN protected areas category", DeltaRule.Policy.POINT_IN_TIME)
+        .setDisplayName("IUCN category")
+        .setValueFactory(this::iucnCategoryValueFactory)
+        .setStatementFactory((object, value) -> iucnCategoryStatementFactory((EntityIdValue) value, object))
+        .setChangedStatementFactory(this::iucnCategoryWithPointInTimeStatementFactory));
+
+    rules.add(new DeltaRule("country", "Country", "country", DeltaRule.Policy.ADD)
+        .setSkipWhenFresherAtWikidata(false)
+        .setValueFactory(object -> getWikiData().entity("Sweden"))
+        .setStatementFactory((object, value) -> countryStatementFactory(object)));
+
+    // todo historically an operator statement is not added when missing, only when changed.
+    rules.add(new DeltaRule("operator", "Operator", "operator", DeltaRule.Policy.POINT_IN_TIME)
+        .setAddWhenMissing(false)
+        .setValueFactory(this::operatorValueFactory)
+        .setChangedStatementFactory((object, value) -> operatorWithPointInTimeStatementFactory(object)));
 
-        progressEntity.getCreatedClaims().add("instance of");
-      }
-    }
+    // municipality, can be multiple separated by comma
+    // todo
 
-    // inception date
-    {
-      // there should only be one inception date.
-      // remove any that is not of the value from the delta.
-      // add if current is missing.
-
-      TimeValue inceptionDate = inceptionDateValueFactory(naturvardsregistretObject);
-      LocalDateTime inceptionLocalDate = wikiData.toLocalDateTime(inceptionDate);
-      StatementGroup statements = naturvardsregistretObject.getWikiDataItem().findStatementGroup(getWikiData().property("inception date"));
-      if (statements == null) {
-        addStatements.add(inceptionDateStatementFactory(naturvardsregistretObject));
-        progressEntity.getCreatedClaims().add("inception date");
-      } else {
-        boolean foundMatchingExistingInceptionDateWithReferences = false;
-        for (Statement existingInceptionDate : statements) {
-          if (!wikiData.toLocalDateTime((TimeValue) existingInceptionDate.getValue()).equals(inceptionLocalDate)) {
-            deleteStatements.add(existingInceptionDate);
-            progressEntity.getDeletedClaims().add("inception date");
-          } else if (existingInceptionDate.getReferences() == null || existingInceptionDate.getReferences().isEmpty()) {
-            // The value is correct, but there is no references to where it came from. Remove that to make place for one with references.
-            deleteStatements.add(existingInceptionDate);
-            progressEntity.getModifiedClaims().add("inception date");
-          } else {
-            foundMatchingExistingInceptionDateWithReferences = true;
-          }
-        }
-        if (!foundMatchingExistingInceptionDateWithReferences) {
-          addStatements.add(inceptionDateStatementFactory(naturvardsregistretObject));
-          progressEntity.getCreatedClaims().add("inception date");
-        }
-      }
+    // areas are deleted if the object should not have areas.
+    // todo remove deleting areas, it's a bugfix due to bot adding when it shouldn't.
+    rules.add(new DeltaRule("area", "Area", "area", DeltaRule.Policy.REPLACE)
+        .setSelector(DeltaRule.Selector.WITHOUT_QUALIFIER)
+        .setDeleteWhenNoValue(true)
+        .setValueFactory(object -> hasAreas(object) ? areaValueFactory(object) : null));
+    rules.add(new DeltaRule("area land", "Area land", "area", DeltaRule.Policy.REPLACE)
+        .setQualifier("applies to part", "land")
+        .setDeleteWhenNoValue(true)
+        .setValueFactory(object -> hasAreas(object) ? areaLandValueFactory(object) : null));
+    rules.add(new DeltaRule("area forest", "Area forest", "area", DeltaRule.Policy.REPLACE)
+        .setQualifier("applies to part", "forest")
+        .setDeleteWhenNoValue(true)
+        .setValueFactory(object -> hasAreas(object) ? areaForestValueFactory(object) : null));
+    rules.add(new DeltaRule("area water", "Area body of water", "area", DeltaRule.Policy.REPLACE)
+        .setQualifier("applies to part", "body of water")
+        .setDeleteWhenNoValue(true)
+        .setValueFactory(object -> hasAreas(object) ? areaBodyOfWaterValueFactory(object) : null));
+
+    return rules;
+  }
 
+  /**
+   * Adds the name as label and the description in each of {@link #getSupportedDescriptionLanguages()}
+   * where the item has none. Not evaluated using a local entity store, as terms are not imported.
+   */
+  protected void evaluateTermDelta(
+      NaturvardsregistretObject naturvardsregistretObject,
+      List<MonolingualTextValue> addLabels, List<MonolingualTextValue> addDescriptions
+  ) {
+    if (getLocalEntityStore() != null) {
+      return;
     }
-
-    // iucn cateogory
-    {
-      // todo lookup wikidata if "Not Applicable" is in use as a category!
-      // todo see https://www.protectedplanet.net/c/wdpa-lookup-tables
-      // not applicable seems to be set a null value link?
-      // johannisberg is as null: https://www.wikidata.org/wiki/Q30180845
-      String iucnCategoryValue = naturvardsregistretObject.getFeature().getProperty("IUCNKAT");
-      if (iucnCategoryValue != null) {
-        iucnCategoryValue = iucnCategoryValue.replaceFirst("^\\s*([^,]+).*", "$1").trim().toUpperCase();
-        EntityIdValue iucn = iucnCategories.get(iucnCategoryValue);
-        if (iucn == null) {
-          log.warn("Unsupported IUCN category in feature: {}", naturvardsregistretObject.getFeature().getProperties());
-          progressEntity.getWarnings().add("Unsupported IUCN category in feature: " + iucnCategoryValue);
-        } else {
-          // we managed to parse IUCN category from feature
-          Statement existingIucnCategory = wikiData.findMostRecentPublishedStatement(naturvardsregistretObject.getWikiDataItem(), getWikiData().property("IUCN protected areas category"));
-          TimeValue existingIucnCategoryReferencePublishedDate = getReferencePublishedDate(existingIucnCategory);
-          if (existingIucnCategoryReferencePublishedDate != null
-              && wikiData.toLocalDateTime(existingIucnCategoryReferencePublishedDate).isAfter(naturvardsregistretObject.getPublishedDate().atTime(0, 0))) {
-            log.info("IUCN publication date is fresher at Wikidata than local publish date. Skipping.");
-            progressEntity.getWarnings().add("IUCN publication date is fresher at Wikidata.");
-
-          } else {
-
-            if (existingIucnCategory == null) {
-              log.trace("No previous IUCN category claim. Creating new without point in time.");
-              addStatements.add(iucnCategoryStatementFactory(iucn, naturvardsregistretObject));
-              progressEntity.getCreatedClaims().add("iucn category");
-
-            } else {
-              log.trace("There is an existing IUCN category set at Wikidata");
-
-              if (iucn == WikiData.NULL_ENTITY_VALUE) {
-                if (existingIucnCategory.getValue() != null) {
-                  log.trace("IUCN category has locally changed to NOT APPLICABLE.");
-                  if (!wikiData.hasQualifier(existingIucnCategory, wikiData.property("point in time"))) {
-                    // update previous with point in time from retrieved date if not already set
-                    if (existingIucnCategoryReferencePublishedDate == null) {
-                      log.warn("No published date to use for point in time. Previous IUCN category will be left untouched.");
-                      progressEntity.getWarnings().add("No published date to use for point in time. Previous IUCN category left untouched.");
-                    } else {
-                      addStatements.add(wikiData.asStatementBuilder(existingIucnCategory)
-                          .withQualifier(new ValueSnakImpl(wikiData.property("point in time"), existingIucnCategoryReferencePublishedDate))
-                          .build());
-                      deleteStatements.add(existingIucnCategory);
-                      progressEntity.getModifiedClaims().add("iucn category");
-                    }
-                  }
-                  log.trace("Add new IUCN category without value but with point in time");
-                  addStatements.add(addNaturvardsregistretReferences(
-                      naturvardsregistretObject, StatementBuilder
-                          .forSubjectAndProperty(ItemIdValue.NULL, getWikiData().property("IUCN protected areas category"))
-                          .withNoValue()
-                  ).build());
-                  progressEntity.getCreatedClaims().add("iucn category");
-
-                } else {
-                  // no change
-                }
-              } else if (!iucn.equals(existingIucnCategory.getValue())) {
-                log.trace("IUCN category has locally changed to an applicable value.");
-                if (!wikiData.hasQualifier(existingIucnCategory, wikiData.property("point in time"))) {
-                  // update previous with point in time from retrieved date if not already set
-                  if (existingIucnCategoryReferencePublishedDate == null) {
-                    log.warn("No published date to use for point in time. Previous IUCN category will be left untouched.");
-                    progressEntity.getWarnings().add("No published date to use for point in time. Previous IUCN category left untouched.");
-                  } else {
-                    addStatements.add(wikiData.asStatementBuilder(existingIucnCategory)
-                        .withQualifier(new ValueSnakImpl(wikiData.property("point in time"), existingIucnCategoryReferencePublishedDate))
-                        .build());
-                    deleteStatements.add(existingIucnCategory);
-                    progressEntity.getModifiedClaims().add("iucn category");
-                  }
-                }
-
-                log.trace("Add new IUCN category with value and point in time");
-                addStatements.add(addNaturvardsregistretReferences(
-                    naturvardsregistretObject, StatementBuilder
-                        .forSubjectAndProperty(ItemIdValue.NULL, getWikiData().property("IUCN protected areas category"))
-                        .withQualifier(new ValueSnakImpl(wikiData.property("point in time"), wikiData.toTimeValue(naturvardsregistretObject.getPublishedDate())))
-                        .withValue(iucn)
-                ).build());
-                progressEntity.getCreatedClaims().add("iucn category");
-              }
-            }
-          }
-        }
-      }
+    Map<String, String> labels = new HashMap<>();
+    Map<String, String> descriptions = new HashMap<>();
+    for (String language : getSupportedDescriptionLanguages()) {
+      labels.put(language, naturvardsregistretObject.getName());
+      descriptions.put(language, getDescription(naturvardsregistretObject, language));
     }
-
-    // country
-    {
-      Statement existingCountry = wikiData.findMostRecentPublishedStatement(naturvardsregistretObject.getWikiDataItem(), getWikiData().property("country"));
-      if (existingCountry == null
-          || (!existingCountry.getValue().equals(getWikiData().entity("Sweden")))) {
-        addStatements.add(countryStatementFactory(naturvardsregistretObject));
-        progressEntity.getCreatedClaims().add("country");
-      }
+    ItemDocument item = naturvardsregistretObject.getWikiDataItem();
+    addLabels.addAll(TermDelta.missing(item.getLabels(), labels));
+    addDescriptions.addAll(TermDelta.missing(item.getDescriptions(), descriptions));
+    for (MonolingualTextValue label : addLabels) {
+      progressEntity.getCreatedTerms().add("label " + label.getLanguageCode());
     }
-
-    // operator
-    {
-      String featureOperatorValue = (String) naturvardsregistretObject.getFeature().getProperty("FORVALTARE");
-      naturvardsregistretObject.setOperatorWikiDataItem(operatorsByNvrProperty.get(featureOperatorValue));
-      if (naturvardsregistretObject.getOperatorWikiDataItem() == null) {
-        log.warn("Unable to lookup operator Q for '{}' Operator claims will not be touched.", featureOperatorValue);
-        progressEntity.getWarnings().add("Operator claims will not be touched. Unable to lookup operator listed in feature: " + featureOperatorValue);
-      } else {
-        Statement existingOperator = wikiData.findMostRecentPublishedStatement(naturvardsregistretObject.getWikiDataItem(), getWikiData().property("operator"));
-        TimeValue existingOperatorReferencePublishedDate = getReferencePublishedDate(existingOperator);
-        if (existingOperatorReferencePublishedDate != null
-            && wikiData.toLocalDateTime(existingOperatorReferencePublishedDate).isAfter(naturvardsregistretObject.getPublishedDate().atTime(0, 0))) {
-          log.info("Operator publish date at Wikidata is more fresh than local. Skipping.");
-          progressEntity.getWarnings().add("Operator publication date is fresher at Wikidata.");
-
-        } else {
-
-          boolean existingOperatorHasDelta = existingOperator != null && !existingOperator.getValue().equals(naturvardsregistretObject.getOperatorWikiDataItem());
-          if (existingOperator == null || existingOperatorHasDelta) {
-
-            if (existingOperator != null) {
-
-
-              //  if existing does not have point in time
-              if (!wikiData.hasQualifier(existingOperator, wikiData.property("point in time"))) {
-
-                // clone old and add point in time using
-                if (existingOperatorReferencePublishedDate == null) {
-                  log.warn("Operator statement in {} exists but has no published date, so we don't know what to set as point in time.", naturvardsregistretObject.getNvrid());
-                  progressEntity.getWarnings().add("Previous operator statement exists but has no published date, so we don't know what to set point in time to");
-                  // todo now what?
-                } else {
-                  addStatements.add(wikiData.asStatementBuilder(existingOperator)
-                      .withQualifier(new ValueSnakImpl(wikiData.property("point in time"), existingOperatorReferencePublishedDate))
-                      .build());
-                  deleteStatements.add(existingOperator);
-                  progressEntity.getModifiedClaims().add("operator");
-                }
-              } else {
-                // old already has a point in time, no need to update old.
-              }
-
-              // add point in time to new
-              addStatements.add(addNaturvardsregistretReferences(naturvardsregistretObject, StatementBuilder
-                  .forSubjectAndProperty(ItemIdValue.NULL, getWikiData().property("operator"))
-                  .withValue(naturvardsregistretObject.getOperatorWikiDataItem())
-                  .withQualifier(new ValueSnakImpl(wikiData.property("point in time"), wikiData.toTimeValue(naturvardsregistretObject.getPublishedDate())))
-              ).build());
-              progressEntity.getCreatedClaims().add("operator");
-            }
-          } else {
-            // no change
-          }
-        }
-      }
+    for (MonolingualTextValue description : addDescriptions) {
+      progressEntity.getCreatedTerms().add("description " + description.getLanguageCode());
     }
+  }
 
+  protected void evaluateDelta(
+      NaturvardsregistretObject naturvardsregistretObject,
+      List<Statement> addStatements, List<Statement> deleteStatements
+  ) throws Exception {
 
-    // municipality, can be multiple separated by comma
-    // todo
-
-
-    // area
-    if (!hasAreas(naturvardsregistretObject)) {
-      // todo remove this part, it's a bugfix due to bot adding when it shouldn't.
-      Statement existingArea = wikiData.findStatementWithoutQualifier(naturvardsregistretObject.getWikiDataItem(), getWikiData().property("area"));
-      if (existingArea != null) {
-        deleteStatements.add(existingArea);
-        progressEntity.getDeletedClaims().add("area");
-      }
-      Statement existingLandArea = wikiData.findStatementByUniqueQualifier(naturvardsregistretObject.getWikiDataItem(), getWikiData().property("area"), getWikiData().property("applies to part"), getWikiData().entity("land"));
-      if (existingLandArea != null) {
-        deleteStatements.add(existingLandArea);
-        progressEntity.getDeletedClaims().add("area land");
-      }
-      Statement existingForestArea = wikiData.findStatementByUniqueQualifier(naturvardsregistretObject.getWikiDataItem(), getWikiData().property("area"), getWikiData().property("applies to part"), getWikiData().entity("forest"));
-      if (existingForestArea != null) {
-        deleteStatements.add(existingForestArea);
-        progressEntity.getDeletedClaims().add("area forest");
-      }
-      Statement existingBodyOfWaterArea = wikiData.findStatementByUniqueQualifier(naturvardsregistretObject.getWikiDataItem(), getWikiData().property("area"), getWikiData().property("applies to part"), getWikiData().entity("body of water"));
-      if (existingBodyOfWaterArea != null) {
-        deleteStatements.add(existingBodyOfWaterArea);
-        progressEntity.getDeletedClaims().add("area water");
-      }
-    } else {
-      {
-        Statement existingArea = wikiData.findStatementWithoutQualifier(naturvardsregistretObject.getWikiDataItem(), getWikiData().property("area"));
-        TimeValue existingAreaReferencePublishDate = getReferencePublishedDate(existingArea);
-        if (existingAreaReferencePublishDate != null
-            && wikiData.toLocalDateTime(existingAreaReferencePublishDate).isAfter(naturvardsregistretObject.getPublishedDate().atTime(0, 0))) {
-          log.info("Area published date is fresher at Wikidata than in local data. Skipping.");
-          progressEntity.getWarnings().add("Area publication date is fresher at Wikidata.");
-        } else {
-          boolean existingAreaHasDelta = existingArea != null && !existingArea.getValue().equals(areaValueFactory(naturvardsregistretObject));
-          if (existingArea == null || existingAreaHasDelta) {
-            addStatements.add(areaStatementFactory(naturvardsregistretObject));
-            progressEntity.getCreatedClaims().add("area");
-            if (existingAreaHasDelta) {
-              deleteStatements.add(existingArea);
-              progressEntity.getDeletedClaims().add("area");
-            }
-          }
-        }
-      }
-
-      {
-        Statement existingLandArea = wikiData.findStatementByUniqueQualifier(naturvardsregistretObject.getWikiDataItem(), getWikiData().property("area"), getWikiData().property("applies to part"), getWikiData().entity("land"));
-        TimeValue existingAreaLandReferencePublishDate = getReferencePublishedDate(existingLandArea);
-        if (existingAreaLandReferencePublishDate != null
-            && wikiData.toLocalDateTime(existingAreaLandReferencePublishDate).isAfter(naturvardsregistretObject.getPublishedDate().atTime(0, 0))) {
-          log.info("Area land published date is fresher at Wikidata than in local data. Skipping.");
-          progressEntity.getWarnings().add("Area land publication date is fresher at Wikidata.");
-
-        } else {
-          boolean existingLandAreaHasDelta = existingLandArea != null && !existingLandArea.getValue().equals(areaLandValueFactory(naturvardsregistretObject));
-          if (existingLandArea == null || existingLandAreaHasDelta) {
-            addStatements.add(areaLandStatementFactory(naturvardsregistretObject));
-            progressEntity.getCreatedClaims().add("area land");
-            if (existingLandAreaHasDelta) {
-              deleteStatements.add(existingLandArea);
-              progressEntity.getDeletedClaims().add("area land");
-            }
-          }
-        }
-      }
-
-      {
-        Statement existingForestArea = wikiData.findStatementByUniqueQualifier(naturvardsregistretObject.getWikiDataItem(), getWikiData().property("area"), getWikiData().property("applies to part"), getWikiData().entity("forest"));
-        TimeValue existingAreaForestReferencePublishDate = getReferencePublishedDate(existingForestArea);
-        if (existingAreaForestReferencePublishDate != null
-            && wikiData.toLocalDateTime(existingAreaForestReferencePublishDate).isAfter(naturvardsregistretObject.getPublishedDate().atTime(0, 0))) {
-          log.info("Area forest published date is fresher at Wikidata than in local data. Skipping.");
-          progressEntity.getWarnings().add("Area forest publication date is fresher at Wikidata.");
-
-        } else {
-          boolean existingForestAreaHasDelta = existingForestArea != null && !existingForestArea.getValue().equals(areaForestValueFactory(naturvardsregistretObject));
-          if (existingForestArea == null || existingForestAreaHasDelta) {
-            addStatements.add(areaForestStatementFactory(naturvardsregistretObject));
-            progressEntity.getCreatedClaims().add("area forest");
-            if (existingForestAreaHasDelta) {
-              deleteStatements.add(existingForestArea);
-              progressEntity.getDeletedClaims().add("area forest");
-            }
-          }
-        }
-      }
-
-      {
-        Statement existingBodyOfWaterArea = wikiData.findStatementByUniqueQualifier(naturvardsregistretObject.getWikiDataItem(), getWikiData().property("area"), getWikiData().property("applies to part"), getWikiData().entity("body of water"));
-        TimeValue existingAreaBodyOfWaterReferencePublishDate = getReferencePublishedDate(existingBodyOfWaterArea);
-        if (existingAreaBodyOfWaterReferencePublishDate != null
-            && wikiData.toLocalDateTime(existingAreaBodyOfWaterReferencePublishDate).isAfter(naturvardsregistretObject.getPublishedDate().atTime(0, 0))) {
-          log.info("Area body of water published date is fresher at Wikidata than in local data. Skipping.");
-          progressEntity.getWarnings().add("Area body of water publication date is fresher at Wikidata.");
-
-        } else {
-          boolean exitingBodyOfWaterAreaHasDelta = existingBodyOfWaterArea != null && !existingBodyOfWaterArea.getValue().equals(areaBodyOfWaterValueFactory(naturvardsregistretObject));
-          if (existingBodyOfWaterArea == null || exitingBodyOfWaterAreaHasDelta) {
-            addStatements.add(areaBodyOfWaterStatementFactory(naturvardsregistretObject));
-            progressEntity.getCreatedClaims().add("area water");
-            if (exitingBodyOfWaterAreaHasDelta) {
-              deleteStatements.add(existingBodyOfWaterArea);
-              progressEntity.getDeletedClaims().add("area water");
-            }
-          }
-        }
-      }
-    }
+    deltaRuleEngine.evaluate(naturvardsregistretObject, progressEntity, addStatements, deleteStatements);
 
     System.currentTimeMillis();
 
@@ -760,33 +716,69 @@ public abstract class AbstractNaturvardsregistretBot extends AbstractBot {
   }
 
 
+  /** Coordinate precision and feature properties of Commons geoshape pages. */
+  @Getter
+  private CommonsGeoshapeSerializer commonsGeoshapeSerializer = new CommonsGeoshapeSerializer();
+
+  private StatementTemplates statementTemplates;
+
+  /**
+   * @return Templates for the published and retrieved dates of the object. Reused as long as those does not change.
+   */
+  public StatementTemplates getStatementTemplates(NaturvardsregistretObject naturvardsregistretObject) {
+    if (statementTemplates == null
+        || !statementTemplates.isFor(naturvardsregistretObject.getPublishedDate(), naturvardsregistretObject.getRetrievedDate())) {
+      statementTemplates = new StatementTemplates(getWikiData(), naturvardsregistretObject.getPublishedDate(), naturvardsregistretObject.getRetrievedDate());
+    }
+    return statementTemplates;
+  }
+
   protected StatementBuilder addNaturvardsregistretReferences(
       NaturvardsregistretObject naturvardsregistretObject,
       StatementBuilder statementBuilder
   ) {
-    ReferenceBuilder referenceBuilder = ReferenceBuilder.newInstance();
-    naturvardsregistretReferenceFactory(referenceBuilder, naturvardsregistretObject);
-    retrievedReferenceFactory(referenceBuilder, naturvardsregistretObject);
-    publishedReferenceFactory(referenceBuilder, naturvardsregistretObject);
-    statedInReferenceFactory(referenceBuilder, naturvardsregistretObject);
-    statementBuilder.withReference(referenceBuilder.build());
+    statementBuilder.withReference(getStatementTemplates(naturvardsregistretObject).reference(naturvardsregistretObject));
     return statementBuilder;
   }
 
+  private EntityIdValue iucnCategoryValueFactory(NaturvardsregistretObject naturvardsregistretObject) {
+    // todo lookup wikidata if "Not Applicable" is in use as a category!
+    // todo see https://www.protectedplanet.net/c/wdpa-lookup-tables
+    // not applicable seems to be set a null value link?
+    // johannisberg is as null: https://www.wikidata.org/wiki/Q30180845
+    String iucnCategoryValue = naturvardsregistretObject.getFeature().getProperty("IUCNKAT");
+    if (iucnCategoryValue == null) {
+      return null;
+    }
+    iucnCategoryValue = iucnCategoryValue.replaceFirst("^\\s*([^,]+).*", "$1").trim().toUpperCase();
+    EntityIdValue iucn = iucnCategories.get(iucnCategoryValue);
+    if (iucn == null) {
+      log.warn("Unsupported IUCN category in feature: {}", naturvardsregistretObject.getFeature().getProperties());
+      progressEntity.getWarnings().add("Unsupported IUCN category in feature: " + iucnCategoryValue);
+    }
+    return iucn;
+  }
+
+  private Statement iucnCategoryWithPointInTimeStatementFactory(NaturvardsregistretObject naturvardsregistretObject, Value iucnCategory) {
+    StatementTemplates templates = getStatementTemplates(naturvardsregistretObject);
+    if (WikiData.NULL_ENTITY_VALUE == iucnCategory) {
+      log.trace("IUCN category has locally changed to NOT APPLICABLE.");
+      return templates.statement(naturvardsregistretObject, Datamodel.makeNoValueSnak(templates.getIucnCategory()), Collections.emptyList());
+    }
+    return templates.statement(naturvardsregistretObject, templates.getIucnCategory(), iucnCategory, templates.getPointInTimePublishedQualifiers());
+  }
+
   private Statement iucnCategoryStatementFactory(EntityIdValue iucnCategory, NaturvardsregistretObject naturvardsregistretObject) {
-    StatementBuilder statementBuilder = StatementBuilder
-        .forSubjectAndProperty(ItemIdValue.NULL, getWikiData().property("IUCN protected areas category"));
-    if (WikiData.NULL_ENTITY_VALUE != iucnCategory) {
-      statementBuilder.withValue(iucnCategory);
+    StatementTemplates templates = getStatementTemplates(naturvardsregistretObject);
+    if (WikiData.NULL_ENTITY_VALUE == iucnCategory) {
+      return templates.statement(naturvardsregistretObject, Datamodel.makeSomeValueSnak(templates.getIucnCategory()), Collections.emptyList());
     }
-    return addNaturvardsregistretReferences(naturvardsregistretObject, statementBuilder).build();
+    return templates.statement(naturvardsregistretObject, templates.getIucnCategory(), iucnCategory);
   }
 
   private Statement inceptionDateStatementFactory(NaturvardsregistretObject naturvardsregistretObject) {
-    return addNaturvardsregistretReferences(naturvardsregistretObject, StatementBuilder
-        .forSubjectAndProperty(ItemIdValue.NULL, getWikiData().property("inception date"))
-        .withValue(inceptionDateValueFactory(naturvardsregistretObject))
-    ).build();
+    StatementTemplates templates = getStatementTemplates(naturvardsregistretObject);
+    return templates.statement(naturvardsregistretObject, templates.getInceptionDate(), inceptionDateValueFactory(naturvardsregistretObject));
   }
 
   private TimeValue inceptionDateValueFactory(NaturvardsregistretObject naturvardsregistretObject) {
@@ -821,32 +813,48 @@ public abstract class AbstractNaturvardsregistretBot extends AbstractBot {
   }
 
   private Statement countryStatementFactory(NaturvardsregistretObject naturvardsregistretObject) {
-    return addNaturvardsregistretReferences(naturvardsregistretObject, StatementBuilder
-        .forSubjectAndProperty(ItemIdValue.NULL, getWikiData().property("country"))
-        .withValue(getWikiData().entity("Sweden"))
-    ).build();
+    StatementTemplates templates = getStatementTemplates(naturvardsregistretObject);
+    return templates.statement(naturvardsregistretObject, templates.getCountrySwedenSnak(), Collections.emptyList());
+  }
+
+  private EntityIdValue operatorValueFactory(NaturvardsregistretObject naturvardsregistretObject) {
+    String featureOperatorValue = (String) naturvardsregistretObject.getFeature().getProperty("FORVALTARE");
+    naturvardsregistretObject.setOperatorWikiDataItem(operatorsByNvrProperty.get(featureOperatorValue));
+    if (naturvardsregistretObject.getOperatorWikiDataItem() == null) {
+      log.warn("Unable to lookup operator Q for '{}' Operator claims will not be touched. {}", featureOperatorValue, describeBestOperator(featureOperatorValue));
+      String warning = "Operator claims will not be touched. Unable to lookup operator listed in feature: " + featureOperatorValue;
+      OperatorDictionary.Match suggestion = operatorDictionary.suggest(featureOperatorValue);
+      if (suggestion != null) {
+        warning += String.format(Locale.ENGLISH, ". Fuzzy match '%s' %s with score %.2f is not applied until reviewed.",
+            suggestion.getName(), suggestion.getItem(), suggestion.getScore());
+      }
+      progressEntity.getWarnings().add(warning);
+    }
+    return naturvardsregistretObject.getOperatorWikiDataItem();
+  }
+
+  private String describeBestOperator(String operator) {
+    OperatorDictionary.Match best = operatorDictionary.best(operator);
+    return best == null ? "No candidate in dictionary." : String.format("Best candidate in dictionary '%s' %s with score %.2f.", best.getName(), best.getItem(), best.getScore());
   }
 
   private Statement operatorStatementFactory(NaturvardsregistretObject naturvardsregistretObject) {
-    return addNaturvardsregistretReferences(naturvardsregistretObject, StatementBuilder
-        .forSubjectAndProperty(ItemIdValue.NULL, getWikiData().property("operator"))
-        .withValue(naturvardsregistretObject.getOperatorWikiDataItem())
-    ).build();
+    StatementTemplates templates = getStatementTemplates(naturvardsregistretObject);
+    return templates.statement(naturvardsregistretObject, templates.getOperator(), naturvardsregistretObject.getOperatorWikiDataItem());
+  }
+
+  private Statement operatorWithPointInTimeStatementFactory(NaturvardsregistretObject naturvardsregistretObject) {
+    StatementTemplates templates = getStatementTemplates(naturvardsregistretObject);
+    return templates.statement(naturvardsregistretObject, templates.getOperator(), naturvardsregistretObject.getOperatorWikiDataItem(), templates.getPointInTimePublishedQualifiers());
   }
 
   private QuantityValue areaValueFactory(NaturvardsregistretObject naturvardsregistretObject, String property) {
-    return new QuantityValueImpl(
-        BigDecimal.valueOf(((Number) naturvardsregistretObject.getFeature().getProperty(property)).doubleValue()),
-        null, null,
-        getWikiData().entity("hectare").getIri()
-    );
+    return getStatementTemplates(naturvardsregistretObject).hectares(((Number) naturvardsregistretObject.getFeature().getProperty(property)).doubleValue());
   }
 
   private Statement areaStatementFactory(NaturvardsregistretObject naturvardsregistretObject) {
-    return addNaturvardsregistretReferences(naturvardsregistretObject, StatementBuilder
-        .forSubjectAndProperty(ItemIdValue.NULL, getWikiData().property("area"))
-        .withValue(areaValueFactory(naturvardsregistretObject))
-    ).build();
+    StatementTemplates templates = getStatementTemplates(naturvardsregistretObject);
+    return templates.statement(naturvardsregistretObject, templates.getArea(), areaValueFactory(naturvardsregistretObject));
   }
 
   private QuantityValue areaValueFactory(NaturvardsregistretObject naturvardsregistretObject) {
@@ -854,11 +862,8 @@ public abstract class AbstractNaturvardsregistretBot extends AbstractBot {
   }
 
   private Statement areaForestStatementFactory(NaturvardsregistretObject naturvardsregistretObject) {
-    return addNaturvardsregistretReferences(naturvardsregistretObject, StatementBuilder
-        .forSubjectAndProperty(ItemIdValue.NULL, getWikiData().property("area"))
-        .withValue(areaForestValueFactory(naturvardsregistretObject))
-        .withQualifier(new ValueSnakImpl(getWikiData().property("applies to part"), getWikiData().entity("forest")))
-    ).build();
+    StatementTemplates templates = getStatementTemplates(naturvardsregistretObject);
+    return templates.statement(naturvardsregistretObject, templates.getArea(), areaForestValueFactory(naturvardsregistretObject), templates.getForestQualifiers());
   }
 
   private QuantityValue areaForestValueFactory(NaturvardsregistretObject naturvardsregistretObject) {
@@ -866,11 +871,8 @@ public abstract class AbstractNaturvardsregistretBot extends AbstractBot {
   }
 
   private Statement areaLandStatementFactory(NaturvardsregistretObject naturvardsregistretObject) {
-    return addNaturvardsregistretReferences(naturvardsregistretObject, StatementBuilder
-        .forSubjectAndProperty(ItemIdValue.NULL, getWikiData().property("area"))
-        .withValue(areaLandValueFactory(naturvardsregistretObject))
-        .withQualifier(new ValueSnakImpl(getWikiData().property("applies to part"), getWikiData().entity("land")))
-    ).build();
+    StatementTemplates templates = getStatementTemplates(naturvardsregistretObject);
+    return templates.statement(naturvardsregistretObject, templates.getArea(), areaLandValueFactory(naturvardsregistretObject), templates.getLandQualifiers());
   }
 
   private QuantityValue areaLandValueFactory(NaturvardsregistretObject naturvardsregistretObject) {
@@ -878,34 +880,14 @@ public abstract class AbstractNaturvardsregistretBot extends AbstractBot {
   }
 
   private Statement areaBodyOfWaterStatementFactory(NaturvardsregistretObject naturvardsregistretObject) {
-    return addNaturvardsregistretReferences(naturvardsregistretObject, StatementBuilder
-        .forSubjectAndProperty(ItemIdValue.NULL, getWikiData().property("area"))
-        .withValue(areaBodyOfWaterValueFactory(naturvardsregistretObject))
-        .withQualifier(new ValueSnakImpl(getWikiData().property("applies to part"), getWikiData().entity("body of water")))
-    ).build();
+    StatementTemplates templates = getStatementTemplates(naturvardsregistretObject);
+    return templates.statement(naturvardsregistretObject, templates.getArea(), areaBodyOfWaterValueFactory(naturvardsregistretObject), templates.getBodyOfWaterQualifiers());
   }
 
   private QuantityValue areaBodyOfWaterValueFactory(NaturvardsregistretObject naturvardsregistretObject) {
     return areaValueFactory(naturvardsregistretObject, "VATTEN_HA");
   }
 
-  private void naturvardsregistretReferenceFactory(ReferenceBuilder referenceBuilder, NaturvardsregistretObject naturvardsregistretObject) {
-    referenceBuilder.withPropertyValue(getWikiData().property("reference URL"), new StringValueImpl(
-        "http://nvpub.vic-metria.nu/naturvardsregistret/rest/omrade/" + naturvardsregistretObject.getNvrid() + "/G%C3%A4llande"));
-  }
-
-  private void retrievedReferenceFactory(ReferenceBuilder referenceBuilder, NaturvardsregistretObject naturvardsregistretObject) {
-    referenceBuilder.withPropertyValue(getWikiData().property("retrieved"), wikiData.toTimeValue(naturvardsregistretObject.getRetrievedDate()));
-  }
-
-  private void publishedReferenceFactory(ReferenceBuilder referenceBuilder, NaturvardsregistretObject naturvardsregistretObject) {
-    referenceBuilder.withPropertyValue(getWikiData().property("publication date"), wikiData.toTimeValue(naturvardsregistretObject.getPublishedDate()));
-  }
-
-  private void statedInReferenceFactory(ReferenceBuilder referenceBuilder, NaturvardsregistretObject naturvardsregistretObject) {
-    referenceBuilder.withPropertyValue(getWikiData().property("stated in"), getWikiData().entity("Protected Areas (Nature Reserves)"));
-  }
-
   public TimeValue getReferencePublishedDate(Statement statement) {
     if (statement == null) {
       return null;
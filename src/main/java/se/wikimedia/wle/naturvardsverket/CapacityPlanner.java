@@ -0,0 +1,338 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulates a run of one or more bots without touching the network, and estimates the requests,
+ * edits and time per endpoint.
+ * <p>
+ * Features are planned by {@link WorkPlanner} against the progress of the bot just as in a real run.
+ * The expected number of edits and the duration of each planned feature are taken from previous executions
+ * in the progress file, grouped on first execution or not and whether or not the feature has a Commons geoshape.
+ * A feature with a geoshape reads both the Commons data page and its talk page, and a created data page
+ * is followed by creating the talk page.
+ * Operators found in the operator dictionary or in the SPARQL cache of the bot are not counted as WDQS requests.
+ * The duration of a feature is never less than the configured throttles of its requests,
+ * i.e. {@link AbstractBot#COMMONS_REQUESTS_PER_MINUTE} and {@link WikiData#MILLISECONDS_PER_EDIT}.
+ * <p>
+ * Usage: CapacityPlanner [--format text|json] [--maxlag milliseconds per edit] [--verify-started-before epoch] [bots...]
+ */
+public class CapacityPlanner {
+
+  private static Logger log = LoggerFactory.getLogger(CapacityPlanner.class);
+
+  public static void main(String[] args) throws Exception {
+    CapacityPlanner planner = new CapacityPlanner();
+    String format = "text";
+    List<String> bots = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      if ("--format".equals(args[i])) {
+        format = args[++i];
+      } else if ("--maxlag".equals(args[i])) {
+        planner.setMaxlagMillisecondsPerEdit(Long.parseLong(args[++i]));
+      } else if ("--verify-started-before".equals(args[i])) {
+        planner.setVerifyPreviouslyExecutedWithSuccessStartedBefore(Long.parseLong(args[++i]));
+      } else {
+        bots.add(args[i]);
+      }
+    }
+    if (bots.isEmpty()) {
+      bots.addAll(Arrays.asList("NatureReserveBot", "NaturalMonumentBot", "NationalParkBot"));
+    }
+
+    List<Estimate> estimates = new ArrayList<>();
+    for (String bot : bots) {
+      estimates.add(planner.estimate((AbstractNaturvardsregistretBot) Class.forName(
+          CapacityPlanner.class.getPackage().getName() + "." + bot).getDeclaredConstructor().newInstance()));
+    }
+
+    if ("text".equals(format)) {
+      for (Estimate estimate : estimates) {
+        planner.write(estimate, System.out);
+      }
+    } else if ("json".equals(format)) {
+      planner.objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT).writeValue(System.out, estimates);
+    } else {
+      throw new IllegalArgumentException("Unsupported format: " + format);
+    }
+  }
+
+  /** Commons requests of a geoshape save, i.e. edit token and edit. */
+  static final int COMMONS_REQUESTS_PER_EDIT = 2;
+
+  /** Commons pages read per feature with a geoshape, i.e. the data page and its talk page with categories. */
+  static final int COMMONS_READS_PER_GEOSHAPE = 2;
+
+  private ObjectMapper objectMapper = new ObjectMapper()
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+  @Getter
+  @Setter
+  private int commonsRequestsPerMinute = AbstractBot.COMMONS_REQUESTS_PER_MINUTE;
+
+  @Getter
+  @Setter
+  private int wikidataMillisecondsPerEdit = WikiData.MILLISECONDS_PER_EDIT;
+
+  /** Assumed average wait due to maxlag per Wikidata edit, in addition to what is found in previous executions. */
+  @Getter
+  @Setter
+  private long maxlagMillisecondsPerEdit = 0;
+
+  /** See {@link WorkPlanner} */
+  @Getter
+  @Setter
+  private Long verifyPreviouslyExecutedWithSuccessStartedBefore;
+
+  @Data
+  public static class Estimate {
+    private String bot;
+    private int features;
+    private int plannedFeatures;
+    private Map<WorkPlanner.Reason, Integer> reasons = new EnumMap<>(WorkPlanner.Reason.class);
+    /** Previous executions in the progress used as history. */
+    private int historicalExecutions;
+
+    private int wdqsRequests;
+    private int wikidataReads;
+    private double wikidataEdits;
+    private double commonsReads;
+    private double commonsEdits;
+
+    private long commonsThrottleMilliseconds;
+    private long wikidataThrottleMilliseconds;
+    private long maxlagMilliseconds;
+    /** Lookups, latency, maxlag found in history and processing. */
+    private long otherMilliseconds;
+    private long estimatedMilliseconds;
+  }
+
+  /** Previous executions of a group of features. */
+  static class History {
+    private int executions;
+    private int timedExecutions;
+    private long milliseconds;
+    private int wikidataEdits;
+    private int commonsEdits;
+    /** Created data pages, each followed by creating the talk page. */
+    private int commonsCreations;
+
+    void add(Progress.Entity execution) {
+      executions++;
+      if (execution.getEpochStarted() != null && execution.getEpochEnded() != null) {
+        timedExecutions++;
+        milliseconds += execution.getEpochEnded() - execution.getEpochStarted();
+      }
+      boolean commonsEdit = execution.isCreatedCommonsGeoshape() || execution.isUpdatedCommonsGeoshape();
+      wikidataEdits += ProgressAnalyzer.countEdits(execution) - (commonsEdit ? 1 : 0);
+      if (commonsEdit) {
+        commonsEdits++;
+      }
+      if (execution.isCreatedCommonsGeoshape()) {
+        commonsCreations++;
+      }
+    }
+  }
+
+  private static int group(boolean firstExecution, boolean geoshape) {
+    return (firstExecution ? 2 : 0) + (geoshape ? 1 : 0);
+  }
+
+  /** See {@link GeometryStrategy}, all but single points get a Commons geoshape. */
+  private static boolean hasGeoshape(NvrFeature feature) {
+    PackedGeometry geometry = feature.getPackedGeometry();
+    return geometry != null
+        && (geometry.getType() == PackedGeometry.Type.Polygon || geometry.getType() == PackedGeometry.Type.MultiPolygon
+        || geometry.getType() == PackedGeometry.Type.MultiPoint);
+  }
+
+  /** For executions of features that are no longer in the data. */
+  private static boolean hasCommonsEdit(Progress.Entity entity) {
+    for (Progress.Entity execution = entity; execution != null; execution = execution.getPreviousExecution()) {
+      if (execution.isCreatedCommonsGeoshape() || execution.isUpdatedCommonsGeoshape()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public Estimate estimate(AbstractNaturvardsregistretBot bot) throws IOException {
+    String name = bot.getClass().getSimpleName();
+    List<NvrFeature> features = new ArrayList<>();
+    for (File file : bot.getNaturvardsregistretGeoJsonFiles()) {
+      if (!file.exists()) {
+        log.warn("Missing {}, not included in estimate of {}", file.getAbsolutePath(), name);
+        continue;
+      }
+      features.addAll(NvrFeatureCollection.read(objectMapper, file).getFeatures());
+    }
+    File progressFile = new File("data/progress/" + name + ".json");
+    Progress progress = progressFile.exists() ? objectMapper.readValue(progressFile, Progress.class) : new Progress();
+    OperatorDictionary operatorDictionary = AbstractNaturvardsregistretBot.loadOperatorDictionary(objectMapper);
+
+    File sparqlCacheFile = new File("data/cache/sparql-" + name);
+    if (!new File(sparqlCacheFile.getPath() + ".mv.db").exists()) {
+      return estimate(name, features, progress, operatorDictionary, null);
+    }
+    SparqlCache sparqlCache = new SparqlCache(sparqlCacheFile);
+    try {
+      sparqlCache.open();
+    } catch (SQLException e) {
+      log.warn("Unable to open SPARQL cache of {}, all operator lookups are estimated as WDQS requests", name, e);
+      return estimate(name, features, progress, operatorDictionary, null);
+    }
+    try {
+      return estimate(name, features, progress, operatorDictionary, sparqlCache);
+    } finally {
+      try {
+        sparqlCache.close();
+      } catch (SQLException e) {
+        log.warn("Unable to close SPARQL cache of {}", name, e);
+      }
+    }
+  }
+
+  public Estimate estimate(String bot, List<NvrFeature> features, Progress progress) throws IOException {
+    return estimate(bot, features, progress, null, null);
+  }
+
+  /**
+   * @param operatorDictionary Operators resolved without WDQS requests, or null.
+   * @param sparqlCache        Cached operator label lookups, or null.
+   */
+  public Estimate estimate(String bot, List<NvrFeature> features, Progress progress,
+                           OperatorDictionary operatorDictionary, SparqlCache sparqlCache) throws IOException {
+    Estimate estimate = new Estimate();
+    estimate.setBot(bot);
+    estimate.setFeatures(features.size());
+
+    Map<String, NvrFeature> featuresByNvrid = new HashMap<>();
+    Set<String> operators = new HashSet<>();
+    for (NvrFeature feature : features) {
+      if (feature.getNvrid() != null) {
+        featuresByNvrid.put(feature.getNvrid(), feature);
+      }
+      if (feature.getOperator() != null) {
+        operators.add(feature.getOperator());
+      }
+    }
+
+    History[] histories = new History[4];
+    for (int i = 0; i < histories.length; i++) {
+      histories[i] = new History();
+    }
+    for (Progress.Entity entity : progress.getProcessed().values()) {
+      NvrFeature feature = featuresByNvrid.get(entity.getNvrid());
+      boolean geoshape = feature != null ? hasGeoshape(feature) : hasCommonsEdit(entity);
+      for (Progress.Entity execution = entity; execution != null; execution = execution.getPreviousExecution()) {
+        boolean first = execution.getPreviousExecution() == null && execution.getCompactedHistory() == null;
+        histories[group(first, geoshape)].add(execution);
+        estimate.historicalExecutions++;
+      }
+    }
+
+    WorkPlanner workPlanner = new WorkPlanner(objectMapper, null, verifyPreviouslyExecutedWithSuccessStartedBefore);
+    List<WorkPlanner.WorkItem> plan = workPlanner.plan(features, progress);
+    estimate.setPlannedFeatures(plan.size());
+
+    // operators not in the dictionary are resolved by label once per run, unless cached
+    for (String operator : operators) {
+      if (operatorDictionary != null && operatorDictionary.find(operator) != null) {
+        continue;
+      }
+      if (sparqlCache != null && sparqlCache.get(WikiData.LABEL_QUERY_CLASS, WikiData.labelQuery(operator, "sv")) != null) {
+        continue;
+      }
+      estimate.wdqsRequests++;
+    }
+
+    long commonsMillisecondsPerRequest = TimeUnit.MINUTES.toMillis(1) / commonsRequestsPerMinute;
+    double estimatedMilliseconds = 0;
+    double commonsThrottleMilliseconds = 0;
+    double wikidataThrottleMilliseconds = 0;
+    double maxlagMilliseconds = 0;
+    for (WorkPlanner.WorkItem workItem : plan) {
+      estimate.reasons.merge(workItem.getReason(), 1, Integer::sum);
+      boolean first = workItem.getReason() == WorkPlanner.Reason.NEVER_PROCESSED;
+      boolean geoshape = hasGeoshape(workItem.getFeature());
+      History history = histories[group(first, geoshape)];
+
+      double wikidataEdits;
+      double commonsEdits;
+      if (history.executions > 0) {
+        wikidataEdits = history.wikidataEdits / (double) history.executions;
+        commonsEdits = geoshape ? (history.commonsEdits + history.commonsCreations) / (double) history.executions : 0;
+      } else {
+        // no history, assume a new item, geoshape and talk page for never processed and no edits otherwise
+        wikidataEdits = first ? 1 : 0;
+        commonsEdits = first && geoshape ? 2 : 0;
+      }
+      double commonsReads = geoshape ? COMMONS_READS_PER_GEOSHAPE : 0;
+
+      // NVRID lookup and fetch of the item
+      estimate.wdqsRequests++;
+      estimate.wikidataReads++;
+      estimate.wikidataEdits += wikidataEdits;
+      estimate.commonsReads += commonsReads;
+      estimate.commonsEdits += commonsEdits;
+
+      double commonsThrottle = (commonsReads + commonsEdits * COMMONS_REQUESTS_PER_EDIT) * commonsMillisecondsPerRequest;
+      double wikidataThrottle = wikidataEdits * wikidataMillisecondsPerEdit;
+      double maxlag = wikidataEdits * maxlagMillisecondsPerEdit;
+      double observed = history.timedExecutions > 0 ? history.milliseconds / (double) history.timedExecutions : 0;
+
+      commonsThrottleMilliseconds += commonsThrottle;
+      wikidataThrottleMilliseconds += wikidataThrottle;
+      maxlagMilliseconds += maxlag;
+      estimatedMilliseconds += Math.max(observed, commonsThrottle + wikidataThrottle) + maxlag;
+    }
+
+    estimate.setCommonsThrottleMilliseconds(Math.round(commonsThrottleMilliseconds));
+    estimate.setWikidataThrottleMilliseconds(Math.round(wikidataThrottleMilliseconds));
+    estimate.setMaxlagMilliseconds(Math.round(maxlagMilliseconds));
+    estimate.setEstimatedMilliseconds(Math.round(estimatedMilliseconds));
+    estimate.setOtherMilliseconds(Math.max(0, estimate.getEstimatedMilliseconds()
+        - estimate.getCommonsThrottleMilliseconds() - estimate.getWikidataThrottleMilliseconds() - estimate.getMaxlagMilliseconds()));
+    return estimate;
+  }
+
+  public void write(Estimate estimate, PrintStream out) {
+    out.println(estimate.getBot() + ": " + estimate.getPlannedFeatures() + " of " + estimate.getFeatures()
+        + " features planned " + estimate.getReasons() + ", history of " + estimate.getHistoricalExecutions() + " executions");
+    out.println(String.format("  %-14s %10s %10s", "endpoint", "requests", "edits"));
+    out.println(String.format("  %-14s %10d %10s", "WDQS", estimate.getWdqsRequests(), "-"));
+    out.println(String.format("  %-14s %10d %10.0f", "Wikidata API", estimate.getWikidataReads(), estimate.getWikidataEdits()));
+    out.println(String.format("  %-14s %10.0f %10.0f", "Commons", estimate.getCommonsReads(), estimate.getCommonsEdits()));
+    out.println("  estimated run time " + duration(estimate.getEstimatedMilliseconds()));
+    writeShare(out, "Commons throttle, " + commonsRequestsPerMinute + " requests/minute", estimate.getCommonsThrottleMilliseconds(), estimate);
+    writeShare(out, "Wikidata edit throttle, " + wikidataMillisecondsPerEdit + " ms/edit", estimate.getWikidataThrottleMilliseconds(), estimate);
+    writeShare(out, "maxlag, " + maxlagMillisecondsPerEdit + " ms/edit", estimate.getMaxlagMilliseconds(), estimate);
+    writeShare(out, "lookups, latency and processing", estimate.getOtherMilliseconds(), estimate);
+    out.println();
+  }
+
+  private static void writeShare(PrintStream out, String title, long milliseconds, Estimate estimate) {
+    long percent = estimate.getEstimatedMilliseconds() == 0 ? 0 : 100 * milliseconds / estimate.getEstimatedMilliseconds();
+    out.println(String.format("    %-45s %14s %3d%%", title, duration(milliseconds), percent));
+  }
+
+  static String duration(long milliseconds) {
+    long seconds = milliseconds / 1000;
+    return String.format("%dh %02dm %02ds", seconds / 3600, seconds / 60 % 60, seconds % 60);
+  }
+
+}
@@ -0,0 +1,46 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.locationtech.jts.algorithm.PointLocator;
+import org.locationtech.jts.algorithm.locate.IndexedPointInAreaLocator;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Location;
+import org.locationtech.jts.geom.Point;
+
+/**
+ * Finds a point representing a geometry that is guaranteed to be located on the geometry:
+ * the centroid if it is, otherwise the interior point of the geometry.
+ * <p>
+ * Areas are located against an {@link IndexedPointInAreaLocator}, i.e. a query is about O(log n) once the index is built.
+ * The interior point of an area is found along a horizontal scan line through the centre of the envelope,
+ * for points it is the point closest to the centroid. No object is allocated per vertex.
+ */
+public class CentroidLocator {
+
+  public static Point containedCentroid(Geometry geometry) {
+    Point centroid = geometry.getCentroid();
+    if (geometry.getDimension() == 2) {
+      IndexedPointInAreaLocator locator = new IndexedPointInAreaLocator(geometry);
+      if (locator.locate(centroid.getCoordinate()) != Location.EXTERIOR) {
+        return centroid;
+      }
+      Point interiorPoint = geometry.getInteriorPoint();
+      if (interiorPoint.isEmpty() || locator.locate(interiorPoint.getCoordinate()) == Location.EXTERIOR) {
+        throw new RuntimeException("Unable to find a centroid inside of the geometry!");
+      }
+      return interiorPoint;
+    }
+
+    PointLocator locator = new PointLocator();
+    Coordinate coordinate = centroid.getCoordinate();
+    if (coordinate != null && locator.intersects(coordinate, geometry)) {
+      return centroid;
+    }
+    Point interiorPoint = geometry.getInteriorPoint();
+    if (interiorPoint.isEmpty() || !locator.intersects(interiorPoint.getCoordinate(), geometry)) {
+      throw new RuntimeException("Unable to find a centroid inside of the geometry!");
+    }
+    return interiorPoint;
+  }
+
+}
@@ -0,0 +1,112 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.Getter;
+import lombok.Setter;
+import org.geojson.Feature;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Canonical JSON of Commons geoshape .map pages: object keys sorted, no indentation,
+ * coordinates rounded to {@link #coordinateDecimals} and feature properties limited to {@link #propertyWhitelist}.
+ * <p>
+ * The same page content always serializes to the same bytes. MediaWiki pretty-prints JSON pages when saved,
+ * so an unchanged page is detected by comparing {@link #serialize(JsonNode)} with {@link #canonical(String)} of the article text.
+ */
+public class CommonsGeoshapeSerializer {
+
+  private ObjectMapper objectMapper = new ObjectMapper();
+
+  /** Decimals kept in coordinates, centroid and GeoJSON. 6 decimals is about 0.1 meter. */
+  @Getter
+  @Setter
+  private int coordinateDecimals = 6;
+
+  /** If set, then only these feature properties are kept in the page data. */
+  @Getter
+  @Setter
+  private Set<String> propertyWhitelist = null;
+
+  /**
+   * @return Feature with rounded geometry coordinates and whitelisted properties.
+   */
+  public ObjectNode feature(Feature feature) {
+    ObjectNode node = objectMapper.valueToTree(feature);
+    JsonNode properties = node.get("properties");
+    if (propertyWhitelist != null && properties instanceof ObjectNode) {
+      ((ObjectNode) properties).retain(propertyWhitelist);
+    }
+    JsonNode geometry = node.get("geometry");
+    if (geometry instanceof ObjectNode && geometry.has("coordinates")) {
+      ((ObjectNode) geometry).set("coordinates", roundCoordinates(geometry.get("coordinates")));
+    }
+    return node;
+  }
+
+  private JsonNode roundCoordinates(JsonNode node) {
+    if (node.isNumber()) {
+      return JsonNodeFactory.instance.numberNode(round(node.doubleValue()));
+    } else if (node.isArray()) {
+      ArrayNode rounded = JsonNodeFactory.instance.arrayNode(node.size());
+      for (JsonNode child : node) {
+        rounded.add(roundCoordinates(child));
+      }
+      return rounded;
+    }
+    return node;
+  }
+
+  public double round(double coordinate) {
+    double factor = Math.pow(10, coordinateDecimals);
+    return Math.round(coordinate * factor) / factor;
+  }
+
+  /**
+   * @return Compact JSON with object keys sorted recursively.
+   */
+  public String serialize(JsonNode page) throws JsonProcessingException {
+    return objectMapper.writeValueAsString(sorted(page));
+  }
+
+  /**
+   * @return Existing page text as serialized by {@link #serialize(JsonNode)}, or null if not valid JSON.
+   */
+  public String canonical(String text) {
+    if (text == null || text.isEmpty()) {
+      return null;
+    }
+    try {
+      return serialize(objectMapper.readTree(text));
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static JsonNode sorted(JsonNode node) {
+    if (node.isObject()) {
+      List<String> fieldNames = new ArrayList<>(node.size());
+      node.fieldNames().forEachRemaining(fieldNames::add);
+      Collections.sort(fieldNames);
+      ObjectNode sorted = JsonNodeFactory.instance.objectNode();
+      for (String fieldName : fieldNames) {
+        sorted.set(fieldName, sorted(node.get(fieldName)));
+      }
+      return sorted;
+    } else if (node.isArray()) {
+      ArrayNode sorted = JsonNodeFactory.instance.arrayNode(node.size());
+      for (JsonNode child : node) {
+        sorted.add(sorted(child));
+      }
+      return sorted;
+    }
+    return node;
+  }
+
+}
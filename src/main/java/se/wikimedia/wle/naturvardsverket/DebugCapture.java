@@ -0,0 +1,103 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Layout;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.LoggingEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Log4j appender keeping the most recent events of the current thread in a ring buffer
+ * between {@link #begin(int)} and {@link #end()}, e.g. all trace and debug events while processing an entity.
+ * <p>
+ * Events are only formatted by {@link #end()}, so the caller can decide to write them for failed entities
+ * or entities with warnings and otherwise throw them away. Threads without an active capture are ignored.
+ * <p>
+ * The layout must not contain location patterns (%L, %F, %M, %l) as they would be resolved when formatted.
+ */
+public class DebugCapture extends AppenderSkeleton {
+
+  private static final ThreadLocal<Ring> rings = new ThreadLocal<>();
+
+  private static final Layout defaultLayout = new PatternLayout("%d{HH:mm:ss,SSS} %-5p %c{1} - %m%n");
+
+  private static class Ring {
+    private LoggingEvent[] events;
+    private Layout layout;
+    private long appended;
+
+    private Ring(int capacity) {
+      events = new LoggingEvent[capacity];
+    }
+  }
+
+  /**
+   * Starts capturing events of the current thread, replacing any previous capture.
+   *
+   * @param capacity Number of most recent events to keep.
+   */
+  public static void begin(int capacity) {
+    rings.set(new Ring(capacity));
+  }
+
+  /**
+   * Stops capturing events of the current thread.
+   *
+   * @return Captured events formatted in order, or an empty list if no capture was active.
+   */
+  public static List<String> end() {
+    Ring ring = rings.get();
+    rings.remove();
+    if (ring == null) {
+      return new ArrayList<>(0);
+    }
+    Layout layout = ring.layout != null ? ring.layout : defaultLayout;
+    int size = (int) Math.min(ring.appended, ring.events.length);
+    List<String> lines = new ArrayList<>(size + 1);
+    if (ring.appended > size) {
+      lines.add("... " + (ring.appended - size) + " earlier events dropped\n");
+    }
+    for (int i = 0; i < size; i++) {
+      LoggingEvent event = ring.events[(int) ((ring.appended - size + i) % ring.events.length)];
+      StringBuilder line = new StringBuilder(layout.format(event));
+      String[] throwable = event.getThrowableStrRep();
+      if (throwable != null && layout.ignoresThrowable()) {
+        for (String throwableLine : throwable) {
+          line.append(throwableLine).append('\n');
+        }
+      }
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  /**
+   * Stops capturing events of the current thread without formatting them.
+   */
+  public static void discard() {
+    rings.remove();
+  }
+
+  @Override
+  protected void append(LoggingEvent event) {
+    Ring ring = rings.get();
+    if (ring == null) {
+      return;
+    }
+    ring.layout = layout;
+    ring.events[(int) (ring.appended++ % ring.events.length)] = event;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+  }
+
+  @Override
+  public boolean requiresLayout() {
+    return false;
+  }
+
+}
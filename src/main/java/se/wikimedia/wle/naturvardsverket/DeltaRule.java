@@ -0,0 +1,109 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
+import org.wikidata.wdtk.datamodel.interfaces.Value;
+
+import java.util.Objects;
+
+/**
+ * Declares how one claim of a Naturvårdsregistret object is compared with the Wikidata item,
+ * evaluated by {@link DeltaRuleEngine}.
+ * <p>
+ * Properties and qualifier values are names in {@link WikiData#getNamedEntities()}.
+ * A local value of {@link WikiData#NULL_ENTITY_VALUE} means no value.
+ */
+@Data
+@Accessors(chain = true)
+public class DeltaRule {
+
+  public enum Selector {
+    /** The statement with the most recent publication date in references */
+    MOST_RECENT_PUBLISHED,
+    /** The single statement without qualifiers */
+    WITHOUT_QUALIFIER,
+    /** The single statement with {@link #qualifierProperty} set to {@link #qualifierValue} */
+    QUALIFIER,
+  }
+
+  public enum Policy {
+    /** Add a new statement if missing or if the selected statement has another value. Existing is left untouched. */
+    ADD,
+    /** Add a new statement if missing. If the selected statement has another value it is deleted and a new is added. */
+    REPLACE,
+    /**
+     * Add a new statement if missing. If the selected statement has another value a point in time qualifier
+     * from its publication date is added to it, and a new statement with point in time is added.
+     */
+    POINT_IN_TIME,
+    /**
+     * There should be exactly one statement with the property, ignoring selector.
+     * Statements with other values or without references are deleted, and a new is added if none remains.
+     */
+    UNIQUE,
+  }
+
+  public interface ValueFactory {
+    /**
+     * @return Local value, or null if the claim should not be evaluated for the object.
+     */
+    Value value(NaturvardsregistretObject object) throws Exception;
+  }
+
+  public interface StatementFactory {
+    Statement statement(NaturvardsregistretObject object, Value value) throws Exception;
+  }
+
+  public interface ValueComparator {
+    boolean same(Value local, Value existing);
+  }
+
+  /** Name in {@link Progress.Entity} claim counters, e.g. area land */
+  private String claim;
+  /** Used in log and warnings, e.g. Area land */
+  private String label;
+  /** Used in warnings about the previous value, e.g. IUCN category. Defaults to {@link #claim}. */
+  private String displayName;
+  private String property;
+
+  private Selector selector = Selector.MOST_RECENT_PUBLISHED;
+  private String qualifierProperty;
+  private String qualifierValue;
+
+  private Policy policy;
+
+  /** If true, skip the claim if the selected statement has a publication date more recent than the local published date. */
+  private boolean skipWhenFresherAtWikidata = true;
+
+  /** If true, delete the selected statement if the value factory returns null. */
+  private boolean deleteWhenNoValue = false;
+
+  private boolean addWhenMissing = true;
+
+  private ValueFactory valueFactory;
+
+  /** Defaults to the value with the Naturvårdsregistret reference and the qualifier of the rule. */
+  private StatementFactory statementFactory;
+
+  /** Statement added when the value has changed using {@link Policy#POINT_IN_TIME}. Defaults to the value with point in time. */
+  private StatementFactory changedStatementFactory;
+
+  private ValueComparator valueComparator = Objects::equals;
+
+  public DeltaRule(String claim, String label, String property, Policy policy) {
+    this.claim = claim;
+    this.displayName = claim;
+    this.label = label;
+    this.property = property;
+    this.policy = policy;
+  }
+
+  public DeltaRule setQualifier(String qualifierProperty, String qualifierValue) {
+    this.selector = Selector.QUALIFIER;
+    this.qualifierProperty = qualifierProperty;
+    this.qualifierValue = qualifierValue;
+    return this;
+  }
+
+}
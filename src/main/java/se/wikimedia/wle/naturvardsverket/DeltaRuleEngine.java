@@ -0,0 +1,204 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.implementation.ValueSnakImpl;
+import org.wikidata.wdtk.datamodel.interfaces.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Evaluates {@link DeltaRule}s against the {@link ItemStatementIndex} of an object,
+ * collecting statements to add and delete and reporting claims and warnings to {@link Progress.Entity}.
+ * <p>
+ * Rules are resolved against {@link WikiData#getNamedEntities()} once, when the engine is created.
+ */
+public class DeltaRuleEngine {
+
+  private Logger log = LoggerFactory.getLogger(getClass());
+
+  private AbstractNaturvardsregistretBot bot;
+  private PropertyIdValue pointInTime;
+  private List<ResolvedRule> rules;
+
+  private static class ResolvedRule {
+    private DeltaRule rule;
+    private PropertyIdValue property;
+    private PropertyIdValue qualifierProperty;
+    private EntityIdValue qualifierValue;
+    private List<SnakGroup> qualifiers;
+  }
+
+  public DeltaRuleEngine(AbstractNaturvardsregistretBot bot, List<DeltaRule> rules) {
+    this.bot = bot;
+    pointInTime = bot.getWikiData().property("point in time");
+    this.rules = new ArrayList<>(rules.size());
+    for (DeltaRule rule : rules) {
+      ResolvedRule resolved = new ResolvedRule();
+      resolved.rule = rule;
+      resolved.property = bot.getWikiData().property(rule.getProperty());
+      if (rule.getSelector() == DeltaRule.Selector.QUALIFIER) {
+        resolved.qualifierProperty = bot.getWikiData().property(rule.getQualifierProperty());
+        resolved.qualifierValue = bot.getWikiData().entity(rule.getQualifierValue());
+        resolved.qualifiers = Collections.singletonList(Datamodel.makeSnakGroup(Collections.singletonList(
+            Datamodel.makeValueSnak(resolved.qualifierProperty, resolved.qualifierValue))));
+      } else {
+        resolved.qualifiers = Collections.emptyList();
+      }
+      this.rules.add(resolved);
+    }
+  }
+
+  public void evaluate(
+      NaturvardsregistretObject object,
+      Progress.Entity progressEntity,
+      List<Statement> addStatements, List<Statement> deleteStatements
+  ) throws Exception {
+    for (ResolvedRule rule : rules) {
+      evaluate(rule, object, progressEntity, addStatements, deleteStatements);
+    }
+  }
+
+  private void evaluate(
+      ResolvedRule resolved,
+      NaturvardsregistretObject object,
+      Progress.Entity progressEntity,
+      List<Statement> addStatements, List<Statement> deleteStatements
+  ) throws Exception {
+    DeltaRule rule = resolved.rule;
+    ItemStatementIndex index = object.getStatementIndex();
+
+    Value value = rule.getValueFactory().value(object);
+
+    if (rule.getPolicy() == DeltaRule.Policy.UNIQUE) {
+      if (value != null) {
+        evaluateUnique(resolved, object, value, progressEntity, addStatements, deleteStatements);
+      }
+      return;
+    }
+
+    Statement existing;
+    switch (rule.getSelector()) {
+      case WITHOUT_QUALIFIER:
+        existing = index.findStatementWithoutQualifier(resolved.property);
+        break;
+      case QUALIFIER:
+        existing = index.findStatementByUniqueQualifier(resolved.property, resolved.qualifierProperty, resolved.qualifierValue);
+        break;
+      default:
+        existing = index.findMostRecentPublishedStatement(resolved.property);
+    }
+
+    if (value == null) {
+      if (rule.isDeleteWhenNoValue() && existing != null) {
+        deleteStatements.add(existing);
+        progressEntity.getDeletedClaims().add(rule.getClaim());
+      }
+      return;
+    }
+
+    if (rule.isSkipWhenFresherAtWikidata() && index.isPublishedAfter(existing, object.getPublishedDate())) {
+      log.info("{} publication date is fresher at Wikidata than local publish date. Skipping.", rule.getLabel());
+      progressEntity.getWarnings().add(rule.getLabel() + " publication date is fresher at Wikidata.");
+      return;
+    }
+
+    if (existing == null) {
+      if (rule.isAddWhenMissing()) {
+        addStatements.add(statement(resolved, object, value));
+        progressEntity.getCreatedClaims().add(rule.getClaim());
+      }
+      return;
+    }
+
+    if (rule.getValueComparator().same(value == WikiData.NULL_ENTITY_VALUE ? null : value, existing.getValue())) {
+      return;
+    }
+
+    switch (rule.getPolicy()) {
+      case ADD:
+        addStatements.add(statement(resolved, object, value));
+        progressEntity.getCreatedClaims().add(rule.getClaim());
+        break;
+
+      case REPLACE:
+        addStatements.add(statement(resolved, object, value));
+        progressEntity.getCreatedClaims().add(rule.getClaim());
+        deleteStatements.add(existing);
+        progressEntity.getDeletedClaims().add(rule.getClaim());
+        break;
+
+      case POINT_IN_TIME:
+        if (!bot.getWikiData().hasQualifier(existing, pointInTime)) {
+          TimeValue existingPublishedDate = index.getPublishedDate(existing);
+          if (existingPublishedDate == null) {
+            log.warn("No published date to use for point in time. Previous {} will be left untouched.", rule.getDisplayName());
+            progressEntity.getWarnings().add("No published date to use for point in time. Previous " + rule.getDisplayName() + " left untouched.");
+          } else {
+            addStatements.add(bot.getWikiData().asStatementBuilder(existing)
+                .withQualifier(new ValueSnakImpl(pointInTime, existingPublishedDate))
+                .build());
+            deleteStatements.add(existing);
+            progressEntity.getModifiedClaims().add(rule.getClaim());
+          }
+        }
+        addStatements.add(changedStatement(resolved, object, value));
+        progressEntity.getCreatedClaims().add(rule.getClaim());
+        break;
+
+      default:
+        throw new IllegalStateException("Unhandled policy " + rule.getPolicy());
+    }
+  }
+
+  private void evaluateUnique(
+      ResolvedRule resolved,
+      NaturvardsregistretObject object,
+      Value value,
+      Progress.Entity progressEntity,
+      List<Statement> addStatements, List<Statement> deleteStatements
+  ) throws Exception {
+    DeltaRule rule = resolved.rule;
+    boolean foundMatchingExistingWithReferences = false;
+    for (Statement existing : object.getStatementIndex().getStatements(resolved.property)) {
+      if (!rule.getValueComparator().same(value, existing.getValue())) {
+        deleteStatements.add(existing);
+        progressEntity.getDeletedClaims().add(rule.getClaim());
+      } else if (existing.getReferences() == null || existing.getReferences().isEmpty()) {
+        // The value is correct, but there is no references to where it came from. Remove that to make place for one with references.
+        deleteStatements.add(existing);
+        progressEntity.getModifiedClaims().add(rule.getClaim());
+      } else {
+        foundMatchingExistingWithReferences = true;
+      }
+    }
+    if (!foundMatchingExistingWithReferences) {
+      addStatements.add(statement(resolved, object, value));
+      progressEntity.getCreatedClaims().add(rule.getClaim());
+    }
+  }
+
+  private Statement statement(ResolvedRule resolved, NaturvardsregistretObject object, Value value) throws Exception {
+    if (resolved.rule.getStatementFactory() != null) {
+      return resolved.rule.getStatementFactory().statement(object, value);
+    }
+    return bot.getStatementTemplates(object).statement(object, resolved.property, value, resolved.qualifiers);
+  }
+
+  private Statement changedStatement(ResolvedRule resolved, NaturvardsregistretObject object, Value value) throws Exception {
+    if (resolved.rule.getChangedStatementFactory() != null) {
+      return resolved.rule.getChangedStatementFactory().statement(object, value);
+    }
+    StatementTemplates templates = bot.getStatementTemplates(object);
+    List<SnakGroup> qualifiers = templates.getPointInTimePublishedQualifiers();
+    if (!resolved.qualifiers.isEmpty()) {
+      qualifiers = new ArrayList<>(resolved.qualifiers);
+      qualifiers.addAll(templates.getPointInTimePublishedQualifiers());
+    }
+    return templates.statement(object, resolved.property, value, qualifiers);
+  }
+
+}
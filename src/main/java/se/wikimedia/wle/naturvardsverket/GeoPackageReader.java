@@ -0,0 +1,193 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams features from a feature table of an OGC GeoPackage, i.e. a local SQLite database.
+ * Geometries are GeoPackage binary (header and envelope followed by WKB), SWEREF 99 TM is reprojected to WGS84.
+ * <p>
+ * Uses the SQLite JDBC driver org.xerial:sqlite-jdbc.
+ * Values are the same as in GeoJSON converted by ogr2ogr: dates are yyyy/MM/dd strings and integers fitting in an int are ints.
+ */
+public class GeoPackageReader {
+
+  /**
+   * Reads the first feature table in gpkg_contents.
+   */
+  public static NvrFeatureCollection read(File gpkg) throws IOException {
+    return read(gpkg, null);
+  }
+
+  /**
+   * @param table Feature table, or null for the first in gpkg_contents.
+   */
+  public static NvrFeatureCollection read(File gpkg, String table) throws IOException {
+    if (!gpkg.exists()) {
+      throw new IOException("No such file " + gpkg.getAbsolutePath());
+    }
+    try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + gpkg.getAbsolutePath())) {
+      if (table == null) {
+        table = firstFeatureTable(connection);
+      }
+      String geometryColumn;
+      int srsId;
+      try (PreparedStatement statement = connection.prepareStatement(
+          "SELECT column_name, srs_id FROM gpkg_geometry_columns WHERE table_name = ?")) {
+        statement.setString(1, table);
+        try (ResultSet resultSet = statement.executeQuery()) {
+          if (!resultSet.next()) {
+            throw new IOException("No geometry column of " + table + " in " + gpkg.getAbsolutePath());
+          }
+          geometryColumn = resultSet.getString(1);
+          srsId = resultSet.getInt(2);
+        }
+      }
+
+      NvrFeatureCollection collection = new NvrFeatureCollection();
+      collection.setCrs(crs(connection, srsId));
+
+      List<String> keys = new ArrayList<>();
+      List<String> types = new ArrayList<>();
+      StringBuilder select = new StringBuilder("SELECT ").append(quote(geometryColumn));
+      try (Statement statement = connection.createStatement();
+           ResultSet resultSet = statement.executeQuery("PRAGMA table_info(" + quote(table) + ")")) {
+        while (resultSet.next()) {
+          String name = resultSet.getString("name");
+          if (resultSet.getInt("pk") > 0 || name.equals(geometryColumn)) {
+            continue;
+          }
+          keys.add(name);
+          types.add(resultSet.getString("type").toUpperCase());
+          select.append(", ").append(quote(name));
+        }
+      }
+      select.append(" FROM ").append(quote(table));
+
+      WKBReader wkbReader = new WKBReader(new GeometryFactory());
+      try (Statement statement = connection.createStatement();
+           ResultSet resultSet = statement.executeQuery(select.toString())) {
+        while (resultSet.next()) {
+          List<Object> values = new ArrayList<>(keys.size());
+          for (int i = 0; i < keys.size(); i++) {
+            values.add(value(resultSet.getObject(i + 2), types.get(i)));
+          }
+          collection.add(null, keys, values, geometry(wkbReader, resultSet.getBytes(1)));
+        }
+      }
+
+      if (Sweref99Tm.isSweref99Tm(collection.getCrs())) {
+        collection.reprojectSweref99TmToWgs84();
+      }
+      return collection;
+
+    } catch (SQLException e) {
+      throw new IOException("Unable to read " + gpkg.getAbsolutePath(), e);
+    }
+  }
+
+  private static String firstFeatureTable(Connection connection) throws SQLException, IOException {
+    try (Statement statement = connection.createStatement();
+         ResultSet resultSet = statement.executeQuery("SELECT table_name FROM gpkg_contents WHERE data_type = 'features' ORDER BY table_name")) {
+      if (!resultSet.next()) {
+        throw new IOException("No feature table in gpkg_contents");
+      }
+      return resultSet.getString(1);
+    }
+  }
+
+  private static String crs(Connection connection, int srsId) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(
+        "SELECT organization, organization_coordsys_id FROM gpkg_spatial_ref_sys WHERE srs_id = ?")) {
+      statement.setInt(1, srsId);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        if (!resultSet.next()) {
+          return null;
+        }
+        String organization = resultSet.getString(1);
+        int code = resultSet.getInt(2);
+        if ("EPSG".equalsIgnoreCase(organization) && code == 3006) {
+          return Sweref99Tm.EPSG;
+        } else if ("EPSG".equalsIgnoreCase(organization) && code == 4326) {
+          return NvrFeatureCollection.CRS84;
+        }
+        return organization + ":" + code;
+      }
+    }
+  }
+
+  private static String quote(String identifier) {
+    return "\"" + identifier.replace("\"", "\"\"") + "\"";
+  }
+
+  static Object value(Object value, String type) {
+    if (value == null) {
+      return null;
+    } else if (value instanceof Long) {
+      long longValue = (Long) value;
+      return longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE ? (Object) (int) longValue : value;
+    } else if (value instanceof Float) {
+      return ((Float) value).doubleValue();
+    } else if (value instanceof String) {
+      String text = (String) value;
+      if (text.isEmpty()) {
+        return null;
+      }
+      if ("DATE".equals(type) && text.length() == 10) {
+        return text.substring(0, 4) + "/" + text.substring(5, 7) + "/" + text.substring(8, 10);
+      }
+    }
+    return value;
+  }
+
+  /**
+   * @param blob GeoPackage binary geometry
+   * @return Null if empty.
+   */
+  static PackedGeometry geometry(WKBReader wkbReader, byte[] blob) throws IOException {
+    if (blob == null) {
+      return null;
+    }
+    if (blob.length < 8 || blob[0] != 'G' || blob[1] != 'P') {
+      throw new IOException("Not a GeoPackage geometry");
+    }
+    int flags = blob[3];
+    if ((flags & 0x10) != 0) {
+      return null;
+    }
+    int envelopeLength;
+    switch ((flags >> 1) & 0x07) {
+      case 0:
+        envelopeLength = 0;
+        break;
+      case 1:
+        envelopeLength = 32;
+        break;
+      case 2:
+      case 3:
+        envelopeLength = 48;
+        break;
+      case 4:
+        envelopeLength = 64;
+        break;
+      default:
+        throw new IOException("Invalid envelope indicator in GeoPackage geometry");
+    }
+    int offset = 8 + envelopeLength;
+    byte[] wkb = new byte[blob.length - offset];
+    System.arraycopy(blob, offset, wkb, 0, wkb.length);
+    try {
+      return PackedGeometry.of(wkbReader.read(wkb));
+    } catch (ParseException e) {
+      throw new IOException("Invalid WKB in GeoPackage geometry", e);
+    }
+  }
+
+}
@@ -0,0 +1,132 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import lombok.Data;
+import lombok.Getter;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+
+/**
+ * Embedded H2 database with values derived from the geometry of each NVRID by {@link GeometryStrategy}:
+ * the geometry as WKB, the contained centroid, the envelope and the Commons geoshape zoom.
+ * <p>
+ * Entries are keyed on NVRID and {@link PackedGeometry#hash()}, i.e. a changed geometry is a cache miss
+ * and replaces the previous entry of the NVRID. Reruns of unchanged features require no geometry computation.
+ * Entries written with another {@link #VERSION} are also misses.
+ */
+public class GeometryCache implements AutoCloseable {
+
+  /** Increase when the way values are derived changes. */
+  public static final int VERSION = 2;
+
+  @Data
+  public static class DerivedGeometry {
+    private byte[] wkb;
+    private double centroidX;
+    private double centroidY;
+    private Envelope envelope;
+    private int zoom;
+
+    public Geometry toJts(GeometryFactory geometryFactory) throws ParseException {
+      return new WKBReader(geometryFactory).read(wkb);
+    }
+  }
+
+  private File file;
+  private Connection connection;
+
+  @Getter
+  private int hits;
+  @Getter
+  private int misses;
+
+  /**
+   * @param file Database file without the .mv.db suffix added by H2.
+   */
+  public GeometryCache(File file) {
+    this.file = file;
+  }
+
+  public void open() throws SQLException {
+    connection = DriverManager.getConnection("jdbc:h2:file:" + file.getAbsolutePath());
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE IF NOT EXISTS derived_geometry (" +
+          " nvrid VARCHAR PRIMARY KEY," +
+          " geometry_hash VARCHAR NOT NULL," +
+          " version INT NOT NULL," +
+          " wkb BLOB NOT NULL," +
+          " centroid_x DOUBLE NOT NULL," +
+          " centroid_y DOUBLE NOT NULL," +
+          " min_x DOUBLE NOT NULL," +
+          " min_y DOUBLE NOT NULL," +
+          " max_x DOUBLE NOT NULL," +
+          " max_y DOUBLE NOT NULL," +
+          " zoom INT NOT NULL" +
+          ")");
+    }
+  }
+
+  @Override
+  public void close() throws SQLException {
+    if (connection != null) {
+      connection.close();
+      connection = null;
+    }
+  }
+
+  /**
+   * @return Derived values of the geometry, or null if not cached for this NVRID and geometry.
+   */
+  public DerivedGeometry get(String nvrid, String geometryHash) throws IOException {
+    try (PreparedStatement statement = connection.prepareStatement(
+        "SELECT wkb, centroid_x, centroid_y, min_x, min_y, max_x, max_y, zoom FROM derived_geometry WHERE nvrid = ? AND geometry_hash = ? AND version = ?")) {
+      statement.setString(1, nvrid);
+      statement.setString(2, geometryHash);
+      statement.setInt(3, VERSION);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        if (!resultSet.next()) {
+          misses++;
+          return null;
+        }
+        hits++;
+        DerivedGeometry derived = new DerivedGeometry();
+        derived.setWkb(resultSet.getBytes(1));
+        derived.setCentroidX(resultSet.getDouble(2));
+        derived.setCentroidY(resultSet.getDouble(3));
+        derived.setEnvelope(new Envelope(resultSet.getDouble(4), resultSet.getDouble(6), resultSet.getDouble(5), resultSet.getDouble(7)));
+        derived.setZoom(resultSet.getInt(8));
+        return derived;
+      }
+    } catch (SQLException e) {
+      throw new IOException("Unable to read derived geometry of " + nvrid, e);
+    }
+  }
+
+  public void put(String nvrid, String geometryHash, DerivedGeometry derived) throws IOException {
+    try (PreparedStatement statement = connection.prepareStatement(
+        "MERGE INTO derived_geometry (nvrid, geometry_hash, version, wkb, centroid_x, centroid_y, min_x, min_y, max_x, max_y, zoom)" +
+            " KEY (nvrid) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+      statement.setString(1, nvrid);
+      statement.setString(2, geometryHash);
+      statement.setInt(3, VERSION);
+      statement.setBytes(4, derived.getWkb());
+      statement.setDouble(5, derived.getCentroidX());
+      statement.setDouble(6, derived.getCentroidY());
+      statement.setDouble(7, derived.getEnvelope().getMinX());
+      statement.setDouble(8, derived.getEnvelope().getMinY());
+      statement.setDouble(9, derived.getEnvelope().getMaxX());
+      statement.setDouble(10, derived.getEnvelope().getMaxY());
+      statement.setInt(11, derived.getZoom());
+      statement.executeUpdate();
+    } catch (SQLException e) {
+      throw new IOException("Unable to write derived geometry of " + nvrid, e);
+    }
+  }
+
+}
@@ -1,19 +1,19 @@
 package se.wikimedia.wle.naturvardsverket;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import net.sourceforge.jwbf.core.contentRep.Article;
 import org.geojson.*;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKBWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.wikidata.wdtk.datamodel.helpers.StatementBuilder;
 import org.wikidata.wdtk.datamodel.implementation.GlobeCoordinatesValueImpl;
 import org.wikidata.wdtk.datamodel.implementation.StringValueImpl;
 import org.wikidata.wdtk.datamodel.interfaces.*;
 import org.wololo.jts2geojson.GeoJSONReader;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -42,7 +42,7 @@ public class GeometryStrategy implements GeoJsonObjectVisitor<Void> {
   @Override
   public Void visit(org.geojson.Point point) {
     try {
-      org.locationtech.jts.geom.Point jtsPoint = (org.locationtech.jts.geom.Point) new GeoJSONReader().read(bot.getObjectMapper().writeValueAsString(point));
+      org.locationtech.jts.geom.Point jtsPoint = (org.locationtech.jts.geom.Point) toJts(point);
 
       // allow 1m diff
       processSingleCoordinateLocation(0.001d, jtsPoint);
@@ -56,15 +56,14 @@ public class GeometryStrategy implements GeoJsonObjectVisitor<Void> {
   @Override
   public Void visit(MultiPoint multiPoint) {
     try {
-      org.locationtech.jts.geom.MultiPoint jtsMultiPoint = (org.locationtech.jts.geom.MultiPoint)new GeoJSONReader().read(bot.getObjectMapper().writeValueAsString(multiPoint));
-
-      org.locationtech.jts.geom.Point centroid = calculateContainedCentroid(jtsMultiPoint);
+      GeometryCache.DerivedGeometry derived = derive(multiPoint);
+      org.locationtech.jts.geom.Point centroid = centroid(derived);
 
       // allow 1m diff
       processSingleCoordinateLocation(0.001d, centroid);
 
       // todo add a commons article containing all points? produce a convex hull?
-      createOrPossiblyUpdateCommonGeoshapeArticle(naturvardsregistretObject, jtsMultiPoint, centroid);
+      createOrPossiblyUpdateCommonGeoshapeArticle(naturvardsregistretObject, derived.getZoom(), centroid);
 
 
       return null;
@@ -77,18 +76,13 @@ public class GeometryStrategy implements GeoJsonObjectVisitor<Void> {
   @Override
   public Void visit(Polygon polygon) {
     try {
-      org.locationtech.jts.geom.Polygon jtsPolygon = (org.locationtech.jts.geom.Polygon)new GeoJSONReader().read(bot.getObjectMapper().writeValueAsString(polygon));
-
-      org.locationtech.jts.geom.Point centroid = calculateContainedCentroid(jtsPolygon);
+      GeometryCache.DerivedGeometry derived = derive(polygon);
+      org.locationtech.jts.geom.Point centroid = centroid(derived);
 
       // allow 100 meter diff
       processSingleCoordinateLocation(0.1d, centroid);
 
-      if (!jtsPolygon.intersects(centroid)) {
-        throw new RuntimeException("Centroid is not inside of the polygon!");
-      }
-
-      createOrPossiblyUpdateCommonGeoshapeArticle(naturvardsregistretObject, jtsPolygon, centroid);
+      createOrPossiblyUpdateCommonGeoshapeArticle(naturvardsregistretObject, derived.getZoom(), centroid);
       return null;
 
     } catch (Exception e) {
@@ -99,20 +93,63 @@ public class GeometryStrategy implements GeoJsonObjectVisitor<Void> {
   @Override
   public Void visit(MultiPolygon multiPolygon) {
     try {
-      org.locationtech.jts.geom.MultiPolygon jtsMultiPolygon = (org.locationtech.jts.geom.MultiPolygon)new GeoJSONReader().read(bot.getObjectMapper().writeValueAsString(multiPolygon));
-
-      org.locationtech.jts.geom.Point centroid = calculateContainedCentroid(jtsMultiPolygon);
+      GeometryCache.DerivedGeometry derived = derive(multiPolygon);
+      org.locationtech.jts.geom.Point centroid = centroid(derived);
 
       // allow 100 meter diff
       processSingleCoordinateLocation(0.1d, centroid);
 
-      createOrPossiblyUpdateCommonGeoshapeArticle(naturvardsregistretObject, jtsMultiPolygon, centroid);
+      createOrPossiblyUpdateCommonGeoshapeArticle(naturvardsregistretObject, derived.getZoom(), centroid);
       return null;
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * @return Derived values from the {@link GeometryCache} of the bot if the geometry is unchanged, otherwise computed and cached.
+   */
+  private GeometryCache.DerivedGeometry derive(GeoJsonObject geometry) throws Exception {
+    GeometryCache cache = bot.getGeometryCache();
+    PackedGeometry packedGeometry = naturvardsregistretObject.getPackedGeometry();
+    String geometryHash = null;
+    if (cache != null && packedGeometry != null) {
+      geometryHash = packedGeometry.hash();
+      GeometryCache.DerivedGeometry derived = cache.get(naturvardsregistretObject.getNvrid(), geometryHash);
+      if (derived != null) {
+        return derived;
+      }
+    }
+
+    Geometry jtsGeometry = toJts(geometry);
+    org.locationtech.jts.geom.Point centroid = CentroidLocator.containedCentroid(jtsGeometry);
+
+    GeometryCache.DerivedGeometry derived = new GeometryCache.DerivedGeometry();
+    derived.setWkb(new WKBWriter(packedGeometry == null ? 2 : packedGeometry.getDimension()).write(jtsGeometry));
+    derived.setCentroidX(centroid.getX());
+    derived.setCentroidY(centroid.getY());
+    derived.setEnvelope(jtsGeometry.getEnvelopeInternal());
+    derived.setZoom(evaluateZoom(jtsGeometry));
+    if (geometryHash != null) {
+      cache.put(naturvardsregistretObject.getNvrid(), geometryHash, derived);
+    }
+    return derived;
+  }
+
+  private org.locationtech.jts.geom.Point centroid(GeometryCache.DerivedGeometry derived) {
+    return bot.getGeometryFactory().createPoint(new Coordinate(derived.getCentroidX(), derived.getCentroidY()));
+  }
+
+  /**
+   * @return The packed geometry of the object wrapped without copying if available, otherwise converted via GeoJSON.
+   */
+  private Geometry toJts(GeoJsonObject geometry) throws Exception {
+    if (naturvardsregistretObject.getPackedGeometry() != null) {
+      return naturvardsregistretObject.getPackedGeometry().toJts(bot.getGeometryFactory());
+    }
+    return new GeoJSONReader().read(bot.getObjectMapper().writeValueAsString(geometry));
+  }
+
   @Override
   public Void visit(GeometryCollection geometryCollection) {
     throw new UnsupportedOperationException();
@@ -140,14 +177,12 @@ public class GeometryStrategy implements GeoJsonObjectVisitor<Void> {
 
   private void processSingleCoordinateLocation(double coordinateLocationKilometerLeaniency, org.locationtech.jts.geom.Point point) {
     GlobeCoordinatesValue coordinateLocationValue = coordinateLocationValueFactory(point);
-    Statement existingCoordinateLocation = bot.getWikiData().findMostRecentPublishedStatement(naturvardsregistretObject.getWikiDataItem(), bot.getWikiData().property("coordinate location"));
+    Statement existingCoordinateLocation = naturvardsregistretObject.getStatementIndex().findMostRecentPublishedStatement(bot.getWikiData().property("coordinate location"));
     if (existingCoordinateLocation == null) {
       addStatements.add(coordinateLocationStatementFactory(coordinateLocationValue));
     } else {
 
-      TimeValue existingCoordinateReferencePublishedDate = bot.getReferencePublishedDate(existingCoordinateLocation);
-      if (existingCoordinateReferencePublishedDate != null
-          && bot.getWikiData().toLocalDateTime(existingCoordinateReferencePublishedDate).isAfter(naturvardsregistretObject.getPublishedDate().atTime(0, 0))) {
+      if (naturvardsregistretObject.getStatementIndex().isPublishedAfter(existingCoordinateLocation, naturvardsregistretObject.getPublishedDate())) {
         log.info("Coordinate published date is fresher at Wikidata than local. Skipping.");
         bot.getProgressEntity().getWarnings().add("Coordinate published date is fresher at Wikidata than local.");
 
@@ -159,10 +194,12 @@ public class GeometryStrategy implements GeoJsonObjectVisitor<Void> {
           // remove the old coordinate
           deleteStatements.add(existingCoordinateLocation);
           bot.getProgressEntity().getDeletedClaims().add("coordinate");
-          log.debug("Will add a new coordinate location. Local data coordinate is {} meters away from existing location in WikiData.", String.format("%f", kmDistanceBetweenExistingAndLocalCoordinate * 1000));
+          if (log.isDebugEnabled()) {
+            log.debug("Will add a new coordinate location. Local data coordinate is {} meters away from existing location in WikiData.", String.format("%f", kmDistanceBetweenExistingAndLocalCoordinate * 1000));
+          }
           addStatements.add(coordinateLocationStatementFactory(coordinateLocationValue));
           bot.getProgressEntity().getCreatedClaims().add("coordinate");
-        } else {
+        } else if (log.isDebugEnabled()) {
           log.debug("Will not add new coordinate location. Local data coordinate is only {} meters away from existing location in WikiData.", String.format("%f", kmDistanceBetweenExistingAndLocalCoordinate * 1000));
         }
       }
@@ -170,10 +207,8 @@ public class GeometryStrategy implements GeoJsonObjectVisitor<Void> {
   }
 
   private Statement coordinateLocationStatementFactory(GlobeCoordinatesValue coordinatesValue) {
-    return bot.addNaturvardsregistretReferences(naturvardsregistretObject, StatementBuilder
-        .forSubjectAndProperty(ItemIdValue.NULL, bot.getWikiData().property("coordinate location"))
-        .withValue(coordinatesValue)
-    ).build();
+    StatementTemplates templates = bot.getStatementTemplates(naturvardsregistretObject);
+    return templates.statement(naturvardsregistretObject, templates.getCoordinateLocation(), coordinatesValue);
   }
 
   private GlobeCoordinatesValue coordinateLocationValueFactory(org.locationtech.jts.geom.Point point) {
@@ -185,7 +220,7 @@ public class GeometryStrategy implements GeoJsonObjectVisitor<Void> {
 
   private void createOrPossiblyUpdateCommonGeoshapeArticle(
       NaturvardsregistretObject naturvardsregistretObject,
-      Geometry geometry,
+      int zoom,
       org.locationtech.jts.geom.Point centroid
   ) throws Exception {
 /*
@@ -214,36 +249,42 @@ public class GeometryStrategy implements GeoJsonObjectVisitor<Void> {
     commonsGeoshapeObject.set("description", descriptionNode);
     descriptionNode.put("sv", naturvardsregistretObject.getName());
 
-    commonsGeoshapeObject.put("longitude", centroid.getX());
-    commonsGeoshapeObject.put("latitude", centroid.getY());
-    commonsGeoshapeObject.put("zoom", evaluateZoom(geometry));
-    commonsGeoshapeObject.set("data", bot.getObjectMapper().readValue(bot.getObjectMapper().writeValueAsString(naturvardsregistretObject.getFeature()), JsonNode.class));
+    CommonsGeoshapeSerializer serializer = bot.getCommonsGeoshapeSerializer();
+    commonsGeoshapeObject.put("longitude", serializer.round(centroid.getX()));
+    commonsGeoshapeObject.put("latitude", serializer.round(centroid.getY()));
+    commonsGeoshapeObject.put("zoom", zoom);
+    commonsGeoshapeObject.set("data", serializer.feature(naturvardsregistretObject.getFeature()));
 
-    String commonsGeoshapeObjectJson = bot.getObjectMapper().writeValueAsString(commonsGeoshapeObject);
+    String commonsGeoshapeObjectJson = serializer.serialize(commonsGeoshapeObject);
 
     String commonsGeoshapeArticleName = bot.commonGeoshapeArticleNameFactory(naturvardsregistretObject);
 
 
-    Statement existingGeoshape = bot.getWikiData().findMostRecentPublishedStatement(naturvardsregistretObject.getWikiDataItem(), bot.getWikiData().property("geoshape"));
-    TimeValue existingGeoShapeReferencePublishedDate = bot.getReferencePublishedDate(existingGeoshape);
-    if (existingGeoShapeReferencePublishedDate != null
-        && bot.getWikiData().toLocalDateTime(existingGeoShapeReferencePublishedDate).isAfter(naturvardsregistretObject.getPublishedDate().atTime(0, 0))) {
+    Statement existingGeoshape = naturvardsregistretObject.getStatementIndex().findMostRecentPublishedStatement(bot.getWikiData().property("geoshape"));
+    if (naturvardsregistretObject.getStatementIndex().isPublishedAfter(existingGeoshape, naturvardsregistretObject.getPublishedDate())) {
         log.info("Geoshape publish date is fresher at Wikidata than local. Skipping.");
         bot.getProgressEntity().getWarnings().add("Geoshape publish date is fresher at Wikidata than local.");
+    } else if (bot.getWikiBot() == null) {
+      // offline using local entity store, the Commons geoshape article is not evaluated
+      if (existingGeoshape == null) {
+        addStatements.add(geoshapeStatementFactory(naturvardsregistretObject, commonsGeoshapeArticleName));
+        bot.getProgressEntity().getCreatedClaims().add("geoshape");
+      } else if (!existingGeoshape.getValue().equals(geoshapeValueFactory(commonsGeoshapeArticleName))) {
+        bot.getProgressEntity().getWarnings().add("Commons geoshape article not evaluated offline.");
+      }
     } else {
 
       if (existingGeoshape != null
           && !existingGeoshape.getValue().equals(geoshapeValueFactory(commonsGeoshapeArticleName))) {
         log.debug("Download previously existing Commons geoshape article.");
-        Article commonsGeoShapeArticle = bot.getWikiBot().getArticle(commonsGeoshapeArticleName);
+        Article commonsGeoShapeArticle = bot.getCommonsArticle(commonsGeoshapeArticleName);
         if (commonsGeoShapeArticle.getRevisionId().isEmpty()) {
           log.warn("WikiData points at a non existing geoshape at Commons");
-          createOrPossiblyUpdateCommonGeoshapeArticle(commonsGeoshapeObject, commonsGeoshapeObjectJson, commonsGeoshapeArticleName);
+          createOrPossiblyUpdateCommonGeoshapeArticle(commonsGeoshapeObjectJson, commonsGeoshapeArticleName);
         } else {
-          ObjectNode existingCommonsObject = bot.getObjectMapper().readValue(commonsGeoShapeArticle.getText(), ObjectNode.class);
-          if (!commonsGeoshapeObject.equals(existingCommonsObject)) {
+          if (!commonsGeoshapeObjectJson.equals(bot.getCommonsGeoshapeSerializer().canonical(commonsGeoShapeArticle.getText()))) {
             log.debug("Current Commons geoshape article is not up to date.");
-            createOrPossiblyUpdateCommonGeoshapeArticle(commonsGeoshapeObject, commonsGeoshapeObjectJson, commonsGeoshapeArticleName);
+            createOrPossiblyUpdateCommonGeoshapeArticle(commonsGeoshapeObjectJson, commonsGeoshapeArticleName);
             addStatements.add(geoshapeStatementFactory(naturvardsregistretObject, commonsGeoshapeArticleName));
             bot.getProgressEntity().getCreatedClaims().add("geoshape");
           } else {
@@ -252,10 +293,10 @@ public class GeometryStrategy implements GeoJsonObjectVisitor<Void> {
         }
       } else if (existingGeoshape != null){
         log.debug("Existing Commons geoshape article in WS item with the same name as we would give it");
-        createOrPossiblyUpdateCommonGeoshapeArticle(commonsGeoshapeObject, commonsGeoshapeObjectJson, commonsGeoshapeArticleName);
+        createOrPossiblyUpdateCommonGeoshapeArticle(commonsGeoshapeObjectJson, commonsGeoshapeArticleName);
       } else {
         log.debug("No existing Commons geoshape article in WD item.");
-        createOrPossiblyUpdateCommonGeoshapeArticle(commonsGeoshapeObject, commonsGeoshapeObjectJson, commonsGeoshapeArticleName);
+        createOrPossiblyUpdateCommonGeoshapeArticle(commonsGeoshapeObjectJson, commonsGeoshapeArticleName);
         addStatements.add(geoshapeStatementFactory(naturvardsregistretObject, commonsGeoshapeArticleName));
         bot.getProgressEntity().getCreatedClaims().add("geoshape");
       }
@@ -263,13 +304,12 @@ public class GeometryStrategy implements GeoJsonObjectVisitor<Void> {
   }
 
   private void createOrPossiblyUpdateCommonGeoshapeArticle(
-      ObjectNode commonsGeoshapeObject,
       String commonsGeoshapeObjectJson,
       String commonsGeoshapeArticleName
-  ) {
+  ) throws IOException {
 
     log.trace("Handle geoshape article in Commons");
-    Article commonsGeoShapeArticle = bot.getWikiBot().getArticle(commonsGeoshapeArticleName);
+    Article commonsGeoShapeArticle = bot.getCommonsArticle(commonsGeoshapeArticleName);
     if (commonsGeoShapeArticle.getRevisionId().isEmpty()) {
       log.debug("Creating new Commons article {}", commonsGeoshapeArticleName);
       commonsGeoShapeArticle.setText(commonsGeoshapeObjectJson);
@@ -282,15 +322,8 @@ public class GeometryStrategy implements GeoJsonObjectVisitor<Void> {
     } else {
       log.debug("Already existing Commons article {}", commonsGeoshapeArticleName);
       log.debug("Checking for diff between remote and local data...");
-      ObjectNode existingCommonsObject;
-      try {
-        existingCommonsObject = bot.getObjectMapper().readValue(commonsGeoShapeArticle.getText(), ObjectNode.class);
-      } catch (Exception ioe) {
-        log.warn("Invalid JSON object in Commons article {}", commonsGeoshapeArticleName);
-        existingCommonsObject = null;
-        // todo error rather than replace it?! Perhaps at least an alternative commit message in commons?
-      }
-      if (commonsGeoshapeObject.equals(existingCommonsObject)) {
+      // MediaWiki pretty-prints saved JSON, so the remote text is compared in canonical form
+      if (commonsGeoshapeObjectJson.equals(bot.getCommonsGeoshapeSerializer().canonical(commonsGeoShapeArticle.getText()))) {
         log.debug("No changes to {}", commonsGeoshapeArticleName);
       } else {
         log.debug("Updating {}", commonsGeoshapeArticleName);
@@ -316,7 +349,7 @@ public class GeometryStrategy implements GeoJsonObjectVisitor<Void> {
     }
 
     String commonsGeoshapeArticleTalkName = commonsGeoshapeArticleName.replaceFirst("Data:", "Data_talk:");
-    Article commonsGeoShapeArticleTalk = bot.getWikiBot().getArticle(commonsGeoshapeArticleTalkName);
+    Article commonsGeoShapeArticleTalk = bot.getCommonsArticle(commonsGeoshapeArticleTalkName);
     if (commonsGeoShapeArticleTalk.getRevisionId().isEmpty()) {
       log.debug("Creating new Commons article {}", commonsGeoshapeArticleTalkName);
       commonsGeoShapeArticleTalk.setText(commonsGeoShapeArticleTalkText);
@@ -346,10 +379,8 @@ public class GeometryStrategy implements GeoJsonObjectVisitor<Void> {
 
 
   private Statement geoshapeStatementFactory(NaturvardsregistretObject naturvardsregistretObject, String commonsGeoshapeArticleName) {
-    return bot.addNaturvardsregistretReferences(naturvardsregistretObject, StatementBuilder
-        .forSubjectAndProperty(ItemIdValue.NULL, bot.getWikiData().property("geoshape"))
-        .withValue(geoshapeValueFactory(commonsGeoshapeArticleName))
-    ).build();
+    StatementTemplates templates = bot.getStatementTemplates(naturvardsregistretObject);
+    return templates.statement(naturvardsregistretObject, templates.getGeoshape(), geoshapeValueFactory(commonsGeoshapeArticleName));
   }
 
   private StringValueImpl geoshapeValueFactory(String commonsGeoshapeArticleName) {
@@ -386,26 +417,4 @@ public class GeometryStrategy implements GeoJsonObjectVisitor<Void> {
     return zoom;
   }
 
-  private org.locationtech.jts.geom.Point calculateContainedCentroid(Geometry geometry) {
-    org.locationtech.jts.geom.Point centroid = geometry.getCentroid();
-    if (!geometry.intersects(centroid)) {
-      // find closest vertex
-      double closestDistance = Double.MAX_VALUE;
-      org.locationtech.jts.geom.Point closestPoint = centroid;
-      for (Coordinate coordinate : geometry.getCoordinates()) {
-        org.locationtech.jts.geom.Point point = bot.getGeometryFactory().createPoint(coordinate);
-        double distance = centroid.distance(point);
-        if (distance < closestDistance) {
-          closestDistance = distance;
-          closestPoint = point;
-        }
-      }
-      if (!geometry.intersects(closestPoint) && !geometry.contains(closestPoint)) {
-        throw new RuntimeException("Unable to find a centroid inside of the geometry!");
-      }
-      centroid = closestPoint;
-    }
-    return centroid;
-  }
-
 }
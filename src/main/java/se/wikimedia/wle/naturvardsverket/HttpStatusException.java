@@ -0,0 +1,56 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import lombok.Getter;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.DateUtils;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * A response other than 200 OK, with the Retry-After header if any.
+ */
+public class HttpStatusException extends IOException {
+
+  @Getter
+  private int statusCode;
+
+  /** Null if the response had no valid Retry-After header. */
+  @Getter
+  private Long retryAfterMilliseconds;
+
+  public HttpStatusException(String message, int statusCode, Long retryAfterMilliseconds) {
+    super(message);
+    this.statusCode = statusCode;
+    this.retryAfterMilliseconds = retryAfterMilliseconds;
+  }
+
+  public static HttpStatusException of(String service, HttpResponse response) {
+    return new HttpStatusException(service + " response " + response.getStatusLine(),
+        response.getStatusLine().getStatusCode(), retryAfterMilliseconds(response.getFirstHeader("Retry-After")));
+  }
+
+  /**
+   * @return Delay in seconds or until an HTTP date, null if missing or invalid.
+   */
+  static Long retryAfterMilliseconds(Header header) {
+    if (header == null || header.getValue() == null) {
+      return null;
+    }
+    String value = header.getValue().trim();
+    if (value.matches("[0-9]{1,9}")) {
+      return Long.parseLong(value) * 1000;
+    }
+    Date date = DateUtils.parseDate(value);
+    return date == null ? null : Math.max(0, date.getTime() - System.currentTimeMillis());
+  }
+
+  /**
+   * @return True for responses that might succeed if retried later, i.e. 429 and 5xx except 501.
+   */
+  public boolean isTransient() {
+    return statusCode == 429 || (statusCode >= 500 && statusCode != 501);
+  }
+
+}
@@ -0,0 +1,140 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single pooled HTTP client used for SPARQL, the Wikidata API (via {@link PooledApiConnection})
+ * and Commons (via jwbf), so that all requests reuse persistent connections, ask for gzip
+ * and are subject to the same per host concurrency limits and timeouts.
+ */
+public class HttpTransport {
+
+  private Logger log = LoggerFactory.getLogger(getClass());
+
+  @Getter
+  private CloseableHttpClient client;
+
+  @Getter
+  private CookieStore cookieStore = new BasicCookieStore();
+
+  private PoolingHttpClientConnectionManager connectionManager;
+
+  private String userAgent;
+
+  /** Most recent request of each thread, see {@link #abortExecuting(Thread)} */
+  private Map<Thread, HttpUriRequest> executing = new ConcurrentHashMap<>();
+
+  @Getter
+  @Setter
+  private int maxConnections = 20;
+
+  @Getter
+  @Setter
+  private int defaultMaxConnectionsPerHost = 2;
+
+  /** Host name, max concurrent connections. WDQS allows at most 5 parallel queries per client. */
+  @Getter
+  private Map<String, Integer> maxConnectionsPerHost = new LinkedHashMap<>();
+
+  @Getter
+  @Setter
+  private int connectTimeoutMilliseconds = (int) TimeUnit.SECONDS.toMillis(10);
+
+  /** WDQS has a 60 seconds query timeout, and Wikidata maxlag waits are handled by wdtk between requests. */
+  @Getter
+  @Setter
+  private int socketTimeoutMilliseconds = (int) TimeUnit.SECONDS.toMillis(90);
+
+  /** How long to wait for a free pooled connection. */
+  @Getter
+  @Setter
+  private int connectionRequestTimeoutMilliseconds = (int) TimeUnit.MINUTES.toMillis(5);
+
+  @Getter
+  @Setter
+  private int idleConnectionSeconds = 30;
+
+  public HttpTransport(String userAgent, String userAgentVersion, String emailAddress) {
+    this.userAgent = userAgent + "/" + userAgentVersion + " (" + emailAddress + ")";
+    maxConnectionsPerHost.put("query.wikidata.org", 5);
+    maxConnectionsPerHost.put("www.wikidata.org", 2);
+    maxConnectionsPerHost.put("commons.wikimedia.org", 2);
+  }
+
+  public void open() {
+    connectionManager = new PoolingHttpClientConnectionManager(idleConnectionSeconds, TimeUnit.SECONDS);
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(defaultMaxConnectionsPerHost);
+    for (Map.Entry<String, Integer> host : maxConnectionsPerHost.entrySet()) {
+      connectionManager.setMaxPerRoute(new HttpRoute(new HttpHost(host.getKey(), 443, "https"), null, true), host.getValue());
+    }
+
+    client = HttpClientBuilder.create()
+        .setUserAgent(userAgent)
+        .setConnectionManager(connectionManager)
+        .setDefaultCookieStore(cookieStore)
+        .addInterceptorFirst((HttpRequestInterceptor) (request, context) -> {
+          if (request instanceof HttpRequestWrapper && ((HttpRequestWrapper) request).getOriginal() instanceof HttpUriRequest) {
+            executing.put(Thread.currentThread(), (HttpUriRequest) ((HttpRequestWrapper) request).getOriginal());
+          }
+        })
+        .setDefaultRequestConfig(RequestConfig.custom()
+            .setConnectTimeout(connectTimeoutMilliseconds)
+            .setSocketTimeout(socketTimeoutMilliseconds)
+            .setConnectionRequestTimeout(connectionRequestTimeoutMilliseconds)
+            .build())
+        // HttpClientBuilder adds Accept-Encoding: gzip,deflate and decodes responses unless disableContentCompression() is called
+        .build();
+
+    log.debug("Opened HTTP transport with at most {} connections as {}", maxConnections, userAgent);
+  }
+
+  /**
+   * @return Leased, pending, available and max connections of all hosts, or null if not open.
+   */
+  public PoolStats getPoolStats() {
+    PoolingHttpClientConnectionManager connectionManager = this.connectionManager;
+    return connectionManager == null ? null : connectionManager.getTotalStats();
+  }
+
+  /**
+   * Aborts the most recent request sent by the thread, if any, whether made by us, wdtk or jwbf.
+   * A blocking read of the response throws an IOException.
+   */
+  public void abortExecuting(Thread thread) {
+    HttpUriRequest request = executing.get(thread);
+    if (request != null && !request.isAborted()) {
+      log.warn("Aborting {} {} of thread {}", request.getMethod(), request.getURI().getHost(), thread.getName());
+      request.abort();
+    }
+  }
+
+  public void close() throws IOException {
+    if (client != null) {
+      client.close();
+      client = null;
+    }
+  }
+
+}
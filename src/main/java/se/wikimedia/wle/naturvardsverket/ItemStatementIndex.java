@@ -0,0 +1,210 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.wikidata.wdtk.datamodel.interfaces.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Statements of a single {@link ItemDocument} indexed in one pass over statements, qualifiers and references,
+ * answering the same questions as {@link WikiData#findMostRecentPublishedStatement(ItemDocument, PropertyIdValue)},
+ * {@link WikiData#findStatementByUniqueQualifier(ItemDocument, PropertyIdValue, PropertyIdValue, EntityIdValue)},
+ * {@link WikiData#findStatementWithoutQualifier(ItemDocument, PropertyIdValue)} and
+ * {@link AbstractNaturvardsregistretBot#getReferencePublishedDate(Statement)} without rescanning the item.
+ * <p>
+ * The index is not updated if the item is modified, create a new one for the new revision.
+ */
+public class ItemStatementIndex {
+
+  private static class Published {
+    /** First publication date in the references, same as {@link AbstractNaturvardsregistretBot#getReferencePublishedDate(Statement)} */
+    private TimeValue first;
+    private LocalDateTime firstLocalDateTime;
+    /** Most recent publication date in any of the references */
+    private LocalDateTime mostRecent;
+  }
+
+  private ItemDocument item;
+
+  private Map<String, List<Statement>> statementsByProperty = new HashMap<>();
+  private Map<String, List<Statement>> statementsWithoutQualifiersByProperty = new HashMap<>();
+  /** Statements by property, qualifier property and qualifier value */
+  private Map<QualifierKey, List<Statement>> statementsByQualifier = new HashMap<>();
+  private Map<String, Statement> mostRecentPublishedByProperty = new HashMap<>();
+  private Map<Statement, Published> publishedByStatement = new IdentityHashMap<>();
+
+  public ItemStatementIndex(WikiData wikiData, ItemDocument item) {
+    this.item = item;
+    PropertyIdValue publicationDate = wikiData.property("publication date");
+    String publicationDateId = publicationDate == null ? null : publicationDate.getId();
+
+    for (StatementGroup statementGroup : item.getStatementGroups()) {
+      String property = statementGroup.getProperty().getId();
+      List<Statement> statements = statementGroup.getStatements();
+      statementsByProperty.put(property, statements);
+
+      Statement mostRecentPublished = null;
+      LocalDateTime mostRecentPublishedLocalDateTime = null;
+
+      for (Statement statement : statements) {
+
+        if (statement.getQualifiers().isEmpty()) {
+          statementsWithoutQualifiersByProperty.computeIfAbsent(property, k -> new ArrayList<>(1)).add(statement);
+        } else {
+          for (Iterator<Snak> iterator = statement.getAllQualifiers(); iterator.hasNext(); ) {
+            Snak qualifier = iterator.next();
+            if (qualifier instanceof ValueSnak) {
+              List<Statement> matches = statementsByQualifier.computeIfAbsent(
+                  new QualifierKey(property, qualifier.getPropertyId().getId(), ((ValueSnak) qualifier).getValue()),
+                  k -> new ArrayList<>(1));
+              // a statement might have the same qualifier twice
+              if (matches.isEmpty() || matches.get(matches.size() - 1) != statement) {
+                matches.add(statement);
+              }
+            }
+          }
+        }
+
+        Published published = new Published();
+        if (publicationDateId != null) {
+          for (Reference reference : statement.getReferences()) {
+            for (Iterator<Snak> snakIterator = reference.getAllSnaks(); snakIterator.hasNext(); ) {
+              Snak snak = snakIterator.next();
+              if (snak instanceof ValueSnak
+                  && publicationDateId.equals(snak.getPropertyId().getId())
+                  && ((ValueSnak) snak).getValue() instanceof TimeValue) {
+                TimeValue timeValue = (TimeValue) ((ValueSnak) snak).getValue();
+                LocalDateTime localDateTime = wikiData.toLocalDateTime(timeValue);
+                if (published.first == null) {
+                  published.first = timeValue;
+                  published.firstLocalDateTime = localDateTime;
+                }
+                if (published.mostRecent == null || localDateTime.isAfter(published.mostRecent)) {
+                  published.mostRecent = localDateTime;
+                }
+              }
+            }
+          }
+        }
+        publishedByStatement.put(statement, published);
+
+        // in case no statement has a publication date, select the first
+        if (mostRecentPublished == null
+            || (published.mostRecent != null
+            && (mostRecentPublishedLocalDateTime == null || published.mostRecent.isAfter(mostRecentPublishedLocalDateTime)))) {
+          mostRecentPublished = statement;
+          mostRecentPublishedLocalDateTime = published.mostRecent;
+        }
+      }
+      mostRecentPublishedByProperty.put(property, mostRecentPublished);
+    }
+  }
+
+  public ItemDocument getItem() {
+    return item;
+  }
+
+  /**
+   * @return All statements with the property, or an empty list
+   */
+  public List<Statement> getStatements(PropertyIdValue property) {
+    return statementsByProperty.getOrDefault(property.getId(), Collections.emptyList());
+  }
+
+  /**
+   * @return The statement with the most recent publication date in a reference, or the first statement if none has a publication date.
+   */
+  public Statement findMostRecentPublishedStatement(PropertyIdValue property) {
+    return mostRecentPublishedByProperty.get(property.getId());
+  }
+
+  /**
+   * @throws RuntimeException If more than one statement has the qualifier
+   */
+  public Statement findStatementByUniqueQualifier(PropertyIdValue property, PropertyIdValue qualifierProperty, Value qualifierValue) {
+    List<Statement> matches = statementsByQualifier.get(new QualifierKey(property.getId(), qualifierProperty.getId(), qualifierValue));
+    if (matches == null) {
+      return null;
+    } else if (matches.size() == 1) {
+      return matches.get(0);
+    } else {
+      throw new RuntimeException("Multiple statements in group match id " + property);
+    }
+  }
+
+  /**
+   * @throws RuntimeException If more than one statement is without qualifiers
+   */
+  public Statement findStatementWithoutQualifier(PropertyIdValue property) {
+    List<Statement> matches = statementsWithoutQualifiersByProperty.get(property.getId());
+    if (matches == null) {
+      return null;
+    } else if (matches.size() == 1) {
+      return matches.get(0);
+    } else {
+      throw new RuntimeException("Multiple statements in group is without qualifiers");
+    }
+  }
+
+  /**
+   * @return First publication date found in the references of the statement, or null.
+   */
+  public TimeValue getPublishedDate(Statement statement) {
+    Published published = published(statement);
+    return published == null ? null : published.first;
+  }
+
+  /**
+   * @return {@link #getPublishedDate(Statement)} as converted by {@link WikiData#toLocalDateTime(TimeValue)}, or null.
+   */
+  public LocalDateTime getPublishedLocalDateTime(Statement statement) {
+    Published published = published(statement);
+    return published == null ? null : published.firstLocalDateTime;
+  }
+
+  /**
+   * @return true if the statement has a publication date after the start of the local date.
+   */
+  public boolean isPublishedAfter(Statement statement, LocalDate localDate) {
+    LocalDateTime published = getPublishedLocalDateTime(statement);
+    return published != null && published.isAfter(localDate.atTime(0, 0));
+  }
+
+  private Published published(Statement statement) {
+    if (statement == null) {
+      return null;
+    }
+    return publishedByStatement.get(statement);
+  }
+
+  private static class QualifierKey {
+    private String property;
+    private String qualifierProperty;
+    private Value qualifierValue;
+    private int hashCode;
+
+    private QualifierKey(String property, String qualifierProperty, Value qualifierValue) {
+      this.property = property;
+      this.qualifierProperty = qualifierProperty;
+      this.qualifierValue = qualifierValue;
+      hashCode = Objects.hash(property, qualifierProperty, qualifierValue);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof QualifierKey)) return false;
+      QualifierKey that = (QualifierKey) o;
+      return property.equals(that.property)
+          && qualifierProperty.equals(that.qualifierProperty)
+          && Objects.equals(qualifierValue, that.qualifierValue);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+}
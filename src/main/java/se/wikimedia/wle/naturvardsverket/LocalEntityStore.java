@@ -0,0 +1,249 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.DatamodelMapper;
+import org.wikidata.wdtk.datamodel.helpers.JsonSerializer;
+import org.wikidata.wdtk.datamodel.implementation.EntityDocumentImpl;
+import org.wikidata.wdtk.datamodel.interfaces.*;
+import org.wikidata.wdtk.dumpfiles.DumpContentType;
+import org.wikidata.wdtk.dumpfiles.JsonDumpFileProcessor;
+import org.wikidata.wdtk.dumpfiles.MwLocalDumpFile;
+
+import java.io.*;
+import java.sql.*;
+import java.sql.Statement;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Embedded H2 database with the Wikidata entities required by the bots, imported from a local
+ * Wikidata JSON dump (or a slice of one, one entity per line) using wdtk dump processing.
+ * <p>
+ * Only items with a Naturvårdsregistret object id (P3613) and the explicitly referenced entities are kept,
+ * without labels, descriptions, aliases and sitelinks just as when fetched by {@link WikiData}.
+ * Entities are indexed on id, items also on NVRID.
+ * <p>
+ * When set on {@link AbstractBot#setLocalEntityStore(LocalEntityStore)}, the bot reads from this store
+ * rather than from Wikidata and Commons. See {@link WikiDataDumpImporter}.
+ */
+public class LocalEntityStore implements AutoCloseable {
+
+  private Logger log = LoggerFactory.getLogger(getClass());
+
+  private static final String NVRID_PROPERTY = "P3613";
+
+  private File file;
+  private Connection connection;
+  private DatamodelMapper mapper = new DatamodelMapper(Datamodel.SITE_WIKIDATA);
+
+  /**
+   * @param file Database file without the .mv.db suffix added by H2.
+   */
+  public LocalEntityStore(File file) {
+    this.file = file;
+  }
+
+  public void open() throws SQLException {
+    connection = DriverManager.getConnection("jdbc:h2:file:" + file.getAbsolutePath());
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE IF NOT EXISTS entity (" +
+          " id VARCHAR PRIMARY KEY," +
+          " json CLOB NOT NULL" +
+          ")");
+      statement.execute("CREATE TABLE IF NOT EXISTS nvrid (" +
+          " nvrid VARCHAR NOT NULL," +
+          " id VARCHAR NOT NULL" +
+          ")");
+      statement.execute("CREATE INDEX IF NOT EXISTS nvrid_nvrid ON nvrid (nvrid)");
+    }
+  }
+
+  @Override
+  public void close() throws SQLException {
+    if (connection != null) {
+      connection.close();
+      connection = null;
+    }
+  }
+
+  /**
+   * @return The entity, or null if not in the store.
+   */
+  public EntityDocument getEntityDocument(String id) throws IOException {
+    try (PreparedStatement statement = connection.prepareStatement("SELECT json FROM entity WHERE id = ?")) {
+      statement.setString(1, id);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        if (!resultSet.next()) {
+          return null;
+        }
+        return mapper.readValue(resultSet.getString(1), EntityDocumentImpl.class);
+      }
+    } catch (SQLException e) {
+      throw new IOException("Unable to read entity " + id, e);
+    }
+  }
+
+  /**
+   * @return Ids of all items with the NVRID, in id order.
+   */
+  public List<String> findItemIdsByNvrid(String nvrid) throws IOException {
+    try (PreparedStatement statement = connection.prepareStatement("SELECT id FROM nvrid WHERE nvrid = ? ORDER BY id")) {
+      statement.setString(1, nvrid);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        List<String> ids = new ArrayList<>(1);
+        while (resultSet.next()) {
+          ids.add(resultSet.getString(1));
+        }
+        return ids;
+      }
+    } catch (SQLException e) {
+      throw new IOException("Unable to find items with NVRID " + nvrid, e);
+    }
+  }
+
+  public int countEntities() throws SQLException {
+    try (Statement statement = connection.createStatement();
+         ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM entity")) {
+      resultSet.next();
+      return resultSet.getInt(1);
+    }
+  }
+
+  /**
+   * Replaces the content of the store with the items with a NVRID and the entities with the given ids found in the dump.
+   *
+   * @param dump     Wikidata JSON dump, plain, .gz or .bz2.
+   * @param keepIds  Ids of other entities to keep, e.g. properties, units and classes referenced by the bots.
+   */
+  public void importDump(File dump, Set<String> keepIds) throws IOException, SQLException {
+    log.info("Importing {} into {}", dump.getAbsolutePath(), file.getAbsolutePath());
+    connection.setAutoCommit(false);
+    try {
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("DELETE FROM nvrid");
+        statement.execute("DELETE FROM entity");
+      }
+
+      Importer importer = new Importer(keepIds);
+
+      DocumentDataFilter filter = new DocumentDataFilter();
+      filter.setLanguageFilter(Collections.emptySet());
+      filter.setSiteLinkFilter(Collections.emptySet());
+
+      try (InputStream input = openDump(dump)) {
+        new JsonDumpFileProcessor(new EntityDocumentProcessorFilter(importer, filter), Datamodel.SITE_WIKIDATA)
+            .processDumpFileContents(input, new MwLocalDumpFile(dump.getAbsolutePath(), DumpContentType.JSON, null, "wikidatawiki"));
+      }
+      if (importer.exception != null) {
+        throw importer.exception;
+      }
+
+      connection.commit();
+      log.info("Imported {} items with NVRID and {} other entities of {} entities in dump. {} requested entities were not found: {}",
+          importer.items, importer.others, importer.processed, importer.missingIds.size(), importer.missingIds);
+    } catch (IOException | SQLException | RuntimeException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(true);
+    }
+  }
+
+  private static InputStream openDump(File dump) throws IOException {
+    InputStream input = new BufferedInputStream(new FileInputStream(dump), 1024 * 1024);
+    if (dump.getName().endsWith(".gz")) {
+      return new GZIPInputStream(input, 64 * 1024);
+    } else if (dump.getName().endsWith(".bz2")) {
+      return new BZip2CompressorInputStream(input, true);
+    }
+    return input;
+  }
+
+  private class Importer implements EntityDocumentProcessor {
+
+    private Set<String> missingIds;
+    private PreparedStatement insertEntity;
+    private PreparedStatement insertNvrid;
+    private SQLException exception;
+
+    private long processed;
+    private int items;
+    private int others;
+
+    private Importer(Set<String> keepIds) throws SQLException {
+      missingIds = new TreeSet<>(keepIds);
+      insertEntity = connection.prepareStatement("INSERT INTO entity (id, json) VALUES (?, ?)");
+      insertNvrid = connection.prepareStatement("INSERT INTO nvrid (nvrid, id) VALUES (?, ?)");
+    }
+
+    @Override
+    public void processItemDocument(ItemDocument item) {
+      processed++;
+      if (exception != null) {
+        return;
+      }
+      String id = item.getEntityId().getId();
+      List<String> nvrids = new ArrayList<>(1);
+      for (StatementGroup statementGroup : item.getStatementGroups()) {
+        if (NVRID_PROPERTY.equals(statementGroup.getProperty().getId())) {
+          for (org.wikidata.wdtk.datamodel.interfaces.Statement statement : statementGroup.getStatements()) {
+            if (statement.getValue() instanceof StringValue) {
+              nvrids.add(((StringValue) statement.getValue()).getString());
+            }
+          }
+        }
+      }
+      boolean keep = missingIds.remove(id);
+      if (nvrids.isEmpty() && !keep) {
+        return;
+      }
+      try {
+        insert(id, JsonSerializer.getJsonString(item));
+        for (String nvrid : nvrids) {
+          insertNvrid.setString(1, nvrid);
+          insertNvrid.setString(2, id);
+          insertNvrid.executeUpdate();
+        }
+      } catch (SQLException e) {
+        exception = e;
+        return;
+      }
+      if (nvrids.isEmpty()) {
+        others++;
+      } else {
+        items++;
+      }
+    }
+
+    @Override
+    public void processPropertyDocument(PropertyDocument property) {
+      processed++;
+      if (exception != null) {
+        return;
+      }
+      String id = property.getEntityId().getId();
+      if (missingIds.remove(id)) {
+        try {
+          insert(id, JsonSerializer.getJsonString(property));
+        } catch (SQLException e) {
+          exception = e;
+          return;
+        }
+        others++;
+      }
+    }
+
+    private void insert(String id, String json) throws SQLException {
+      insertEntity.setString(1, id);
+      insertEntity.setString(2, json);
+      insertEntity.executeUpdate();
+      if ((items + others) % 10000 == 0 && items + others > 0) {
+        log.info("Imported {} entities", items + others);
+      }
+    }
+  }
+
+}
@@ -7,12 +7,15 @@ import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.Point;
 import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.Reference;
 
 import java.time.LocalDate;
 
 @Data
 public class NaturvardsregistretObject {
   private Feature feature;
+  /** Coordinates of the feature geometry, if read as a {@link NvrFeature} */
+  private PackedGeometry packedGeometry;
 
   // index of above
 
@@ -28,6 +31,11 @@ public class NaturvardsregistretObject {
 
   private String wikiDataObjectKey;
   private ItemDocument wikiDataItem;
+  /** Index of {@link #wikiDataItem}, created once it has been fetched */
+  private ItemStatementIndex statementIndex;
+
+  /** Naturvårdsregistret reference shared by all statements, see {@link StatementTemplates#reference(NaturvardsregistretObject)} */
+  private Reference reference;
 
 
 }
@@ -0,0 +1,370 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import lombok.Getter;
+import org.geojson.Feature;
+import org.geojson.GeoJsonObject;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Compact typed representation of a Naturvårdsregistret GeoJSON feature, deserialized by {@link NvrFeatureCollectionDeserializer}.
+ * <p>
+ * Known properties are kept as primitives: NVRID as an int, categorical values as ids in the
+ * dictionary of the {@link NvrFeatureCollection}, areas as doubles and dates as epoch days.
+ * Values that does not fit the expected type, and all other properties, are kept as they would be in a {@link Feature}.
+ * Properties with null values are dropped.
+ * <p>
+ * {@link #toFeature()} creates an equal {@link Feature} when required for processing.
+ */
+public class NvrFeature {
+
+  public static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+
+  static final int MISSING = Integer.MIN_VALUE;
+
+  static final String[] CATEGORICAL_PROPERTIES = {"SKYDDSTYP", "BESLSTATUS", "IUCNKAT", "LAN", "KOMMUN", "FORVALTARE"};
+  static final String[] AREA_PROPERTIES = {"AREA_HA", "LAND_HA", "VATTEN_HA", "SKOG_HA"};
+  static final String[] DATE_PROPERTIES = {"IKRAFTDAT", "URSBESLDAT", "URSGALLDAT", "SENGALLDAT"};
+  /** Other properties with few distinct values, kept as strings shared with the dictionary */
+  static final Set<String> INTERNED_PROPERTIES = new HashSet<>(Arrays.asList("GEOSTATUS", "LAGRUM", "BESLMYND", "TILLSYNSMH"));
+
+  private static final String[] NO_KEYS = new String[0];
+  private static final Object[] NO_VALUES = new Object[0];
+
+  private NvrFeatureCollection collection;
+
+  @Getter
+  private String id;
+
+  private int nvrid = MISSING;
+  @Getter
+  private String name;
+
+  private int protectionType = -1;
+  private int decisionStatus = -1;
+  private int iucnCategory = -1;
+  private int county = -1;
+  private int municipality = -1;
+  private int operator = -1;
+
+  private double area = Double.NaN;
+  private double landArea = Double.NaN;
+  private double waterArea = Double.NaN;
+  private double forestArea = Double.NaN;
+  /** Bit per area property in {@link #AREA_PROPERTIES} that was an integer in the JSON */
+  private byte integralAreas;
+
+  private int inForceDate = MISSING;
+  private int originalDecisionDate = MISSING;
+  private int originalInForceDate = MISSING;
+  private int latestInForceDate = MISSING;
+
+  private String[] otherKeys = NO_KEYS;
+  private Object[] otherValues = NO_VALUES;
+
+  @Getter
+  private PackedGeometry packedGeometry;
+
+  NvrFeature(NvrFeatureCollection collection) {
+    this.collection = collection;
+  }
+
+  public String getNvrid() {
+    return nvrid != MISSING ? String.valueOf(nvrid) : (String) getOther("NVRID");
+  }
+
+  public String getDecisionStatus() {
+    return category(decisionStatus, "BESLSTATUS");
+  }
+
+  public String getOperator() {
+    return category(operator, "FORVALTARE");
+  }
+
+  public String getCounty() {
+    return category(county, "LAN");
+  }
+
+  public String getIucnCategory() {
+    return category(iucnCategory, "IUCNKAT");
+  }
+
+  public double getLandArea() {
+    return landArea;
+  }
+
+  public LocalDate getInForceDate() {
+    return inForceDate == MISSING ? null : LocalDate.ofEpochDay(inForceDate);
+  }
+
+  /**
+   * @return A new org.geojson geometry, or null
+   */
+  public GeoJsonObject getGeometry() {
+    return packedGeometry == null ? null : packedGeometry.toGeoJson();
+  }
+
+  private String category(int id, String property) {
+    return id >= 0 ? collection.value(id) : (String) getOther(property);
+  }
+
+  private Object getOther(String property) {
+    for (int i = 0; i < otherKeys.length; i++) {
+      if (otherKeys[i].equals(property)) {
+        return otherValues[i];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return The same value as {@link Feature#getProperty(String)} of the original feature.
+   */
+  public Object getProperty(String property) {
+    switch (property) {
+      case "NVRID":
+        return getNvrid();
+      case "NAMN":
+        return name;
+      case "SKYDDSTYP":
+        return category(protectionType, property);
+      case "BESLSTATUS":
+        return category(decisionStatus, property);
+      case "IUCNKAT":
+        return category(iucnCategory, property);
+      case "LAN":
+        return category(county, property);
+      case "KOMMUN":
+        return category(municipality, property);
+      case "FORVALTARE":
+        return category(operator, property);
+      case "AREA_HA":
+        return area(area, 0, property);
+      case "LAND_HA":
+        return area(landArea, 1, property);
+      case "VATTEN_HA":
+        return area(waterArea, 2, property);
+      case "SKOG_HA":
+        return area(forestArea, 3, property);
+      case "IKRAFTDAT":
+        return date(inForceDate, property);
+      case "URSBESLDAT":
+        return date(originalDecisionDate, property);
+      case "URSGALLDAT":
+        return date(originalInForceDate, property);
+      case "SENGALLDAT":
+        return date(latestInForceDate, property);
+      default:
+        return getOther(property);
+    }
+  }
+
+  private Object area(double value, int bit, String property) {
+    if (Double.isNaN(value)) {
+      return getOther(property);
+    }
+    return (integralAreas & (1 << bit)) != 0 ? (Object) (int) value : (Object) value;
+  }
+
+  private Object date(int epochDay, String property) {
+    return epochDay == MISSING ? getOther(property) : DATE_FORMATTER.format(LocalDate.ofEpochDay(epochDay));
+  }
+
+  /**
+   * @return A new feature with the same id, properties and geometry as the original feature.
+   */
+  public Feature toFeature() {
+    Feature feature = new Feature();
+    feature.setId(id);
+    feature.setGeometry(getGeometry());
+    Map<String, Object> properties = new HashMap<>();
+    putProperties(properties);
+    feature.setProperties(properties);
+    return feature;
+  }
+
+  /**
+   * @return Non null properties sorted by key, the same as in {@link #toFeature()} but without creating the geometry.
+   */
+  public SortedMap<String, Object> getProperties() {
+    SortedMap<String, Object> properties = new TreeMap<>();
+    putProperties(properties);
+    return properties;
+  }
+
+  private void putProperties(Map<String, Object> properties) {
+    putProperty(properties, "NVRID");
+    putProperty(properties, "NAMN");
+    for (String property : CATEGORICAL_PROPERTIES) {
+      putProperty(properties, property);
+    }
+    for (String property : AREA_PROPERTIES) {
+      putProperty(properties, property);
+    }
+    for (String property : DATE_PROPERTIES) {
+      putProperty(properties, property);
+    }
+    for (int i = 0; i < otherKeys.length; i++) {
+      properties.put(otherKeys[i], otherValues[i]);
+    }
+  }
+
+  private void putProperty(Map<String, Object> properties, String property) {
+    Object value = getProperty(property);
+    if (value != null) {
+      properties.put(property, value);
+    }
+  }
+
+  // used by the deserializer
+
+  void setId(String id) {
+    this.id = id;
+  }
+
+  void setPackedGeometry(PackedGeometry packedGeometry) {
+    this.packedGeometry = packedGeometry;
+  }
+
+  /**
+   * Sets all non null properties, typed if possible and otherwise kept as is.
+   */
+  void setProperties(List<String> keys, List<Object> values) {
+    List<String> otherKeys = new ArrayList<>();
+    List<Object> otherValues = new ArrayList<>();
+    for (int i = 0; i < keys.size(); i++) {
+      String property = keys.get(i);
+      Object value = values.get(i);
+      if (value == null || setTyped(property, value)) {
+        continue;
+      }
+      if (value instanceof String && INTERNED_PROPERTIES.contains(property)) {
+        value = collection.value(collection.intern((String) value));
+      }
+      otherKeys.add(property);
+      otherValues.add(value);
+    }
+    setOther(collection.internKeys(otherKeys), otherValues.toArray());
+  }
+
+  void setOther(String[] keys, Object[] values) {
+    this.otherKeys = keys.length == 0 ? NO_KEYS : keys;
+    this.otherValues = values.length == 0 ? NO_VALUES : values;
+  }
+
+  /**
+   * @return False if the value does not fit the type of the property and should be kept as is.
+   */
+  boolean setTyped(String property, Object value) {
+    switch (property) {
+      case "NVRID":
+        if (value instanceof String && ((String) value).matches("[1-9][0-9]{0,8}")) {
+          nvrid = Integer.parseInt((String) value);
+          return true;
+        }
+        return false;
+      case "NAMN":
+        if (value instanceof String) {
+          name = (String) value;
+          return true;
+        }
+        return false;
+      case "SKYDDSTYP":
+      case "BESLSTATUS":
+      case "IUCNKAT":
+      case "LAN":
+      case "KOMMUN":
+      case "FORVALTARE":
+        if (!(value instanceof String)) {
+          return false;
+        }
+        int id = collection.intern((String) value);
+        switch (property) {
+          case "SKYDDSTYP":
+            protectionType = id;
+            break;
+          case "BESLSTATUS":
+            decisionStatus = id;
+            break;
+          case "IUCNKAT":
+            iucnCategory = id;
+            break;
+          case "LAN":
+            county = id;
+            break;
+          case "KOMMUN":
+            municipality = id;
+            break;
+          default:
+            operator = id;
+        }
+        return true;
+      case "AREA_HA":
+      case "LAND_HA":
+      case "VATTEN_HA":
+      case "SKOG_HA":
+        if (!(value instanceof Double || value instanceof Integer)) {
+          return false;
+        }
+        int bit;
+        double doubleValue = ((Number) value).doubleValue();
+        switch (property) {
+          case "AREA_HA":
+            area = doubleValue;
+            bit = 0;
+            break;
+          case "LAND_HA":
+            landArea = doubleValue;
+            bit = 1;
+            break;
+          case "VATTEN_HA":
+            waterArea = doubleValue;
+            bit = 2;
+            break;
+          default:
+            forestArea = doubleValue;
+            bit = 3;
+        }
+        if (value instanceof Integer) {
+          integralAreas |= 1 << bit;
+        }
+        return true;
+      case "IKRAFTDAT":
+      case "URSBESLDAT":
+      case "URSGALLDAT":
+      case "SENGALLDAT":
+        if (!(value instanceof String)) {
+          return false;
+        }
+        int epochDay;
+        try {
+          LocalDate date = LocalDate.parse((String) value, DATE_FORMATTER);
+          if (!DATE_FORMATTER.format(date).equals(value)) {
+            return false;
+          }
+          epochDay = (int) date.toEpochDay();
+        } catch (Exception e) {
+          return false;
+        }
+        switch (property) {
+          case "IKRAFTDAT":
+            inForceDate = epochDay;
+            break;
+          case "URSBESLDAT":
+            originalDecisionDate = epochDay;
+            break;
+          case "URSGALLDAT":
+            originalInForceDate = epochDay;
+            break;
+          default:
+            latestInForceDate = epochDay;
+        }
+        return true;
+      default:
+        return false;
+    }
+  }
+
+}
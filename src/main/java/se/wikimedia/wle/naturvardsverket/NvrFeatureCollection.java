@@ -0,0 +1,123 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import lombok.Getter;
+import org.geojson.Feature;
+import org.geojson.FeatureCollection;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Naturvårdsregistret GeoJSON feature collection as {@link NvrFeature}s sharing
+ * a dictionary of categorical values and property names.
+ * <p>
+ * {@link #read(ObjectMapper, File)} also reads the Shapefile and GeoPackage downloads of the registry.
+ */
+@JsonDeserialize(using = NvrFeatureCollectionDeserializer.class)
+public class NvrFeatureCollection {
+
+  public static final String CRS84 = "urn:ogc:def:crs:OGC:1.3:CRS84";
+
+  @Getter
+  private List<NvrFeature> features = new ArrayList<>();
+
+  /** Name of the crs of the coordinates, i.e. {@link #CRS84} after reprojection of {@link Sweref99Tm} data. Null if not named. */
+  @Getter
+  private String crs;
+
+  private List<String> values = new ArrayList<>();
+  private Map<String, Integer> ids = new HashMap<>();
+  private Map<List<String>, String[]> keySets = new HashMap<>();
+
+  /**
+   * Reads GeoJSON, Shapefile (.shp with .dbf, .prj and .cpg) or GeoPackage (.gpkg) depending on the file suffix.
+   */
+  public static NvrFeatureCollection read(ObjectMapper objectMapper, File file) throws IOException {
+    String name = file.getName().toLowerCase();
+    if (name.endsWith(".shp")) {
+      return ShapefileReader.read(file);
+    } else if (name.endsWith(".gpkg")) {
+      return GeoPackageReader.read(file);
+    } else {
+      return objectMapper.readValue(file, NvrFeatureCollection.class);
+    }
+  }
+
+  /**
+   * @return Features created by converting plain GeoJSON features.
+   */
+  public static NvrFeatureCollection of(ObjectMapper objectMapper, List<Feature> features) {
+    FeatureCollection featureCollection = new FeatureCollection();
+    featureCollection.setFeatures(features);
+    return objectMapper.convertValue(featureCollection, NvrFeatureCollection.class);
+  }
+
+  /**
+   * @param keys   Property names, with values of the same type as when read from GeoJSON by Jackson.
+   * @param values Null values are dropped.
+   */
+  NvrFeature add(String id, List<String> keys, List<Object> values, PackedGeometry geometry) {
+    NvrFeature feature = new NvrFeature(this);
+    feature.setId(id);
+    feature.setProperties(keys, values);
+    feature.setPackedGeometry(geometry);
+    features.add(feature);
+    return feature;
+  }
+
+  void setCrs(String crs) {
+    this.crs = crs;
+  }
+
+  /**
+   * Reprojects all geometries from SWEREF 99 TM to WGS84 in place, in parallel across features.
+   */
+  void reprojectSweref99TmToWgs84() {
+    features.parallelStream().forEach(feature -> {
+      if (feature.getPackedGeometry() != null) {
+        feature.getPackedGeometry().transform(Sweref99Tm::toWgs84);
+      }
+    });
+    crs = CRS84;
+  }
+
+  int intern(String value) {
+    Integer id = ids.get(value);
+    if (id == null) {
+      id = values.size();
+      values.add(value);
+      ids.put(value, id);
+    }
+    return id;
+  }
+
+  String value(int id) {
+    return values.get(id);
+  }
+
+  /**
+   * @return Shared array for features with the same other properties
+   */
+  String[] internKeys(List<String> keys) {
+    String[] internedKeys = keySets.get(keys);
+    if (internedKeys == null) {
+      internedKeys = new String[keys.size()];
+      for (int i = 0; i < internedKeys.length; i++) {
+        internedKeys[i] = value(intern(keys.get(i)));
+      }
+      keySets.put(new ArrayList<>(keys), internedKeys);
+    }
+    return internedKeys;
+  }
+
+  /**
+   * @return Number of distinct categorical values and property names.
+   */
+  public int getDictionarySize() {
+    return values.size();
+  }
+
+}
@@ -0,0 +1,101 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams a Naturvårdsregistret GeoJSON feature collection into {@link NvrFeature}s
+ * without creating a property map per feature, or an object per vertex. See {@link PackedGeometry}.
+ * <p>
+ * Collections in SWEREF 99 TM, as published by Naturvårdsverket, are reprojected to WGS84 once read.
+ */
+public class NvrFeatureCollectionDeserializer extends StdDeserializer<NvrFeatureCollection> {
+
+  public NvrFeatureCollectionDeserializer() {
+    super(NvrFeatureCollection.class);
+  }
+
+  @Override
+  public NvrFeatureCollection deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+    NvrFeatureCollection collection = new NvrFeatureCollection();
+    expect(p, p.currentToken(), JsonToken.START_OBJECT);
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.getCurrentName();
+      JsonToken token = p.nextToken();
+      if ("features".equals(field) && token == JsonToken.START_ARRAY) {
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+          collection.getFeatures().add(feature(p, ctxt, collection));
+        }
+      } else if ("crs".equals(field) && token == JsonToken.START_OBJECT) {
+        collection.setCrs(crsName(ctxt.readValue(p, JsonNode.class)));
+      } else {
+        p.skipChildren();
+      }
+    }
+    if (Sweref99Tm.isSweref99Tm(collection.getCrs())) {
+      collection.reprojectSweref99TmToWgs84();
+    }
+    return collection;
+  }
+
+  private static String crsName(JsonNode crs) {
+    JsonNode name = crs.path("properties").path("name");
+    return name.isTextual() ? name.textValue() : null;
+  }
+
+  private NvrFeature feature(JsonParser p, DeserializationContext ctxt, NvrFeatureCollection collection) throws IOException {
+    expect(p, p.currentToken(), JsonToken.START_OBJECT);
+    NvrFeature feature = new NvrFeature(collection);
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.getCurrentName();
+      JsonToken token = p.nextToken();
+      if (token == JsonToken.VALUE_NULL) {
+        continue;
+      }
+      switch (field) {
+        case "id":
+          feature.setId(p.getValueAsString());
+          break;
+        case "properties":
+          properties(p, ctxt, feature, collection);
+          break;
+        case "geometry":
+          feature.setPackedGeometry(PackedGeometry.read(p));
+          break;
+        default:
+          p.skipChildren();
+      }
+    }
+    return feature;
+  }
+
+  private void properties(JsonParser p, DeserializationContext ctxt, NvrFeature feature, NvrFeatureCollection collection) throws IOException {
+    expect(p, p.currentToken(), JsonToken.START_OBJECT);
+    List<String> keys = new ArrayList<>();
+    List<Object> values = new ArrayList<>();
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String property = p.getCurrentName();
+      JsonToken token = p.nextToken();
+      if (token == JsonToken.VALUE_NULL) {
+        continue;
+      }
+      keys.add(property);
+      values.add(ctxt.readValue(p, Object.class));
+    }
+    feature.setProperties(keys, values);
+  }
+
+  private static void expect(JsonParser p, JsonToken actual, JsonToken expected) throws IOException {
+    if (actual != expected) {
+      throw new IOException("Expected " + expected + " but found " + actual + " at " + p.getCurrentLocation());
+    }
+  }
+
+}
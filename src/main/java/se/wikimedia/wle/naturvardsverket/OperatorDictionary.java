@@ -0,0 +1,190 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * Local dictionary of operator names (FORVALTARE) to Wikidata items, e.g. from data/forvaltare.json and data/municipalities.json.
+ * <p>
+ * Names are compared on normalized keys, i.e. case, whitespace and punctuation are ignored.
+ * Names without an exact key match are matched using the Dice coefficient of character trigrams,
+ * found using an inverted trigram index. A fuzzy match is only suggested if it scores at least {@link #getMinimumScore()}
+ * and is clearly better than the second best candidate.
+ * <p>
+ * Fuzzy matches are never used as operator claims. Distinct operators may share most trigrams,
+ * e.g. "Nyköpings kommun" and "Köpings kommun" score 0.87, so they are reported for review.
+ */
+public class OperatorDictionary {
+
+  @Data
+  public static class Match {
+    private String name;
+    private String item;
+    /** 1 for equal normalized names */
+    private double score;
+  }
+
+  private static class Entry {
+    private String name;
+    private String item;
+    private String key;
+    private Set<String> trigrams;
+  }
+
+  /** Minimum Dice coefficient of an accepted fuzzy match */
+  @Getter
+  @Setter
+  private double minimumScore = 0.85;
+
+  /** Minimum difference in score between the best and second best candidate of an accepted fuzzy match */
+  @Getter
+  @Setter
+  private double minimumMargin = 0.05;
+
+  private List<Entry> entries = new ArrayList<>();
+  private Map<String, Entry> entriesByKey = new HashMap<>();
+  private Map<String, List<Entry>> entriesByTrigram = new HashMap<>();
+
+  /**
+   * Adds all names in a JSON array of objects with item and name in the language.
+   */
+  public void load(ObjectMapper objectMapper, File file, String language) throws IOException {
+    ArrayNode array = objectMapper.readValue(file, ArrayNode.class);
+    for (int i = 0; i < array.size(); i++) {
+      add(array.get(i).get(language).textValue(), array.get(i).get("item").textValue());
+    }
+  }
+
+  public void add(String name, String item) {
+    Entry entry = new Entry();
+    entry.name = name;
+    entry.item = item;
+    entry.key = normalize(name);
+    entry.trigrams = trigrams(entry.key);
+    entries.add(entry);
+    entriesByKey.put(entry.key, entry);
+    for (String trigram : entry.trigrams) {
+      entriesByTrigram.computeIfAbsent(trigram, k -> new ArrayList<>()).add(entry);
+    }
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return Item of each name as added, a later equal name replacing an earlier.
+   */
+  public Map<String, String> getItemsByName() {
+    Map<String, String> itemsByName = new LinkedHashMap<>();
+    for (Entry entry : entries) {
+      itemsByName.put(entry.name, entry.item);
+    }
+    return itemsByName;
+  }
+
+  /**
+   * @return Match of equal normalized name, or null.
+   */
+  public Match find(String name) {
+    Match[] candidates = candidates(name);
+    return candidates[0] != null && candidates[0].getScore() == 1d ? candidates[0] : null;
+  }
+
+  /**
+   * @return Accepted fuzzy match to be reviewed, or null if none or if there is an exact match.
+   */
+  public Match suggest(String name) {
+    Match[] candidates = candidates(name);
+    if (candidates[0] == null || candidates[0].getScore() == 1d) {
+      return null;
+    }
+    if (candidates[0].getScore() < minimumScore) {
+      return null;
+    }
+    if (candidates[1] != null && candidates[0].getScore() - candidates[1].getScore() < minimumMargin) {
+      return null;
+    }
+    return candidates[0];
+  }
+
+  /**
+   * @return Best candidate whether or not it would be accepted, e.g. to report, or null if no trigram is shared.
+   */
+  public Match best(String name) {
+    return candidates(name)[0];
+  }
+
+  /**
+   * @return Best and second best candidates, null if none.
+   */
+  private Match[] candidates(String name) {
+    Match[] candidates = new Match[2];
+    if (name == null) {
+      return candidates;
+    }
+    String key = normalize(name);
+    Entry exact = entriesByKey.get(key);
+    if (exact != null) {
+      candidates[0] = match(exact, 1d);
+      return candidates;
+    }
+    Set<String> trigrams = trigrams(key);
+    Map<Entry, Integer> shared = new HashMap<>();
+    for (String trigram : trigrams) {
+      List<Entry> trigramEntries = entriesByTrigram.get(trigram);
+      if (trigramEntries != null) {
+        for (Entry entry : trigramEntries) {
+          shared.merge(entry, 1, Integer::sum);
+        }
+      }
+    }
+    for (Map.Entry<Entry, Integer> candidate : shared.entrySet()) {
+      double score = 2d * candidate.getValue() / (trigrams.size() + candidate.getKey().trigrams.size());
+      if (candidates[0] == null || score > candidates[0].getScore()) {
+        candidates[1] = candidates[0];
+        candidates[0] = match(candidate.getKey(), score);
+      } else if (candidates[1] == null || score > candidates[1].getScore()) {
+        candidates[1] = match(candidate.getKey(), score);
+      }
+    }
+    return candidates;
+  }
+
+  private static Match match(Entry entry, double score) {
+    Match match = new Match();
+    match.setName(entry.name);
+    match.setItem(entry.item);
+    match.setScore(score);
+    return match;
+  }
+
+  /**
+   * @return Lower case letters and digits separated by single spaces.
+   */
+  static String normalize(String name) {
+    String normalized = Normalizer.normalize(name, Normalizer.Form.NFC).toLowerCase(new Locale("sv"));
+    return normalized.replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+  }
+
+  /**
+   * @return Character trigrams of the key padded with a space at start and end.
+   */
+  static Set<String> trigrams(String key) {
+    String padded = " " + key + " ";
+    Set<String> trigrams = new HashSet<>();
+    for (int i = 0; i + 3 <= padded.length(); i++) {
+      trigrams.add(padded.substring(i, i + 3));
+    }
+    return trigrams;
+  }
+
+}
@@ -0,0 +1,462 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.Getter;
+import org.geojson.GeoJsonObject;
+import org.geojson.LngLatAlt;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * GeoJSON geometry with the coordinates of each point set, line or ring in a single packed double[],
+ * rather than as one {@link LngLatAlt} per vertex in nested lists.
+ * <p>
+ * {@link #toJts(GeometryFactory)} wraps the arrays as {@link PackedCoordinateSequence}s without copying,
+ * {@link #toGeoJson()} creates the org.geojson representation when required.
+ * <p>
+ * Geometry collections are not supported, bbox and crs members are ignored.
+ */
+public class PackedGeometry {
+
+  public enum Type {
+    Point, MultiPoint, LineString, MultiLineString, Polygon, MultiPolygon
+  }
+
+  /** Transforms x, y[, z] of all vertices of a packed array in place */
+  public interface Transform {
+    void transform(double[] coordinates, int dimension);
+  }
+
+  @Getter
+  private Type type;
+  @Getter
+  private int dimension;
+  /** x, y[, z] of all vertices. One array for Point, MultiPoint and LineString, otherwise one per line or ring. */
+  private double[][] parts;
+  /** Number of rings in each polygon of a MultiPolygon */
+  private int[] ringsPerPolygon;
+
+  private PackedGeometry(Type type, int dimension, double[][] parts, int[] ringsPerPolygon) {
+    this.type = type;
+    this.dimension = dimension;
+    this.parts = parts;
+    this.ringsPerPolygon = ringsPerPolygon;
+  }
+
+  /**
+   * @param parts           Packed arrays as described by {@link #parts}, not copied.
+   * @param ringsPerPolygon Number of rings in each polygon of a MultiPolygon, otherwise null.
+   */
+  static PackedGeometry of(Type type, int dimension, double[][] parts, int[] ringsPerPolygon) {
+    return new PackedGeometry(type, dimension, parts, ringsPerPolygon);
+  }
+
+  /**
+   * Packs a JTS geometry, e.g. as read from WKB. Z is kept if set on the first coordinate.
+   */
+  public static PackedGeometry of(Geometry geometry) throws IOException {
+    Coordinate first = geometry.getCoordinate();
+    int dimension = first != null && !Double.isNaN(first.getZ()) ? 3 : 2;
+    switch (geometry.getGeometryType()) {
+      case "Point":
+      case "MultiPoint":
+      case "LineString":
+      case "LinearRing":
+        return new PackedGeometry(
+            geometry instanceof org.locationtech.jts.geom.Point ? Type.Point
+                : geometry instanceof org.locationtech.jts.geom.MultiPoint ? Type.MultiPoint : Type.LineString,
+            dimension, new double[][]{pack(geometry.getCoordinates(), dimension)}, null);
+      case "MultiLineString": {
+        double[][] parts = new double[geometry.getNumGeometries()][];
+        for (int i = 0; i < parts.length; i++) {
+          parts[i] = pack(geometry.getGeometryN(i).getCoordinates(), dimension);
+        }
+        return new PackedGeometry(Type.MultiLineString, dimension, parts, null);
+      }
+      case "Polygon": {
+        List<double[]> parts = new ArrayList<>();
+        pack((org.locationtech.jts.geom.Polygon) geometry, dimension, parts);
+        return new PackedGeometry(Type.Polygon, dimension, parts.toArray(new double[0][]), null);
+      }
+      case "MultiPolygon": {
+        List<double[]> parts = new ArrayList<>();
+        int[] ringsPerPolygon = new int[geometry.getNumGeometries()];
+        for (int i = 0; i < ringsPerPolygon.length; i++) {
+          ringsPerPolygon[i] = pack((org.locationtech.jts.geom.Polygon) geometry.getGeometryN(i), dimension, parts);
+        }
+        return new PackedGeometry(Type.MultiPolygon, dimension, parts.toArray(new double[0][]), ringsPerPolygon);
+      }
+      default:
+        throw new IOException("Unsupported geometry type " + geometry.getGeometryType());
+    }
+  }
+
+  /**
+   * @return Number of rings added
+   */
+  private static int pack(org.locationtech.jts.geom.Polygon polygon, int dimension, List<double[]> parts) {
+    if (polygon.isEmpty()) {
+      return 0;
+    }
+    parts.add(pack(polygon.getExteriorRing().getCoordinates(), dimension));
+    for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+      parts.add(pack(polygon.getInteriorRingN(i).getCoordinates(), dimension));
+    }
+    return 1 + polygon.getNumInteriorRing();
+  }
+
+  private static double[] pack(Coordinate[] coordinates, int dimension) {
+    double[] packed = new double[coordinates.length * dimension];
+    for (int i = 0; i < coordinates.length; i++) {
+      packed[i * dimension] = coordinates[i].getX();
+      packed[i * dimension + 1] = coordinates[i].getY();
+      if (dimension == 3) {
+        packed[i * dimension + 2] = coordinates[i].getZ();
+      }
+    }
+    return packed;
+  }
+
+  /**
+   * @return Number of polygons in a MultiPolygon, 1 for a Polygon and 0 for other types.
+   */
+  public int getPolygons() {
+    return type == Type.MultiPolygon ? ringsPerPolygon.length : type == Type.Polygon ? 1 : 0;
+  }
+
+  public int getVertices() {
+    int vertices = 0;
+    for (double[] part : parts) {
+      vertices += part.length / dimension;
+    }
+    return vertices;
+  }
+
+  /**
+   * Transforms all coordinates in place, one packed array at a time.
+   */
+  public void transform(Transform transform) {
+    for (double[] part : parts) {
+      transform.transform(part, dimension);
+    }
+  }
+
+  /**
+   * @return SHA-1 of type, dimension, structure and coordinates
+   */
+  public String hash() {
+    return hash(-1);
+  }
+
+  /**
+   * @param decimals Coordinates are rounded to this number of decimals before hashing, or used as is if negative.
+   * @return SHA-1 of type, dimension, structure and coordinates
+   */
+  public String hash(int decimals) {
+    double factor = Math.pow(10, decimals);
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      ByteBuffer buffer = ByteBuffer.allocate(8 * 512);
+      buffer.putInt(type.ordinal()).putInt(dimension).putInt(parts.length);
+      if (ringsPerPolygon != null) {
+        for (int rings : ringsPerPolygon) {
+          buffer = update(digest, buffer, 4).putInt(rings);
+        }
+      }
+      for (double[] part : parts) {
+        buffer = update(digest, buffer, 4).putInt(part.length);
+        for (double value : part) {
+          buffer = update(digest, buffer, 8).putDouble(decimals < 0 ? value : Math.round(value * factor) / factor);
+        }
+      }
+      update(digest, buffer, buffer.capacity());
+      StringBuilder sb = new StringBuilder(40);
+      for (byte b : digest.digest()) {
+        sb.append(String.format("%02x", b));
+      }
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * @return The buffer, flushed to the digest if there is not room for the required bytes.
+   */
+  private static ByteBuffer update(MessageDigest digest, ByteBuffer buffer, int required) {
+    if (buffer.remaining() < required) {
+      digest.update(buffer.array(), 0, buffer.position());
+      buffer.clear();
+    }
+    return buffer;
+  }
+
+  public Geometry toJts(GeometryFactory geometryFactory) {
+    switch (type) {
+      case Point:
+        return geometryFactory.createPoint(sequence(0));
+      case MultiPoint:
+        return geometryFactory.createMultiPoint(sequence(0));
+      case LineString:
+        return geometryFactory.createLineString(sequence(0));
+      case MultiLineString: {
+        org.locationtech.jts.geom.LineString[] lineStrings = new org.locationtech.jts.geom.LineString[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+          lineStrings[i] = geometryFactory.createLineString(sequence(i));
+        }
+        return geometryFactory.createMultiLineString(lineStrings);
+      }
+      case Polygon:
+        return polygon(geometryFactory, 0, parts.length);
+      case MultiPolygon: {
+        org.locationtech.jts.geom.Polygon[] polygons = new org.locationtech.jts.geom.Polygon[ringsPerPolygon.length];
+        int ring = 0;
+        for (int i = 0; i < polygons.length; i++) {
+          polygons[i] = polygon(geometryFactory, ring, ringsPerPolygon[i]);
+          ring += ringsPerPolygon[i];
+        }
+        return geometryFactory.createMultiPolygon(polygons);
+      }
+      default:
+        throw new UnsupportedOperationException(type.name());
+    }
+  }
+
+  private org.locationtech.jts.geom.Polygon polygon(GeometryFactory geometryFactory, int firstRing, int rings) {
+    if (rings == 0) {
+      return geometryFactory.createPolygon();
+    }
+    LinearRing[] holes = new LinearRing[rings - 1];
+    for (int i = 1; i < rings; i++) {
+      holes[i - 1] = geometryFactory.createLinearRing(sequence(firstRing + i));
+    }
+    return geometryFactory.createPolygon(geometryFactory.createLinearRing(sequence(firstRing)), holes);
+  }
+
+  private CoordinateSequence sequence(int part) {
+    return new PackedCoordinateSequence.Double(parts[part], dimension, 0);
+  }
+
+  public GeoJsonObject toGeoJson() {
+    switch (type) {
+      case Point:
+        return new org.geojson.Point(positions(0).get(0));
+      case MultiPoint:
+        return new org.geojson.MultiPoint(positions(0).toArray(new LngLatAlt[0]));
+      case LineString:
+        return new org.geojson.LineString(positions(0).toArray(new LngLatAlt[0]));
+      case MultiLineString: {
+        org.geojson.MultiLineString multiLineString = new org.geojson.MultiLineString();
+        for (int i = 0; i < parts.length; i++) {
+          multiLineString.add(positions(i));
+        }
+        return multiLineString;
+      }
+      case Polygon: {
+        org.geojson.Polygon polygon = new org.geojson.Polygon();
+        polygon.setCoordinates(rings(0, parts.length));
+        return polygon;
+      }
+      case MultiPolygon: {
+        org.geojson.MultiPolygon multiPolygon = new org.geojson.MultiPolygon();
+        int ring = 0;
+        for (int rings : ringsPerPolygon) {
+          multiPolygon.getCoordinates().add(rings(ring, rings));
+          ring += rings;
+        }
+        return multiPolygon;
+      }
+      default:
+        throw new UnsupportedOperationException(type.name());
+    }
+  }
+
+  private List<List<LngLatAlt>> rings(int firstRing, int rings) {
+    List<List<LngLatAlt>> coordinates = new ArrayList<>(rings);
+    for (int i = 0; i < rings; i++) {
+      coordinates.add(positions(firstRing + i));
+    }
+    return coordinates;
+  }
+
+  private List<LngLatAlt> positions(int part) {
+    double[] coordinates = parts[part];
+    List<LngLatAlt> positions = new ArrayList<>(coordinates.length / dimension);
+    for (int i = 0; i < coordinates.length; i += dimension) {
+      positions.add(dimension == 3
+          ? new LngLatAlt(coordinates[i], coordinates[i + 1], coordinates[i + 2])
+          : new LngLatAlt(coordinates[i], coordinates[i + 1]));
+    }
+    return positions;
+  }
+
+  /**
+   * Reads a GeoJSON geometry object without creating an object per vertex.
+   *
+   * @param p Positioned at the start of the geometry object.
+   */
+  public static PackedGeometry read(JsonParser p) throws IOException {
+    if (p.currentToken() != JsonToken.START_OBJECT) {
+      throw new IOException("Expected geometry object at " + p.getCurrentLocation());
+    }
+    String type = null;
+    CoordinateReader coordinates = null;
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.getCurrentName();
+      JsonToken token = p.nextToken();
+      if ("type".equals(field)) {
+        type = p.getValueAsString();
+      } else if ("coordinates".equals(field) && token == JsonToken.START_ARRAY) {
+        coordinates = new CoordinateReader();
+        p.nextToken();
+        coordinates.root = coordinates.content(p);
+      } else {
+        p.skipChildren();
+      }
+    }
+    if (type == null || coordinates == null) {
+      throw new IOException("Geometry type or coordinates missing at " + p.getCurrentLocation());
+    }
+    Type geometryType;
+    try {
+      geometryType = Type.valueOf(type);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Unsupported geometry type " + type + " at " + p.getCurrentLocation());
+    }
+    return coordinates.build(geometryType);
+  }
+
+  /**
+   * Nested coordinate arrays, where arrays of positions are packed as double[].
+   */
+  private static class CoordinateReader {
+
+    private int dimension;
+    private Object root;
+
+    /**
+     * @param p Positioned at the first token inside an array, left at the end of the array.
+     */
+    private Object content(JsonParser p) throws IOException {
+      JsonToken token = p.currentToken();
+      if (token == JsonToken.END_ARRAY) {
+        return new ArrayList<>(0);
+      } else if (token.isNumeric()) {
+        double[] position = new double[3];
+        int length = position(p, position, 0);
+        return Arrays.copyOf(position, length);
+      } else if (token != JsonToken.START_ARRAY) {
+        throw new IOException("Unexpected " + token + " in coordinates at " + p.getCurrentLocation());
+      }
+      if (p.nextToken().isNumeric()) {
+        // array of positions
+        double[] packed = new double[32];
+        int length = 0;
+        do {
+          if (length + 3 > packed.length) {
+            packed = Arrays.copyOf(packed, packed.length * 2);
+          }
+          length = position(p, packed, length);
+        } while (p.nextToken() == JsonToken.START_ARRAY && p.nextToken() != null);
+        return Arrays.copyOf(packed, length);
+      }
+      List<Object> children = new ArrayList<>();
+      do {
+        children.add(content(p));
+      } while (p.nextToken() == JsonToken.START_ARRAY && p.nextToken() != null);
+      return children;
+    }
+
+    /**
+     * Reads a position starting at the current numeric token up to and including the end of the array.
+     *
+     * @return offset after the position
+     */
+    private int position(JsonParser p, double[] target, int offset) throws IOException {
+      int length = 0;
+      for (JsonToken token = p.currentToken(); token != JsonToken.END_ARRAY; token = p.nextToken()) {
+        if (!token.isNumeric()) {
+          throw new IOException("Unexpected " + token + " in position at " + p.getCurrentLocation());
+        }
+        if (length < 3) {
+          target[offset + length] = p.getDoubleValue();
+        }
+        length++;
+      }
+      if (length < 2 || length > 3) {
+        throw new IOException("Unsupported position with " + length + " values at " + p.getCurrentLocation());
+      }
+      if (dimension == 0) {
+        dimension = length;
+      } else if (dimension != length) {
+        throw new IOException("Mixed position dimensions at " + p.getCurrentLocation());
+      }
+      return offset + length;
+    }
+
+    private PackedGeometry build(Type type) throws IOException {
+      int dimension = this.dimension == 0 ? 2 : this.dimension;
+      switch (type) {
+        case Point:
+        case MultiPoint:
+        case LineString:
+          return new PackedGeometry(type, dimension, new double[][]{packed(root)}, null);
+        case MultiLineString:
+        case Polygon:
+          return new PackedGeometry(type, dimension, parts(root), null);
+        case MultiPolygon: {
+          List<?> polygons = list(root);
+          List<double[]> parts = new ArrayList<>();
+          int[] ringsPerPolygon = new int[polygons.size()];
+          for (int i = 0; i < ringsPerPolygon.length; i++) {
+            double[][] rings = parts(polygons.get(i));
+            ringsPerPolygon[i] = rings.length;
+            parts.addAll(Arrays.asList(rings));
+          }
+          return new PackedGeometry(type, dimension, parts.toArray(new double[0][]), ringsPerPolygon);
+        }
+        default:
+          throw new IOException("Unsupported geometry type " + type);
+      }
+    }
+
+    private static double[][] parts(Object coordinates) throws IOException {
+      List<?> list = list(coordinates);
+      double[][] parts = new double[list.size()][];
+      for (int i = 0; i < parts.length; i++) {
+        parts[i] = packed(list.get(i));
+      }
+      return parts;
+    }
+
+    private static double[] packed(Object coordinates) throws IOException {
+      if (coordinates instanceof double[]) {
+        return (double[]) coordinates;
+      } else if (coordinates instanceof List && ((List<?>) coordinates).isEmpty()) {
+        return new double[0];
+      }
+      throw new IOException("Unexpected nesting of coordinates");
+    }
+
+    private static List<?> list(Object coordinates) throws IOException {
+      if (coordinates instanceof List) {
+        return (List<?>) coordinates;
+      }
+      throw new IOException("Unexpected nesting of coordinates");
+    }
+  }
+
+}
@@ -0,0 +1,74 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.message.BasicNameValuePair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.wikibaseapi.ApiConnection;
+import org.wikidata.wdtk.wikibaseapi.BasicApiConnection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * wdtk API connection that sends requests using the shared {@link HttpTransport}
+ * rather than a new HttpURLConnection per request.
+ * Cookies, including the login session, are kept in the cookie store of the transport.
+ */
+public class PooledApiConnection extends BasicApiConnection {
+
+  private Logger log = LoggerFactory.getLogger(getClass());
+
+  private HttpTransport transport;
+  private String apiBaseUrl;
+
+  public PooledApiConnection(HttpTransport transport, String apiBaseUrl) {
+    super(apiBaseUrl);
+    this.transport = transport;
+    this.apiBaseUrl = apiBaseUrl;
+  }
+
+  public static PooledApiConnection getWikidataApiConnection(HttpTransport transport) {
+    return new PooledApiConnection(transport, ApiConnection.URL_WIKIDATA_API);
+  }
+
+  @Override
+  public InputStream sendRequest(String requestMethod, Map<String, String> parameters) throws IOException {
+    List<NameValuePair> form = new ArrayList<>(parameters.size());
+    for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+      form.add(new BasicNameValuePair(parameter.getKey(), parameter.getValue()));
+    }
+
+    HttpRequestBase request;
+    if ("GET".equalsIgnoreCase(requestMethod)) {
+      request = new HttpGet(apiBaseUrl + "?" + URLEncodedUtils.format(form, StandardCharsets.UTF_8));
+    } else {
+      HttpPost post = new HttpPost(apiBaseUrl);
+      post.setEntity(new UrlEncodedFormEntity(form, StandardCharsets.UTF_8));
+      request = post;
+    }
+
+    CloseableHttpResponse response = transport.getClient().execute(request);
+    if (response.getStatusLine().getStatusCode() != 200) {
+      HttpStatusException exception = HttpStatusException.of("Wikidata API", response);
+      if (exception.isTransient()) {
+        response.close();
+        throw exception;
+      }
+      log.warn("Wikidata API response {}", response.getStatusLine());
+    }
+    // the connection is released to the pool when the stream is read to the end or closed
+    return response.getEntity().getContent();
+  }
+
+}
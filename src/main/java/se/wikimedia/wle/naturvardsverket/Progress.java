@@ -1,95 +1,206 @@
 package se.wikimedia.wle.naturvardsverket;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.Lists;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Data
 public class Progress {
 
-  private static class Counters {
-    private Map<String, AtomicInteger> counters = new HashMap<>();
-    public void increment(String key) {
-      AtomicInteger counter = counters.get(key);
-      if (counter == null) {
-        counter = new AtomicInteger();
-        counters.put(key, counter);
+  /**
+   * @see ProgressAnalyzer
+   */
+  public static void main(String[] args) throws Exception {
+    ProgressAnalyzer.main(args);
+  }
+
+  public void add(Entity entity) {
+    processed.put(entity.getNvrid(), entity);
+  }
+
+  private Map<String, Entity> processed = new HashMap<>();
+
+  /**
+   * Stack traces of failed executions, keyed by {@link #stackTraceHash(String)}.
+   * Identical failures are common when a whole run fails for the same reason,
+   * so the full trace is stored once and referenced from {@link Entity#getErrorHash()}.
+   */
+  private Map<String, String> stackTraces = new HashMap<>();
+
+  /**
+   * Marks the entity as failed, storing the stack trace once in {@link #getStackTraces()}
+   * and only the first line of it in {@link Entity#getError()}.
+   */
+  public void setError(Entity entity, Throwable throwable) {
+    StringWriter sw = new StringWriter();
+    PrintWriter pw = new PrintWriter(sw);
+    throwable.printStackTrace(pw);
+    pw.flush();
+    setError(entity, sw.toString());
+  }
+
+  public void setError(Entity entity, String stackTrace) {
+    String hash = stackTraceHash(stackTrace);
+    stackTraces.putIfAbsent(hash, stackTrace);
+    entity.setErrorHash(hash);
+    entity.setError(firstLine(stackTrace));
+  }
+
+  /**
+   * @return Full stack trace of a failed entity, or null if it did not fail.
+   */
+  public String getStackTrace(Entity entity) {
+    if (entity.getErrorHash() != null) {
+      String stackTrace = stackTraces.get(entity.getErrorHash());
+      if (stackTrace != null) {
+        return stackTrace;
       }
-      counter.incrementAndGet();
     }
-    @Override
-    public String toString() {
-      List<Map.Entry<String, AtomicInteger>> ordered = new ArrayList<>(counters.entrySet());
-      ordered.sort(new Comparator<Map.Entry<String, AtomicInteger>>() {
-        @Override
-        public int compare(Map.Entry<String, AtomicInteger> o1, Map.Entry<String, AtomicInteger> o2) {
-          return o2.getValue().get() - o1.getValue().get();
-        }
-      });
-      StringBuilder sb = new StringBuilder();
-      for (Map.Entry<String, AtomicInteger> counter : ordered) {
-        sb.append(counter.getKey());
-        sb.append("\t");
-        sb.append(counter.getValue().get());
-        sb.append("\n");
+    return entity.getError();
+  }
+
+  public static String stackTraceHash(String stackTrace) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(stackTrace.getBytes(StandardCharsets.UTF_8));
+      StringBuilder sb = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        sb.append(String.format("%02x", b));
       }
       return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
     }
   }
 
-  public static void main(String[] args) throws Exception {
-    ObjectMapper objectMapper = new ObjectMapper();
-    Progress progress = objectMapper.readValue(new File("data/progress/NaturalMonumentBot.json"), Progress.class);
+  static String firstLine(String text) {
+    int newline = text.indexOf('\n');
+    return (newline < 0 ? text : text.substring(0, newline)).trim();
+  }
+
+  /**
+   * Writes progress to file, first rotating previous versions as
+   * file.backup.1.json (most recent) to file.backup.[backups].json (oldest).
+   * Rotation is done before writing so that a crash while saving never loses more than the current entity.
+   */
+  public void save(ObjectMapper objectMapper, File file, int backups) throws IOException {
+    if (backups > 0 && file.exists()) {
+      backupFile(file, backups).delete();
+      for (int backup = backups - 1; backup > 0; backup--) {
+        File backupFile = backupFile(file, backup);
+        if (backupFile.exists()) {
+          backupFile.renameTo(backupFile(file, backup + 1));
+        }
+      }
+      file.renameTo(backupFile(file, 1));
+    }
+    objectMapper.writeValue(file, this);
+  }
+
+  public static File backupFile(File file, int backup) {
+    return new File(file.getParentFile(), file.getName().replaceFirst("\\.json$", "") + ".backup." + backup + ".json");
+  }
+
+  /**
+   * Aggregated statistics of executions that has been removed from
+   * the {@link Entity#getPreviousExecution()} chain by {@link ProgressCompactor}.
+   */
+  @Data
+  @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+  public static class CompactedHistory {
+    private int executions;
+    private int failedExecutions;
+    private int skippedExecutions;
 
-    Counters counters = new Counters();
-    Set<String> counterKeys = new HashSet<>();
-    for (Progress.Entity entity : progress.getProcessed().values()) {
-      counterKeys.clear();
+    private Long epochFirstStarted;
+    private Long epochLastEnded;
+    private long millisecondsSpent;
+
+    private boolean createdWikidata;
+    private boolean createdCommonsGeoshape;
+    private boolean updatedCommonsGeoshape;
+
+    private Map<String, Integer> createdClaims = new TreeMap<>();
+    private Map<String, Integer> modifiedClaims = new TreeMap<>();
+    private Map<String, Integer> deletedClaims = new TreeMap<>();
+    private Map<String, Integer> warnings = new TreeMap<>();
+    private Map<String, Integer> errors = new TreeMap<>();
+
+    public void add(Entity entity) {
+      executions++;
       if (entity.getError() != null) {
-        counterKeys.add("Failed to process");
+        failedExecutions++;
+        errors.merge(entity.getErrorHash() != null ? entity.getErrorHash() : firstLine(entity.getError()), 1, Integer::sum);
       }
-      while (entity != null) {
-        if (entity.isCreatedCommonsGeoshape()) {
-          counterKeys.add("Created Commons geoshape");
-        }
-        if (entity.isCreatedWikidata()) {
-          counterKeys.add("Created Wikidata item");
-        }
-        for (String claim : entity.getCreatedClaims()) {
-          counterKeys.add("Modified Wikidata claim " + claim);
-        }
-        for (String claim : entity.getModifiedClaims()) {
-          counterKeys.add("Modified Wikidata claim " + claim);
-        }
-        entity = entity.getPreviousExecution();
+      if (entity.isSkipped()) {
+        skippedExecutions++;
+      }
+      if (entity.getEpochStarted() != null && (epochFirstStarted == null || entity.getEpochStarted() < epochFirstStarted)) {
+        epochFirstStarted = entity.getEpochStarted();
       }
-      for (String key : counterKeys) {
-        counters.increment(key);
+      if (entity.getEpochEnded() != null && (epochLastEnded == null || entity.getEpochEnded() > epochLastEnded)) {
+        epochLastEnded = entity.getEpochEnded();
       }
-      counters.increment("Item processed");
+      if (entity.getEpochStarted() != null && entity.getEpochEnded() != null) {
+        millisecondsSpent += entity.getEpochEnded() - entity.getEpochStarted();
+      }
+      createdWikidata |= entity.isCreatedWikidata();
+      createdCommonsGeoshape |= entity.isCreatedCommonsGeoshape();
+      updatedCommonsGeoshape |= entity.isUpdatedCommonsGeoshape();
+      count(createdClaims, entity.getCreatedClaims());
+      count(modifiedClaims, entity.getModifiedClaims());
+      count(deletedClaims, entity.getDeletedClaims());
+      count(warnings, entity.getWarnings());
     }
 
-    System.out.println(counters);
-    System.currentTimeMillis();
-
-  }
+    public void add(CompactedHistory other) {
+      executions += other.executions;
+      failedExecutions += other.failedExecutions;
+      skippedExecutions += other.skippedExecutions;
+      if (other.epochFirstStarted != null && (epochFirstStarted == null || other.epochFirstStarted < epochFirstStarted)) {
+        epochFirstStarted = other.epochFirstStarted;
+      }
+      if (other.epochLastEnded != null && (epochLastEnded == null || other.epochLastEnded > epochLastEnded)) {
+        epochLastEnded = other.epochLastEnded;
+      }
+      millisecondsSpent += other.millisecondsSpent;
+      createdWikidata |= other.createdWikidata;
+      createdCommonsGeoshape |= other.createdCommonsGeoshape;
+      updatedCommonsGeoshape |= other.updatedCommonsGeoshape;
+      other.createdClaims.forEach((key, value) -> createdClaims.merge(key, value, Integer::sum));
+      other.modifiedClaims.forEach((key, value) -> modifiedClaims.merge(key, value, Integer::sum));
+      other.deletedClaims.forEach((key, value) -> deletedClaims.merge(key, value, Integer::sum));
+      other.warnings.forEach((key, value) -> warnings.merge(key, value, Integer::sum));
+      other.errors.forEach((key, value) -> errors.merge(key, value, Integer::sum));
+    }
 
-  public void add(Entity entity) {
-    processed.put(entity.getNvrid(), entity);
+    private static void count(Map<String, Integer> counters, List<String> keys) {
+      for (String key : keys) {
+        counters.merge(key, 1, Integer::sum);
+      }
+    }
   }
 
-  private Map<String, Entity> processed = new HashMap<>();
-
   @Data
   public static class Entity {
     private String nvrid;
 
     private String wikidataIdentity;
 
+    /** See {@link WorkPlanner#fingerprint(NvrFeature)} */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String featureFingerprint;
+
     private boolean skipped;
 
     private Long epochStarted;
@@ -101,15 +212,32 @@ public class Progress {
     private List<String> modifiedClaims = new ArrayList<>();
     private List<String> deletedClaims = new ArrayList<>();
 
+    /** Labels and descriptions added, e.g. "label sv" */
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<String> createdTerms = new ArrayList<>();
+
     private boolean createdCommonsGeoshape;
     private boolean updatedCommonsGeoshape;
 
     private List<String> warnings = new ArrayList<>();
 
+    /** First line of the stack trace, the complete trace is found in {@link Progress#getStackTraces()} */
     private String error;
-
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String errorHash;
+
+    /**
+     * Excluded from equals, hashCode and toString as the chain can be very long
+     * for items that has been processed in many runs.
+     */
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     private Entity previousExecution;
 
+    /** Executions older than the {@link #previousExecution} chain, removed by {@link ProgressCompactor}. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private CompactedHistory compactedHistory;
+
   }
 
 }
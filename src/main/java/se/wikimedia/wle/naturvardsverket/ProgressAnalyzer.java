@@ -0,0 +1,358 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams one or more progress files and reports throughput and latency over time,
+ * based on {@link Progress.Entity#getEpochStarted()} and {@link Progress.Entity#getEpochEnded()}
+ * of every execution in the files, including previous executions.
+ * <p>
+ * Only a single entity (with its previous executions) is held in memory at any time.
+ * <p>
+ * Usage: ProgressAnalyzer [--format csv|json] [--bucket minute|hour|day] [progress files...]
+ */
+public class ProgressAnalyzer {
+
+  public static void main(String[] args) throws Exception {
+    ProgressAnalyzer analyzer = new ProgressAnalyzer();
+    String format = "csv";
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      if ("--format".equals(args[i])) {
+        format = args[++i];
+      } else if ("--bucket".equals(args[i])) {
+        analyzer.setBucketMilliseconds(bucketMilliseconds(args[++i]));
+      } else {
+        files.add(new File(args[i]));
+      }
+    }
+    if (files.isEmpty()) {
+      File[] progressFiles = new File("data/progress").listFiles((dir, name) -> name.endsWith(".json") && !name.contains(".backup."));
+      if (progressFiles != null) {
+        Arrays.sort(progressFiles);
+        files.addAll(Arrays.asList(progressFiles));
+      }
+    }
+
+    for (File file : files) {
+      analyzer.analyze(file);
+    }
+
+    if ("csv".equals(format)) {
+      analyzer.writeCsv(System.out);
+    } else if ("json".equals(format)) {
+      analyzer.writeJson(System.out);
+    } else {
+      throw new IllegalArgumentException("Unsupported format: " + format);
+    }
+  }
+
+  private static long bucketMilliseconds(String bucket) {
+    switch (bucket) {
+      case "minute":
+        return TimeUnit.MINUTES.toMillis(1);
+      case "hour":
+        return TimeUnit.HOURS.toMillis(1);
+      case "day":
+        return TimeUnit.DAYS.toMillis(1);
+      default:
+        throw new IllegalArgumentException("Unsupported bucket: " + bucket);
+    }
+  }
+
+  private ObjectMapper objectMapper = new ObjectMapper()
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+  @Getter
+  @Setter
+  private long bucketMilliseconds = TimeUnit.HOURS.toMillis(1);
+
+  /** Bot name, bucket start epoch, statistics. */
+  @Getter
+  private Map<String, TreeMap<Long, Bucket>> bucketsByBot = new TreeMap<>();
+
+  /** Bot name, exception type, executions failed by that type. */
+  @Getter
+  private Map<String, Map<String, Integer>> errorsByBot = new TreeMap<>();
+
+  /** Bot name, flat counters as previously reported by Progress#main. */
+  @Getter
+  private Map<String, Map<String, Integer>> countersByBot = new TreeMap<>();
+
+  public static class Bucket {
+    @Getter
+    private int executions;
+    @Getter
+    private int failed;
+    @Getter
+    private int skipped;
+    @Getter
+    private int edits;
+    @Getter
+    private int claims;
+
+    private long[] durations = new long[16];
+    private int durationsSize;
+
+    private void add(Progress.Entity entity) {
+      executions++;
+      if (entity.getError() != null) {
+        failed++;
+      }
+      if (entity.isSkipped()) {
+        skipped++;
+      }
+      edits += countEdits(entity);
+      claims += entity.getCreatedClaims().size() + entity.getModifiedClaims().size() + entity.getDeletedClaims().size();
+      if (entity.getEpochStarted() != null) {
+        if (durationsSize == durations.length) {
+          durations = Arrays.copyOf(durations, durations.length * 2);
+        }
+        durations[durationsSize++] = entity.getEpochEnded() - entity.getEpochStarted();
+      }
+    }
+
+    /**
+     * @param percentile 0-100
+     * @return Nearest rank duration in milliseconds, or -1 if no durations are known.
+     */
+    public long durationPercentile(double percentile) {
+      if (durationsSize == 0) {
+        return -1;
+      }
+      Arrays.sort(durations, 0, durationsSize);
+      int rank = (int) Math.ceil(percentile / 100d * durationsSize);
+      return durations[Math.max(0, Math.min(durationsSize, rank) - 1)];
+    }
+  }
+
+  /**
+   * An execution results in at most one Wikidata item creation, one Wikidata statement and term update
+   * and one Commons geoshape save.
+   */
+  static int countEdits(Progress.Entity entity) {
+    int edits = 0;
+    if (entity.isCreatedWikidata()) {
+      edits++;
+    }
+    if (!entity.getCreatedClaims().isEmpty() || !entity.getModifiedClaims().isEmpty() || !entity.getDeletedClaims().isEmpty()
+        || !entity.getCreatedTerms().isEmpty()) {
+      edits++;
+    }
+    if (entity.isCreatedCommonsGeoshape() || entity.isUpdatedCommonsGeoshape()) {
+      edits++;
+    }
+    return edits;
+  }
+
+  /**
+   * @return E.g. java.lang.NullPointerException from the first line of a stack trace.
+   */
+  static String exceptionType(String error) {
+    String firstLine = Progress.firstLine(error);
+    int colon = firstLine.indexOf(':');
+    return colon < 0 ? firstLine : firstLine.substring(0, colon);
+  }
+
+  public void analyze(File file) throws IOException {
+    analyze(file.getName().replaceFirst("\\.json$", ""), file);
+  }
+
+  public void analyze(String bot, File file) throws IOException {
+    try (JsonParser parser = objectMapper.getFactory().createParser(file)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Expected progress object in " + file.getAbsolutePath());
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        if ("processed".equals(field)) {
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            add(bot, objectMapper.readValue(parser, Progress.Entity.class));
+          }
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+  }
+
+  public void add(String bot, Progress.Entity entity) {
+    TreeMap<Long, Bucket> buckets = bucketsByBot.computeIfAbsent(bot, k -> new TreeMap<>());
+    Map<String, Integer> errors = errorsByBot.computeIfAbsent(bot, k -> new TreeMap<>());
+    Map<String, Integer> counters = countersByBot.computeIfAbsent(bot, k -> new TreeMap<>());
+
+    Set<String> counterKeys = new HashSet<>();
+    if (entity.getError() != null) {
+      counterKeys.add("Failed to process");
+    }
+    for (; entity != null; entity = entity.getPreviousExecution()) {
+      if (entity.getEpochEnded() != null) {
+        long bucket = entity.getEpochEnded() - entity.getEpochEnded() % bucketMilliseconds;
+        buckets.computeIfAbsent(bucket, k -> new Bucket()).add(entity);
+      }
+      if (entity.getError() != null) {
+        errors.merge(exceptionType(entity.getError()), 1, Integer::sum);
+      }
+      if (entity.isCreatedCommonsGeoshape()) {
+        counterKeys.add("Created Commons geoshape");
+      }
+      if (entity.isCreatedWikidata()) {
+        counterKeys.add("Created Wikidata item");
+      }
+      for (String claim : entity.getCreatedClaims()) {
+        counterKeys.add("Modified Wikidata claim " + claim);
+      }
+      for (String claim : entity.getModifiedClaims()) {
+        counterKeys.add("Modified Wikidata claim " + claim);
+      }
+      for (String term : entity.getCreatedTerms()) {
+        counterKeys.add("Created Wikidata " + term);
+      }
+      if (entity.getCompactedHistory() != null) {
+        Progress.CompactedHistory history = entity.getCompactedHistory();
+        if (history.isCreatedCommonsGeoshape()) {
+          counterKeys.add("Created Commons geoshape");
+        }
+        if (history.isCreatedWikidata()) {
+          counterKeys.add("Created Wikidata item");
+        }
+        for (String claim : history.getCreatedClaims().keySet()) {
+          counterKeys.add("Modified Wikidata claim " + claim);
+        }
+        for (String claim : history.getModifiedClaims().keySet()) {
+          counterKeys.add("Modified Wikidata claim " + claim);
+        }
+      }
+    }
+    for (String key : counterKeys) {
+      counters.merge(key, 1, Integer::sum);
+    }
+    counters.merge("Item processed", 1, Integer::sum);
+  }
+
+  private static String formatEpoch(long epoch) {
+    return Instant.ofEpochMilli(epoch).atOffset(ZoneOffset.UTC).toLocalDateTime().toString();
+  }
+
+  public void writeCsv(PrintStream out) {
+    double bucketMinutes = bucketMilliseconds / 60000d;
+    out.println("bot,bucket,executions,failed,skipped,edits,claims,executions_per_hour,edits_per_minute,p50_ms,p90_ms,p99_ms");
+    for (Map.Entry<String, TreeMap<Long, Bucket>> bot : bucketsByBot.entrySet()) {
+      for (Map.Entry<Long, Bucket> entry : bot.getValue().entrySet()) {
+        Bucket bucket = entry.getValue();
+        out.println(String.join(",",
+            bot.getKey(),
+            formatEpoch(entry.getKey()),
+            String.valueOf(bucket.getExecutions()),
+            String.valueOf(bucket.getFailed()),
+            String.valueOf(bucket.getSkipped()),
+            String.valueOf(bucket.getEdits()),
+            String.valueOf(bucket.getClaims()),
+            String.format(Locale.ROOT, "%.2f", bucket.getExecutions() / bucketMinutes * 60d),
+            String.format(Locale.ROOT, "%.2f", bucket.getEdits() / bucketMinutes),
+            String.valueOf(bucket.durationPercentile(50)),
+            String.valueOf(bucket.durationPercentile(90)),
+            String.valueOf(bucket.durationPercentile(99))
+        ));
+      }
+    }
+    out.println();
+    out.println("bot,exception,failed_executions,error_rate");
+    for (Map.Entry<String, Map<String, Integer>> bot : errorsByBot.entrySet()) {
+      int executions = executions(bot.getKey());
+      for (Map.Entry<String, Integer> error : bot.getValue().entrySet()) {
+        out.println(String.join(",",
+            bot.getKey(),
+            error.getKey(),
+            String.valueOf(error.getValue()),
+            String.format(Locale.ROOT, "%.4f", error.getValue() / (double) executions)
+        ));
+      }
+    }
+    out.println();
+    out.println("bot,counter,items");
+    for (Map.Entry<String, Map<String, Integer>> bot : countersByBot.entrySet()) {
+      for (Map.Entry<String, Integer> counter : bot.getValue().entrySet()) {
+        out.println(bot.getKey() + "," + counter.getKey() + "," + counter.getValue());
+      }
+    }
+    out.flush();
+  }
+
+  public void writeJson(OutputStream out) throws IOException {
+    double bucketMinutes = bucketMilliseconds / 60000d;
+    JsonGenerator generator = new JsonFactory().createGenerator(out);
+    generator.useDefaultPrettyPrinter();
+    generator.writeStartObject();
+    generator.writeNumberField("bucketMilliseconds", bucketMilliseconds);
+    for (String bot : bucketsByBot.keySet()) {
+      generator.writeObjectFieldStart(bot);
+
+      generator.writeArrayFieldStart("buckets");
+      for (Map.Entry<Long, Bucket> entry : bucketsByBot.get(bot).entrySet()) {
+        Bucket bucket = entry.getValue();
+        generator.writeStartObject();
+        generator.writeStringField("bucket", formatEpoch(entry.getKey()));
+        generator.writeNumberField("executions", bucket.getExecutions());
+        generator.writeNumberField("failed", bucket.getFailed());
+        generator.writeNumberField("skipped", bucket.getSkipped());
+        generator.writeNumberField("edits", bucket.getEdits());
+        generator.writeNumberField("claims", bucket.getClaims());
+        generator.writeNumberField("executionsPerHour", bucket.getExecutions() / bucketMinutes * 60d);
+        generator.writeNumberField("editsPerMinute", bucket.getEdits() / bucketMinutes);
+        generator.writeNumberField("p50", bucket.durationPercentile(50));
+        generator.writeNumberField("p90", bucket.durationPercentile(90));
+        generator.writeNumberField("p99", bucket.durationPercentile(99));
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+
+      int executions = executions(bot);
+      generator.writeObjectFieldStart("errors");
+      for (Map.Entry<String, Integer> error : errorsByBot.get(bot).entrySet()) {
+        generator.writeObjectFieldStart(error.getKey());
+        generator.writeNumberField("failedExecutions", error.getValue());
+        generator.writeNumberField("errorRate", error.getValue() / (double) executions);
+        generator.writeEndObject();
+      }
+      generator.writeEndObject();
+
+      generator.writeObjectFieldStart("counters");
+      for (Map.Entry<String, Integer> counter : countersByBot.get(bot).entrySet()) {
+        generator.writeNumberField(counter.getKey(), counter.getValue());
+      }
+      generator.writeEndObject();
+
+      generator.writeEndObject();
+    }
+    generator.writeEndObject();
+    generator.flush();
+  }
+
+  private int executions(String bot) {
+    int executions = 0;
+    for (Bucket bucket : bucketsByBot.get(bot).values()) {
+      executions += bucket.getExecutions();
+    }
+    return executions;
+  }
+
+}
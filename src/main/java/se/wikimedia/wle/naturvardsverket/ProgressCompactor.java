@@ -0,0 +1,139 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the last few executions of each NVRID in a {@link Progress} and folds older executions
+ * into {@link Progress.CompactedHistory} counters. Stack traces are moved to {@link Progress#getStackTraces()}
+ * so that identical failures are stored only once, and traces no longer referenced by a kept execution are removed.
+ * <p>
+ * Usage: ProgressCompactor [progress file] [executions to keep] [backups to keep]
+ */
+public class ProgressCompactor {
+
+  private static Logger log = LoggerFactory.getLogger(ProgressCompactor.class);
+
+  public static void main(String[] args) throws Exception {
+    File progressFile = new File(args.length > 0 ? args[0] : "data/progress/NaturalMonumentBot.json");
+    int keepExecutions = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+    int backups = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+    ObjectMapper objectMapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+        .enable(SerializationFeature.INDENT_OUTPUT);
+
+    long bytesBefore = progressFile.length();
+    Progress progress = objectMapper.readValue(progressFile, Progress.class);
+
+    Report report = new ProgressCompactor(keepExecutions).compact(progress);
+
+    progress.save(objectMapper, progressFile, backups);
+    long bytesAfter = progressFile.length();
+
+    System.out.println("Entities\t" + report.getEntities());
+    System.out.println("Executions compacted\t" + report.getExecutionsCompacted());
+    System.out.println("Stack traces moved\t" + report.getStackTracesMoved());
+    System.out.println("Stack traces removed\t" + report.getStackTracesRemoved());
+    System.out.println("Stack trace bytes removed\t" + report.getStackTraceBytesRemoved());
+    System.out.println("Unique stack traces\t" + progress.getStackTraces().size());
+    System.out.println("Bytes before\t" + bytesBefore);
+    System.out.println("Bytes after\t" + bytesAfter);
+    System.out.println("Bytes saved\t" + (bytesBefore - bytesAfter));
+    System.out.println("Previous version\t" + Progress.backupFile(progressFile, 1).getAbsolutePath());
+  }
+
+  @Data
+  public static class Report {
+    private int entities;
+    private int executionsCompacted;
+    private int stackTracesMoved;
+    /** Traces only referenced by compacted executions. */
+    private int stackTracesRemoved;
+    private long stackTraceBytesRemoved;
+  }
+
+  /**
+   * Number of executions per NVRID to keep in the chain, including the most recent one.
+   */
+  private int keepExecutions;
+
+  public ProgressCompactor(int keepExecutions) {
+    if (keepExecutions < 1) {
+      throw new IllegalArgumentException("Must keep at least the most recent execution");
+    }
+    this.keepExecutions = keepExecutions;
+  }
+
+  public Report compact(Progress progress) {
+    Report report = new Report();
+    for (Progress.Entity head : progress.getProcessed().values()) {
+      report.entities++;
+
+      Progress.CompactedHistory compactedHistory = null;
+      Progress.Entity oldestKept = null;
+      int depth = 0;
+      for (Progress.Entity entity = head; entity != null; entity = entity.getPreviousExecution()) {
+        depth++;
+
+        if (entity.getError() != null && entity.getErrorHash() == null) {
+          progress.setError(entity, entity.getError());
+          report.stackTracesMoved++;
+        }
+
+        if (entity.getCompactedHistory() != null) {
+          if (compactedHistory == null) {
+            compactedHistory = new Progress.CompactedHistory();
+          }
+          compactedHistory.add(entity.getCompactedHistory());
+          entity.setCompactedHistory(null);
+        }
+
+        if (depth <= keepExecutions) {
+          oldestKept = entity;
+        } else {
+          if (compactedHistory == null) {
+            compactedHistory = new Progress.CompactedHistory();
+          }
+          compactedHistory.add(entity);
+          report.executionsCompacted++;
+        }
+      }
+
+      oldestKept.setPreviousExecution(null);
+      oldestKept.setCompactedHistory(compactedHistory);
+    }
+
+    Set<String> referenced = new HashSet<>();
+    for (Progress.Entity head : progress.getProcessed().values()) {
+      for (Progress.Entity entity = head; entity != null; entity = entity.getPreviousExecution()) {
+        if (entity.getErrorHash() != null) {
+          referenced.add(entity.getErrorHash());
+        }
+      }
+    }
+    for (Iterator<Map.Entry<String, String>> iterator = progress.getStackTraces().entrySet().iterator(); iterator.hasNext(); ) {
+      Map.Entry<String, String> stackTrace = iterator.next();
+      if (!referenced.contains(stackTrace.getKey())) {
+        report.stackTracesRemoved++;
+        report.stackTraceBytesRemoved += stackTrace.getValue().getBytes(StandardCharsets.UTF_8).length;
+        iterator.remove();
+      }
+    }
+
+    log.info("Compacted {} executions in {} entities, removed {} stack traces", report.executionsCompacted, report.entities, report.stackTracesRemoved);
+    return report;
+  }
+
+}
@@ -0,0 +1,283 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Embedded H2 database with one row per execution in {@link Progress}, indexed on
+ * NVRID, Wikidata identity, failure, start time, warnings and claims.
+ * <p>
+ * Used to select which NVRIDs to rerun without scanning the complete progress file.
+ * The JSON progress file is still the primary state, this is an index of it that
+ * is imported on first use and then kept up to date for each processed entity.
+ * <p>
+ * Queries are SQL WHERE clauses over the table execution e, where only the most recent execution
+ * of each NVRID has latest = true. Examples:
+ * <pre>
+ * e.latest AND e.failed
+ * e.latest AND EXISTS (SELECT 1 FROM warning w WHERE w.execution_id = e.id AND w.warning LIKE 'Operator claims%')
+ * EXISTS (SELECT 1 FROM execution p WHERE p.nvrid = e.nvrid AND p.created_commons_geoshape AND p.epoch_started BETWEEN 1587900000000 AND 1587999999999)
+ * e.latest AND e.wikidata_identity IS NULL
+ * </pre>
+ * <p>
+ * Usage: ProgressDatabase [bot] [where clause]
+ */
+public class ProgressDatabase implements AutoCloseable {
+
+  private Logger log = LoggerFactory.getLogger(getClass());
+
+  public static void main(String[] args) throws Exception {
+    String bot = args[0];
+    try (ProgressDatabase database = new ProgressDatabase(new File("data/progress/" + bot))) {
+      database.open();
+      File progressFile = new File("data/progress/" + bot + ".json");
+      if (progressFile.exists()) {
+        database.synchronize(bot, new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .readValue(progressFile, Progress.class));
+      }
+      for (String nvrid : database.selectNvrids(bot, args[1])) {
+        System.out.println(nvrid);
+      }
+    }
+  }
+
+  private File file;
+  private Connection connection;
+
+  /**
+   * @param file Database file without the .mv.db suffix added by H2.
+   */
+  public ProgressDatabase(File file) {
+    this.file = file;
+  }
+
+  public void open() throws SQLException {
+    connection = DriverManager.getConnection("jdbc:h2:file:" + file.getAbsolutePath());
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE IF NOT EXISTS execution (" +
+          " id BIGINT AUTO_INCREMENT PRIMARY KEY," +
+          " bot VARCHAR NOT NULL," +
+          " nvrid VARCHAR NOT NULL," +
+          " latest BOOLEAN NOT NULL," +
+          " wikidata_identity VARCHAR," +
+          " epoch_started BIGINT," +
+          " epoch_ended BIGINT," +
+          " skipped BOOLEAN NOT NULL," +
+          " failed BOOLEAN NOT NULL," +
+          " error VARCHAR," +
+          " error_hash VARCHAR," +
+          " created_wikidata BOOLEAN NOT NULL," +
+          " created_commons_geoshape BOOLEAN NOT NULL," +
+          " updated_commons_geoshape BOOLEAN NOT NULL" +
+          ")");
+      statement.execute("CREATE TABLE IF NOT EXISTS claim (" +
+          " execution_id BIGINT NOT NULL," +
+          " change VARCHAR NOT NULL," +
+          " claim VARCHAR NOT NULL" +
+          ")");
+      statement.execute("CREATE TABLE IF NOT EXISTS warning (" +
+          " execution_id BIGINT NOT NULL," +
+          " warning VARCHAR NOT NULL" +
+          ")");
+      statement.execute("CREATE INDEX IF NOT EXISTS execution_nvrid ON execution (bot, nvrid, latest)");
+      statement.execute("CREATE INDEX IF NOT EXISTS execution_wikidata_identity ON execution (wikidata_identity)");
+      statement.execute("CREATE INDEX IF NOT EXISTS execution_failed ON execution (failed, latest)");
+      statement.execute("CREATE INDEX IF NOT EXISTS execution_epoch_started ON execution (epoch_started)");
+      statement.execute("CREATE INDEX IF NOT EXISTS claim_execution ON claim (execution_id)");
+      statement.execute("CREATE INDEX IF NOT EXISTS claim_claim ON claim (change, claim)");
+      statement.execute("CREATE INDEX IF NOT EXISTS warning_execution ON warning (execution_id)");
+      statement.execute("CREATE INDEX IF NOT EXISTS warning_warning ON warning (warning)");
+    }
+  }
+
+  @Override
+  public void close() throws SQLException {
+    if (connection != null) {
+      connection.close();
+      connection = null;
+    }
+  }
+
+  /**
+   * Imports the progress unless the database already contain the same number of executions for the bot,
+   * with the same most recent end time, i.e. the database is assumed to be up to date
+   * if it was kept updated using {@link #add(String, Progress.Entity)}.
+   * Reruns of known NVRIDs while not updating the database add executions and are thus also detected.
+   */
+  public void synchronize(String bot, Progress progress) throws SQLException {
+    int executions = 0;
+    long lastEnded = 0;
+    for (Progress.Entity entity : progress.getProcessed().values()) {
+      for (; entity != null; entity = entity.getPreviousExecution()) {
+        executions++;
+        if (entity.getEpochEnded() != null) {
+          lastEnded = Math.max(lastEnded, entity.getEpochEnded());
+        }
+      }
+    }
+    if (isStale(bot, executions, lastEnded)) {
+      importProgress(bot, progress);
+    }
+  }
+
+  boolean isStale(String bot, int executions, long lastEnded) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(
+        "SELECT COUNT(*), COALESCE(MAX(epoch_ended), 0) FROM execution WHERE bot = ?")) {
+      statement.setString(1, bot);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        resultSet.next();
+        return resultSet.getInt(1) != executions || resultSet.getLong(2) != lastEnded;
+      }
+    }
+  }
+
+  public int countNvrids(String bot) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM execution WHERE bot = ? AND latest")) {
+      statement.setString(1, bot);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        resultSet.next();
+        return resultSet.getInt(1);
+      }
+    }
+  }
+
+  /**
+   * Replaces all executions of the bot with those in the progress.
+   */
+  public void importProgress(String bot, Progress progress) throws SQLException {
+    connection.setAutoCommit(false);
+    try {
+      try (PreparedStatement statement = connection.prepareStatement(
+          "DELETE FROM claim WHERE execution_id IN (SELECT id FROM execution WHERE bot = ?)")) {
+        statement.setString(1, bot);
+        statement.executeUpdate();
+      }
+      try (PreparedStatement statement = connection.prepareStatement(
+          "DELETE FROM warning WHERE execution_id IN (SELECT id FROM execution WHERE bot = ?)")) {
+        statement.setString(1, bot);
+        statement.executeUpdate();
+      }
+      try (PreparedStatement statement = connection.prepareStatement("DELETE FROM execution WHERE bot = ?")) {
+        statement.setString(1, bot);
+        statement.executeUpdate();
+      }
+      for (Progress.Entity entity : progress.getProcessed().values()) {
+        insertChain(bot, entity);
+      }
+      connection.commit();
+    } catch (SQLException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(true);
+    }
+    log.info("Imported {} entities of {} into {}", progress.getProcessed().size(), bot, file.getAbsolutePath());
+  }
+
+  /**
+   * Adds a new most recent execution of an NVRID.
+   * Previous executions are expected to already be in the database.
+   */
+  public void add(String bot, Progress.Entity entity) throws SQLException {
+    connection.setAutoCommit(false);
+    try {
+      try (PreparedStatement statement = connection.prepareStatement(
+          "UPDATE execution SET latest = FALSE WHERE bot = ? AND nvrid = ? AND latest")) {
+        statement.setString(1, bot);
+        statement.setString(2, entity.getNvrid());
+        statement.executeUpdate();
+      }
+      insert(bot, entity, true);
+      connection.commit();
+    } catch (SQLException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(true);
+    }
+  }
+
+  private void insertChain(String bot, Progress.Entity entity) throws SQLException {
+    boolean latest = true;
+    for (; entity != null; entity = entity.getPreviousExecution()) {
+      insert(bot, entity, latest);
+      latest = false;
+    }
+  }
+
+  private void insert(String bot, Progress.Entity entity, boolean latest) throws SQLException {
+    long id;
+    try (PreparedStatement statement = connection.prepareStatement(
+        "INSERT INTO execution (bot, nvrid, latest, wikidata_identity, epoch_started, epoch_ended, skipped, failed," +
+            " error, error_hash, created_wikidata, created_commons_geoshape, updated_commons_geoshape)" +
+            " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+      statement.setString(1, bot);
+      statement.setString(2, entity.getNvrid());
+      statement.setBoolean(3, latest);
+      statement.setString(4, entity.getWikidataIdentity());
+      statement.setObject(5, entity.getEpochStarted());
+      statement.setObject(6, entity.getEpochEnded());
+      statement.setBoolean(7, entity.isSkipped());
+      statement.setBoolean(8, entity.getError() != null);
+      statement.setString(9, entity.getError() == null ? null : Progress.firstLine(entity.getError()));
+      statement.setString(10, entity.getErrorHash());
+      statement.setBoolean(11, entity.isCreatedWikidata());
+      statement.setBoolean(12, entity.isCreatedCommonsGeoshape());
+      statement.setBoolean(13, entity.isUpdatedCommonsGeoshape());
+      statement.executeUpdate();
+      try (ResultSet keys = statement.getGeneratedKeys()) {
+        keys.next();
+        id = keys.getLong(1);
+      }
+    }
+    try (PreparedStatement statement = connection.prepareStatement("INSERT INTO claim (execution_id, change, claim) VALUES (?, ?, ?)")) {
+      addClaimBatch(statement, id, "created", entity.getCreatedClaims());
+      addClaimBatch(statement, id, "modified", entity.getModifiedClaims());
+      addClaimBatch(statement, id, "deleted", entity.getDeletedClaims());
+      statement.executeBatch();
+    }
+    try (PreparedStatement statement = connection.prepareStatement("INSERT INTO warning (execution_id, warning) VALUES (?, ?)")) {
+      for (String warning : entity.getWarnings()) {
+        statement.setLong(1, id);
+        statement.setString(2, warning);
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    }
+  }
+
+  private void addClaimBatch(PreparedStatement statement, long id, String change, List<String> claims) throws SQLException {
+    for (String claim : claims) {
+      statement.setLong(1, id);
+      statement.setString(2, change);
+      statement.setString(3, claim);
+      statement.addBatch();
+    }
+  }
+
+  /**
+   * @param where SQL WHERE clause over execution e, see class documentation.
+   * @return NVRIDs of the bot with at least one execution matching the clause.
+   */
+  public Set<String> selectNvrids(String bot, String where) throws SQLException {
+    Set<String> nvrids = new LinkedHashSet<>();
+    try (PreparedStatement statement = connection.prepareStatement(
+        "SELECT DISTINCT e.nvrid FROM execution e WHERE e.bot = ? AND (" + where + ") ORDER BY e.nvrid")) {
+      statement.setString(1, bot);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          nvrids.add(resultSet.getString(1));
+        }
+      }
+    }
+    return nvrids;
+  }
+
+}
@@ -0,0 +1,187 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Calls a remote service with a timeout, bounded exponential backoff retries and a circuit breaker.
+ * <p>
+ * Failures caused by an {@link IOException}, such as connection problems and transient {@link HttpStatusException}s,
+ * are retried after an increasing delay, or the delay given by Retry-After. Other exceptions are thrown directly.
+ * <p>
+ * After {@link #failureThreshold} consecutive failed attempts the circuit opens and all calls
+ * through this instance wait for {@link #openMilliseconds} before a single attempt is let through,
+ * i.e. processing pauses during a sustained outage rather than failing one entity after another.
+ * <p>
+ * Calls running for more than {@link #callTimeoutMilliseconds} have their HTTP request aborted
+ * using {@link HttpTransport#abortExecuting(Thread)} and are retried.
+ */
+public class ResilientCaller {
+
+  private Logger log = LoggerFactory.getLogger(getClass());
+
+  public interface Call<T, E extends Exception> {
+    T call() throws E, IOException;
+  }
+
+  private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "resilient-caller-watchdog");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private String service;
+  private HttpTransport transport;
+
+  @Getter
+  @Setter
+  private int maxAttempts = 5;
+
+  @Getter
+  @Setter
+  private long initialBackoffMilliseconds = TimeUnit.SECONDS.toMillis(2);
+
+  @Getter
+  @Setter
+  private long maxBackoffMilliseconds = TimeUnit.MINUTES.toMillis(1);
+
+  @Getter
+  @Setter
+  private long callTimeoutMilliseconds = TimeUnit.MINUTES.toMillis(3);
+
+  @Getter
+  @Setter
+  private int failureThreshold = 5;
+
+  @Getter
+  @Setter
+  private long openMilliseconds = TimeUnit.MINUTES.toMillis(5);
+
+  private int consecutiveFailures;
+  private long openUntil;
+
+  /**
+   * @param service   Name used in log messages.
+   * @param transport Used to abort requests of timed out calls, or null if not applicable.
+   */
+  public ResilientCaller(String service, HttpTransport transport) {
+    this.service = service;
+    this.transport = transport;
+  }
+
+  public synchronized boolean isOpen() {
+    return System.currentTimeMillis() < openUntil;
+  }
+
+  public <T, E extends Exception> T execute(String description, Call<T, E> call) throws E, IOException {
+    for (int attempt = 1; ; attempt++) {
+      awaitClosedCircuit();
+      Thread thread = Thread.currentThread();
+      AtomicBoolean timedOut = new AtomicBoolean();
+      ScheduledFuture<?> timeout = watchdog.scheduleWithFixedDelay(() -> {
+        timedOut.set(true);
+        if (transport != null) {
+          transport.abortExecuting(thread);
+        }
+      }, callTimeoutMilliseconds, 1000, TimeUnit.MILLISECONDS);
+      try {
+        T result = call.call();
+        succeeded();
+        return result;
+      } catch (IOException | RuntimeException e) {
+        timeout.cancel(false);
+        if (!timedOut.get() && !isRetryable(e)) {
+          throw e;
+        }
+        failed();
+        if (attempt >= maxAttempts) {
+          log.error("{} {} failed after {} attempts", service, description, attempt);
+          throw e;
+        }
+        long backoff = backoffMilliseconds(attempt, e);
+        log.warn("{} {} attempt {} of {} {}, retrying in {} ms: {}", service, description, attempt, maxAttempts,
+            timedOut.get() ? "timed out" : "failed", backoff, e.toString());
+        sleep(backoff);
+      } finally {
+        timeout.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * @return True if the exception or any of its causes is an I/O problem, except non-transient HTTP responses.
+   */
+  static boolean isRetryable(Throwable throwable) {
+    for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+      if (cause instanceof HttpStatusException) {
+        return ((HttpStatusException) cause).isTransient();
+      } else if (cause instanceof IOException) {
+        return true;
+      }
+      if (cause.getCause() == cause) {
+        break;
+      }
+    }
+    return false;
+  }
+
+  long backoffMilliseconds(int attempt, Throwable throwable) {
+    long backoff = Math.min(maxBackoffMilliseconds, initialBackoffMilliseconds << Math.min(30, attempt - 1));
+    for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+      if (cause instanceof HttpStatusException && ((HttpStatusException) cause).getRetryAfterMilliseconds() != null) {
+        // respect Retry-After, but never wait longer than an open circuit would
+        return Math.min(openMilliseconds, Math.max(backoff, ((HttpStatusException) cause).getRetryAfterMilliseconds()));
+      }
+      if (cause.getCause() == cause) {
+        break;
+      }
+    }
+    return backoff;
+  }
+
+  private synchronized void succeeded() {
+    if (consecutiveFailures >= failureThreshold) {
+      log.info("{} circuit closed", service);
+    }
+    consecutiveFailures = 0;
+  }
+
+  private synchronized void failed() {
+    consecutiveFailures++;
+    if (consecutiveFailures >= failureThreshold) {
+      openUntil = System.currentTimeMillis() + openMilliseconds;
+      log.warn("{} circuit open for {} ms after {} consecutive failures", service, openMilliseconds, consecutiveFailures);
+    }
+  }
+
+  private void awaitClosedCircuit() throws IOException {
+    long wait;
+    while ((wait = waitMilliseconds()) > 0) {
+      log.info("{} circuit is open, waiting {} ms", service, wait);
+      sleep(wait);
+    }
+  }
+
+  private synchronized long waitMilliseconds() {
+    return openUntil - System.currentTimeMillis();
+  }
+
+  protected void sleep(long milliseconds) throws IOException {
+    try {
+      Thread.sleep(milliseconds);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting to call " + service, e);
+    }
+  }
+
+}
@@ -0,0 +1,119 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import lombok.Data;
+import org.apache.http.pool.PoolStats;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counters of the current execution of a bot, updated by the processing thread and read by {@link StatusServer}.
+ * <p>
+ * Fields are volatile or atomic, i.e. {@link #snapshot(HttpTransport)} never blocks processing
+ * but might combine values from either side of an item being completed.
+ */
+public class RunStatus {
+
+  @Data
+  public static class Snapshot {
+    private String bot;
+    private long epochStarted;
+    private String file;
+    private int filesRemaining;
+    private String currentNvrid;
+    private Long currentEpochStarted;
+
+    private int processed;
+    private int skipped;
+    private int failed;
+    private int featuresInFile;
+    private int remainingInFile;
+
+    private double itemsPerMinute;
+    private Long epochEstimatedFileCompleted;
+
+    /** Requests waiting for a pooled HTTP connection */
+    private Integer pendingConnections;
+    private Integer leasedConnections;
+    private Integer availableConnections;
+    private Integer maxConnections;
+  }
+
+  private final String bot;
+  private final long epochStarted = System.currentTimeMillis();
+
+  private volatile String file;
+  private volatile int filesRemaining;
+  private volatile int featuresInFile;
+  private final AtomicInteger startedInFile = new AtomicInteger();
+
+  private volatile String currentNvrid;
+  private volatile Long currentEpochStarted;
+
+  private final AtomicInteger processed = new AtomicInteger();
+  private final AtomicInteger skipped = new AtomicInteger();
+  private final AtomicInteger failed = new AtomicInteger();
+
+  public RunStatus(String bot) {
+    this.bot = bot;
+  }
+
+  public void startFile(String file, int filesRemaining, int features) {
+    this.file = file;
+    this.filesRemaining = filesRemaining;
+    this.featuresInFile = features;
+    startedInFile.set(0);
+  }
+
+  public void started(String nvrid) {
+    currentEpochStarted = System.currentTimeMillis();
+    currentNvrid = nvrid;
+    startedInFile.incrementAndGet();
+  }
+
+  public void ended(Progress.Entity entity) {
+    processed.incrementAndGet();
+    if (entity.isSkipped()) {
+      skipped.incrementAndGet();
+    }
+    if (entity.getError() != null) {
+      failed.incrementAndGet();
+    }
+    currentNvrid = null;
+    currentEpochStarted = null;
+  }
+
+  /**
+   * @param transport Connection pool to report, or null
+   */
+  public Snapshot snapshot(HttpTransport transport) {
+    long now = System.currentTimeMillis();
+    Snapshot snapshot = new Snapshot();
+    snapshot.setBot(bot);
+    snapshot.setEpochStarted(epochStarted);
+    snapshot.setFile(file);
+    snapshot.setFilesRemaining(filesRemaining);
+    snapshot.setCurrentNvrid(currentNvrid);
+    snapshot.setCurrentEpochStarted(currentEpochStarted);
+    snapshot.setProcessed(processed.get());
+    snapshot.setSkipped(skipped.get());
+    snapshot.setFailed(failed.get());
+    snapshot.setFeaturesInFile(featuresInFile);
+    snapshot.setRemainingInFile(Math.max(0, featuresInFile - startedInFile.get()));
+
+    double minutes = (now - epochStarted) / 60000d;
+    snapshot.setItemsPerMinute(minutes > 0 ? snapshot.getProcessed() / minutes : 0);
+    if (snapshot.getItemsPerMinute() > 0) {
+      snapshot.setEpochEstimatedFileCompleted(now + (long) (snapshot.getRemainingInFile() / snapshot.getItemsPerMinute() * 60000d));
+    }
+
+    PoolStats poolStats = transport == null ? null : transport.getPoolStats();
+    if (poolStats != null) {
+      snapshot.setPendingConnections(poolStats.getPending());
+      snapshot.setLeasedConnections(poolStats.getLeased());
+      snapshot.setAvailableConnections(poolStats.getAvailable());
+      snapshot.setMaxConnections(poolStats.getMax());
+    }
+    return snapshot;
+  }
+
+}
@@ -0,0 +1,380 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streams features from an ESRI Shapefile: geometries from the .shp and attributes from the .dbf, read in lockstep.
+ * The crs is taken from the .prj, SWEREF 99 TM is reprojected to WGS84, and the text encoding from the .cpg (ISO-8859-1 if missing).
+ * <p>
+ * Values are the same as in GeoJSON converted by ogr2ogr: blank values are null, numbers without decimals are integers,
+ * dates are yyyy/MM/dd strings and rings are kept in file order and orientation.
+ * Z and M values are ignored.
+ */
+public class ShapefileReader {
+
+  private static final int FILE_CODE = 9994;
+
+  public static NvrFeatureCollection read(File shp) throws IOException {
+    String base = shp.getPath().substring(0, shp.getPath().length() - 4);
+    File dbf = sibling(base, ".dbf");
+    File prj = sibling(base, ".prj");
+    File cpg = sibling(base, ".cpg");
+
+    NvrFeatureCollection collection = new NvrFeatureCollection();
+    String crs = prj.exists() ? crs(new String(Files.readAllBytes(prj.toPath()), StandardCharsets.ISO_8859_1)) : null;
+    collection.setCrs(crs);
+    Charset charset = cpg.exists() ? charset(new String(Files.readAllBytes(cpg.toPath()), StandardCharsets.ISO_8859_1)) : StandardCharsets.ISO_8859_1;
+
+    try (DataInputStream shapes = new DataInputStream(new BufferedInputStream(new FileInputStream(shp), 1 << 16));
+         DataInputStream attributes = new DataInputStream(new BufferedInputStream(new FileInputStream(dbf), 1 << 16))) {
+
+      byte[] header = new byte[100];
+      shapes.readFully(header);
+      ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+      if (headerBuffer.getInt(0) != FILE_CODE) {
+        throw new IOException("Not a shapefile: " + shp.getAbsolutePath());
+      }
+      long fileLength = headerBuffer.getInt(24) * 2L;
+
+      DbfReader dbfReader = new DbfReader(attributes, charset);
+      byte[] content = new byte[256];
+      long position = header.length;
+      while (position < fileLength) {
+        shapes.readInt(); // record number
+        int contentLength = shapes.readInt() * 2;
+        if (content.length < contentLength) {
+          content = new byte[Math.max(contentLength, content.length * 2)];
+        }
+        shapes.readFully(content, 0, contentLength);
+        position += 8 + contentLength;
+
+        List<Object> values = new ArrayList<>(dbfReader.fields.size());
+        if (!dbfReader.next(values)) {
+          throw new IOException("Fewer records in " + dbf.getAbsolutePath() + " than in " + shp.getAbsolutePath());
+        }
+        if (dbfReader.deleted) {
+          continue;
+        }
+        PackedGeometry geometry = geometry(ByteBuffer.wrap(content, 0, contentLength).order(ByteOrder.LITTLE_ENDIAN));
+        collection.add(null, dbfReader.fields, values, geometry);
+      }
+    }
+
+    if (Sweref99Tm.isSweref99Tm(crs)) {
+      collection.reprojectSweref99TmToWgs84();
+    }
+    return collection;
+  }
+
+  private static File sibling(String base, String suffix) {
+    File file = new File(base + suffix);
+    if (!file.exists()) {
+      File upperCase = new File(base + suffix.toUpperCase());
+      if (upperCase.exists()) {
+        return upperCase;
+      }
+    }
+    return file;
+  }
+
+  /**
+   * @return EPSG:3006 or CRS84 depending on the WKT, null if unknown.
+   */
+  static String crs(String wkt) {
+    String normalized = wkt.replace('_', ' ').toUpperCase();
+    if (normalized.contains("SWEREF99 TM") || normalized.contains("SWEREF 99 TM") || normalized.contains("\"3006\"")) {
+      return Sweref99Tm.EPSG;
+    } else if (normalized.startsWith("GEOGCS") && (normalized.contains("WGS 1984") || normalized.contains("WGS 84"))) {
+      return NvrFeatureCollection.CRS84;
+    }
+    return null;
+  }
+
+  /**
+   * @param codePage Content of a .cpg file, e.g. UTF-8, 1252 or ANSI 1252.
+   */
+  static Charset charset(String codePage) {
+    String name = codePage.trim().toUpperCase().replaceFirst("^ANSI ", "");
+    if (name.matches("[0-9]+")) {
+      name = (name.startsWith("8859") ? "ISO-8859-" + name.substring(4) : "windows-" + name);
+    } else if ("UTF8".equals(name)) {
+      name = "UTF-8";
+    }
+    try {
+      return Charset.forName(name);
+    } catch (Exception e) {
+      return StandardCharsets.ISO_8859_1;
+    }
+  }
+
+  /**
+   * @return Geometry of a shape record, or null for the null shape.
+   */
+  static PackedGeometry geometry(ByteBuffer record) throws IOException {
+    int shapeType = record.getInt();
+    switch (shapeType) {
+      case 0:
+        return null;
+      case 1:
+      case 11:
+      case 21:
+        return PackedGeometry.of(PackedGeometry.Type.Point, 2, new double[][]{{record.getDouble(), record.getDouble()}}, null);
+      case 8:
+      case 18:
+      case 28: {
+        skipBoundingBox(record);
+        int points = record.getInt();
+        return PackedGeometry.of(PackedGeometry.Type.MultiPoint, 2, new double[][]{points(record, points)}, null);
+      }
+      case 3:
+      case 13:
+      case 23: {
+        double[][] parts = parts(record);
+        if (parts.length == 0) {
+          return null;
+        }
+        return PackedGeometry.of(parts.length == 1 ? PackedGeometry.Type.LineString : PackedGeometry.Type.MultiLineString, 2, parts, null);
+      }
+      case 5:
+      case 15:
+      case 25:
+        return polygons(parts(record));
+      default:
+        throw new IOException("Unsupported shape type " + shapeType);
+    }
+  }
+
+  private static void skipBoundingBox(ByteBuffer record) {
+    record.position(record.position() + 32);
+  }
+
+  private static double[] points(ByteBuffer record, int points) {
+    double[] packed = new double[points * 2];
+    record.asDoubleBuffer().get(packed);
+    record.position(record.position() + packed.length * 8);
+    return packed;
+  }
+
+  private static double[][] parts(ByteBuffer record) {
+    skipBoundingBox(record);
+    int parts = record.getInt();
+    int points = record.getInt();
+    int[] starts = new int[parts + 1];
+    for (int i = 0; i < parts; i++) {
+      starts[i] = record.getInt();
+    }
+    starts[parts] = points;
+    double[] all = points(record, points);
+    double[][] packed = new double[parts][];
+    for (int i = 0; i < parts; i++) {
+      packed[i] = Arrays.copyOfRange(all, starts[i] * 2, starts[i + 1] * 2);
+    }
+    return packed;
+  }
+
+  /**
+   * Shells are clockwise and holes counterclockwise. Each hole belongs to the shell containing it,
+   * or the preceding shell if none does.
+   *
+   * @return Polygon if a single shell, otherwise MultiPolygon. Null if no rings.
+   */
+  static PackedGeometry polygons(double[][] rings) {
+    if (rings.length == 0) {
+      return null;
+    }
+    List<double[]> shells = new ArrayList<>();
+    List<List<double[]>> holesByShell = new ArrayList<>();
+    List<double[]> orphans = new ArrayList<>();
+    for (double[] ring : rings) {
+      if (signedArea(ring) <= 0) {
+        shells.add(ring);
+        holesByShell.add(new ArrayList<>());
+      } else if (shells.isEmpty()) {
+        orphans.add(ring);
+      } else {
+        int shell = shells.size() - 1;
+        for (int i = 0; i < shells.size(); i++) {
+          if (contains(shells.get(i), ring[0], ring[1])) {
+            shell = i;
+            break;
+          }
+        }
+        holesByShell.get(shell).add(ring);
+      }
+    }
+    // counterclockwise rings without a preceding shell are shells of their own
+    for (double[] orphan : orphans) {
+      shells.add(orphan);
+      holesByShell.add(new ArrayList<>());
+    }
+
+    List<double[]> parts = new ArrayList<>(rings.length);
+    int[] ringsPerPolygon = new int[shells.size()];
+    for (int i = 0; i < shells.size(); i++) {
+      parts.add(shells.get(i));
+      parts.addAll(holesByShell.get(i));
+      ringsPerPolygon[i] = 1 + holesByShell.get(i).size();
+    }
+    if (shells.size() == 1) {
+      return PackedGeometry.of(PackedGeometry.Type.Polygon, 2, parts.toArray(new double[0][]), null);
+    }
+    return PackedGeometry.of(PackedGeometry.Type.MultiPolygon, 2, parts.toArray(new double[0][]), ringsPerPolygon);
+  }
+
+  /**
+   * @return Negative if clockwise.
+   */
+  static double signedArea(double[] ring) {
+    double sum = 0;
+    for (int i = 0; i + 3 < ring.length; i += 2) {
+      sum += ring[i] * ring[i + 3] - ring[i + 2] * ring[i + 1];
+    }
+    return sum / 2d;
+  }
+
+  private static boolean contains(double[] ring, double x, double y) {
+    boolean inside = false;
+    for (int i = 0, j = ring.length - 2; i < ring.length; j = i, i += 2) {
+      if ((ring[i + 1] > y) != (ring[j + 1] > y)
+          && x < (ring[j] - ring[i]) * (y - ring[i + 1]) / (ring[j + 1] - ring[i + 1]) + ring[i]) {
+        inside = !inside;
+      }
+    }
+    return inside;
+  }
+
+  /**
+   * dBase III records, one at a time.
+   */
+  private static class DbfReader {
+
+    private DataInputStream in;
+    private Charset charset;
+    private int records;
+    private int recordLength;
+    private int read;
+
+    private List<String> fields = new ArrayList<>();
+    private List<Character> types = new ArrayList<>();
+    private List<Integer> offsets = new ArrayList<>();
+    private List<Integer> lengths = new ArrayList<>();
+    private List<Integer> decimals = new ArrayList<>();
+
+    private byte[] record;
+    private boolean deleted;
+
+    private DbfReader(DataInputStream in, Charset charset) throws IOException {
+      this.in = in;
+      this.charset = charset;
+      byte[] header = new byte[32];
+      in.readFully(header);
+      ByteBuffer buffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+      records = buffer.getInt(4);
+      int headerLength = buffer.getShort(8) & 0xffff;
+      recordLength = buffer.getShort(10) & 0xffff;
+      int position = 32;
+      int offset = 1;
+      byte[] descriptor = new byte[32];
+      while (true) {
+        int first = in.readUnsignedByte();
+        position++;
+        if (first == 0x0d) {
+          break;
+        }
+        descriptor[0] = (byte) first;
+        in.readFully(descriptor, 1, 31);
+        position += 31;
+        int nameLength = 0;
+        while (nameLength < 11 && descriptor[nameLength] != 0) {
+          nameLength++;
+        }
+        fields.add(new String(descriptor, 0, nameLength, StandardCharsets.ISO_8859_1).trim());
+        types.add((char) descriptor[11]);
+        int length = descriptor[16] & 0xff;
+        offsets.add(offset);
+        lengths.add(length);
+        decimals.add(descriptor[17] & 0xff);
+        offset += length;
+      }
+      in.skipBytes(headerLength - position);
+      record = new byte[recordLength];
+    }
+
+    /**
+     * @return False if there are no more records.
+     */
+    private boolean next(List<Object> values) throws IOException {
+      if (read >= records) {
+        return false;
+      }
+      in.readFully(record);
+      read++;
+      deleted = record[0] == '*';
+      for (int i = 0; i < fields.size(); i++) {
+        values.add(value(i));
+      }
+      return true;
+    }
+
+    private Object value(int field) {
+      int offset = offsets.get(field);
+      int length = lengths.get(field);
+      char type = types.get(field);
+      if (type == 'C') {
+        int end = offset + length;
+        while (end > offset && (record[end - 1] == ' ' || record[end - 1] == 0)) {
+          end--;
+        }
+        return end == offset ? null : new String(record, offset, end - offset, charset);
+      }
+      String text = new String(record, offset, length, StandardCharsets.ISO_8859_1).trim();
+      if (text.isEmpty() || text.startsWith("*")) {
+        return null;
+      }
+      switch (type) {
+        case 'N':
+        case 'F':
+          try {
+            if (decimals.get(field) == 0 && !text.contains(".")) {
+              long value = Long.parseLong(text);
+              return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? (Object) (int) value : (Object) value;
+            }
+            return Double.parseDouble(text);
+          } catch (NumberFormatException e) {
+            return null;
+          }
+        case 'D':
+          if (text.length() != 8 || "00000000".equals(text)) {
+            return null;
+          }
+          return text.substring(0, 4) + "/" + text.substring(4, 6) + "/" + text.substring(6, 8);
+        case 'L':
+          switch (text.charAt(0)) {
+            case 'T':
+            case 't':
+            case 'Y':
+            case 'y':
+              return Boolean.TRUE;
+            case 'F':
+            case 'f':
+            case 'N':
+            case 'n':
+              return Boolean.FALSE;
+            default:
+              return null;
+          }
+        default:
+          return text;
+      }
+    }
+  }
+
+}
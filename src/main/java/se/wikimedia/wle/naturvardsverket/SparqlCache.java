@@ -0,0 +1,148 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import lombok.Getter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded H2 database with SPARQL results, shared by all runs of a bot.
+ * H2 locks the file while open, so bots executing at the same time must use separate files.
+ * <p>
+ * Entries are keyed on query class and SHA-1 of the query with whitespace normalized, and expire
+ * after the time to live of the query class, see {@link #getTimeToLiveMilliseconds()}.
+ * Entries that might be changed by our own edits should be {@link #invalidate(String, String) invalidated}.
+ */
+public class SparqlCache implements AutoCloseable {
+
+  public static final String DEFAULT_QUERY_CLASS = "default";
+
+  private File file;
+  private Connection connection;
+
+  /** Query class, milliseconds an entry is valid. Classes without an entry use {@link #DEFAULT_QUERY_CLASS}. */
+  @Getter
+  private Map<String, Long> timeToLiveMilliseconds = new HashMap<>();
+
+  @Getter
+  private int hits;
+  @Getter
+  private int misses;
+
+  /**
+   * @param file Database file without the .mv.db suffix added by H2.
+   */
+  public SparqlCache(File file) {
+    this.file = file;
+    timeToLiveMilliseconds.put(DEFAULT_QUERY_CLASS, TimeUnit.DAYS.toMillis(1));
+    // only found items are cached, and we invalidate when we create them
+    timeToLiveMilliseconds.put(WikiData.NVRID_QUERY_CLASS, TimeUnit.DAYS.toMillis(7));
+    timeToLiveMilliseconds.put(WikiData.LABEL_QUERY_CLASS, TimeUnit.DAYS.toMillis(30));
+  }
+
+  public void open() throws SQLException {
+    connection = DriverManager.getConnection("jdbc:h2:file:" + file.getAbsolutePath());
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE IF NOT EXISTS sparql_result (" +
+          " query_hash VARCHAR PRIMARY KEY," +
+          " query_class VARCHAR NOT NULL," +
+          " query CLOB NOT NULL," +
+          " result CLOB NOT NULL," +
+          " epoch_cached BIGINT NOT NULL" +
+          ")");
+    }
+  }
+
+  @Override
+  public void close() throws SQLException {
+    if (connection != null) {
+      connection.close();
+      connection = null;
+    }
+  }
+
+  /**
+   * @return The cached result, or null if not cached or expired.
+   */
+  public String get(String queryClass, String sparql) throws IOException {
+    try (PreparedStatement statement = connection.prepareStatement(
+        "SELECT result, epoch_cached FROM sparql_result WHERE query_hash = ?")) {
+      statement.setString(1, hash(queryClass, sparql));
+      try (ResultSet resultSet = statement.executeQuery()) {
+        if (!resultSet.next() || System.currentTimeMillis() - resultSet.getLong(2) >= timeToLive(queryClass)) {
+          misses++;
+          return null;
+        }
+        hits++;
+        return resultSet.getString(1);
+      }
+    } catch (SQLException e) {
+      throw new IOException("Unable to read cached SPARQL result", e);
+    }
+  }
+
+  public void put(String queryClass, String sparql, String result) throws IOException {
+    try (PreparedStatement statement = connection.prepareStatement(
+        "MERGE INTO sparql_result (query_hash, query_class, query, result, epoch_cached) KEY (query_hash) VALUES (?, ?, ?, ?, ?)")) {
+      statement.setString(1, hash(queryClass, sparql));
+      statement.setString(2, queryClass);
+      statement.setString(3, normalize(sparql));
+      statement.setString(4, result);
+      statement.setLong(5, System.currentTimeMillis());
+      statement.executeUpdate();
+    } catch (SQLException e) {
+      throw new IOException("Unable to write cached SPARQL result", e);
+    }
+  }
+
+  public void invalidate(String queryClass, String sparql) throws IOException {
+    try (PreparedStatement statement = connection.prepareStatement("DELETE FROM sparql_result WHERE query_hash = ?")) {
+      statement.setString(1, hash(queryClass, sparql));
+      statement.executeUpdate();
+    } catch (SQLException e) {
+      throw new IOException("Unable to invalidate cached SPARQL result", e);
+    }
+  }
+
+  public void invalidateAll(String queryClass) throws IOException {
+    try (PreparedStatement statement = connection.prepareStatement("DELETE FROM sparql_result WHERE query_class = ?")) {
+      statement.setString(1, queryClass);
+      statement.executeUpdate();
+    } catch (SQLException e) {
+      throw new IOException("Unable to invalidate cached SPARQL results", e);
+    }
+  }
+
+  private long timeToLive(String queryClass) {
+    Long timeToLive = timeToLiveMilliseconds.get(queryClass);
+    return timeToLive != null ? timeToLive : timeToLiveMilliseconds.get(DEFAULT_QUERY_CLASS);
+  }
+
+  /**
+   * @return The query with consecutive whitespace replaced by a single space, and trimmed.
+   */
+  static String normalize(String sparql) {
+    return sparql.replaceAll("\\s+", " ").trim();
+  }
+
+  static String hash(String queryClass, String sparql) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest((queryClass + "\n" + normalize(sparql)).getBytes(StandardCharsets.UTF_8));
+      StringBuilder sb = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        sb.append(String.format("%02x", b));
+      }
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+}
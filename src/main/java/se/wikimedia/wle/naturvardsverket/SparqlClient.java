@@ -0,0 +1,383 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.message.BasicNameValuePair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Executes SPARQL SELECT queries against WDQS and decodes the result one binding at a time,
+ * without building a tree of the complete response. Suitable for bulk queries such as all items with P3613.
+ * <p>
+ * Queries longer than {@link #maximumGetQueryLength} are sent using POST.
+ * A query is cancelled by returning false from the {@link BindingHandler}, or from another thread using {@link #cancelAll()}.
+ */
+public class SparqlClient {
+
+  private Logger log = LoggerFactory.getLogger(getClass());
+
+  public enum Format {
+    JSON("application/sparql-results+json"),
+    TSV("text/tab-separated-values");
+
+    private String contentType;
+
+    Format(String contentType) {
+      this.contentType = contentType;
+    }
+  }
+
+  public interface BindingHandler {
+    /**
+     * @param binding Reused between calls, do not keep a reference to it.
+     * @return false to cancel the query
+     */
+    boolean binding(Binding binding) throws Exception;
+  }
+
+  private JsonFactory jsonFactory = new JsonFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+  private HttpTransport transport;
+
+  @Getter
+  @Setter
+  private String endpoint = "https://query.wikidata.org/sparql";
+
+  @Getter
+  @Setter
+  private int maximumGetQueryLength = 2000;
+
+  private Set<HttpRequestBase> executing = ConcurrentHashMap.newKeySet();
+
+  public SparqlClient(HttpTransport transport) {
+    this.transport = transport;
+  }
+
+  /**
+   * Aborts all currently executing queries. They will throw an IOException.
+   */
+  public void cancelAll() {
+    for (HttpRequestBase request : executing) {
+      request.abort();
+    }
+  }
+
+  public int select(String sparql, BindingHandler handler) throws IOException {
+    return select(sparql, Format.JSON, handler);
+  }
+
+  /**
+   * @return Number of bindings passed to the handler
+   */
+  public int select(String sparql, Format format, BindingHandler handler) throws IOException {
+    log.trace("Executing SPARQL query {}", sparql);
+
+    HttpRequestBase request;
+    if (sparql.length() > maximumGetQueryLength) {
+      HttpPost post = new HttpPost(endpoint);
+      post.setEntity(new UrlEncodedFormEntity(Collections.singletonList(new BasicNameValuePair("query", sparql)), StandardCharsets.UTF_8));
+      request = post;
+    } else {
+      request = new HttpGet(endpoint + "?query=" + URLEncoder.encode(sparql, "UTF-8"));
+    }
+    request.setHeader("Accept", format.contentType);
+
+    executing.add(request);
+    try (CloseableHttpResponse response = transport.getClient().execute(request)) {
+      if (response.getStatusLine().getStatusCode() != 200) {
+        throw HttpStatusException.of("WDQS", response);
+      }
+      InputStream content = response.getEntity().getContent();
+      int bindings;
+      if (format == Format.JSON) {
+        bindings = decodeJson(content, handler);
+      } else {
+        bindings = decodeTsv(content, handler);
+      }
+      if (bindings < 0) {
+        // Cancelled by handler. Closing the stream would read the rest of the response
+        // in order to reuse the connection, so abort and drop the connection instead.
+        request.abort();
+        return -bindings - 1;
+      }
+      content.close();
+      return bindings;
+    } catch (IOException e) {
+      request.abort();
+      throw e;
+    } catch (Exception e) {
+      request.abort();
+      throw new IOException("Binding handler failed", e);
+    } finally {
+      executing.remove(request);
+    }
+  }
+
+  /**
+   * @return Number of bindings, or -(bindings + 1) if cancelled by the handler.
+   */
+  int decodeJson(InputStream content, BindingHandler handler) throws Exception {
+    int count = 0;
+    Binding binding = null;
+    try (JsonParser parser = jsonFactory.createParser(content)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Expected SPARQL JSON results object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        if ("head".equals(field)) {
+          List<String> variables = new ArrayList<>();
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String headField = parser.getCurrentName();
+            parser.nextToken();
+            if ("vars".equals(headField)) {
+              while (parser.nextToken() != JsonToken.END_ARRAY) {
+                variables.add(parser.getText());
+              }
+            } else {
+              parser.skipChildren();
+            }
+          }
+          binding = new Binding(variables);
+        } else if ("results".equals(field)) {
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String resultsField = parser.getCurrentName();
+            parser.nextToken();
+            if (!"bindings".equals(resultsField)) {
+              parser.skipChildren();
+              continue;
+            }
+            if (binding == null) {
+              throw new IOException("Expected head before results");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+              binding.clear();
+              while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                int index = binding.index(parser.getCurrentName());
+                parser.nextToken();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                  String valueField = parser.getCurrentName();
+                  parser.nextToken();
+                  if (index < 0) {
+                    continue;
+                  }
+                  switch (valueField) {
+                    case "type":
+                      binding.types[index] = parser.getText();
+                      break;
+                    case "value":
+                      binding.values[index] = parser.getText();
+                      break;
+                    case "xml:lang":
+                      binding.languages[index] = parser.getText();
+                      break;
+                    case "datatype":
+                      binding.datatypes[index] = parser.getText();
+                      break;
+                    default:
+                      parser.skipChildren();
+                  }
+                }
+              }
+              count++;
+              if (!handler.binding(binding)) {
+                return -count - 1;
+              }
+            }
+          }
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return Number of bindings, or -(bindings + 1) if cancelled by the handler.
+   */
+  int decodeTsv(InputStream content, BindingHandler handler) throws Exception {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(content, StandardCharsets.UTF_8));
+    String header = reader.readLine();
+    if (header == null) {
+      return 0;
+    }
+    List<String> variables = new ArrayList<>();
+    for (String variable : header.split("\t", -1)) {
+      variables.add(variable.startsWith("?") ? variable.substring(1) : variable);
+    }
+    Binding binding = new Binding(variables);
+    int count = 0;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      binding.clear();
+      int start = 0;
+      for (int index = 0; index < variables.size() && start <= line.length(); index++) {
+        int end = line.indexOf('\t', start);
+        if (end < 0) {
+          end = line.length();
+        }
+        if (end > start) {
+          binding.setTerm(index, line.substring(start, end));
+        }
+        start = end + 1;
+      }
+      count++;
+      if (!handler.binding(binding)) {
+        return -count - 1;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * A single row of a SPARQL result. Unbound variables return null.
+   */
+  public static class Binding {
+
+    private Map<String, Integer> indices;
+    private String[] types;
+    private String[] values;
+    private String[] languages;
+    private String[] datatypes;
+
+    public Binding(List<String> variables) {
+      indices = new HashMap<>(variables.size() * 2);
+      for (int i = 0; i < variables.size(); i++) {
+        indices.put(variables.get(i), i);
+      }
+      types = new String[variables.size()];
+      values = new String[variables.size()];
+      languages = new String[variables.size()];
+      datatypes = new String[variables.size()];
+    }
+
+    private void clear() {
+      Arrays.fill(types, null);
+      Arrays.fill(values, null);
+      Arrays.fill(languages, null);
+      Arrays.fill(datatypes, null);
+    }
+
+    private int index(String variable) {
+      Integer index = indices.get(variable);
+      return index == null ? -1 : index;
+    }
+
+    /**
+     * Decodes an RDF term in the SPARQL TSV format, e.g. &lt;http://...&gt;, "text"@sv, "1"^^&lt;http://...&gt; or 1.
+     */
+    private void setTerm(int index, String term) {
+      if (term.startsWith("<") && term.endsWith(">")) {
+        types[index] = "uri";
+        values[index] = term.substring(1, term.length() - 1);
+      } else if (term.startsWith("_:")) {
+        types[index] = "bnode";
+        values[index] = term.substring(2);
+      } else if (term.startsWith("\"")) {
+        types[index] = "literal";
+        StringBuilder value = new StringBuilder(term.length());
+        int i = 1;
+        for (; i < term.length(); i++) {
+          char c = term.charAt(i);
+          if (c == '\\' && i + 1 < term.length()) {
+            char escaped = term.charAt(++i);
+            switch (escaped) {
+              case 't':
+                value.append('\t');
+                break;
+              case 'n':
+                value.append('\n');
+                break;
+              case 'r':
+                value.append('\r');
+                break;
+              default:
+                value.append(escaped);
+            }
+          } else if (c == '"') {
+            break;
+          } else {
+            value.append(c);
+          }
+        }
+        values[index] = value.toString();
+        String suffix = term.substring(Math.min(term.length(), i + 1));
+        if (suffix.startsWith("@")) {
+          languages[index] = suffix.substring(1);
+        } else if (suffix.startsWith("^^<") && suffix.endsWith(">")) {
+          datatypes[index] = suffix.substring(3, suffix.length() - 1);
+        }
+      } else {
+        types[index] = "literal";
+        values[index] = term;
+      }
+    }
+
+    public boolean isBound(String variable) {
+      int index = index(variable);
+      return index >= 0 && values[index] != null;
+    }
+
+    public String getValue(String variable) {
+      int index = index(variable);
+      return index < 0 ? null : values[index];
+    }
+
+    /**
+     * @return uri, literal or bnode
+     */
+    public String getType(String variable) {
+      int index = index(variable);
+      return index < 0 ? null : types[index];
+    }
+
+    public String getLanguage(String variable) {
+      int index = index(variable);
+      return index < 0 ? null : languages[index];
+    }
+
+    public String getDatatype(String variable) {
+      int index = index(variable);
+      return index < 0 ? null : datatypes[index];
+    }
+
+    /**
+     * @return E.g. Q30180845 from http://www.wikidata.org/entity/Q30180845
+     */
+    public String getEntityId(String variable) {
+      String value = getValue(variable);
+      return value == null ? null : value.substring(value.lastIndexOf('/') + 1);
+    }
+
+    public Long getLong(String variable) {
+      String value = getValue(variable);
+      return value == null ? null : Long.valueOf(value);
+    }
+
+    public Double getDouble(String variable) {
+      String value = getValue(variable);
+      return value == null ? null : Double.valueOf(value);
+    }
+  }
+
+}
@@ -0,0 +1,137 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import lombok.Getter;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.implementation.StringValueImpl;
+import org.wikidata.wdtk.datamodel.interfaces.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Snaks, qualifiers and references that are the same for all statements created during a run,
+ * resolved from {@link WikiData#getNamedEntities()} once rather than for each statement.
+ * <p>
+ * Statements are created directly using {@link Datamodel} rather than using
+ * StatementBuilder and ReferenceBuilder, which copies and groups snaks for each build.
+ */
+@Getter
+public class StatementTemplates {
+
+  private LocalDate publishedDate;
+  private LocalDate retrievedDate;
+
+  private PropertyIdValue instanceOf;
+  private PropertyIdValue inceptionDate;
+  private PropertyIdValue iucnCategory;
+  private PropertyIdValue country;
+  private PropertyIdValue operator;
+  private PropertyIdValue area;
+  private PropertyIdValue coordinateLocation;
+  private PropertyIdValue geoshape;
+  private PropertyIdValue nvrid;
+  private PropertyIdValue appliesToPart;
+  private PropertyIdValue pointInTime;
+  private PropertyIdValue referenceUrl;
+  private PropertyIdValue retrieved;
+  private PropertyIdValue publicationDate;
+  private PropertyIdValue statedIn;
+
+  private EntityIdValue sweden;
+  private String hectareIri;
+
+  private TimeValue publishedTimeValue;
+  private TimeValue retrievedTimeValue;
+
+  private SnakGroup retrievedReferenceSnaks;
+  private SnakGroup publishedReferenceSnaks;
+  private SnakGroup statedInReferenceSnaks;
+
+  private List<SnakGroup> landQualifiers;
+  private List<SnakGroup> forestQualifiers;
+  private List<SnakGroup> bodyOfWaterQualifiers;
+  private List<SnakGroup> pointInTimePublishedQualifiers;
+
+  private Snak countrySwedenSnak;
+
+  public StatementTemplates(WikiData wikiData, LocalDate publishedDate, LocalDate retrievedDate) {
+    this.publishedDate = publishedDate;
+    this.retrievedDate = retrievedDate;
+
+    instanceOf = wikiData.property("instance of");
+    inceptionDate = wikiData.property("inception date");
+    iucnCategory = wikiData.property("IUCN protected areas category");
+    country = wikiData.property("country");
+    operator = wikiData.property("operator");
+    area = wikiData.property("area");
+    coordinateLocation = wikiData.property("coordinate location");
+    geoshape = wikiData.property("geoshape");
+    nvrid = wikiData.property("nvrid");
+    appliesToPart = wikiData.property("applies to part");
+    pointInTime = wikiData.property("point in time");
+    referenceUrl = wikiData.property("reference URL");
+    retrieved = wikiData.property("retrieved");
+    publicationDate = wikiData.property("publication date");
+    statedIn = wikiData.property("stated in");
+
+    sweden = wikiData.entity("Sweden");
+    hectareIri = wikiData.entity("hectare").getIri();
+
+    publishedTimeValue = wikiData.toTimeValue(publishedDate);
+    retrievedTimeValue = wikiData.toTimeValue(retrievedDate);
+
+    retrievedReferenceSnaks = snakGroup(retrieved, retrievedTimeValue);
+    publishedReferenceSnaks = snakGroup(publicationDate, publishedTimeValue);
+    statedInReferenceSnaks = snakGroup(statedIn, wikiData.entity("Protected Areas (Nature Reserves)"));
+
+    landQualifiers = Collections.singletonList(snakGroup(appliesToPart, wikiData.entity("land")));
+    forestQualifiers = Collections.singletonList(snakGroup(appliesToPart, wikiData.entity("forest")));
+    bodyOfWaterQualifiers = Collections.singletonList(snakGroup(appliesToPart, wikiData.entity("body of water")));
+    pointInTimePublishedQualifiers = Collections.singletonList(snakGroup(pointInTime, publishedTimeValue));
+
+    countrySwedenSnak = Datamodel.makeValueSnak(country, sweden);
+  }
+
+  private static SnakGroup snakGroup(PropertyIdValue property, Value value) {
+    return Datamodel.makeSnakGroup(Collections.singletonList(Datamodel.makeValueSnak(property, value)));
+  }
+
+  public boolean isFor(LocalDate publishedDate, LocalDate retrievedDate) {
+    return this.publishedDate.equals(publishedDate) && this.retrievedDate.equals(retrievedDate);
+  }
+
+  /**
+   * @return The reference to Naturvårdsregistret used by all statements of the object, created on first use.
+   */
+  public Reference reference(NaturvardsregistretObject object) {
+    if (object.getReference() == null) {
+      object.setReference(Datamodel.makeReference(Arrays.asList(
+          snakGroup(referenceUrl, new StringValueImpl(
+              "http://nvpub.vic-metria.nu/naturvardsregistret/rest/omrade/" + object.getNvrid() + "/G%C3%A4llande")),
+          retrievedReferenceSnaks,
+          publishedReferenceSnaks,
+          statedInReferenceSnaks
+      )));
+    }
+    return object.getReference();
+  }
+
+  public Statement statement(NaturvardsregistretObject object, PropertyIdValue property, Value value) {
+    return statement(object, Datamodel.makeValueSnak(property, value), Collections.emptyList());
+  }
+
+  public Statement statement(NaturvardsregistretObject object, PropertyIdValue property, Value value, List<SnakGroup> qualifiers) {
+    return statement(object, Datamodel.makeValueSnak(property, value), qualifiers);
+  }
+
+  public Statement statement(NaturvardsregistretObject object, Snak mainSnak, List<SnakGroup> qualifiers) {
+    return Datamodel.makeStatement(ItemIdValue.NULL, mainSnak, qualifiers,
+        Collections.singletonList(reference(object)), StatementRank.NORMAL, "");
+  }
+
+  public QuantityValue hectares(double hectares) {
+    return Datamodel.makeQuantityValue(BigDecimal.valueOf(hectares), hectareIri);
+  }
+
+}
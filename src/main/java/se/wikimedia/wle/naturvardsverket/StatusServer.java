@@ -0,0 +1,73 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.function.Supplier;
+
+/**
+ * Embedded HTTP server using the JDK HttpServer, serving a JSON {@link RunStatus.Snapshot} at /status.
+ * Binds to localhost only.
+ */
+public class StatusServer implements AutoCloseable {
+
+  private Logger log = LoggerFactory.getLogger(getClass());
+
+  private int port;
+  private ObjectMapper objectMapper;
+  private Supplier<RunStatus.Snapshot> snapshots;
+
+  private HttpServer server;
+
+  /**
+   * @param port Port on localhost, 0 for any free port.
+   */
+  public StatusServer(int port, ObjectMapper objectMapper, Supplier<RunStatus.Snapshot> snapshots) {
+    this.port = port;
+    this.objectMapper = objectMapper;
+    this.snapshots = snapshots;
+  }
+
+  public void open() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+    server.createContext("/status", this::status);
+    // default executor, a single background thread
+    server.start();
+    log.info("Serving run status at http://localhost:{}/status", getPort());
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  private void status(HttpExchange exchange) throws IOException {
+    try {
+      byte[] json = objectMapper.writeValueAsBytes(snapshots.get());
+      exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+      exchange.sendResponseHeaders(200, json.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(json);
+      }
+    } catch (Exception e) {
+      log.warn("Unable to serve run status", e);
+      exchange.sendResponseHeaders(500, -1);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  @Override
+  public void close() {
+    if (server != null) {
+      server.stop(0);
+      server = null;
+    }
+  }
+
+}
@@ -0,0 +1,113 @@
+package se.wikimedia.wle.naturvardsverket;
+
+/**
+ * SWEREF 99 TM (EPSG:3006), the national grid used in data published by Naturvårdsverket,
+ * to and from WGS84 longitude and latitude.
+ * <p>
+ * Gauss conformal projection formulas of Lantmäteriet on the GRS 80 ellipsoid. SWEREF 99 coincides with WGS84
+ * to well within a meter, so no datum shift is applied. Coordinates are transformed in place in packed x, y[, z] arrays,
+ * see {@link PackedGeometry#transform(PackedGeometry.Transform)}.
+ */
+public class Sweref99Tm {
+
+  public static final String EPSG = "EPSG:3006";
+
+  private static final double SEMI_MAJOR_AXIS = 6378137d;
+  private static final double FLATTENING = 1d / 298.257222101d;
+  private static final double CENTRAL_MERIDIAN = Math.toRadians(15d);
+  private static final double SCALE = 0.9996d;
+  private static final double FALSE_NORTHING = 0d;
+  private static final double FALSE_EASTING = 500000d;
+
+  private static final double E2 = FLATTENING * (2d - FLATTENING);
+  private static final double N = FLATTENING / (2d - FLATTENING);
+  private static final double A_ROOF = SEMI_MAJOR_AXIS / (1d + N) * (1d + N * N / 4d + N * N * N * N / 64d);
+  private static final double K0_A_ROOF = SCALE * A_ROOF;
+
+  // grid to geodetic
+  private static final double DELTA1 = N / 2d - 2d * N * N / 3d + 37d * N * N * N / 96d - N * N * N * N / 360d;
+  private static final double DELTA2 = N * N / 48d + N * N * N / 15d - 437d * N * N * N * N / 1440d;
+  private static final double DELTA3 = 17d * N * N * N / 480d - 37d * N * N * N * N / 840d;
+  private static final double DELTA4 = 4397d * N * N * N * N / 161280d;
+  private static final double A_STAR = E2 + E2 * E2 + E2 * E2 * E2 + E2 * E2 * E2 * E2;
+  private static final double B_STAR = -(7d * E2 * E2 + 17d * E2 * E2 * E2 + 30d * E2 * E2 * E2 * E2) / 6d;
+  private static final double C_STAR = (224d * E2 * E2 * E2 + 889d * E2 * E2 * E2 * E2) / 120d;
+  private static final double D_STAR = -(4279d * E2 * E2 * E2 * E2) / 1260d;
+
+  // geodetic to grid
+  private static final double BETA1 = N / 2d - 2d * N * N / 3d + 5d * N * N * N / 16d + 41d * N * N * N * N / 180d;
+  private static final double BETA2 = 13d * N * N / 48d - 3d * N * N * N / 5d + 557d * N * N * N * N / 1440d;
+  private static final double BETA3 = 61d * N * N * N / 240d - 103d * N * N * N * N / 140d;
+  private static final double BETA4 = 49561d * N * N * N * N / 161280d;
+  private static final double A = E2;
+  private static final double B = (5d * E2 * E2 - E2 * E2 * E2) / 6d;
+  private static final double C = (104d * E2 * E2 * E2 - 45d * E2 * E2 * E2 * E2) / 120d;
+  private static final double D = (1237d * E2 * E2 * E2 * E2) / 1260d;
+
+  /**
+   * @return True if the GeoJSON crs name is SWEREF 99 TM, e.g. urn:ogc:def:crs:EPSG::3006 or EPSG:3006
+   */
+  public static boolean isSweref99Tm(String crs) {
+    return crs != null && crs.matches("(?i)(urn:ogc:def:crs:)?EPSG:[0-9.]*:?3006");
+  }
+
+  /**
+   * Easting, northing to longitude, latitude in degrees. Any z is kept.
+   */
+  public static void toWgs84(double[] coordinates, int dimension) {
+    for (int i = 0; i < coordinates.length; i += dimension) {
+      double xi = (coordinates[i + 1] - FALSE_NORTHING) / K0_A_ROOF;
+      double eta = (coordinates[i] - FALSE_EASTING) / K0_A_ROOF;
+      double xiPrim = xi
+          - DELTA1 * Math.sin(2d * xi) * Math.cosh(2d * eta)
+          - DELTA2 * Math.sin(4d * xi) * Math.cosh(4d * eta)
+          - DELTA3 * Math.sin(6d * xi) * Math.cosh(6d * eta)
+          - DELTA4 * Math.sin(8d * xi) * Math.cosh(8d * eta);
+      double etaPrim = eta
+          - DELTA1 * Math.cos(2d * xi) * Math.sinh(2d * eta)
+          - DELTA2 * Math.cos(4d * xi) * Math.sinh(4d * eta)
+          - DELTA3 * Math.cos(6d * xi) * Math.sinh(6d * eta)
+          - DELTA4 * Math.cos(8d * xi) * Math.sinh(8d * eta);
+      double phiStar = Math.asin(Math.sin(xiPrim) / Math.cosh(etaPrim));
+      double deltaLambda = Math.atan(Math.sinh(etaPrim) / Math.cos(xiPrim));
+      double sinPhiStar = Math.sin(phiStar);
+      double sin2PhiStar = sinPhiStar * sinPhiStar;
+      double latitude = phiStar + sinPhiStar * Math.cos(phiStar)
+          * (A_STAR + sin2PhiStar * (B_STAR + sin2PhiStar * (C_STAR + sin2PhiStar * D_STAR)));
+      coordinates[i] = Math.toDegrees(CENTRAL_MERIDIAN + deltaLambda);
+      coordinates[i + 1] = Math.toDegrees(latitude);
+    }
+  }
+
+  /**
+   * Longitude, latitude in degrees to easting, northing. Any z is kept.
+   */
+  public static void fromWgs84(double[] coordinates, int dimension) {
+    for (int i = 0; i < coordinates.length; i += dimension) {
+      double phi = Math.toRadians(coordinates[i + 1]);
+      double deltaLambda = Math.toRadians(coordinates[i]) - CENTRAL_MERIDIAN;
+      double sinPhi = Math.sin(phi);
+      double sin2Phi = sinPhi * sinPhi;
+      double phiStar = phi - sinPhi * Math.cos(phi) * (A + sin2Phi * (B + sin2Phi * (C + sin2Phi * D)));
+      double xiPrim = Math.atan(Math.tan(phiStar) / Math.cos(deltaLambda));
+      double etaPrim = atanh(Math.cos(phiStar) * Math.sin(deltaLambda));
+      double northing = K0_A_ROOF * (xiPrim
+          + BETA1 * Math.sin(2d * xiPrim) * Math.cosh(2d * etaPrim)
+          + BETA2 * Math.sin(4d * xiPrim) * Math.cosh(4d * etaPrim)
+          + BETA3 * Math.sin(6d * xiPrim) * Math.cosh(6d * etaPrim)
+          + BETA4 * Math.sin(8d * xiPrim) * Math.cosh(8d * etaPrim)) + FALSE_NORTHING;
+      double easting = K0_A_ROOF * (etaPrim
+          + BETA1 * Math.cos(2d * xiPrim) * Math.sinh(2d * etaPrim)
+          + BETA2 * Math.cos(4d * xiPrim) * Math.sinh(4d * etaPrim)
+          + BETA3 * Math.cos(6d * xiPrim) * Math.sinh(6d * etaPrim)
+          + BETA4 * Math.cos(8d * xiPrim) * Math.sinh(8d * etaPrim)) + FALSE_EASTING;
+      coordinates[i] = easting;
+      coordinates[i + 1] = northing;
+    }
+  }
+
+  private static double atanh(double value) {
+    return 0.5d * Math.log((1d + value) / (1d - value));
+  }
+
+}
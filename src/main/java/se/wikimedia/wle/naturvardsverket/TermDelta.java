@@ -0,0 +1,37 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Labels or descriptions to add to an item, sent in the same edit as the statement delta.
+ * <p>
+ * Only missing terms are added. Terms that differ from local data are kept,
+ * as they might have been improved by the community.
+ */
+public class TermDelta {
+
+  /**
+   * @param existing Terms of the item by language, as fetched with the supported languages.
+   * @param local    Terms from local data by language, null values are ignored.
+   * @return Local terms in languages without an existing term.
+   */
+  public static List<MonolingualTextValue> missing(Map<String, MonolingualTextValue> existing, Map<String, String> local) {
+    List<MonolingualTextValue> missing = new ArrayList<>();
+    for (Map.Entry<String, String> term : local.entrySet()) {
+      if (term.getValue() == null || term.getValue().trim().isEmpty()) {
+        continue;
+      }
+      MonolingualTextValue existingTerm = existing.get(term.getKey());
+      if (existingTerm == null || existingTerm.getText().trim().isEmpty()) {
+        missing.add(Datamodel.makeMonolingualTextValue(term.getValue(), term.getKey()));
+      }
+    }
+    return missing;
+  }
+
+}
@@ -1,18 +1,23 @@
 package se.wikimedia.wle.naturvardsverket;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.DatamodelFilter;
+import org.wikidata.wdtk.datamodel.helpers.DatamodelMapper;
 import org.wikidata.wdtk.datamodel.helpers.StatementBuilder;
+import org.wikidata.wdtk.datamodel.implementation.DataObjectFactoryImpl;
 import org.wikidata.wdtk.datamodel.implementation.EntityIdValueImpl;
+import org.wikidata.wdtk.datamodel.implementation.ItemDocumentImpl;
 import org.wikidata.wdtk.datamodel.implementation.TimeValueImpl;
 import org.wikidata.wdtk.datamodel.interfaces.*;
 import org.wikidata.wdtk.wikibaseapi.BasicApiConnection;
@@ -34,7 +39,37 @@ public class WikiData {
   private ObjectMapper objectMapper = new ObjectMapper();
   private Logger log = LoggerFactory.getLogger(getClass());
 
-  private CloseableHttpClient client;
+  /**
+   * Shared with the rest of the bot. If not set before {@link #open()}, then a transport owned by this instance is created.
+   */
+  @Getter
+  @Setter
+  private HttpTransport transport;
+  private boolean ownsTransport;
+
+  @Getter
+  private SparqlClient sparqlClient;
+
+  /** Retries and circuit breaker of SPARQL queries */
+  @Getter
+  private ResilientCaller sparqlCaller;
+
+  /** Retries and circuit breaker of Wikidata API reads */
+  @Getter
+  private ResilientCaller apiCaller;
+
+  public static final String NVRID_QUERY_CLASS = "nvrid";
+  public static final String LABEL_QUERY_CLASS = "label";
+
+  /** If set, then SPARQL results are read from and written to the cache. */
+  @Getter
+  @Setter
+  private SparqlCache sparqlCache;
+
+  /** If true, then SPARQL results are not read from the {@link #sparqlCache}, but still written to it. */
+  @Getter
+  @Setter
+  private boolean bypassSparqlCache = false;
 
   private String userAgent;
   private String username;
@@ -70,18 +105,55 @@ public class WikiData {
 
   private Map<String, EntityIdValue> wikiDataProperties = new HashMap<>();
 
+  /**
+   * If set before {@link #open()}, then entities and NVRIDs are looked up in the store
+   * and no connection to Wikidata is made.
+   */
+  @Getter
+  @Setter
+  private LocalEntityStore localEntityStore;
+
+  /**
+   * Properties kept in items returned by {@link #fetchItemDocument(String)}, null keeps all.
+   * The API can not filter statements per property, so this is applied to the fetched document
+   * and only reduces what is held in memory, not what is downloaded.
+   */
+  @Getter
+  @Setter
+  private Set<PropertyIdValue> itemPropertyFilter;
+
+  /** Average time between edits, enforced by wdtk. Waits due to maxlag are added to this. */
+  public static final int MILLISECONDS_PER_EDIT = 2000;
+
   public static final EntityIdValue NULL_ENTITY_VALUE = new NonExistingEntityIdValue();
   public static final EntityDocument NULL_ENTITY = new NonExistingEntityDocument();
 
+  private static final ObjectReader itemReader = new DatamodelMapper(Datamodel.SITE_WIKIDATA).reader()
+      .with(DeserializationFeature.ACCEPT_EMPTY_ARRAY_AS_NULL_OBJECT);
+
   public void open() throws Exception {
 
-    client = HttpClientBuilder.create().setUserAgent(userAgent + "/" + userAgentVersion + "(" + emailAddress + ")").build();
+    if (localEntityStore != null) {
+      log.info("Using local entity store, no connection to Wikidata");
+      return;
+    }
+
+    if (transport == null) {
+      transport = new HttpTransport(userAgent, userAgentVersion, emailAddress);
+      transport.open();
+      ownsTransport = true;
+    }
+
+    sparqlClient = new SparqlClient(transport);
+    sparqlCaller = new ResilientCaller("WDQS", transport);
+    apiCaller = new ResilientCaller("Wikidata API", transport);
 
-    connection = BasicApiConnection.getWikidataApiConnection();
+    connection = PooledApiConnection.getWikidataApiConnection(transport);
     connection.login(username, password);
 
     dataEditor = new WikibaseDataEditor(connection, Datamodel.SITE_WIKIDATA);
     dataEditor.setEditAsBot(true);
+    dataEditor.setAverageTimePerEdit(MILLISECONDS_PER_EDIT);
 //    dataEditor.disableEditing(); // do no actual edits
     // dataEditor.setRemainingEdits(5); // do at most 5 (test) edits
 
@@ -92,9 +164,26 @@ public class WikiData {
 
   }
 
+  /** Languages of labels and descriptions requested by {@link #fetchItemDocument(String)}, none if empty. */
+  private Set<String> fetchedLanguages = Collections.emptySet();
+
+  /**
+   * Sets the languages of labels, descriptions and aliases included when fetching entities. All are excluded by default.
+   */
+  public void setFetchedLanguages(Set<String> languages) {
+    fetchedLanguages = new TreeSet<>(languages);
+    if (dataFetcher != null) {
+      dataFetcher.getFilter().setLanguageFilter(languages);
+    }
+  }
+
   public void close() throws Exception {
-    client.close();
-    connection.logout();
+    if (connection != null) {
+      connection.logout();
+    }
+    if (ownsTransport) {
+      transport.close();
+    }
   }
 
   @Getter
@@ -141,7 +230,7 @@ public class WikiData {
 
   protected EntityDocument getEntityDocument(String id, boolean required) throws MediaWikiApiErrorException, IOException {
     log.debug("Fetching WikiData entity {}", id);
-    EntityDocument entityDocument = dataFetcher.getEntityDocument(id);
+    EntityDocument entityDocument = fetchEntityDocument(id);
     if (entityDocument == null) {
       if (required) {
         throw new NullPointerException(id + " is not an existing entity id");
@@ -171,22 +260,148 @@ public class WikiData {
     return entityDocument;
   }
 
+  /**
+   * @return The entity from the local entity store if set, otherwise from Wikidata. Null if not existing.
+   */
+  public EntityDocument fetchEntityDocument(String id) throws MediaWikiApiErrorException, IOException {
+    if (localEntityStore != null) {
+      return localEntityStore.getEntityDocument(id);
+    }
+    return apiCaller.execute("fetch " + id, () -> dataFetcher.getEntityDocument(id));
+  }
 
-  public ObjectNode query(String sparql) throws IOException {
-    log.trace("Executing SPARQL query {}", sparql);
+  /**
+   * @return The item with statements of {@link #getItemPropertyFilter()} only, null if not existing.
+   */
+  public ItemDocument fetchItemDocument(String id) throws MediaWikiApiErrorException, IOException {
+    ItemDocument item;
+    if (localEntityStore != null) {
+      item = (ItemDocument) localEntityStore.getEntityDocument(id);
+    } else {
+      item = apiCaller.execute("fetch " + id, () -> requestItemDocument(id));
+    }
+    if (item == null || itemPropertyFilter == null) {
+      return item;
+    }
+    return filterItemProperties(item, itemPropertyFilter);
+  }
+
+  /**
+   * Unlike {@link WikibaseDataFetcher}, which always requests aliases and the property datatype,
+   * this requests only the revision, claims, and labels and descriptions in {@link #setFetchedLanguages(Set)}.
+   */
+  private ItemDocument requestItemDocument(String id) throws MediaWikiApiErrorException, IOException {
+    return readItemDocument(connection.sendJsonRequest("POST", itemRequestParameters(id, fetchedLanguages)), id);
+  }
+
+  static ItemDocument readItemDocument(JsonNode response, String id) throws IOException {
+    JsonNode entity = response.path("entities").path(id);
+    if (entity.isMissingNode() || entity.has("missing")) {
+      return null;
+    }
+    return itemReader.treeToValue(entity, ItemDocumentImpl.class);
+  }
+
+  static Map<String, String> itemRequestParameters(String id, Set<String> languages) {
+    Map<String, String> parameters = new LinkedHashMap<>();
+    parameters.put("action", "wbgetentities");
+    parameters.put("ids", id);
+    if (languages.isEmpty()) {
+      parameters.put("props", "info|claims");
+    } else {
+      parameters.put("props", "info|labels|descriptions|claims");
+      parameters.put("languages", String.join("|", languages));
+    }
+    return parameters;
+  }
 
-    String url = "http://query.wikidata.org/sparql?format=json&query=" + URLEncoder.encode(sparql, "UTF8");
+  public static ItemDocument filterItemProperties(ItemDocument item, Set<PropertyIdValue> properties) {
+    DocumentDataFilter filter = new DocumentDataFilter();
+    filter.setPropertyFilter(properties);
+    return new DatamodelFilter(new DataObjectFactoryImpl(), filter).filter(item);
+  }
 
-    CloseableHttpResponse response = client.execute(new HttpGet(url));
-    try {
-      if (response.getStatusLine().getStatusCode() != 200) {
-        log.error("Wikidata response {}", response.getStatusLine());
+  /**
+   * @return Ids of all entities resolved using {@link #getEntityIdValue(String)}
+   */
+  public Set<String> getReferencedEntityIds() {
+    return new TreeSet<>(wikiDataProperties.keySet());
+  }
+
+  /**
+   * @return Id of the single item with the Naturvårdsregistret object id, or null if none.
+   * @throws MultipleResponsesException If more than one item has the NVRID
+   */
+  public String findItemIdByNvrid(String nvrid) throws IOException {
+    if (localEntityStore != null) {
+      List<String> items = localEntityStore.findItemIdsByNvrid(nvrid);
+      if (items.isEmpty()) {
         return null;
+      } else if (items.size() > 1) {
+        throw new MultipleResponsesException("More than a single item with NVRID " + nvrid + "\n" + items);
       }
-      return objectMapper.readValue(response.getEntity().getContent(), ObjectNode.class);
-    } finally {
-      response.close();
+      return items.get(0);
     }
+    return getSingleObject(NVRID_QUERY_CLASS, nvridQuery(nvrid));
+  }
+
+  private static String nvridQuery(String nvrid) {
+    return "SELECT ?item WHERE { ?item wdt:P3613 ?value. FILTER (?value IN (\""
+        + nvrid + "\")) SERVICE wikibase:label { bd:serviceParam wikibase:language \"[AUTO_LANGUAGE],en\". }} LIMIT 2";
+  }
+
+  /**
+   * Removes the cached item of the NVRID, e.g. after creating an item for it.
+   */
+  public void invalidateNvrid(String nvrid) throws IOException {
+    if (sparqlCache != null) {
+      sparqlCache.invalidate(NVRID_QUERY_CLASS, nvridQuery(nvrid));
+    }
+  }
+
+  public ObjectNode query(String sparql) throws IOException {
+    return query(SparqlCache.DEFAULT_QUERY_CLASS, sparql);
+  }
+
+  /**
+   * @param queryClass Time to live in the {@link SparqlCache}
+   */
+  public ObjectNode query(String queryClass, String sparql) throws IOException {
+    String cached = cachedResult(queryClass, sparql);
+    if (cached != null) {
+      return objectMapper.readValue(cached, ObjectNode.class);
+    }
+    ObjectNode result = executeQuery(sparql);
+    if (sparqlCache != null) {
+      sparqlCache.put(queryClass, sparql, objectMapper.writeValueAsString(result));
+    }
+    return result;
+  }
+
+  private String cachedResult(String queryClass, String sparql) throws IOException {
+    if (sparqlCache == null || bypassSparqlCache) {
+      return null;
+    }
+    String cached = sparqlCache.get(queryClass, sparql);
+    if (cached != null) {
+      log.trace("Using cached result of SPARQL query {}", sparql);
+    }
+    return cached;
+  }
+
+  private ObjectNode executeQuery(String sparql) throws IOException {
+    log.trace("Executing SPARQL query {}", sparql);
+
+    String url = "https://query.wikidata.org/sparql?format=json&query=" + URLEncoder.encode(sparql, "UTF8");
+
+    return sparqlCaller.execute("query", () -> {
+      try (CloseableHttpResponse response = transport.getClient().execute(new HttpGet(url))) {
+        if (response.getStatusLine().getStatusCode() != 200) {
+          throw HttpStatusException.of("WDQS", response);
+        }
+        return objectMapper.readValue(response.getEntity().getContent(), ObjectNode.class);
+      }
+    });
 
   }
 
@@ -221,42 +436,64 @@ public class WikiData {
   }
 
   public String getSingleObject(String sparql) throws IOException {
-    ObjectNode response = query(sparql);
-
-    /*
-
-    {
-  "head" : {
-    "vars" : [ "item" ]
-  },
-  "results" : {
-    "bindings" : [ {
-      "item" : {
-        "type" : "uri",
-        "value" : "http://www.wikidata.org/entity/Q30180845"
-      }
-    } ]
+    return getSingleObject(SparqlCache.DEFAULT_QUERY_CLASS, sparql);
   }
-}
-     */
 
-    if (response.get("results").get("bindings").size() == 0) {
+  /**
+   * @param queryClass Time to live in the {@link SparqlCache}
+   */
+  public String getSingleObject(String queryClass, String sparql) throws IOException {
+    List<String> items = new ArrayList<>(2);
+    String cached = cachedResult(queryClass, sparql);
+    if (cached != null) {
+      for (JsonNode item : objectMapper.readTree(cached)) {
+        items.add(item.textValue());
+      }
+    } else {
+      sparqlCaller.execute("select", () -> {
+        items.clear();
+        return sparqlClient.select(sparql, binding -> {
+          items.add(binding.getEntityId("item"));
+          return items.size() < 2;
+        });
+      });
+      if (sparqlCache != null && isCacheable(queryClass, items)) {
+        sparqlCache.put(queryClass, sparql, objectMapper.writeValueAsString(items));
+      }
+    }
+    if (items.isEmpty()) {
       return null;
-    } else if (response.get("results").get("bindings").size() > 1) {
-      throw new MultipleResponsesException("More than a single result!\n" + sparql + "\n" + objectMapper.writeValueAsString(response));
+    } else if (items.size() > 1) {
+      throw new MultipleResponsesException("More than a single result!\n" + sparql + "\n" + items);
     } else {
-      String uri = response.get("results").get("bindings").get(0).get("item").get("value").textValue();
-      return uri.substring(uri.lastIndexOf("Q"));
+      return items.get(0);
     }
+  }
 
-
+  /**
+   * Items for a NVRID might be created by anyone at any time, but only our own creations invalidate the cached lookup.
+   * Thus only found items are cached for NVRID lookups.
+   */
+  static boolean isCacheable(String queryClass, List<String> items) {
+    return !items.isEmpty() || !NVRID_QUERY_CLASS.equals(queryClass);
   }
 
+  /**
+   * @return Null when using a local entity store, as labels are not imported.
+   */
   public String findSingleObjectByUniqueLabel(String label, String lang) throws Exception {
-    return getSingleObject("SELECT ?item ?itemLabel " +
+    if (localEntityStore != null) {
+      log.debug("Unable to search for label '{}' in local entity store", label);
+      return null;
+    }
+    return getSingleObject(LABEL_QUERY_CLASS, labelQuery(label, lang));
+  }
+
+  static String labelQuery(String label, String lang) {
+    return "SELECT ?item ?itemLabel " +
         "WHERE {" +
         "  ?item rdfs:label \"" + label + "\"@" + lang + ". " +
-        "} limit 2");
+        "} limit 2";
   }
 
   public TimeValue toTimeValue(LocalDate localDate) {
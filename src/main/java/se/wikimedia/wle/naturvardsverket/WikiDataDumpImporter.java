@@ -0,0 +1,75 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Imports the Wikidata entities used by all bots from a local Wikidata JSON dump into a {@link LocalEntityStore},
+ * and optionally evaluates all bots offline against the store.
+ * <p>
+ * The entities referenced by each bot are collected by initializing the bot without downloading them.
+ * <p>
+ * Usage: WikiDataDumpImporter [dump] [store] [evaluate]
+ */
+public class WikiDataDumpImporter {
+
+  private static Logger log = LoggerFactory.getLogger(WikiDataDumpImporter.class);
+
+  public static void main(String[] args) throws Exception {
+    File dump = new File(args.length > 0 ? args[0] : "data/latest-all.json.gz");
+    File storeFile = new File(args.length > 1 ? args[1] : "data/wikidata");
+    boolean evaluate = args.length > 2 && "evaluate".equals(args[2]);
+
+    try (LocalEntityStore store = new LocalEntityStore(storeFile)) {
+      store.open();
+      if (dump.exists()) {
+        store.importDump(dump, referencedEntityIds(store, bots()));
+      } else if (!evaluate) {
+        throw new IllegalArgumentException("No such dump " + dump.getAbsolutePath());
+      }
+      if (evaluate) {
+        for (AbstractNaturvardsregistretBot bot : bots()) {
+          bot.setLocalEntityStore(store);
+          bot.open();
+          try {
+            bot.execute();
+          } finally {
+            bot.close();
+          }
+        }
+      }
+    }
+  }
+
+  private static List<AbstractNaturvardsregistretBot> bots() {
+    return Arrays.asList(new NatureReserveBot(), new NationalParkBot(), new NaturalMonumentBot());
+  }
+
+  /**
+   * @return Ids of all entities referenced by the bots, other than the items with NVRIDs.
+   */
+  public static Set<String> referencedEntityIds(LocalEntityStore store, List<AbstractNaturvardsregistretBot> bots) throws Exception {
+    Set<String> ids = new TreeSet<>();
+    for (AbstractNaturvardsregistretBot bot : bots) {
+      bot.setLocalEntityStore(store);
+      bot.setDownloadReferencedWikiDataEntityIdValues(false);
+      bot.open();
+      try {
+        bot.initializeWikiData();
+        ids.addAll(bot.getWikiData().getReferencedEntityIds());
+        ids.add(bot.getNaturvardsregistretObjectTypeEntityId());
+      } finally {
+        bot.close();
+      }
+    }
+    log.info("Bots reference {} entities", ids.size());
+    return ids;
+  }
+
+}
@@ -0,0 +1,247 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.Data;
+import lombok.Setter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Decides which features to process and in what order, using only local signals:
+ * previous execution in {@link Progress}, fingerprint of the feature and geometry type.
+ * <p>
+ * Work that most likely results in edits is planned first, cheap before expensive,
+ * and verifications of previously successful unchanged items last.
+ */
+public class WorkPlanner {
+
+  private Logger log = LoggerFactory.getLogger(getClass());
+
+  /** In order of priority */
+  public enum Reason {
+    /** Never processed, most likely requires a new Wikidata item */
+    NEVER_PROCESSED,
+    /** To be processed again, and no Wikidata item was created or found previous execution */
+    NO_KNOWN_QID,
+    /** Feature has changed since previous execution */
+    FEATURE_CHANGED,
+    /** Previous execution failed */
+    PREVIOUS_ERROR,
+    /** Selected to be processed again, although succeeded previous execution and not changed since */
+    VERIFICATION,
+  }
+
+  @Data
+  public static class WorkItem {
+    private String nvrid;
+    private NvrFeature feature;
+    private String featureFingerprint;
+    private Progress.Entity previousExecution;
+    private Reason reason;
+    /** Relative number of requests, higher for geometries that are also evaluated as Commons geoshapes */
+    private int estimatedCost;
+  }
+
+  /** Prefix of fingerprints by {@link #fingerprint(NvrFeature)}, fingerprints without it are SHA-1 of the feature as JSON. */
+  static final String FINGERPRINT_PREFIX = "2:";
+
+  /** About a centimetre in WGS84, i.e. below the differences of reading GeoJSON, Shapefile or reprojected SWEREF 99 TM. */
+  static final int FINGERPRINT_COORDINATE_DECIMALS = 7;
+
+  static final int FINGERPRINT_NUMBER_DECIMALS = 6;
+
+  private ObjectMapper fingerprintObjectMapper;
+
+  /** If set, only these are planned, whether or not they succeeded previous execution */
+  private Set<String> selectedNvrids;
+
+  /** If set, previously successful executions started before this are planned for verification */
+  private Long verifyPreviouslyExecutedWithSuccessStartedBefore;
+
+  /** If false, then the plan is kept in file order */
+  @Setter
+  private boolean prioritize = true;
+
+  public WorkPlanner(ObjectMapper objectMapper, Set<String> selectedNvrids, Long verifyPreviouslyExecutedWithSuccessStartedBefore) {
+    this.fingerprintObjectMapper = objectMapper.copy().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    this.selectedNvrids = selectedNvrids;
+    this.verifyPreviouslyExecutedWithSuccessStartedBefore = verifyPreviouslyExecutedWithSuccessStartedBefore;
+  }
+
+  public List<WorkItem> plan(List<NvrFeature> features, Progress progress) throws JsonProcessingException {
+    List<WorkItem> plan = new ArrayList<>(features.size());
+    for (NvrFeature feature : features) {
+      String beslutstatus = feature.getDecisionStatus();
+      if (!"Gällande".equalsIgnoreCase(beslutstatus)) {
+        log.warn("Status is not active, skipping entry");
+        continue;
+      }
+
+      String nvrid = feature.getNvrid();
+      if (nvrid == null) {
+        log.error("NVRID missing in {}", fingerprintObjectMapper.writeValueAsString(feature.toFeature()));
+        continue;
+      }
+
+      WorkItem workItem = new WorkItem();
+      workItem.setNvrid(nvrid);
+      workItem.setFeature(feature);
+      workItem.setFeatureFingerprint(fingerprint(feature));
+      workItem.setPreviousExecution(progress.getProcessed().get(nvrid));
+      migrateFingerprint(workItem);
+      workItem.setReason(reason(workItem));
+      if (workItem.getReason() == null) {
+        log.debug("{} was previously processed without error and has not changed. Will be skipped", nvrid);
+        continue;
+      }
+      workItem.setEstimatedCost(estimateCost(feature));
+      plan.add(workItem);
+    }
+
+    if (prioritize) {
+      // stable, i.e. file order within the same reason and cost
+      plan.sort(Comparator
+          .comparing(WorkItem::getReason)
+          .thenComparingInt(WorkItem::getEstimatedCost));
+    }
+
+    if (log.isInfoEnabled()) {
+      Map<Reason, Integer> counts = new EnumMap<>(Reason.class);
+      for (WorkItem workItem : plan) {
+        counts.merge(workItem.getReason(), 1, Integer::sum);
+      }
+      log.info("Planned {} of {} features: {}", plan.size(), features.size(), counts);
+    }
+    return plan;
+  }
+
+  /**
+   * @return Reason to process the feature, or null if it should be skipped.
+   */
+  Reason reason(WorkItem workItem) {
+    Progress.Entity previousExecution = workItem.getPreviousExecution();
+    boolean selected = selectedNvrids != null && selectedNvrids.contains(workItem.getNvrid());
+    if (selectedNvrids != null && !selected) {
+      return null;
+    }
+    if (previousExecution == null) {
+      return Reason.NEVER_PROCESSED;
+    }
+    // executions before fingerprints was introduced are considered unchanged
+    boolean changed = previousExecution.getFeatureFingerprint() != null
+        && !previousExecution.getFeatureFingerprint().equals(workItem.getFeatureFingerprint());
+    boolean failed = previousExecution.getError() != null;
+    boolean verify = selected
+        || (verifyPreviouslyExecutedWithSuccessStartedBefore != null
+        && previousExecution.getEpochStarted() < verifyPreviouslyExecutedWithSuccessStartedBefore);
+    if (!changed && !failed && !verify) {
+      return null;
+    }
+    if (previousExecution.getWikidataIdentity() == null) {
+      return Reason.NO_KNOWN_QID;
+    } else if (changed) {
+      return Reason.FEATURE_CHANGED;
+    } else if (failed) {
+      return Reason.PREVIOUS_ERROR;
+    } else {
+      return Reason.VERIFICATION;
+    }
+  }
+
+  /**
+   * Points only require a coordinate location, polygons are also compared with the geoshape at Commons.
+   */
+  static int estimateCost(NvrFeature feature) {
+    PackedGeometry geometry = feature.getPackedGeometry();
+    if (geometry == null) {
+      return 3;
+    }
+    switch (geometry.getType()) {
+      case Point:
+        return 1;
+      case Polygon:
+        return 2;
+      case MultiPolygon:
+        return 2 + geometry.getPolygons() / 10;
+      default:
+        return 3;
+    }
+  }
+
+  /**
+   * Previous executions with a fingerprint of the feature as JSON get the current fingerprint if the feature is unchanged,
+   * rather than all features being considered changed once.
+   */
+  private void migrateFingerprint(WorkItem workItem) throws JsonProcessingException {
+    Progress.Entity previousExecution = workItem.getPreviousExecution();
+    if (previousExecution == null || previousExecution.getFeatureFingerprint() == null
+        || previousExecution.getFeatureFingerprint().startsWith(FINGERPRINT_PREFIX)) {
+      return;
+    }
+    if (previousExecution.getFeatureFingerprint().equals(jsonFingerprint(workItem.getFeature()))) {
+      previousExecution.setFeatureFingerprint(workItem.getFeatureFingerprint());
+    }
+  }
+
+  /**
+   * Independent of the file format the feature was read from and of how it would be written as GeoJSON:
+   * properties sorted by key with numbers as plain decimals, and the hash of the geometry with rounded coordinates.
+   *
+   * @return {@link #FINGERPRINT_PREFIX} followed by SHA-1 of the canonical properties and geometry
+   */
+  public String fingerprint(NvrFeature feature) {
+    StringBuilder canonical = new StringBuilder(512);
+    for (Map.Entry<String, Object> property : feature.getProperties().entrySet()) {
+      String value = canonicalValue(property.getValue());
+      if (value != null) {
+        canonical.append(property.getKey()).append('=').append(value).append('\n');
+      }
+    }
+    if (feature.getPackedGeometry() != null) {
+      canonical.append("geometry=").append(feature.getPackedGeometry().hash(FINGERPRINT_COORDINATE_DECIMALS));
+    }
+    return FINGERPRINT_PREFIX + sha1(canonical.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @return Value as text, integral numbers without decimals, or null if blank.
+   */
+  static String canonicalValue(Object value) {
+    if (value instanceof Number) {
+      return BigDecimal.valueOf(((Number) value).doubleValue())
+          .setScale(FINGERPRINT_NUMBER_DECIMALS, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();
+    }
+    String text = value.toString().trim();
+    return text.isEmpty() ? null : text;
+  }
+
+  /**
+   * @return SHA-1 of the feature as JSON with properties sorted by key, the fingerprint of previous versions
+   */
+  String jsonFingerprint(NvrFeature feature) throws JsonProcessingException {
+    return sha1(fingerprintObjectMapper.writeValueAsBytes(feature.toFeature()));
+  }
+
+  private static String sha1(byte[] bytes) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+      StringBuilder sb = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        sb.append(String.format("%02x", b));
+      }
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+}
@@ -0,0 +1,91 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares {@link CentroidLocator} against the previous vertex scan of GeometryStrategy
+ * on the polygons and multipolygons with the most vertices in data/4326.
+ * <p>
+ * Not executed as a unit test, run main from the IDE or using exec:java with test classpath.
+ */
+public class CentroidLocatorBenchmark {
+
+  private static final int geometries = 20;
+
+  public static void main(String[] args) throws Exception {
+    ObjectMapper objectMapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    GeometryFactory geometryFactory = new GeometryFactory();
+
+    List<Geometry> largest = new ArrayList<>();
+    for (String name : new String[]{"naturreservat", "nationalparker", "naturminne_polygon", "biosfaromraden"}) {
+      File file = new File("data/4326/" + name + ".geojson");
+      if (file.exists()) {
+        for (NvrFeature feature : objectMapper.readValue(file, NvrFeatureCollection.class).getFeatures()) {
+          if (feature.getPackedGeometry() != null && feature.getPackedGeometry().getPolygons() > 0) {
+            largest.add(feature.getPackedGeometry().toJts(geometryFactory));
+          }
+        }
+      }
+    }
+    largest.sort(Comparator.comparingInt(Geometry::getNumPoints).reversed());
+    largest = largest.subList(0, Math.min(geometries, largest.size()));
+    int vertices = largest.stream().mapToInt(Geometry::getNumPoints).sum();
+    long outside = largest.stream().filter(geometry -> !geometry.intersects(geometry.getCentroid())).count();
+    System.out.println(largest.size() + " geometries, " + vertices + " vertices, centroid outside of " + outside);
+
+    for (int round = 0; round < 5; round++) {
+      long started = System.nanoTime();
+      for (Geometry geometry : largest) {
+        vertexScan(geometryFactory, geometry);
+      }
+      long vertexScanNanos = System.nanoTime() - started;
+
+      started = System.nanoTime();
+      for (Geometry geometry : largest) {
+        CentroidLocator.containedCentroid(geometry);
+      }
+      long locatorNanos = System.nanoTime() - started;
+
+      System.out.println(String.format(Locale.ENGLISH, "Vertex scan %.1f ms\tCentroidLocator %.1f ms\t%.1fx",
+          vertexScanNanos / 1e6, locatorNanos / 1e6, (double) vertexScanNanos / locatorNanos));
+    }
+  }
+
+  /** Previous implementation in GeometryStrategy, including the repeated intersects check of visit(Polygon). */
+  private static Point vertexScan(GeometryFactory geometryFactory, Geometry geometry) {
+    Point centroid = geometry.getCentroid();
+    if (!geometry.intersects(centroid)) {
+      double closestDistance = Double.MAX_VALUE;
+      Point closestPoint = centroid;
+      for (Coordinate coordinate : geometry.getCoordinates()) {
+        Point point = geometryFactory.createPoint(coordinate);
+        double distance = centroid.distance(point);
+        if (distance < closestDistance) {
+          closestDistance = distance;
+          closestPoint = point;
+        }
+      }
+      if (!geometry.intersects(closestPoint) && !geometry.contains(closestPoint)) {
+        throw new RuntimeException("Unable to find a centroid inside of the geometry!");
+      }
+      centroid = closestPoint;
+    }
+    if (!geometry.intersects(centroid)) {
+      throw new RuntimeException("Centroid is not inside of the polygon!");
+    }
+    return centroid;
+  }
+
+}
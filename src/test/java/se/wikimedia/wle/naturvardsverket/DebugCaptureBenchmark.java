@@ -0,0 +1,98 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.PatternLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures the cost of {@link DebugCapture} per entity by replaying the debug and trace calls
+ * of processing one entity with a changed item: capture off at INFO, capture of DEBUG discarded or formatted,
+ * and capture of TRACE including the statement dumps.
+ * <p>
+ * Compare with the median entity duration of the NaturalMonumentBot progress file, about 48 seconds.
+ * Not executed as a unit test, run main from the IDE or using exec:java with test classpath.
+ */
+public class DebugCaptureBenchmark {
+
+  private static final Logger log = LoggerFactory.getLogger("se.wikimedia.wle.naturvardsverket.DebugCaptureBenchmark");
+
+  private static final int entities = 20000;
+  private static final int statementsPerEntity = 8;
+  private static final int rounds = 5;
+
+  public static void main(String[] args) throws Exception {
+    WikiData wikiData = TestStatementTemplates.offlineWikiData();
+    NaturvardsregistretObject object = TestStatementTemplates.naturvardsregistretObject("2005088");
+    List<Statement> statements = new ArrayList<>(statementsPerEntity);
+    for (int i = 0; i < statementsPerEntity; i++) {
+      statements.add(TestStatementTemplates.builderAreaLandStatement(wikiData, object));
+    }
+
+    org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger("se.wikimedia.wle.naturvardsverket.DebugCaptureBenchmark");
+    logger.setAdditivity(false);
+    DebugCapture appender = new DebugCapture();
+    appender.setLayout(new PatternLayout("%d{yyyy-MM-dd HH:mm:ss,SSS} %-5p %c{1} - %m%n"));
+    logger.addAppender(appender);
+
+    for (int round = 0; round < rounds; round++) {
+      long off = run(logger, Level.INFO, false, statements);
+      long debug = run(logger, Level.DEBUG, false, statements);
+      long debugWritten = run(logger, Level.DEBUG, true, statements);
+      long trace = run(logger, Level.TRACE, false, statements);
+      System.out.println(String.format(Locale.ENGLISH,
+          "off %.1f us\tdebug %.1f us\tdebug formatted %.1f us\ttrace %.1f us per entity",
+          off / 1e3 / entities, debug / 1e3 / entities, debugWritten / 1e3 / entities, trace / 1e3 / entities));
+    }
+  }
+
+  private static long run(org.apache.log4j.Logger logger, Level level, boolean format, List<Statement> statements) {
+    logger.setLevel(level);
+    long blackhole = 0;
+    long started = System.nanoTime();
+    for (int entity = 0; entity < entities; entity++) {
+      String nvrid = String.valueOf(2000000 + entity);
+      if (level != Level.INFO) {
+        DebugCapture.begin(5000);
+      }
+      log.debug("Find unique WikiData item matching (Naturvårdsregistret object id).");
+      log.debug("WikiData item {} is describing nvrid {}", "Q86918534", nvrid);
+      log.debug("Searching for delta between local data and WikiData item");
+      for (int i = 0; i < 10; i++) {
+        log.debug("Fetching WikiData entity {}", "Q" + i);
+        log.debug("Fetched WikiData entry {}: {}", "Q" + i, "label");
+      }
+      log.trace("Executing SPARQL query {}", "SELECT ?item WHERE { ?item wdt:P3613 \"" + nvrid + "\" }");
+      log.debug("Statements or terms has been updated.");
+      log.debug("Adding {} statements.", statements.size());
+      if (log.isTraceEnabled()) {
+        for (Statement statement : statements) {
+          log.trace("Adding statement:\n{}", statement);
+        }
+      }
+      log.debug("Checking for diff between remote and local data...");
+      log.trace("Done processing nvrid {}", nvrid);
+      if (level == Level.INFO) {
+        continue;
+      }
+      if (format) {
+        for (String event : DebugCapture.end()) {
+          blackhole += event.length();
+        }
+      } else {
+        DebugCapture.discard();
+      }
+    }
+    long nanos = System.nanoTime() - started;
+    if (blackhole == 42) {
+      System.out.println();
+    }
+    return nanos;
+  }
+
+}
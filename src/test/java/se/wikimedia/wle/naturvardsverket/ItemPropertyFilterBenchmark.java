@@ -0,0 +1,82 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.DatamodelFilter;
+import org.wikidata.wdtk.datamodel.helpers.DatamodelMapper;
+import org.wikidata.wdtk.datamodel.helpers.JsonSerializer;
+import org.wikidata.wdtk.datamodel.implementation.DataObjectFactoryImpl;
+import org.wikidata.wdtk.datamodel.implementation.EntityDocumentImpl;
+import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Compares the JSON size of items as requested by {@link WikiData#fetchItemDocument(String)}, i.e. with sv and en
+ * labels and descriptions, with the size as requested by the wdtk data fetcher, which adds aliases,
+ * and with the size held in memory after the property filter of {@link AbstractNaturvardsregistretBot#ITEM_PROPERTIES}.
+ * <p>
+ * Input is a Wikidata JSON dump slice with one entity per line, e.g. as used by {@link WikiDataDumpImporter}.
+ */
+public class ItemPropertyFilterBenchmark {
+
+  private static final String[] ITEM_PROPERTY_IDS = {"P31", "P571", "P814", "P17", "P137", "P2046", "P625", "P3896", "P3613"};
+
+  public static void main(String[] args) throws Exception {
+    Set<PropertyIdValue> properties = new HashSet<>();
+    for (String id : ITEM_PROPERTY_IDS) {
+      properties.add(Datamodel.makeWikidataPropertyIdValue(id));
+    }
+    DatamodelMapper mapper = new DatamodelMapper(Datamodel.SITE_WIKIDATA);
+    DocumentDataFilter filter = new DocumentDataFilter();
+    filter.setLanguageFilter(new HashSet<>(Arrays.asList("sv", "en")));
+    filter.setSiteLinkFilter(Collections.emptySet());
+    DatamodelFilter fetcherFilter = new DatamodelFilter(new DataObjectFactoryImpl(), filter);
+
+    int items = 0;
+    long fetcherBytes = 0;
+    long fullBytes = 0;
+    long filteredBytes = 0;
+    try (BufferedReader reader = new BufferedReader(new FileReader(new File(args[0]), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.endsWith(",")) {
+          line = line.substring(0, line.length() - 1);
+        }
+        if (!line.startsWith("{")) {
+          continue;
+        }
+        EntityDocument entity = mapper.readValue(line, EntityDocumentImpl.class);
+        if (!(entity instanceof ItemDocument)) {
+          continue;
+        }
+        ItemDocument fetcher = fetcherFilter.filter((ItemDocument) entity);
+        fetcherBytes += JsonSerializer.getJsonString(fetcher).getBytes(StandardCharsets.UTF_8).length;
+        ItemDocument fetched = fetcher.withAliases("sv", Collections.emptyList()).withAliases("en", Collections.emptyList());
+        fullBytes += JsonSerializer.getJsonString(fetched).getBytes(StandardCharsets.UTF_8).length;
+        filteredBytes += JsonSerializer.getJsonString(WikiData.filterItemProperties(fetched, properties)).getBytes(StandardCharsets.UTF_8).length;
+        items++;
+      }
+    }
+
+    System.out.println("Items: " + items);
+    System.out.println("Bytes per item, wdtk data fetcher: " + fetcherBytes / Math.max(1, items));
+    System.out.println("Bytes per item, requested: " + fullBytes / Math.max(1, items));
+    System.out.println("Saved per request: " + (fetcherBytes - fullBytes) / Math.max(1, items)
+        + " bytes (" + (fetcherBytes == 0 ? 0 : 100 * (fetcherBytes - fullBytes) / fetcherBytes) + "%)");
+    System.out.println("Bytes per item, filtered properties: " + filteredBytes / Math.max(1, items));
+    System.out.println("Saved in memory per item: " + (fullBytes - filteredBytes) / Math.max(1, items)
+        + " bytes (" + (fullBytes == 0 ? 0 : 100 * (fullBytes - filteredBytes) / fullBytes) + "%)");
+  }
+
+}
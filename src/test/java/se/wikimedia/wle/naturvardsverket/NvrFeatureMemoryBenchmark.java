@@ -0,0 +1,99 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.geojson.FeatureCollection;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares retained heap of a natural monument point feature collection deserialized as
+ * {@link FeatureCollection} against {@link NvrFeatureCollection}.
+ * <p>
+ * Uses data/4326/naturminne_punkt.geojson if available, otherwise a generated collection with the same properties.
+ * Not executed as a unit test, run main from the IDE or using exec:java with test classpath.
+ */
+public class NvrFeatureMemoryBenchmark {
+
+  private static final int generatedFeatures = 20000;
+
+  public static void main(String[] args) throws Exception {
+    File file = new File(args.length > 0 ? args[0] : "data/4326/naturminne_punkt.geojson");
+    byte[] json = file.exists() ? Files.readAllBytes(file.toPath()) : generate(generatedFeatures).getBytes("UTF-8");
+
+    ObjectMapper objectMapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    for (int round = 0; round < 3; round++) {
+      long before = usedHeap();
+      FeatureCollection features = objectMapper.readValue(json, FeatureCollection.class);
+      features.getFeatures().forEach(feature -> feature.getProperties().entrySet().removeIf(property -> property.getValue() == null));
+      long featureBytes = usedHeap() - before;
+      int size = features.getFeatures().size();
+      features = null;
+
+      before = usedHeap();
+      NvrFeatureCollection nvrFeatures = objectMapper.readValue(json, NvrFeatureCollection.class);
+      long nvrFeatureBytes = usedHeap() - before;
+      size = Math.max(size, nvrFeatures.getFeatures().size());
+      nvrFeatures = null;
+
+      System.out.println(String.format(Locale.ENGLISH,
+          "%d features\tFeature %d bytes/feature\tNvrFeature %d bytes/feature\t%.1fx",
+          size, featureBytes / size, nvrFeatureBytes / size, (double) featureBytes / nvrFeatureBytes));
+    }
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static String generate(int features) {
+    String[] counties = {"Stockholms län", "Uppsala län", "Södermanlands län", "Östergötlands län", "Jönköpings län",
+        "Kronobergs län", "Kalmar län", "Gotlands län", "Blekinge län", "Skåne län", "Hallands län", "Västra Götalands län",
+        "Värmlands län", "Örebro län", "Västmanlands län", "Dalarnas län", "Gävleborgs län", "Västernorrlands län",
+        "Jämtlands län", "Västerbottens län", "Norrbottens län"};
+    Random random = new Random(0);
+    StringBuilder sb = new StringBuilder(features * 600);
+    sb.append("{\"type\":\"FeatureCollection\",\"name\":\"naturminne_punkt\",\"features\":[");
+    for (int i = 0; i < features; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      String county = counties[random.nextInt(counties.length)];
+      int municipality = random.nextInt(290);
+      sb.append("{\"type\":\"Feature\",\"properties\":{")
+          .append("\"NVRID\":\"").append(5000000 + i).append("\",")
+          .append("\"NAMN\":\"Naturminne ").append(i).append("\",")
+          .append("\"SKYDDSTYP\":\"Naturminne\",")
+          .append("\"BESLSTATUS\":\"Gällande\",")
+          .append("\"URSBESLDAT\":\"19").append(10 + random.nextInt(90)).append("/0").append(1 + random.nextInt(9)).append("/1").append(random.nextInt(10)).append("\",")
+          .append("\"URSGALLDAT\":null,")
+          .append("\"IKRAFTDAT\":\"19").append(10 + random.nextInt(90)).append("/0").append(1 + random.nextInt(9)).append("/1").append(random.nextInt(10)).append("\",")
+          .append("\"IUCNKAT\":\"III\",")
+          .append("\"LAN\":\"").append(county).append("\",")
+          .append("\"KOMMUN\":\"Kommun ").append(municipality).append("\",")
+          .append("\"FORVALTARE\":\"Länsstyrelsen i ").append(county).append("\",")
+          .append("\"AREA_HA\":").append(random.nextInt(1000) / 100d).append(',')
+          .append("\"LAND_HA\":").append(random.nextInt(1000) / 100d).append(',')
+          .append("\"VATTEN_HA\":0,")
+          .append("\"SKOG_HA\":null,")
+          .append("\"NATURTYP\":\"Träd\",")
+          .append("\"SKYDDSGRUND\":\"Naturvård\"")
+          .append("},\"geometry\":{\"type\":\"Point\",\"coordinates\":[")
+          .append(11 + random.nextDouble() * 12).append(',').append(55 + random.nextDouble() * 14)
+          .append("]}}");
+    }
+    sb.append("]}");
+    return sb.toString();
+  }
+
+}
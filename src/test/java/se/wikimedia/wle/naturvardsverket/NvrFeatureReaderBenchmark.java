@@ -0,0 +1,58 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Locale;
+
+/**
+ * Compares parse throughput of {@link NvrFeatureCollection#read(ObjectMapper, File)} on the GeoJSON download
+ * and on the same features written as a Shapefile by {@link ShapefileWriter}.
+ * <p>
+ * Uses data/4326/naturreservat.geojson if available, otherwise data/4326/nationalparker.geojson, or the file given as argument.
+ * Only the national park fallback has been measured so far, the nature reserve download is not in the repository.
+ * Not executed as a unit test, run main from the IDE or using exec:java with test classpath.
+ */
+public class NvrFeatureReaderBenchmark {
+
+  private static final int rounds = 10;
+
+  public static void main(String[] args) throws Exception {
+    File geoJson = new File(args.length > 0 ? args[0] : "data/4326/naturreservat.geojson");
+    if (!geoJson.exists()) {
+      geoJson = new File("data/4326/nationalparker.geojson");
+    }
+    ObjectMapper objectMapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    File directory = Files.createTempDirectory("shapefile").toFile();
+    File shp = new File(directory, geoJson.getName().replaceFirst("\\.[^.]*$", "") + ".shp");
+    ShapefileWriter.write(NvrFeatureCollection.read(objectMapper, geoJson), shp, false);
+    long shapefileBytes = shp.length() + new File(shp.getPath().replaceFirst("\\.shp$", ".dbf")).length();
+    System.out.println(String.format(Locale.ENGLISH, "%s %d bytes, Shapefile %d bytes",
+        geoJson.getName(), geoJson.length(), shapefileBytes));
+
+    for (int round = 0; round < rounds; round++) {
+      long started = System.nanoTime();
+      int features = NvrFeatureCollection.read(objectMapper, geoJson).getFeatures().size();
+      long geoJsonNanos = System.nanoTime() - started;
+
+      started = System.nanoTime();
+      features = Math.max(features, NvrFeatureCollection.read(objectMapper, shp).getFeatures().size());
+      long shapefileNanos = System.nanoTime() - started;
+
+      System.out.println(String.format(Locale.ENGLISH,
+          "%d features\tGeoJSON %.1f ms %.0f features/s\tShapefile %.1f ms %.0f features/s\t%.1fx",
+          features, geoJsonNanos / 1e6, features / (geoJsonNanos / 1e9),
+          shapefileNanos / 1e6, features / (shapefileNanos / 1e9), (double) geoJsonNanos / shapefileNanos));
+    }
+
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+}
@@ -0,0 +1,93 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.geojson.Feature;
+import org.geojson.FeatureCollection;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.wololo.jts2geojson.GeoJSONReader;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares retained heap and GC time of polygon features deserialized as {@link FeatureCollection}
+ * and converted to JTS the way {@link GeometryStrategy} used to, against {@link NvrFeatureCollection}
+ * with {@link PackedGeometry} wrapped by JTS.
+ * <p>
+ * Uses the first available of naturreservat, nationalparker and naturminne_polygon in data/4326.
+ * Not executed as a unit test, run main from the IDE or using exec:java with test classpath.
+ */
+public class PackedGeometryMemoryBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    File file = null;
+    for (String name : args.length > 0 ? args : new String[]{"naturreservat", "nationalparker", "naturminne_polygon"}) {
+      file = name.endsWith(".geojson") ? new File(name) : new File("data/4326/" + name + ".geojson");
+      if (file.exists()) {
+        break;
+      }
+    }
+    byte[] json = Files.readAllBytes(file.toPath());
+    System.out.println(file);
+
+    ObjectMapper objectMapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    GeometryFactory geometryFactory = new GeometryFactory();
+
+    for (int round = 0; round < 3; round++) {
+      long before = usedHeap();
+      long gcBefore = gcMillis();
+      FeatureCollection features = objectMapper.readValue(json, FeatureCollection.class);
+      List<Geometry> jtsGeometries = new ArrayList<>();
+      for (Feature feature : features.getFeatures()) {
+        jtsGeometries.add(new GeoJSONReader().read(objectMapper.writeValueAsString(feature.getGeometry())));
+      }
+      long gcGeoJson = gcMillis() - gcBefore;
+      long geoJsonBytes = usedHeap() - before;
+      int vertices = jtsGeometries.stream().mapToInt(Geometry::getNumPoints).sum();
+      features = null;
+      jtsGeometries = null;
+
+      before = usedHeap();
+      gcBefore = gcMillis();
+      NvrFeatureCollection nvrFeatures = objectMapper.readValue(json, NvrFeatureCollection.class);
+      jtsGeometries = new ArrayList<>();
+      for (NvrFeature feature : nvrFeatures.getFeatures()) {
+        jtsGeometries.add(feature.getPackedGeometry().toJts(geometryFactory));
+      }
+      long gcPacked = gcMillis() - gcBefore;
+      long packedBytes = usedHeap() - before;
+      nvrFeatures = null;
+      jtsGeometries = null;
+
+      System.out.println(String.format(Locale.ENGLISH,
+          "%d vertices\tGeoJSON+JTS %d bytes/vertex, GC %d ms\tPacked+JTS %d bytes/vertex, GC %d ms\t%.1fx",
+          vertices, geoJsonBytes / vertices, gcGeoJson, packedBytes / vertices, gcPacked, (double) geoJsonBytes / packedBytes));
+    }
+  }
+
+  private static long gcMillis() {
+    long millis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(0, gc.getCollectionTime());
+    }
+    return millis;
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+}
@@ -0,0 +1,280 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.geojson.Feature;
+import org.locationtech.jts.geom.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Writes features as a Shapefile with a UTF-8 .cpg, the way the registry downloads are written,
+ * in order to test and benchmark {@link ShapefileReader} without the downloads.
+ * <p>
+ * yyyy/MM/dd strings are written as dates, rings in the given order and orientation.
+ */
+public class ShapefileWriter {
+
+  private static final String SWEREF99_TM_PRJ = "PROJCS[\"SWEREF99_TM\",GEOGCS[\"GCS_SWEREF99\",DATUM[\"D_SWEREF99\"," +
+      "SPHEROID[\"GRS_1980\",6378137.0,298.257222101]],PRIMEM[\"Greenwich\",0.0],UNIT[\"Degree\",0.0174532925199433]]," +
+      "PROJECTION[\"Transverse_Mercator\"],PARAMETER[\"False_Easting\",500000.0],PARAMETER[\"False_Northing\",0.0]," +
+      "PARAMETER[\"Central_Meridian\",15.0],PARAMETER[\"Scale_Factor\",0.9996],PARAMETER[\"Latitude_Of_Origin\",0.0],UNIT[\"Meter\",1.0]]";
+
+  private static final String WGS84_PRJ = "GEOGCS[\"GCS_WGS_1984\",DATUM[\"D_WGS_1984\",SPHEROID[\"WGS_1984\",6378137.0,298.257223563]]," +
+      "PRIMEM[\"Greenwich\",0.0],UNIT[\"Degree\",0.0174532925199433]]";
+
+  private static final GeometryFactory geometryFactory = new GeometryFactory();
+
+  /**
+   * @param shp       .shp file, .shx is not written. .dbf, .prj and .cpg are written next to it.
+   * @param sweref99Tm True to project coordinates to SWEREF 99 TM, otherwise written as WGS84.
+   */
+  public static void write(NvrFeatureCollection collection, File shp, boolean sweref99Tm) throws IOException {
+    String base = shp.getPath().substring(0, shp.getPath().length() - 4);
+    Files.write(new File(base + ".prj").toPath(), (sweref99Tm ? SWEREF99_TM_PRJ : WGS84_PRJ).getBytes(StandardCharsets.ISO_8859_1));
+    Files.write(new File(base + ".cpg").toPath(), "UTF-8".getBytes(StandardCharsets.ISO_8859_1));
+
+    List<Map<String, Object>> properties = new ArrayList<>();
+    List<Geometry> geometries = new ArrayList<>();
+    for (NvrFeature feature : collection.getFeatures()) {
+      Feature geoJson = feature.toFeature();
+      properties.add(geoJson.getProperties());
+      Geometry geometry = feature.getPackedGeometry() == null ? null : feature.getPackedGeometry().toJts(geometryFactory).copy();
+      if (geometry != null && sweref99Tm) {
+        geometry.apply(new CoordinateSequenceFilter() {
+          @Override
+          public void filter(CoordinateSequence sequence, int i) {
+            double[] coordinates = {sequence.getX(i), sequence.getY(i)};
+            Sweref99Tm.fromWgs84(coordinates, 2);
+            sequence.setOrdinate(i, 0, coordinates[0]);
+            sequence.setOrdinate(i, 1, coordinates[1]);
+          }
+
+          @Override
+          public boolean isDone() {
+            return false;
+          }
+
+          @Override
+          public boolean isGeometryChanged() {
+            return true;
+          }
+        });
+      }
+      geometries.add(geometry);
+    }
+    writeShp(shp, geometries);
+    writeDbf(new File(base + ".dbf"), properties);
+  }
+
+  private static void writeShp(File shp, List<Geometry> geometries) throws IOException {
+    List<byte[]> records = new ArrayList<>();
+    int shapeType = 0;
+    Envelope envelope = new Envelope();
+    for (Geometry geometry : geometries) {
+      byte[] record = record(geometry);
+      records.add(record);
+      if (geometry != null) {
+        shapeType = ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN).getInt(0);
+        envelope.expandToInclude(geometry.getEnvelopeInternal());
+      }
+    }
+    int length = 100;
+    for (byte[] record : records) {
+      length += 8 + record.length;
+    }
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(shp)))) {
+      ByteBuffer header = ByteBuffer.allocate(100);
+      header.putInt(0, 9994);
+      header.putInt(24, length / 2);
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(28, 1000);
+      header.putInt(32, shapeType);
+      header.putDouble(36, envelope.isNull() ? 0 : envelope.getMinX());
+      header.putDouble(44, envelope.isNull() ? 0 : envelope.getMinY());
+      header.putDouble(52, envelope.isNull() ? 0 : envelope.getMaxX());
+      header.putDouble(60, envelope.isNull() ? 0 : envelope.getMaxY());
+      out.write(header.array());
+      for (int i = 0; i < records.size(); i++) {
+        out.writeInt(i + 1);
+        out.writeInt(records.get(i).length / 2);
+        out.write(records.get(i));
+      }
+    }
+  }
+
+  private static byte[] record(Geometry geometry) {
+    if (geometry == null) {
+      return ByteBuffer.allocate(4).array();
+    }
+    if (geometry instanceof Point) {
+      ByteBuffer buffer = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(1);
+      buffer.putDouble(geometry.getCoordinate().x);
+      buffer.putDouble(geometry.getCoordinate().y);
+      return buffer.array();
+    }
+    int shapeType;
+    List<Coordinate[]> parts = new ArrayList<>();
+    if (geometry instanceof MultiPoint) {
+      shapeType = 8;
+    } else if (geometry instanceof LineString || geometry instanceof MultiLineString) {
+      shapeType = 3;
+      for (int i = 0; i < geometry.getNumGeometries(); i++) {
+        parts.add(geometry.getGeometryN(i).getCoordinates());
+      }
+    } else {
+      shapeType = 5;
+      for (int i = 0; i < geometry.getNumGeometries(); i++) {
+        Polygon polygon = (Polygon) geometry.getGeometryN(i);
+        parts.add(polygon.getExteriorRing().getCoordinates());
+        for (int j = 0; j < polygon.getNumInteriorRing(); j++) {
+          parts.add(polygon.getInteriorRingN(j).getCoordinates());
+        }
+      }
+    }
+    Coordinate[] points = geometry.getCoordinates();
+    Envelope envelope = geometry.getEnvelopeInternal();
+    int size = 4 + 32 + 4 + (shapeType == 8 ? 0 : 4 + 4 * parts.size()) + 16 * points.length;
+    ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(shapeType);
+    buffer.putDouble(envelope.getMinX());
+    buffer.putDouble(envelope.getMinY());
+    buffer.putDouble(envelope.getMaxX());
+    buffer.putDouble(envelope.getMaxY());
+    if (shapeType != 8) {
+      buffer.putInt(parts.size());
+    }
+    buffer.putInt(points.length);
+    if (shapeType != 8) {
+      int start = 0;
+      for (Coordinate[] part : parts) {
+        buffer.putInt(start);
+        start += part.length;
+      }
+    }
+    for (Coordinate point : points) {
+      buffer.putDouble(point.x);
+      buffer.putDouble(point.y);
+    }
+    return buffer.array();
+  }
+
+  private static void writeDbf(File dbf, List<Map<String, Object>> properties) throws IOException {
+    Map<String, Character> types = new LinkedHashMap<>();
+    Map<String, Integer> lengths = new HashMap<>();
+    Map<String, Integer> decimals = new HashMap<>();
+    for (Map<String, Object> featureProperties : properties) {
+      for (Map.Entry<String, Object> property : featureProperties.entrySet()) {
+        Object value = property.getValue();
+        if (value == null) {
+          types.putIfAbsent(property.getKey(), null);
+          continue;
+        }
+        char type;
+        if (value instanceof Integer || value instanceof Long) {
+          type = 'N';
+        } else if (value instanceof Number) {
+          type = 'F';
+        } else if (value instanceof Boolean) {
+          type = 'L';
+        } else if (value.toString().matches("[0-9]{4}/[0-9]{2}/[0-9]{2}")) {
+          type = 'D';
+        } else {
+          type = 'C';
+        }
+        Character previous = types.get(property.getKey());
+        if (previous != null && previous != type) {
+          type = 'C';
+        }
+        types.put(property.getKey(), type);
+        lengths.merge(property.getKey(), text(value, type).getBytes(StandardCharsets.UTF_8).length, Math::max);
+      }
+    }
+    for (Map.Entry<String, Character> type : types.entrySet()) {
+      if (type.getValue() == null) {
+        type.setValue('C');
+      }
+      switch (type.getValue()) {
+        case 'D':
+          lengths.put(type.getKey(), 8);
+          break;
+        case 'L':
+          lengths.put(type.getKey(), 1);
+          break;
+        case 'F':
+          decimals.put(type.getKey(), 8);
+          lengths.put(type.getKey(), 24);
+          break;
+        case 'N':
+          lengths.put(type.getKey(), Math.max(10, lengths.get(type.getKey())));
+          break;
+        default:
+          lengths.put(type.getKey(), Math.min(254, Math.max(1, lengths.getOrDefault(type.getKey(), 1))));
+      }
+    }
+
+    List<String> fields = new ArrayList<>(types.keySet());
+    int recordLength = 1;
+    for (String field : fields) {
+      recordLength += lengths.get(field);
+    }
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(dbf))) {
+      int headerLength = 32 + 32 * fields.size() + 1;
+      ByteBuffer header = ByteBuffer.allocate(headerLength).order(ByteOrder.LITTLE_ENDIAN);
+      header.put(0, (byte) 3);
+      header.putInt(4, properties.size());
+      header.putShort(8, (short) headerLength);
+      header.putShort(10, (short) recordLength);
+      header.put(29, (byte) 0x00);
+      for (int i = 0; i < fields.size(); i++) {
+        int offset = 32 + 32 * i;
+        byte[] name = fields.get(i).getBytes(StandardCharsets.ISO_8859_1);
+        for (int j = 0; j < Math.min(10, name.length); j++) {
+          header.put(offset + j, name[j]);
+        }
+        header.put(offset + 11, (byte) (char) types.get(fields.get(i)));
+        header.put(offset + 16, (byte) (int) lengths.get(fields.get(i)));
+        header.put(offset + 17, (byte) (int) decimals.getOrDefault(fields.get(i), 0));
+      }
+      header.put(headerLength - 1, (byte) 0x0d);
+      out.write(header.array());
+
+      byte[] record = new byte[recordLength];
+      for (Map<String, Object> featureProperties : properties) {
+        Arrays.fill(record, (byte) ' ');
+        int offset = 1;
+        for (String field : fields) {
+          int length = lengths.get(field);
+          Object value = featureProperties.get(field);
+          if (value != null) {
+            char type = types.get(field);
+            byte[] bytes = text(value, type).getBytes(StandardCharsets.UTF_8);
+            int copied = Math.min(length, bytes.length);
+            // numbers are right aligned
+            int start = type == 'N' || type == 'F' ? offset + length - copied : offset;
+            System.arraycopy(bytes, 0, record, start, copied);
+          }
+          offset += length;
+        }
+        out.write(record);
+      }
+      out.write(0x1a);
+    }
+  }
+
+  private static String text(Object value, char type) {
+    switch (type) {
+      case 'D':
+        return value.toString().replace("/", "");
+      case 'L':
+        return (Boolean) value ? "T" : "F";
+      default:
+        return value.toString();
+    }
+  }
+
+}
@@ -0,0 +1,69 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares creating area statements for many NVRIDs using StatementBuilder and ReferenceBuilder
+ * with named entity lookups, against {@link StatementTemplates}.
+ * <p>
+ * Not executed as a unit test, run main from the IDE or using exec:java with test classpath.
+ */
+public class StatementTemplatesBenchmark {
+
+  private static final int objects = 20000;
+  private static final int statementsPerObject = 8;
+  private static final int rounds = 10;
+
+  public static void main(String[] args) throws Exception {
+    WikiData wikiData = TestStatementTemplates.offlineWikiData();
+    List<NaturvardsregistretObject> naturvardsregistretObjects = new ArrayList<>(objects);
+    for (int i = 0; i < objects; i++) {
+      naturvardsregistretObjects.add(TestStatementTemplates.naturvardsregistretObject(String.valueOf(2000000 + i)));
+    }
+    StatementTemplates templates = new StatementTemplates(wikiData,
+        naturvardsregistretObjects.get(0).getPublishedDate(), naturvardsregistretObjects.get(0).getRetrievedDate());
+
+    ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+
+    for (int round = 0; round < rounds; round++) {
+      long blackhole = 0;
+
+      long bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+      long started = System.nanoTime();
+      for (NaturvardsregistretObject object : naturvardsregistretObjects) {
+        for (int i = 0; i < statementsPerObject; i++) {
+          blackhole += TestStatementTemplates.builderAreaLandStatement(wikiData, object).getReferences().size();
+        }
+      }
+      long builderNanos = System.nanoTime() - started;
+      long builderBytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytes;
+
+      for (NaturvardsregistretObject object : naturvardsregistretObjects) {
+        object.setReference(null);
+      }
+
+      bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+      started = System.nanoTime();
+      for (NaturvardsregistretObject object : naturvardsregistretObjects) {
+        for (int i = 0; i < statementsPerObject; i++) {
+          blackhole += TestStatementTemplates.templateAreaLandStatement(templates, object).getReferences().size();
+        }
+      }
+      long templateNanos = System.nanoTime() - started;
+      long templateBytes = threadMXBean.getThreadAllocatedBytes(threadId) - bytes;
+
+      int statements = objects * statementsPerObject;
+      System.out.println(String.format("round %d\tbuilder %.0f ns %d bytes/statement\ttemplates %.0f ns %d bytes/statement\t(%d)",
+          round,
+          builderNanos / (double) statements, builderBytes / statements,
+          templateNanos / (double) statements, templateBytes / statements,
+          blackhole));
+    }
+  }
+
+}
@@ -0,0 +1,89 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.geojson.Feature;
+import org.geojson.LngLatAlt;
+import org.geojson.MultiPoint;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+public class TestCapacityPlanner {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testEstimate() throws Exception {
+    Progress progress = new Progress();
+    Progress.Entity changed = new Progress.Entity();
+    changed.setNvrid("changed");
+    changed.setWikidataIdentity("Q1");
+    changed.setFeatureFingerprint("previous fingerprint");
+    changed.setEpochStarted(0L);
+    changed.setEpochEnded(10000L);
+    changed.getModifiedClaims().add("area");
+    Progress.Entity previous = new Progress.Entity();
+    previous.setNvrid("changed");
+    previous.setEpochStarted(0L);
+    previous.setEpochEnded(4000L);
+    changed.setPreviousExecution(previous);
+    progress.add(changed);
+
+    CapacityPlanner planner = new CapacityPlanner();
+    CapacityPlanner.Estimate estimate = planner.estimate("TestBot",
+        NvrFeatureCollection.of(new ObjectMapper(), Arrays.asList(TestWorkPlanner.feature("changed", true), TestWorkPlanner.feature("new", false))).getFeatures(),
+        progress);
+
+    Assert.assertEquals(2, estimate.getPlannedFeatures());
+    Assert.assertEquals(2, estimate.getHistoricalExecutions());
+    // one operator lookup and one NVRID lookup per feature
+    Assert.assertEquals(3, estimate.getWdqsRequests());
+    Assert.assertEquals(2, estimate.getWikidataReads());
+    // changed: one edit in one of one previous re-executions, new: assumed new item
+    Assert.assertEquals(2d, estimate.getWikidataEdits(), 0d);
+    // new polygon: data page and talk page are read and created
+    Assert.assertEquals(2d, estimate.getCommonsReads(), 0d);
+    Assert.assertEquals(2d, estimate.getCommonsEdits(), 0d);
+    // 6 Commons requests at 10/minute
+    Assert.assertEquals(36000, estimate.getCommonsThrottleMilliseconds());
+    Assert.assertEquals(4000, estimate.getWikidataThrottleMilliseconds());
+    // changed as previously observed, new as throttled
+    Assert.assertEquals(10000 + 36000 + 2000, estimate.getEstimatedMilliseconds());
+    Assert.assertEquals(8000, estimate.getOtherMilliseconds());
+  }
+
+  @Test
+  public void testEstimateOperatorsAndMultiPoint() throws Exception {
+    Feature dictionary = TestWorkPlanner.feature("dictionary", true);
+    Feature cached = TestWorkPlanner.feature("cached", true);
+    cached.setProperty("FORVALTARE", "Stiftelsen Eken");
+    Feature unknown = TestWorkPlanner.feature("unknown", true);
+    unknown.setProperty("FORVALTARE", "Okänd förvaltare");
+    Feature multiPoint = TestWorkPlanner.feature("multipoint", true);
+    multiPoint.setGeometry(new MultiPoint(new LngLatAlt(18, 59), new LngLatAlt(18.1, 59.1)));
+
+    OperatorDictionary operatorDictionary = new OperatorDictionary();
+    operatorDictionary.add("Länsstyrelsen", "Q1");
+
+    try (SparqlCache sparqlCache = new SparqlCache(new File(folder.getRoot(), "sparql"))) {
+      sparqlCache.open();
+      sparqlCache.put(WikiData.LABEL_QUERY_CLASS, WikiData.labelQuery("Stiftelsen Eken", "sv"), "Q2");
+
+      CapacityPlanner.Estimate estimate = new CapacityPlanner().estimate("TestBot",
+          NvrFeatureCollection.of(new ObjectMapper(), Arrays.asList(dictionary, cached, unknown, multiPoint)).getFeatures(),
+          new Progress(), operatorDictionary, sparqlCache);
+
+      // one unknown operator lookup and one NVRID lookup per feature
+      Assert.assertEquals(1 + 4, estimate.getWdqsRequests());
+      // multi point gets a geoshape
+      Assert.assertEquals(2d, estimate.getCommonsReads(), 0d);
+      Assert.assertEquals(2d, estimate.getCommonsEdits(), 0d);
+    }
+  }
+
+}
@@ -0,0 +1,33 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.io.WKTReader;
+
+public class TestCentroidLocator {
+
+  @Test
+  public void testContainedCentroid() throws Exception {
+    WKTReader reader = new WKTReader();
+
+    Geometry square = reader.read("POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0))");
+    Assert.assertTrue(square.getCentroid().equalsExact(CentroidLocator.containedCentroid(square)));
+
+    // centroid in the opening of the C
+    Geometry c = reader.read("POLYGON ((0 0, 10 0, 10 2, 2 2, 2 8, 10 8, 10 10, 0 10, 0 0))");
+    Assert.assertFalse(c.intersects(c.getCentroid()));
+    Assert.assertTrue(c.intersects(CentroidLocator.containedCentroid(c)));
+
+    // centroid between the islands
+    Geometry islands = reader.read("MULTIPOLYGON (((0 0, 1 0, 1 1, 0 1, 0 0)), ((9 0, 10 0, 10 1, 9 1, 9 0)))");
+    Assert.assertTrue(islands.intersects(CentroidLocator.containedCentroid(islands)));
+
+    Geometry points = reader.read("MULTIPOINT ((0 0), (4 0), (10 0))");
+    Point centroid = CentroidLocator.containedCentroid(points);
+    Assert.assertEquals(4d, centroid.getX(), 0d);
+    Assert.assertEquals(0d, centroid.getY(), 0d);
+  }
+
+}
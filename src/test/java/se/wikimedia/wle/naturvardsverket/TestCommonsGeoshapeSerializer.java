@@ -0,0 +1,56 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.geojson.Feature;
+import org.geojson.LngLatAlt;
+import org.geojson.Polygon;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class TestCommonsGeoshapeSerializer {
+
+  @Test
+  public void testCanonical() throws Exception {
+    CommonsGeoshapeSerializer serializer = new CommonsGeoshapeSerializer();
+    serializer.setCoordinateDecimals(4);
+    serializer.setPropertyWhitelist(new HashSet<>(Arrays.asList("NVRID", "NAMN")));
+
+    Feature feature = new Feature();
+    feature.setProperty("SHAPE_LEN", 180765.24495200001d);
+    feature.setProperty("NVRID", "2000001");
+    feature.setProperty("NAMN", "Reservatet");
+    feature.setGeometry(new Polygon(
+        new LngLatAlt(14.222372011645753, 56.171678547612352),
+        new LngLatAlt(14.223833020007531, 56.171406705723001),
+        new LngLatAlt(14.224095131411811, 56.171440230760325),
+        new LngLatAlt(14.222372011645753, 56.171678547612352)));
+
+    ObjectNode page = JsonNodeFactory.instance.objectNode();
+    page.put("zoom", 12);
+    page.put("license", "CC0-1.0");
+    page.set("data", serializer.feature(feature));
+
+    String json = serializer.serialize(page);
+    Assert.assertEquals("{\"data\":{\"geometry\":{\"coordinates\":[[[14.2224,56.1717],[14.2238,56.1714],[14.2241,56.1714],[14.2224,56.1717]]],\"type\":\"Polygon\"}," +
+        "\"properties\":{\"NAMN\":\"Reservatet\",\"NVRID\":\"2000001\"},\"type\":\"Feature\"},\"license\":\"CC0-1.0\",\"zoom\":12}", json);
+
+    // same content in another order serializes to the same bytes
+    ObjectNode reordered = JsonNodeFactory.instance.objectNode();
+    reordered.set("data", serializer.feature(feature));
+    reordered.put("license", "CC0-1.0");
+    reordered.put("zoom", 12);
+    Assert.assertEquals(json, serializer.serialize(reordered));
+
+    // as pretty-printed by MediaWiki when saved
+    String saved = new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(new ObjectMapper().readTree(json));
+    Assert.assertNotEquals(json, saved);
+    Assert.assertEquals(json, serializer.canonical(saved));
+    Assert.assertNull(serializer.canonical("<html>"));
+  }
+
+}
@@ -0,0 +1,50 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class TestDebugCapture {
+
+  @Test
+  public void testRing() throws Exception {
+    Logger logger = Logger.getLogger(getClass().getName() + ".testRing");
+    logger.setAdditivity(false);
+    logger.setLevel(Level.TRACE);
+    DebugCapture appender = new DebugCapture();
+    appender.setLayout(new PatternLayout("%p %m%n"));
+    logger.addAppender(appender);
+
+    logger.trace("not captured");
+    Assert.assertTrue(DebugCapture.end().isEmpty());
+
+    DebugCapture.begin(3);
+    for (int i = 1; i <= 5; i++) {
+      logger.trace("event " + i);
+    }
+    Thread other = new Thread(() -> logger.debug("other thread"));
+    other.start();
+    other.join();
+    logger.error("failed", new IllegalStateException("broken"));
+
+    List<String> events = DebugCapture.end();
+    Assert.assertEquals(4, events.size());
+    Assert.assertEquals("... 3 earlier events dropped\n", events.get(0));
+    Assert.assertEquals("TRACE event 4\n", events.get(1));
+    Assert.assertEquals("TRACE event 5\n", events.get(2));
+    Assert.assertTrue(events.get(3).startsWith("ERROR failed\njava.lang.IllegalStateException: broken\n"));
+
+    logger.trace("not captured");
+    Assert.assertTrue(DebugCapture.end().isEmpty());
+
+    DebugCapture.begin(3);
+    logger.trace("discarded");
+    DebugCapture.discard();
+    Assert.assertTrue(DebugCapture.end().isEmpty());
+  }
+
+}
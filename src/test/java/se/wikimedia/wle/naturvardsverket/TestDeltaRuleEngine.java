@@ -0,0 +1,95 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.ItemDocumentBuilder;
+import org.wikidata.wdtk.datamodel.helpers.StatementBuilder;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestDeltaRuleEngine {
+
+  @Test
+  public void testReplaceAndFreshness() throws Exception {
+    NatureReserveBot bot = new NatureReserveBot();
+    bot.wikiData = TestStatementTemplates.offlineWikiData();
+
+    NaturvardsregistretObject object = TestStatementTemplates.naturvardsregistretObject("2005088");
+    object.getFeature().setProperty("SKOG_HA", 3d);
+    StatementTemplates templates = bot.getStatementTemplates(object);
+
+    // land area has changed, forest area is published after local data
+    NaturvardsregistretObject fresher = TestStatementTemplates.naturvardsregistretObject("2005088");
+    fresher.setPublishedDate(LocalDate.parse("2021-01-01"));
+    StatementTemplates fresherTemplates = new StatementTemplates(bot.getWikiData(), fresher.getPublishedDate(), fresher.getRetrievedDate());
+    Statement existingLand = templates.statement(object, templates.getArea(), templates.hectares(1), templates.getLandQualifiers());
+    Statement existingForest = fresherTemplates.statement(fresher, templates.getArea(), templates.hectares(1), templates.getForestQualifiers());
+    object.setWikiDataItem(ItemDocumentBuilder.forItemId(ItemIdValue.NULL)
+        .withStatement(existingLand)
+        .withStatement(existingForest)
+        .build());
+    object.setStatementIndex(new ItemStatementIndex(bot.getWikiData(), object.getWikiDataItem()));
+
+    DeltaRuleEngine engine = new DeltaRuleEngine(bot, Arrays.asList(
+        new DeltaRule("area land", "Area land", "area", DeltaRule.Policy.REPLACE)
+            .setQualifier("applies to part", "land")
+            .setValueFactory(o -> templates.hectares(((Number) o.getFeature().getProperty("LAND_HA")).doubleValue())),
+        new DeltaRule("area forest", "Area forest", "area", DeltaRule.Policy.REPLACE)
+            .setQualifier("applies to part", "forest")
+            .setValueFactory(o -> templates.hectares(((Number) o.getFeature().getProperty("SKOG_HA")).doubleValue())),
+        new DeltaRule("area water", "Area body of water", "area", DeltaRule.Policy.REPLACE)
+            .setQualifier("applies to part", "body of water")
+            .setDeleteWhenNoValue(true)
+            .setValueFactory(o -> null)
+    ));
+
+    Progress.Entity progressEntity = new Progress.Entity();
+    List<Statement> addStatements = new ArrayList<>();
+    List<Statement> deleteStatements = new ArrayList<>();
+    engine.evaluate(object, progressEntity, addStatements, deleteStatements);
+
+    Assert.assertEquals(1, addStatements.size());
+    Assert.assertEquals(templates.statement(object, templates.getArea(), templates.hectares(12.3d), templates.getLandQualifiers()), addStatements.get(0));
+    Assert.assertEquals(1, deleteStatements.size());
+    Assert.assertEquals(existingLand, deleteStatements.get(0));
+    Assert.assertEquals(Arrays.asList("area land"), new ArrayList<>(progressEntity.getCreatedClaims()));
+    Assert.assertEquals(Arrays.asList("area land"), new ArrayList<>(progressEntity.getDeletedClaims()));
+    Assert.assertEquals(Arrays.asList("Area forest publication date is fresher at Wikidata."), new ArrayList<>(progressEntity.getWarnings()));
+  }
+
+  @Test
+  public void testPointInTimeWithoutPublishedDate() throws Exception {
+    NatureReserveBot bot = new NatureReserveBot();
+    bot.wikiData = TestStatementTemplates.offlineWikiData();
+
+    NaturvardsregistretObject object = TestStatementTemplates.naturvardsregistretObject("2005088");
+    StatementTemplates templates = bot.getStatementTemplates(object);
+    Statement existing = StatementBuilder.forSubjectAndProperty(ItemIdValue.NULL, templates.getArea())
+        .withValue(templates.hectares(1))
+        .build();
+    object.setWikiDataItem(ItemDocumentBuilder.forItemId(ItemIdValue.NULL).withStatement(existing).build());
+    object.setStatementIndex(new ItemStatementIndex(bot.getWikiData(), object.getWikiDataItem()));
+
+    DeltaRuleEngine engine = new DeltaRuleEngine(bot, Arrays.asList(
+        new DeltaRule("area", "Area", "area", DeltaRule.Policy.POINT_IN_TIME)
+            .setDisplayName("total area")
+            .setValueFactory(o -> templates.hectares(2))
+    ));
+
+    Progress.Entity progressEntity = new Progress.Entity();
+    List<Statement> addStatements = new ArrayList<>();
+    List<Statement> deleteStatements = new ArrayList<>();
+    engine.evaluate(object, progressEntity, addStatements, deleteStatements);
+
+    Assert.assertEquals(1, addStatements.size());
+    Assert.assertTrue(deleteStatements.isEmpty());
+    Assert.assertEquals(Arrays.asList("No published date to use for point in time. Previous total area left untouched."),
+        new ArrayList<>(progressEntity.getWarnings()));
+  }
+
+}
@@ -0,0 +1,64 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class TestGeoPackageReader {
+
+  /**
+   * Feature table naturvardsregistret in SWEREF 99 TM with three features: a polygon with a hole and an envelope,
+   * the Lantmäteriet control point N 7454204.638 E 761811.242 without an envelope and blank values, and no geometry.
+   */
+  private File fixture() throws Exception {
+    return new File(getClass().getResource("/naturvardsregistret.gpkg").toURI());
+  }
+
+  @Test
+  public void testRead() throws Exception {
+    NvrFeatureCollection collection = NvrFeatureCollection.read(new ObjectMapper(), fixture());
+    Assert.assertEquals(NvrFeatureCollection.CRS84, collection.getCrs());
+    Assert.assertEquals(3, collection.getFeatures().size());
+
+    NvrFeature polygon = collection.getFeatures().get(0);
+    Assert.assertEquals("2001220", polygon.getNvrid());
+    Assert.assertEquals("Ängsö", polygon.getProperty("NAMN"));
+    Assert.assertEquals("Gällande", polygon.getDecisionStatus());
+    Assert.assertEquals(199897.57, (Double) polygon.getProperty("AREA_HA"), 0d);
+    Assert.assertEquals(3, polygon.getProperty("ANTAL"));
+    Assert.assertEquals("1909/05/24", polygon.getProperty("URSBESLDAT"));
+    Assert.assertEquals(PackedGeometry.Type.Polygon, polygon.getPackedGeometry().getType());
+    org.geojson.Polygon geometry = (org.geojson.Polygon) polygon.getGeometry();
+    Assert.assertEquals(2, geometry.getCoordinates().size());
+    double[] corner = {674000d, 6580000d};
+    Sweref99Tm.toWgs84(corner, 2);
+    Assert.assertEquals(corner[0], geometry.getCoordinates().get(0).get(0).getLongitude(), 1e-9);
+    Assert.assertEquals(corner[1], geometry.getCoordinates().get(0).get(0).getLatitude(), 1e-9);
+
+    NvrFeature point = collection.getFeatures().get(1);
+    Assert.assertEquals("2001221", point.getNvrid());
+    // blank text is null, as in GeoJSON converted by ogr2ogr
+    Assert.assertNull(point.getDecisionStatus());
+    Assert.assertNull(point.getProperty("URSBESLDAT"));
+    org.geojson.Point coordinates = (org.geojson.Point) point.getGeometry();
+    // 67°05'26.452769" N 21°02'05.101575" E
+    Assert.assertEquals(21 + 2 / 60d + 5.101575 / 3600, coordinates.getCoordinates().getLongitude(), 1e-7);
+    Assert.assertEquals(67 + 5 / 60d + 26.452769 / 3600, coordinates.getCoordinates().getLatitude(), 1e-7);
+
+    Assert.assertNull(collection.getFeatures().get(2).getPackedGeometry());
+  }
+
+  @Test
+  public void testNamedTable() throws Exception {
+    Assert.assertEquals(3, GeoPackageReader.read(fixture(), "naturvardsregistret").getFeatures().size());
+    try {
+      GeoPackageReader.read(fixture(), "missing");
+      Assert.fail();
+    } catch (java.io.IOException e) {
+      Assert.assertTrue(e.getMessage().startsWith("No geometry column of missing"));
+    }
+  }
+
+}
@@ -0,0 +1,42 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+
+import java.io.File;
+import java.nio.file.Files;
+
+public class TestGeometryCache {
+
+  @Test
+  public void testKeyedOnNvridAndHash() throws Exception {
+    File directory = Files.createTempDirectory("geometry-cache").toFile();
+    try (GeometryCache cache = new GeometryCache(new File(directory, "cache"))) {
+      cache.open();
+      Assert.assertNull(cache.get("2000001", "a"));
+
+      GeometryCache.DerivedGeometry derived = new GeometryCache.DerivedGeometry();
+      derived.setWkb(new byte[]{1, 2, 3});
+      derived.setCentroidX(17.5);
+      derived.setCentroidY(59.5);
+      derived.setEnvelope(new Envelope(17, 18, 59, 60));
+      derived.setZoom(11);
+      cache.put("2000001", "a", derived);
+      Assert.assertEquals(derived, cache.get("2000001", "a"));
+
+      // changed geometry replaces the entry
+      derived.setZoom(10);
+      cache.put("2000001", "b", derived);
+      Assert.assertNull(cache.get("2000001", "a"));
+      Assert.assertEquals(10, cache.get("2000001", "b").getZoom());
+      Assert.assertEquals(2, cache.getHits());
+      Assert.assertEquals(2, cache.getMisses());
+    }
+    try (GeometryCache cache = new GeometryCache(new File(directory, "cache"))) {
+      cache.open();
+      Assert.assertEquals(new Envelope(17, 18, 59, 60), cache.get("2000001", "b").getEnvelope());
+    }
+  }
+
+}
@@ -0,0 +1,72 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.ItemDocumentBuilder;
+import org.wikidata.wdtk.datamodel.helpers.StatementBuilder;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeSet;
+
+public class TestItemPropertyFilter {
+
+  @Test
+  public void testFilterItemProperties() {
+    ItemIdValue item = Datamodel.makeWikidataItemIdValue("Q1");
+    PropertyIdValue area = Datamodel.makeWikidataPropertyIdValue("P2046");
+    PropertyIdValue appliesToPart = Datamodel.makeWikidataPropertyIdValue("P518");
+    PropertyIdValue image = Datamodel.makeWikidataPropertyIdValue("P18");
+
+    ItemDocument document = ItemDocumentBuilder.forItemId(item)
+        .withLabel("Eken", "sv")
+        .withStatement(StatementBuilder.forSubjectAndProperty(item, area)
+            .withValue(Datamodel.makeQuantityValue(new BigDecimal(12)))
+            .withQualifierValue(appliesToPart, Datamodel.makeWikidataItemIdValue("Q4421"))
+            .build())
+        .withStatement(StatementBuilder.forSubjectAndProperty(item, image)
+            .withValue(Datamodel.makeStringValue("Eken.jpg"))
+            .build())
+        .withRevisionId(42)
+        .build();
+
+    ItemDocument filtered = WikiData.filterItemProperties(document, Collections.singleton(area));
+    Assert.assertEquals(1, filtered.getStatementGroups().size());
+    Assert.assertNotNull(filtered.findStatementGroup(area));
+    Assert.assertNull(filtered.findStatementGroup(image));
+    // qualifiers, terms and revision are kept
+    Assert.assertEquals(1, filtered.findStatementGroup(area).getStatements().get(0).getQualifiers().size());
+    Assert.assertEquals("Eken", filtered.getLabels().get("sv").getText());
+    Assert.assertEquals(42, filtered.getRevisionId());
+  }
+
+  @Test
+  public void testItemRequestParameters() {
+    Map<String, String> parameters = WikiData.itemRequestParameters("Q1", new TreeSet<>(Arrays.asList("sv", "en")));
+    Assert.assertEquals("info|labels|descriptions|claims", parameters.get("props"));
+    Assert.assertEquals("en|sv", parameters.get("languages"));
+
+    parameters = WikiData.itemRequestParameters("Q1", Collections.emptySet());
+    Assert.assertEquals("info|claims", parameters.get("props"));
+    Assert.assertFalse(parameters.containsKey("languages"));
+  }
+
+  @Test
+  public void testReadItemDocument() throws Exception {
+    ObjectMapper objectMapper = new ObjectMapper();
+    ItemDocument item = WikiData.readItemDocument(objectMapper.readTree("{\"entities\": {\"Q1\": {\"type\": \"item\", \"id\": \"Q1\"," +
+        " \"lastrevid\": 42, \"labels\": {\"sv\": {\"language\": \"sv\", \"value\": \"Eken\"}}, \"descriptions\": [], \"claims\": []}}}"), "Q1");
+    Assert.assertEquals(42, item.getRevisionId());
+    Assert.assertEquals("Eken", item.getLabels().get("sv").getText());
+    Assert.assertTrue(item.getAliases().isEmpty());
+    Assert.assertNull(WikiData.readItemDocument(objectMapper.readTree("{\"entities\": {\"Q2\": {\"id\": \"Q2\", \"missing\": \"\"}}}"), "Q2"));
+  }
+
+}
@@ -0,0 +1,73 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.ItemDocumentBuilder;
+import org.wikidata.wdtk.datamodel.helpers.ReferenceBuilder;
+import org.wikidata.wdtk.datamodel.helpers.StatementBuilder;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
+
+import java.time.LocalDate;
+
+public class TestItemStatementIndex {
+
+  @Test
+  public void testSameAnswersAsWikiData() throws Exception {
+    WikiData wikiData = TestStatementTemplates.offlineWikiData();
+    NaturvardsregistretObject object = TestStatementTemplates.naturvardsregistretObject("2005088");
+    StatementTemplates templates = new StatementTemplates(wikiData, object.getPublishedDate(), object.getRetrievedDate());
+
+    PropertyIdValue area = wikiData.property("area");
+    PropertyIdValue appliesToPart = wikiData.property("applies to part");
+    PropertyIdValue operator = wikiData.property("operator");
+
+    Statement areaStatement = templates.statement(object, area, templates.hectares(10));
+    Statement landStatement = templates.statement(object, area, templates.hectares(8), templates.getLandQualifiers());
+    Statement forestStatement = templates.statement(object, area, templates.hectares(5), templates.getForestQualifiers());
+    Statement olderOperator = StatementBuilder.forSubjectAndProperty(ItemIdValue.NULL, operator)
+        .withValue(wikiData.entity("Sweden"))
+        .withReference(ReferenceBuilder.newInstance()
+            .withPropertyValue(wikiData.property("publication date"), wikiData.toTimeValue(LocalDate.parse("2018-01-01")))
+            .build())
+        .build();
+    Statement unpublishedOperator = StatementBuilder.forSubjectAndProperty(ItemIdValue.NULL, operator)
+        .withValue(wikiData.entity("land"))
+        .build();
+    Statement newerOperator = templates.statement(object, operator, wikiData.entity("forest"));
+
+    ItemDocument item = ItemDocumentBuilder.forItemId(ItemIdValue.NULL)
+        .withStatement(areaStatement)
+        .withStatement(landStatement)
+        .withStatement(forestStatement)
+        .withStatement(olderOperator)
+        .withStatement(unpublishedOperator)
+        .withStatement(newerOperator)
+        .build();
+
+    ItemStatementIndex index = new ItemStatementIndex(wikiData, item);
+
+    Assert.assertEquals(wikiData.findStatementWithoutQualifier(item, area), index.findStatementWithoutQualifier(area));
+    Assert.assertEquals(areaStatement, index.findStatementWithoutQualifier(area));
+    Assert.assertEquals(wikiData.findStatementByUniqueQualifier(item, area, appliesToPart, wikiData.entity("land")),
+        index.findStatementByUniqueQualifier(area, appliesToPart, wikiData.entity("land")));
+    Assert.assertEquals(forestStatement, index.findStatementByUniqueQualifier(area, appliesToPart, wikiData.entity("forest")));
+    Assert.assertNull(index.findStatementByUniqueQualifier(area, appliesToPart, wikiData.entity("body of water")));
+    Assert.assertNull(index.findStatementWithoutQualifier(wikiData.property("country")));
+
+    Assert.assertEquals(wikiData.findMostRecentPublishedStatement(item, operator), index.findMostRecentPublishedStatement(operator));
+    Assert.assertEquals(newerOperator, index.findMostRecentPublishedStatement(operator));
+    Assert.assertEquals(wikiData.findMostRecentPublishedStatement(item, area), index.findMostRecentPublishedStatement(area));
+    Assert.assertEquals(3, index.getStatements(area).size());
+    Assert.assertTrue(index.getStatements(wikiData.property("country")).isEmpty());
+
+    Statement indexedOlderOperator = index.getStatements(operator).get(0);
+    Assert.assertEquals(wikiData.toTimeValue(LocalDate.parse("2018-01-01")), index.getPublishedDate(indexedOlderOperator));
+    Assert.assertNull(index.getPublishedDate(index.getStatements(operator).get(1)));
+    Assert.assertTrue(index.isPublishedAfter(indexedOlderOperator, LocalDate.parse("2017-12-31")));
+    Assert.assertFalse(index.isPublishedAfter(indexedOlderOperator, LocalDate.parse("2018-01-01")));
+  }
+
+}
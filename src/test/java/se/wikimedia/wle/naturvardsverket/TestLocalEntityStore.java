@@ -0,0 +1,75 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.*;
+import org.wikidata.wdtk.datamodel.interfaces.*;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class TestLocalEntityStore {
+
+  @Test
+  public void testImportSlice() throws Exception {
+    File directory = Files.createTempDirectory("local-entity-store").toFile();
+    File dump = new File(directory, "slice.json");
+
+    PropertyIdValue nvrid = Datamodel.makeWikidataPropertyIdValue("P3613");
+    ItemDocument reserve = ItemDocumentBuilder.forItemId(Datamodel.makeWikidataItemIdValue("Q1000"))
+        .withLabel("Naturreservat", "sv")
+        .withStatement(StatementBuilder.forSubjectAndProperty(Datamodel.makeWikidataItemIdValue("Q1000"), nvrid)
+            .withValue(Datamodel.makeStringValue("2000001"))
+            .build())
+        .build();
+    ItemDocument sweden = ItemDocumentBuilder.forItemId(Datamodel.makeWikidataItemIdValue("Q34")).build();
+    ItemDocument unrelated = ItemDocumentBuilder.forItemId(Datamodel.makeWikidataItemIdValue("Q42")).build();
+    PropertyDocument instanceOf = PropertyDocumentBuilder.forPropertyIdAndDatatype(
+        Datamodel.makeWikidataPropertyIdValue("P31"), DatatypeIdValue.DT_ITEM).build();
+
+    try (PrintWriter out = new PrintWriter(dump, StandardCharsets.UTF_8.name())) {
+      out.println("[");
+      out.println(JsonSerializer.getJsonString(reserve) + ",");
+      out.println(JsonSerializer.getJsonString(unrelated) + ",");
+      out.println(JsonSerializer.getJsonString(sweden) + ",");
+      out.println(JsonSerializer.getJsonString(instanceOf));
+      out.println("]");
+    }
+
+    try (LocalEntityStore store = new LocalEntityStore(new File(directory, "wikidata"))) {
+      store.open();
+      store.importDump(dump, new HashSet<>(Arrays.asList("P31", "Q34", "Q35852")));
+
+      Assert.assertEquals(3, store.countEntities());
+      Assert.assertEquals(Arrays.asList("Q1000"), store.findItemIdsByNvrid("2000001"));
+      Assert.assertTrue(store.findItemIdsByNvrid("2000002").isEmpty());
+      Assert.assertNull(store.getEntityDocument("Q42"));
+      Assert.assertTrue(store.getEntityDocument("P31") instanceof PropertyDocument);
+
+      ItemDocument item = (ItemDocument) store.getEntityDocument("Q1000");
+      Assert.assertTrue("labels are filtered as when fetched from Wikidata", item.getLabels().isEmpty());
+      Assert.assertEquals(reserve.getStatementGroups(), item.getStatementGroups());
+
+      WikiData wikiData = new WikiData("test", "0", null, null, null);
+      wikiData.setLocalEntityStore(store);
+      wikiData.open();
+      Assert.assertEquals("Q1000", wikiData.findItemIdByNvrid("2000001"));
+      Assert.assertEquals("Q34", wikiData.getEntityIdValue("Q34").getId());
+      Assert.assertNull(wikiData.findSingleObjectByUniqueLabel("Sverige", "sv"));
+      wikiData.close();
+    }
+  }
+
+  @Test
+  public void testOfflineProgressKeptApart() throws Exception {
+    NationalParkBot bot = new NationalParkBot();
+    Assert.assertEquals("NationalParkBot", bot.getProgressName());
+    bot.setLocalEntityStore(new LocalEntityStore(new File(Files.createTempDirectory("local-entity-store").toFile(), "store")));
+    Assert.assertEquals("NationalParkBot-offline", bot.getProgressName());
+  }
+
+}
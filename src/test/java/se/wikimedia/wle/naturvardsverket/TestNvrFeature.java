@@ -0,0 +1,60 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.geojson.Feature;
+import org.geojson.FeatureCollection;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+public class TestNvrFeature {
+
+  private static final String json = "{\"type\": \"FeatureCollection\", \"name\": \"naturminne\"," +
+      " \"crs\": { \"type\": \"name\", \"properties\": { \"name\": \"urn:ogc:def:crs:OGC:1.3:CRS84\" } }," +
+      " \"features\": [" +
+      "{ \"type\": \"Feature\", \"properties\": { \"NVRID\": \"5000001\", \"NAMN\": \"Eken\", \"SKYDDSTYP\": \"Naturminne\"," +
+      " \"BESLSTATUS\": \"Gällande\", \"LAN\": \"Uppsala län\", \"KOMMUN\": \"Uppsala\", \"FORVALTARE\": \"Länsstyrelsen i Uppsala län\"," +
+      " \"IUCNKAT\": \"III\", \"AREA_HA\": 0.25, \"LAND_HA\": 1, \"VATTEN_HA\": null, \"IKRAFTDAT\": \"1952/04/01\"," +
+      " \"URSBESLDAT\": \"1952-04-01\", \"SENGALLDAT\": \"1952/04/01\", \"BESLDAT\": \"1952/04/01\", \"LAGRUM\": \"Naturskyddslagen\" }," +
+      " \"geometry\": { \"type\": \"Point\", \"coordinates\": [ 17.6, 59.8 ] } }," +
+      "{ \"type\": \"Feature\", \"properties\": { \"NVRID\": \"A123\", \"NAMN\": \"Stenen\", \"SKYDDSTYP\": \"Naturminne\"," +
+      " \"BESLSTATUS\": \"Gällande\", \"LAN\": \"Uppsala län\", \"KOMMUN\": \"Uppsala\", \"BESLDAT\": \"1960/01/01\" }," +
+      " \"geometry\": null }" +
+      "]}";
+
+  @Test
+  public void testSameAsFeature() throws Exception {
+    ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    FeatureCollection features = objectMapper.readValue(json, FeatureCollection.class);
+    NvrFeatureCollection nvrFeatures = objectMapper.readValue(json, NvrFeatureCollection.class);
+    // property order is not kept
+    ObjectMapper sortedObjectMapper = objectMapper.copy().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    Assert.assertEquals(2, nvrFeatures.getFeatures().size());
+    for (int i = 0; i < features.getFeatures().size(); i++) {
+      Feature feature = features.getFeatures().get(i);
+      feature.getProperties().entrySet().removeIf(property -> property.getValue() == null);
+      Assert.assertEquals(sortedObjectMapper.writeValueAsString(feature),
+          sortedObjectMapper.writeValueAsString(nvrFeatures.getFeatures().get(i).toFeature()));
+      Assert.assertEquals(feature.getProperties(), nvrFeatures.getFeatures().get(i).toFeature().getProperties());
+    }
+
+    NvrFeature eken = nvrFeatures.getFeatures().get(0);
+    Assert.assertEquals("5000001", eken.getNvrid());
+    Assert.assertEquals("Gällande", eken.getDecisionStatus());
+    Assert.assertEquals(1d, eken.getLandArea(), 0d);
+    Assert.assertEquals(1, eken.getProperty("LAND_HA"));
+    Assert.assertEquals(LocalDate.of(1952, 4, 1), eken.getInForceDate());
+    Assert.assertEquals("1952-04-01", eken.getProperty("URSBESLDAT"));
+    Assert.assertNull(eken.getProperty("VATTEN_HA"));
+
+    NvrFeature stenen = nvrFeatures.getFeatures().get(1);
+    Assert.assertEquals("A123", stenen.getNvrid());
+    Assert.assertNull(stenen.getGeometry());
+    Assert.assertSame(eken.getCounty(), stenen.getCounty());
+  }
+
+}
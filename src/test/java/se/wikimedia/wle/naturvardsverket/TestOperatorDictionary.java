@@ -0,0 +1,77 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Map;
+
+public class TestOperatorDictionary {
+
+  private OperatorDictionary dictionary() {
+    OperatorDictionary dictionary = new OperatorDictionary();
+    dictionary.add("Sala kommun", "Q1");
+    dictionary.add("Salems kommun", "Q2");
+    dictionary.add("Länsstyrelsen i Uppsala län", "Q3");
+    dictionary.add("Länsstyrelsen i Kalmar län", "Q4");
+    dictionary.add("Naturvårdsverket", "Q5");
+    return dictionary;
+  }
+
+  @Test
+  public void testNormalizedMatch() {
+    OperatorDictionary dictionary = dictionary();
+    OperatorDictionary.Match match = dictionary.find("Sala Kommun");
+    Assert.assertEquals("Q1", match.getItem());
+    Assert.assertEquals(1d, match.getScore(), 0d);
+    Assert.assertEquals("Q3", dictionary.find("  Länsstyrelsen i  Uppsala Län").getItem());
+  }
+
+  @Test
+  public void testFuzzyMatch() {
+    OperatorDictionary dictionary = dictionary();
+    // only suggested for review, never found
+    Assert.assertNull(dictionary.find("Länsstyrelsen Uppsala län"));
+    OperatorDictionary.Match match = dictionary.suggest("Länsstyrelsen Uppsala län");
+    Assert.assertEquals("Q3", match.getItem());
+    Assert.assertTrue(match.getScore() < 1d);
+    Assert.assertEquals("Q5", dictionary.suggest("Naturvårdsverk").getItem());
+    Assert.assertNull(dictionary.suggest("Sala kommun"));
+  }
+
+  @Test
+  public void testDistinctMunicipalities() throws Exception {
+    OperatorDictionary dictionary = new OperatorDictionary();
+    dictionary.load(new ObjectMapper(), new File("data/municipalities.json"), "sv");
+    Assert.assertEquals("Q42009", dictionary.find("Köpings kommun").getItem());
+    Assert.assertNotEquals("Q42009", dictionary.find("Nyköpings kommun").getItem());
+
+    // without Nyköpings kommun in the dictionary, it must not resolve as Köpings kommun
+    OperatorDictionary koping = new OperatorDictionary();
+    koping.add("Köpings kommun", "Q42009");
+    Assert.assertNull(koping.find("Nyköpings kommun"));
+    OperatorDictionary.Match suggestion = koping.suggest("Nyköpings kommun");
+    Assert.assertEquals("Q42009", suggestion.getItem());
+    Assert.assertEquals(0.87d, suggestion.getScore(), 0.01d);
+  }
+
+  @Test
+  public void testNoMatch() {
+    OperatorDictionary dictionary = dictionary();
+    Assert.assertNull(dictionary.find("Laponiatjuottjudus"));
+    Assert.assertNull(dictionary.find(null));
+    // too far from any candidate, but still reported as best
+    Assert.assertNull(dictionary.suggest("Salas"));
+    Assert.assertNotNull(dictionary.best("Salas"));
+  }
+
+  @Test
+  public void testItemsByName() {
+    Map<String, String> itemsByName = dictionary().getItemsByName();
+    Assert.assertEquals(5, itemsByName.size());
+    Assert.assertEquals("Q1", itemsByName.get("Sala kommun"));
+    Assert.assertEquals("Q5", itemsByName.get("Naturvårdsverket"));
+  }
+
+}
@@ -0,0 +1,58 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.geojson.GeoJsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.wololo.jts2geojson.GeoJSONReader;
+
+public class TestPackedGeometry {
+
+  private static final String[] geometries = {
+      "{\"type\":\"Point\",\"coordinates\":[17.6,59.8]}",
+      "{\"coordinates\":[17.6,59.8,12.0],\"type\":\"Point\"}",
+      "{\"type\":\"MultiPoint\",\"coordinates\":[[17.6,59.8],[17.7,59.9]]}",
+      "{\"type\":\"LineString\",\"coordinates\":[[17.6,59.8],[17.7,59.9]]}",
+      "{\"type\":\"Polygon\",\"coordinates\":[[[17.0,59.0],[18.0,59.0],[18.0,60.0],[17.0,60.0],[17.0,59.0]]," +
+          "[[17.2,59.2],[17.4,59.2],[17.4,59.4],[17.2,59.2]]]}",
+      "{\"type\":\"MultiPolygon\",\"bbox\":[14.0,56.0,18.0,60.0],\"coordinates\":[" +
+          "[[[17.0,59.0],[18.0,59.0],[18.0,60.0],[17.0,59.0]]]," +
+          "[[[14.0,56.0],[15.0,56.0],[15.0,57.0],[14.0,56.0]],[[14.2,56.2],[14.4,56.2],[14.4,56.4],[14.2,56.2]]]]}",
+  };
+
+  @Test
+  public void testSameAsGeoJson() throws Exception {
+    ObjectMapper objectMapper = new ObjectMapper();
+    GeometryFactory geometryFactory = new GeometryFactory();
+    for (String json : geometries) {
+      PackedGeometry packed = read(objectMapper, json);
+      GeoJsonObject expected = objectMapper.readValue(json, GeoJsonObject.class);
+      // bbox is not kept
+      expected.setBbox(null);
+      Assert.assertEquals(json, expected, packed.toGeoJson());
+      Assert.assertTrue(json, new GeoJSONReader().read(json).equalsExact(packed.toJts(geometryFactory)));
+    }
+
+    PackedGeometry multiPolygon = read(objectMapper, geometries[5]);
+    Assert.assertEquals(2, multiPolygon.getPolygons());
+    Assert.assertEquals(12, multiPolygon.getVertices());
+    Assert.assertEquals(3, read(objectMapper, geometries[1]).getDimension());
+    Assert.assertEquals(read(objectMapper, geometries[5]).hash(), multiPolygon.hash());
+    Assert.assertNotEquals(read(objectMapper, geometries[4]).hash(), multiPolygon.hash());
+  }
+
+  @Test(expected = java.io.IOException.class)
+  public void testMixedDimensions() throws Exception {
+    read(new ObjectMapper(), "{\"type\":\"LineString\",\"coordinates\":[[17.6,59.8],[17.7,59.9,1.0]]}");
+  }
+
+  private static PackedGeometry read(ObjectMapper objectMapper, String json) throws Exception {
+    try (JsonParser p = objectMapper.getFactory().createParser(json)) {
+      p.nextToken();
+      return PackedGeometry.read(p);
+    }
+  }
+
+}
@@ -0,0 +1,97 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class TestProgressAnalyzer {
+
+  // stackTraces both before and after processed, to be skipped by the streaming parser
+  private static final String json = "{\"stackTraces\": {\"abc\": \"java.io.IOException\\n\\tat Foo.bar(Foo.java:1)\\n\"}," +
+      " \"processed\": {" +
+      "\"1\": {\"nvrid\": \"1\", \"epochStarted\": 3600000, \"epochEnded\": 3600500, \"createdWikidata\": true, \"createdClaims\": [\"area\"], \"createdTerms\": [\"label sv\"]," +
+      " \"previousExecution\": {\"nvrid\": \"1\", \"epochStarted\": 0, \"epochEnded\": 100, \"error\": \"java.lang.NullPointerException: foo\"}}," +
+      "\"2\": {\"nvrid\": \"2\", \"epochStarted\": 1000, \"epochEnded\": 1300, \"skipped\": true}," +
+      "\"3\": {\"nvrid\": \"3\", \"epochStarted\": 5000, \"epochEnded\": 5050, \"error\": \"java.io.IOException: read timed out\", \"errorHash\": \"abc\"," +
+      " \"previousExecution\": {\"nvrid\": \"3\", \"epochStarted\": 2000, \"epochEnded\": 2700, \"error\": \"java.io.IOException\"}}" +
+      "}, \"unknown\": [1, 2, {\"a\": 3}]}";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testAnalyze() throws Exception {
+    File file = folder.newFile("NationalParkBot.json");
+    Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+
+    ProgressAnalyzer analyzer = new ProgressAnalyzer();
+    analyzer.analyze(file);
+
+    TreeMap<Long, ProgressAnalyzer.Bucket> buckets = analyzer.getBucketsByBot().get("NationalParkBot");
+    Assert.assertEquals(2, buckets.size());
+
+    ProgressAnalyzer.Bucket first = buckets.get(0L);
+    Assert.assertEquals(4, first.getExecutions());
+    Assert.assertEquals(3, first.getFailed());
+    Assert.assertEquals(1, first.getSkipped());
+    Assert.assertEquals(0, first.getEdits());
+    // durations 50, 100, 300 and 700 ms
+    Assert.assertEquals(50, first.durationPercentile(25));
+    Assert.assertEquals(100, first.durationPercentile(50));
+    Assert.assertEquals(300, first.durationPercentile(51));
+    Assert.assertEquals(700, first.durationPercentile(90));
+    Assert.assertEquals(700, first.durationPercentile(99));
+
+    ProgressAnalyzer.Bucket second = buckets.get(3600000L);
+    Assert.assertEquals(1, second.getExecutions());
+    // terms are added in the same edit as claims, and are not claims
+    Assert.assertEquals(2, second.getEdits());
+    Assert.assertEquals(1, second.getClaims());
+    Assert.assertEquals(500, second.durationPercentile(50));
+
+    Map<String, Integer> errors = analyzer.getErrorsByBot().get("NationalParkBot");
+    Assert.assertEquals(2, errors.size());
+    Assert.assertEquals(2, (int) errors.get("java.io.IOException"));
+    Assert.assertEquals(1, (int) errors.get("java.lang.NullPointerException"));
+
+    Map<String, Integer> counters = analyzer.getCountersByBot().get("NationalParkBot");
+    Assert.assertEquals(3, (int) counters.get("Item processed"));
+    Assert.assertEquals(1, (int) counters.get("Failed to process"));
+    Assert.assertEquals(1, (int) counters.get("Created Wikidata item"));
+    Assert.assertEquals(1, (int) counters.get("Modified Wikidata claim area"));
+    Assert.assertEquals(1, (int) counters.get("Created Wikidata label sv"));
+
+    ByteArrayOutputStream csv = new ByteArrayOutputStream();
+    analyzer.writeCsv(new PrintStream(csv, true, "UTF-8"));
+    String report = csv.toString("UTF-8");
+    Assert.assertTrue(report.contains("NationalParkBot,1970-01-01T00:00,4,3,1,0,0,4.00,0.00,100,700,700\n"));
+    Assert.assertTrue(report.contains("NationalParkBot,java.io.IOException,2,0.4000\n"));
+  }
+
+  @Test
+  public void testBucketMilliseconds() {
+    ProgressAnalyzer analyzer = new ProgressAnalyzer();
+    analyzer.setBucketMilliseconds(1000);
+    Progress.Entity entity = new Progress.Entity();
+    entity.setEpochStarted(1500L);
+    entity.setEpochEnded(2999L);
+    analyzer.add("bot", entity);
+    Assert.assertEquals(2000L, (long) analyzer.getBucketsByBot().get("bot").firstKey());
+  }
+
+  @Test
+  public void testExceptionType() {
+    Assert.assertEquals("java.lang.NullPointerException", ProgressAnalyzer.exceptionType("java.lang.NullPointerException"));
+    Assert.assertEquals("java.io.IOException", ProgressAnalyzer.exceptionType("java.io.IOException: a: b\n\tat Foo.bar(Foo.java:1)"));
+  }
+
+}
@@ -0,0 +1,71 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestProgressCompactor {
+
+  @Test
+  public void testCompact() throws Exception {
+    Progress progress = new Progress();
+
+    Progress.Entity previous = null;
+    for (int i = 0; i < 5; i++) {
+      Progress.Entity entity = new Progress.Entity();
+      entity.setNvrid("1");
+      entity.setEpochStarted(i * 1000L);
+      entity.setEpochEnded(i * 1000L + 10);
+      entity.getCreatedClaims().add("area");
+      if (i < 3) {
+        // traces usually contain the NVRID or QID, i.e. are unique
+        entity.setError("java.lang.NullPointerException: Q" + i + "\n\tat Foo.bar(Foo.java:1)\n");
+      } else if (i == 3) {
+        progress.setError(entity, "java.io.IOException: read timed out\n\tat Foo.bar(Foo.java:2)\n");
+      }
+      entity.setPreviousExecution(previous);
+      previous = entity;
+    }
+    progress.add(previous);
+
+    ProgressCompactor.Report report = new ProgressCompactor(2).compact(progress);
+
+    Assert.assertEquals(1, report.getEntities());
+    Assert.assertEquals(3, report.getExecutionsCompacted());
+    Assert.assertEquals(3, report.getStackTracesMoved());
+    // only the trace of the kept failed execution remains
+    Assert.assertEquals(3, report.getStackTracesRemoved());
+    Assert.assertEquals(3 * "java.lang.NullPointerException: Q0\n\tat Foo.bar(Foo.java:1)\n".length(), report.getStackTraceBytesRemoved());
+    Assert.assertEquals(1, progress.getStackTraces().size());
+    Assert.assertEquals(progress.getStackTraces().keySet().iterator().next(), progress.getProcessed().get("1").getPreviousExecution().getErrorHash());
+
+    Progress.Entity head = progress.getProcessed().get("1");
+    Assert.assertEquals(4000L, (long) head.getEpochStarted());
+    Progress.Entity oldestKept = head.getPreviousExecution();
+    Assert.assertNotNull(oldestKept);
+    Assert.assertNull(oldestKept.getPreviousExecution());
+    Assert.assertEquals(3, oldestKept.getCompactedHistory().getExecutions());
+    Assert.assertEquals(3, oldestKept.getCompactedHistory().getFailedExecutions());
+    Assert.assertEquals(3, (int) oldestKept.getCompactedHistory().getCreatedClaims().get("area"));
+    Assert.assertEquals(0L, (long) oldestKept.getCompactedHistory().getEpochFirstStarted());
+
+    // compacting again folds the existing history into the new oldest
+    report = new ProgressCompactor(1).compact(progress);
+    Assert.assertNull(head.getPreviousExecution());
+    Assert.assertEquals(4, head.getCompactedHistory().getExecutions());
+    Assert.assertEquals(1, report.getStackTracesRemoved());
+    Assert.assertTrue(progress.getStackTraces().isEmpty());
+  }
+
+  @Test
+  public void testEntityHashCodeIgnoresHistory() {
+    Progress.Entity a = new Progress.Entity();
+    a.setNvrid("1");
+    Progress.Entity b = new Progress.Entity();
+    b.setNvrid("1");
+    b.setPreviousExecution(a);
+    a.setPreviousExecution(new Progress.Entity());
+    Assert.assertEquals(a, b);
+    Assert.assertEquals(a.hashCode(), b.hashCode());
+  }
+
+}
@@ -0,0 +1,71 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+public class TestProgressDatabase {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static Progress.Entity entity(String nvrid, long epochEnded, Progress.Entity previous) {
+    Progress.Entity entity = new Progress.Entity();
+    entity.setNvrid(nvrid);
+    entity.setEpochStarted(epochEnded - 10);
+    entity.setEpochEnded(epochEnded);
+    entity.setPreviousExecution(previous);
+    return entity;
+  }
+
+  @Test
+  public void testSynchronizeAndSelect() throws Exception {
+    Progress progress = new Progress();
+    Progress.Entity failed = entity("1", 100, null);
+    failed.setError("java.lang.NullPointerException");
+    progress.add(entity("1", 200, failed));
+    Progress.Entity warned = entity("2", 150, null);
+    warned.getWarnings().add("Operator claims differ");
+    warned.getCreatedClaims().add("area");
+    progress.add(warned);
+
+    try (ProgressDatabase database = new ProgressDatabase(new File(folder.getRoot(), "progress"))) {
+      database.open();
+      database.synchronize("bot", progress);
+      Assert.assertEquals(2, database.countNvrids("bot"));
+
+      Assert.assertEquals(new LinkedHashSet<>(Collections.singletonList("1")), database.selectNvrids("bot", "e.failed"));
+      Assert.assertTrue(database.selectNvrids("bot", "e.latest AND e.failed").isEmpty());
+      Assert.assertEquals(new LinkedHashSet<>(Collections.singletonList("2")), database.selectNvrids("bot",
+          "e.latest AND EXISTS (SELECT 1 FROM warning w WHERE w.execution_id = e.id AND w.warning LIKE 'Operator claims%')"));
+      Assert.assertEquals(new LinkedHashSet<>(Collections.singletonList("2")), database.selectNvrids("bot",
+          "EXISTS (SELECT 1 FROM claim c WHERE c.execution_id = e.id AND c.change = 'created' AND c.claim = 'area')"));
+      Assert.assertFalse(database.isStale("bot", 3, 200));
+
+      // rerun of a known NVRID without updating the database keeps the number of NVRIDs
+      Progress.Entity rerun = entity("2", 300, progress.getProcessed().get("2"));
+      rerun.setError("java.io.IOException");
+      progress.add(rerun);
+      Assert.assertTrue(database.isStale("bot", 4, 300));
+      database.synchronize("bot", progress);
+      Assert.assertFalse(database.isStale("bot", 4, 300));
+      Assert.assertEquals(new LinkedHashSet<>(Arrays.asList("2")), database.selectNvrids("bot", "e.latest AND e.failed"));
+
+      // kept up to date by add
+      Progress.Entity added = entity("1", 400, progress.getProcessed().get("1"));
+      progress.add(added);
+      database.add("bot", added);
+      Assert.assertFalse(database.isStale("bot", 5, 400));
+
+      // other bots are not affected
+      Assert.assertTrue(database.selectNvrids("other", "TRUE").isEmpty());
+    }
+  }
+
+}
@@ -0,0 +1,140 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestResilientCaller {
+
+  private static class RecordingCaller extends ResilientCaller {
+    private List<Long> sleeps = new ArrayList<>();
+
+    private RecordingCaller(HttpTransport transport) {
+      super("test", transport);
+      setInitialBackoffMilliseconds(1);
+      setMaxBackoffMilliseconds(4);
+    }
+
+    @Override
+    protected void sleep(long milliseconds) throws IOException {
+      sleeps.add(milliseconds);
+      super.sleep(Math.min(milliseconds, 100));
+    }
+  }
+
+  @Test
+  public void testRetries() throws Exception {
+    RecordingCaller caller = new RecordingCaller(null);
+    AtomicInteger calls = new AtomicInteger();
+    Assert.assertEquals("ok", caller.execute("flaky", () -> {
+      if (calls.incrementAndGet() < 4) {
+        throw new IOException("connection reset");
+      }
+      return "ok";
+    }));
+    Assert.assertEquals(4, calls.get());
+    // bounded exponential backoff
+    Assert.assertEquals(Arrays.asList(1L, 2L, 4L), caller.sleeps);
+
+    // not retried
+    calls.set(0);
+    try {
+      caller.execute("broken", () -> {
+        calls.incrementAndGet();
+        throw new WikiData.MultipleResponsesException("two items");
+      });
+      Assert.fail();
+    } catch (WikiData.MultipleResponsesException e) {
+      Assert.assertEquals(1, calls.get());
+    }
+    try {
+      caller.execute("not found", () -> {
+        calls.incrementAndGet();
+        throw new HttpStatusException("404", 404, null);
+      });
+      Assert.fail();
+    } catch (HttpStatusException e) {
+      Assert.assertEquals(2, calls.get());
+    }
+
+    // Retry-After
+    caller.sleeps.clear();
+    calls.set(0);
+    caller.execute("throttled", () -> {
+      if (calls.incrementAndGet() == 1) {
+        throw new HttpStatusException("429", 429, 30L);
+      }
+      return null;
+    });
+    Assert.assertEquals(Collections.singletonList(30L), caller.sleeps);
+  }
+
+  @Test
+  public void testCircuitBreaker() throws Exception {
+    RecordingCaller caller = new RecordingCaller(null);
+    caller.setMaxAttempts(2);
+    caller.setFailureThreshold(2);
+    caller.setOpenMilliseconds(50);
+    try {
+      caller.execute("down", () -> {
+        throw new HttpStatusException("503", 503, null);
+      });
+      Assert.fail();
+    } catch (HttpStatusException e) {
+      Assert.assertTrue(caller.isOpen());
+    }
+    caller.sleeps.clear();
+    Assert.assertEquals("up", caller.execute("up", () -> "up"));
+    Assert.assertFalse(caller.isOpen());
+    // waited for the circuit before calling
+    Assert.assertEquals(1, caller.sleeps.size());
+    Assert.assertTrue(caller.sleeps.get(0) > 0 && caller.sleeps.get(0) <= 50);
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", exchange -> {
+      try {
+        Thread.sleep(5000);
+      } catch (InterruptedException e) {
+        // stopped
+      }
+      exchange.close();
+    });
+    server.start();
+    HttpTransport transport = new HttpTransport("test", "0", "test@example.com");
+    transport.open();
+    try {
+      RecordingCaller caller = new RecordingCaller(transport);
+      caller.setMaxAttempts(1);
+      caller.setCallTimeoutMilliseconds(200);
+      long started = System.currentTimeMillis();
+      try {
+        caller.execute("slow", () -> {
+          try (CloseableHttpResponse response = transport.getClient().execute(
+              new HttpGet("http://localhost:" + server.getAddress().getPort() + "/"))) {
+            return response.getStatusLine().getStatusCode();
+          }
+        });
+        Assert.fail();
+      } catch (IOException e) {
+        Assert.assertTrue(System.currentTimeMillis() - started < 3000);
+      }
+    } finally {
+      transport.close();
+      server.stop(0);
+    }
+  }
+
+}
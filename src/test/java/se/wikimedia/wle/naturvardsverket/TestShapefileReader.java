@@ -0,0 +1,92 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+public class TestShapefileReader {
+
+  // shells clockwise and holes counterclockwise, as in the registry downloads
+  private static final String json = "{\"type\": \"FeatureCollection\"," +
+      " \"crs\": { \"type\": \"name\", \"properties\": { \"name\": \"urn:ogc:def:crs:OGC:1.3:CRS84\" } }," +
+      " \"features\": [" +
+      "{ \"type\": \"Feature\", \"properties\": { \"NVRID\": \"2001220\", \"NAMN\": \"Ängsö\", \"SKYDDSTYP\": \"Nationalpark\"," +
+      " \"BESLSTATUS\": \"Gällande\", \"LAN\": \"Stockholms län\", \"IKRAFTDATF\": null, \"URSBESLDAT\": \"1909/05/24\"," +
+      " \"AREA_HA\": 199897.57, \"LAND_HA\": 166065.96, \"ANTAL\": 3, \"LAGRUM\": \"Miljöbalken\" }," +
+      " \"geometry\": { \"type\": \"MultiPolygon\", \"coordinates\": [" +
+      " [[[18.0, 59.0], [18.0, 59.1], [18.2, 59.1], [18.2, 59.0], [18.0, 59.0]]," +
+      "  [[18.05, 59.02], [18.1, 59.02], [18.1, 59.05], [18.05, 59.02]]]," +
+      " [[[19.0, 60.0], [19.0, 60.1], [19.1, 60.1], [19.0, 60.0]]] ] } }," +
+      "{ \"type\": \"Feature\", \"properties\": { \"NVRID\": \"2001221\", \"NAMN\": \"Öland\", \"AREA_HA\": 12.5, \"ANTAL\": null }," +
+      " \"geometry\": { \"type\": \"Polygon\", \"coordinates\": [" +
+      " [[16.0, 56.0], [16.0, 56.1], [16.1, 56.1], [16.0, 56.0]]," +
+      " [[16.01, 56.02], [16.03, 56.02], [16.02, 56.06], [16.01, 56.02]] ] } }," +
+      "{ \"type\": \"Feature\", \"properties\": { \"NVRID\": \"2001222\" }, \"geometry\": null }" +
+      "]}";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+  // property order is not kept
+  private ObjectMapper sortedObjectMapper = objectMapper.copy().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+  @Test
+  public void testSameAsGeoJson() throws Exception {
+    NvrFeatureCollection geoJson = objectMapper.readValue(json, NvrFeatureCollection.class);
+    File shp = new File(folder.getRoot(), "nationalparker.shp");
+    ShapefileWriter.write(geoJson, shp, false);
+
+    NvrFeatureCollection shapefile = NvrFeatureCollection.read(objectMapper, shp);
+    Assert.assertEquals(NvrFeatureCollection.CRS84, shapefile.getCrs());
+    Assert.assertEquals(3, shapefile.getFeatures().size());
+    for (int i = 0; i < geoJson.getFeatures().size(); i++) {
+      Assert.assertEquals(sortedObjectMapper.writeValueAsString(geoJson.getFeatures().get(i).toFeature()),
+          sortedObjectMapper.writeValueAsString(shapefile.getFeatures().get(i).toFeature()));
+    }
+    Assert.assertEquals("Gällande", shapefile.getFeatures().get(0).getDecisionStatus());
+    Assert.assertEquals(166065.96, shapefile.getFeatures().get(0).getLandArea(), 0d);
+  }
+
+  @Test
+  public void testReprojected() throws Exception {
+    NvrFeatureCollection geoJson = objectMapper.readValue(json, NvrFeatureCollection.class);
+    File shp = new File(folder.getRoot(), "sweref.shp");
+    ShapefileWriter.write(geoJson, shp, true);
+
+    NvrFeatureCollection shapefile = NvrFeatureCollection.read(objectMapper, shp);
+    Assert.assertEquals(NvrFeatureCollection.CRS84, shapefile.getCrs());
+    org.geojson.Polygon polygon = (org.geojson.Polygon) shapefile.getFeatures().get(1).getGeometry();
+    Assert.assertEquals(2, polygon.getCoordinates().size());
+    Assert.assertEquals(16.01, polygon.getCoordinates().get(1).get(0).getLongitude(), 1e-9);
+    Assert.assertEquals(56.02, polygon.getCoordinates().get(1).get(0).getLatitude(), 1e-9);
+  }
+
+  @Test
+  public void testHolesAssignedToContainingShell() {
+    double[] first = {0, 0, 0, 10, 10, 10, 10, 0, 0, 0};
+    double[] second = {20, 0, 20, 10, 30, 10, 30, 0, 20, 0};
+    double[] holeInFirst = {1, 1, 2, 1, 2, 2, 1, 1};
+    PackedGeometry geometry = ShapefileReader.polygons(new double[][]{first, second, holeInFirst});
+    Assert.assertEquals(PackedGeometry.Type.MultiPolygon, geometry.getType());
+    org.geojson.MultiPolygon multiPolygon = (org.geojson.MultiPolygon) geometry.toGeoJson();
+    Assert.assertEquals(2, multiPolygon.getCoordinates().get(0).size());
+    Assert.assertEquals(1, multiPolygon.getCoordinates().get(1).size());
+  }
+
+  @Test
+  public void testCharsetAndCrs() {
+    Assert.assertEquals(StandardCharsets.UTF_8, ShapefileReader.charset("UTF-8\n"));
+    Assert.assertEquals("windows-1252", ShapefileReader.charset("ANSI 1252").name());
+    Assert.assertEquals(StandardCharsets.ISO_8859_1, ShapefileReader.charset("88591"));
+    Assert.assertEquals(Sweref99Tm.EPSG, ShapefileReader.crs("PROJCS[\"SWEREF99_TM\",GEOGCS[\"GCS_SWEREF99\"]]"));
+    Assert.assertNull(ShapefileReader.crs("PROJCS[\"RT90_25_gon_V\"]"));
+  }
+}
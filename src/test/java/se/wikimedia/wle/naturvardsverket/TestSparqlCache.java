@@ -0,0 +1,43 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+
+public class TestSparqlCache {
+
+  @Test
+  public void testCache() throws Exception {
+    File directory = Files.createTempDirectory("sparql-cache").toFile();
+    try (SparqlCache cache = new SparqlCache(new File(directory, "cache"))) {
+      cache.open();
+      String query = "SELECT ?item WHERE {\n  ?item wdt:P3613 \"2000001\".\n} LIMIT 2";
+      Assert.assertNull(cache.get(WikiData.NVRID_QUERY_CLASS, query));
+
+      cache.put(WikiData.NVRID_QUERY_CLASS, query, "[\"Q1\"]");
+      Assert.assertEquals("[\"Q1\"]", cache.get(WikiData.NVRID_QUERY_CLASS, "SELECT ?item WHERE { ?item wdt:P3613 \"2000001\". } LIMIT 2"));
+      Assert.assertNull(cache.get(SparqlCache.DEFAULT_QUERY_CLASS, query));
+
+      cache.invalidate(WikiData.NVRID_QUERY_CLASS, query);
+      Assert.assertNull(cache.get(WikiData.NVRID_QUERY_CLASS, query));
+
+      cache.put(WikiData.LABEL_QUERY_CLASS, query, "[]");
+      cache.getTimeToLiveMilliseconds().put(WikiData.LABEL_QUERY_CLASS, 0L);
+      Assert.assertNull(cache.get(WikiData.LABEL_QUERY_CLASS, query));
+
+      Assert.assertEquals(1, cache.getHits());
+      Assert.assertEquals(4, cache.getMisses());
+    }
+  }
+
+  @Test
+  public void testMissingNvridNotCacheable() {
+    Assert.assertFalse(WikiData.isCacheable(WikiData.NVRID_QUERY_CLASS, Collections.emptyList()));
+    Assert.assertTrue(WikiData.isCacheable(WikiData.NVRID_QUERY_CLASS, Collections.singletonList("Q1")));
+    Assert.assertTrue(WikiData.isCacheable(WikiData.LABEL_QUERY_CLASS, Collections.emptyList()));
+  }
+
+}
@@ -0,0 +1,67 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestSparqlClient {
+
+  @Test
+  public void testDecodeJson() throws Exception {
+    String json = "{\n" +
+        "  \"head\" : { \"vars\" : [ \"item\", \"itemLabel\", \"area\" ] },\n" +
+        "  \"results\" : { \"bindings\" : [ {\n" +
+        "    \"item\" : { \"type\" : \"uri\", \"value\" : \"http://www.wikidata.org/entity/Q30180845\" },\n" +
+        "    \"itemLabel\" : { \"xml:lang\" : \"sv\", \"type\" : \"literal\", \"value\" : \"Johannisberg\" },\n" +
+        "    \"area\" : { \"datatype\" : \"http://www.w3.org/2001/XMLSchema#decimal\", \"type\" : \"literal\", \"value\" : \"12.5\" }\n" +
+        "  }, {\n" +
+        "    \"item\" : { \"type\" : \"uri\", \"value\" : \"http://www.wikidata.org/entity/Q86918534\" }\n" +
+        "  } ] }\n" +
+        "}";
+
+    List<String> items = new ArrayList<>();
+    List<String> labels = new ArrayList<>();
+    List<Double> areas = new ArrayList<>();
+    int count = new SparqlClient(null).decodeJson(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), binding -> {
+      items.add(binding.getEntityId("item"));
+      labels.add(binding.isBound("itemLabel") ? binding.getValue("itemLabel") + "@" + binding.getLanguage("itemLabel") : null);
+      areas.add(binding.getDouble("area"));
+      return true;
+    });
+
+    Assert.assertEquals(2, count);
+    Assert.assertEquals("Q30180845", items.get(0));
+    Assert.assertEquals("Q86918534", items.get(1));
+    Assert.assertEquals("Johannisberg@sv", labels.get(0));
+    Assert.assertNull(labels.get(1));
+    Assert.assertEquals(12.5d, areas.get(0), 0d);
+    Assert.assertNull(areas.get(1));
+
+    // cancel after first binding
+    int cancelled = new SparqlClient(null).decodeJson(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), binding -> false);
+    Assert.assertEquals(-2, cancelled);
+  }
+
+  @Test
+  public void testDecodeTsv() throws Exception {
+    String tsv = "?item\t?itemLabel\t?area\n" +
+        "<http://www.wikidata.org/entity/Q30180845>\t\"Johannis\\tberg\"@sv\t\"12.5\"^^<http://www.w3.org/2001/XMLSchema#decimal>\n" +
+        "<http://www.wikidata.org/entity/Q86918534>\t\t3\n";
+
+    List<String> rows = new ArrayList<>();
+    int count = new SparqlClient(null).decodeTsv(new ByteArrayInputStream(tsv.getBytes(StandardCharsets.UTF_8)), binding -> {
+      rows.add(binding.getEntityId("item") + "|" + binding.getValue("itemLabel") + "|" + binding.getLanguage("itemLabel")
+          + "|" + binding.getDouble("area") + "|" + binding.getDatatype("area"));
+      return true;
+    });
+
+    Assert.assertEquals(2, count);
+    Assert.assertEquals("Q30180845|Johannis\tberg|sv|12.5|http://www.w3.org/2001/XMLSchema#decimal", rows.get(0));
+    Assert.assertEquals("Q86918534|null|null|3.0|null", rows.get(1));
+  }
+
+}
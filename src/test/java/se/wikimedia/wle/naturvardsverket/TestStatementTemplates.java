@@ -0,0 +1,98 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.geojson.Feature;
+import org.junit.Assert;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.ReferenceBuilder;
+import org.wikidata.wdtk.datamodel.helpers.StatementBuilder;
+import org.wikidata.wdtk.datamodel.implementation.QuantityValueImpl;
+import org.wikidata.wdtk.datamodel.implementation.StringValueImpl;
+import org.wikidata.wdtk.datamodel.implementation.ValueSnakImpl;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashSet;
+
+public class TestStatementTemplates {
+
+  /**
+   * @return WikiData with the named entities registered by the bots, without network access.
+   */
+  static WikiData offlineWikiData() throws Exception {
+    WikiData wikiData = new WikiData(null, null, null, null, null);
+    wikiData.setDefaultRequireEntityIdValue(false);
+    String[][] namedEntities = {
+        {"instance of", "P31"}, {"inception date", "P571"}, {"IUCN protected areas category", "P814"},
+        {"country", "P17"}, {"Sweden", "Q34"}, {"located in the administrative territorial entity", "P131"},
+        {"coordinate location", "P625"}, {"geoshape", "P3896"}, {"operator", "P137"},
+        {"hectare", "Q35852"}, {"area", "P2046"}, {"applies to part", "P518"},
+        {"forest", "Q4421"}, {"land", "Q11081619"}, {"body of water", "Q15324"},
+        {"nvrid", "P3613"}, {"wdpaid", "P809"}, {"reference URL", "P854"}, {"stated in", "P248"},
+        {"Protected Areas (Nature Reserves)", "Q29580583"}, {"retrieved", "P813"},
+        {"point in time", "P585"}, {"publication date", "P577"},
+    };
+    for (String[] namedEntity : namedEntities) {
+      wikiData.getNamedEntities().put(namedEntity[0], wikiData.getEntityIdValue(namedEntity[1]));
+    }
+    return wikiData;
+  }
+
+  static NaturvardsregistretObject naturvardsregistretObject(String nvrid) {
+    NaturvardsregistretObject object = new NaturvardsregistretObject();
+    object.setNvrid(nvrid);
+    object.setFeature(new Feature());
+    object.getFeature().setProperty("NVRID", nvrid);
+    object.getFeature().setProperty("LAND_HA", 12.3d);
+    object.setPublishedDate(LocalDate.parse("2020-02-25"));
+    object.setRetrievedDate(LocalDate.parse("2020-02-25"));
+    return object;
+  }
+
+  /**
+   * How statements was built before templates, also used as baseline in {@link StatementTemplatesBenchmark}
+   */
+  static Statement builderAreaLandStatement(WikiData wikiData, NaturvardsregistretObject object) {
+    ReferenceBuilder referenceBuilder = ReferenceBuilder.newInstance();
+    referenceBuilder.withPropertyValue(wikiData.property("reference URL"), new StringValueImpl(
+        "http://nvpub.vic-metria.nu/naturvardsregistret/rest/omrade/" + object.getNvrid() + "/G%C3%A4llande"));
+    referenceBuilder.withPropertyValue(wikiData.property("retrieved"), wikiData.toTimeValue(object.getRetrievedDate()));
+    referenceBuilder.withPropertyValue(wikiData.property("publication date"), wikiData.toTimeValue(object.getPublishedDate()));
+    referenceBuilder.withPropertyValue(wikiData.property("stated in"), wikiData.entity("Protected Areas (Nature Reserves)"));
+    return StatementBuilder
+        .forSubjectAndProperty(ItemIdValue.NULL, wikiData.property("area"))
+        .withValue(new QuantityValueImpl(
+            BigDecimal.valueOf(((Number) object.getFeature().getProperty("LAND_HA")).doubleValue()),
+            null, null,
+            wikiData.entity("hectare").getIri()))
+        .withQualifier(new ValueSnakImpl(wikiData.property("applies to part"), wikiData.entity("land")))
+        .withReference(referenceBuilder.build())
+        .build();
+  }
+
+  static Statement templateAreaLandStatement(StatementTemplates templates, NaturvardsregistretObject object) {
+    return templates.statement(object, templates.getArea(),
+        templates.hectares(((Number) object.getFeature().getProperty("LAND_HA")).doubleValue()),
+        templates.getLandQualifiers());
+  }
+
+  @Test
+  public void testEqualToBuilder() throws Exception {
+    WikiData wikiData = offlineWikiData();
+    NaturvardsregistretObject object = naturvardsregistretObject("2005088");
+    StatementTemplates templates = new StatementTemplates(wikiData, object.getPublishedDate(), object.getRetrievedDate());
+
+    Statement expected = builderAreaLandStatement(wikiData, object);
+    Statement actual = templateAreaLandStatement(templates, object);
+    Assert.assertEquals(expected.getMainSnak(), actual.getMainSnak());
+    Assert.assertEquals(expected.getQualifiers(), actual.getQualifiers());
+    // ReferenceBuilder orders snak groups by hash, templates in the order they are declared
+    Assert.assertEquals(1, actual.getReferences().size());
+    Assert.assertEquals(
+        new HashSet<>(expected.getReferences().get(0).getSnakGroups()),
+        new HashSet<>(actual.getReferences().get(0).getSnakGroups()));
+    Assert.assertSame(templates.reference(object), templates.reference(object));
+  }
+
+}
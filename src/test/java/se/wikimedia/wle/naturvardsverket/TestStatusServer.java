@@ -0,0 +1,39 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.URL;
+
+public class TestStatusServer {
+
+  @Test
+  public void testSnapshot() throws Exception {
+    ObjectMapper objectMapper = new ObjectMapper();
+    RunStatus runStatus = new RunStatus("TestBot");
+    runStatus.startFile("naturminne_punkt.geojson", 1, 3);
+    runStatus.started("5000001");
+    Progress.Entity entity = new Progress.Entity();
+    entity.setError("error");
+    runStatus.ended(entity);
+    runStatus.started("5000002");
+
+    try (StatusServer server = new StatusServer(0, objectMapper, () -> runStatus.snapshot(null))) {
+      server.open();
+      try (InputStream in = new URL("http://localhost:" + server.getPort() + "/status").openStream()) {
+        JsonNode status = objectMapper.readTree(in);
+        Assert.assertEquals("TestBot", status.get("bot").textValue());
+        Assert.assertEquals("5000002", status.get("currentNvrid").textValue());
+        Assert.assertEquals(1, status.get("processed").intValue());
+        Assert.assertEquals(1, status.get("failed").intValue());
+        Assert.assertEquals(1, status.get("remainingInFile").intValue());
+        Assert.assertEquals(1, status.get("filesRemaining").intValue());
+        Assert.assertTrue(status.get("pendingConnections").isNull());
+      }
+    }
+  }
+
+}
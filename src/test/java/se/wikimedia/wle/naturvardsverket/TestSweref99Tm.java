@@ -0,0 +1,70 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSweref99Tm {
+
+  @Test
+  public void testCentralMeridian() {
+    // meridian arc to 60 degrees on GRS 80 is 6654072.82 meters, scaled by 0.9996
+    double[] coordinates = {15d, 60d};
+    Sweref99Tm.fromWgs84(coordinates, 2);
+    Assert.assertEquals(500000d, coordinates[0], 0.001d);
+    Assert.assertEquals(6651411.19d, coordinates[1], 1d);
+  }
+
+  @Test
+  public void testLantmaterietControlPoint() {
+    // control point published by Lantmäteriet, 67°05'26.452769" N 21°02'05.101575" E, N 7454204.638 E 761811.242
+    double latitude = 67 + 5 / 60d + 26.452769 / 3600;
+    double longitude = 21 + 2 / 60d + 5.101575 / 3600;
+    double[] coordinates = {longitude, latitude};
+    Sweref99Tm.fromWgs84(coordinates, 2);
+    Assert.assertEquals(761811.242d, coordinates[0], 0.01d);
+    Assert.assertEquals(7454204.638d, coordinates[1], 0.01d);
+
+    coordinates = new double[]{761811.242d, 7454204.638d};
+    Sweref99Tm.toWgs84(coordinates, 2);
+    // 1e-7 degrees is about a centimetre
+    Assert.assertEquals(longitude, coordinates[0], 1e-7);
+    Assert.assertEquals(latitude, coordinates[1], 1e-7);
+  }
+
+  @Test
+  public void testRoundTrip() {
+    double[] wgs84 = {11.1, 55.3, 0d, 18.07, 59.33, 12.5, 24.16, 65.84, -3d};
+    double[] coordinates = wgs84.clone();
+    Sweref99Tm.fromWgs84(coordinates, 3);
+    // Stockholm
+    Assert.assertEquals(674000d, coordinates[3], 1000d);
+    Assert.assertEquals(6580000d, coordinates[4], 2000d);
+    Sweref99Tm.toWgs84(coordinates, 3);
+    Assert.assertArrayEquals(wgs84, coordinates, 1e-9);
+  }
+
+  @Test
+  public void testIsSweref99Tm() {
+    Assert.assertTrue(Sweref99Tm.isSweref99Tm("urn:ogc:def:crs:EPSG::3006"));
+    Assert.assertTrue(Sweref99Tm.isSweref99Tm("EPSG:3006"));
+    Assert.assertFalse(Sweref99Tm.isSweref99Tm(NvrFeatureCollection.CRS84));
+    Assert.assertFalse(Sweref99Tm.isSweref99Tm("EPSG:30060"));
+  }
+
+  @Test
+  public void testReprojectedWhenRead() throws Exception {
+    double[] point = {18.07, 59.33};
+    Sweref99Tm.fromWgs84(point, 2);
+    String json = "{\"type\": \"FeatureCollection\"," +
+        " \"crs\": { \"type\": \"name\", \"properties\": { \"name\": \"urn:ogc:def:crs:EPSG::3006\" } }," +
+        " \"features\": [{ \"type\": \"Feature\", \"properties\": { \"NVRID\": \"1\" }," +
+        " \"geometry\": { \"type\": \"Point\", \"coordinates\": [ " + point[0] + ", " + point[1] + " ] } }]}";
+    NvrFeatureCollection collection = new ObjectMapper().readValue(json, NvrFeatureCollection.class);
+    Assert.assertEquals(NvrFeatureCollection.CRS84, collection.getCrs());
+    org.geojson.Point geometry = (org.geojson.Point) collection.getFeatures().get(0).getGeometry();
+    Assert.assertEquals(18.07, geometry.getCoordinates().getLongitude(), 1e-9);
+    Assert.assertEquals(59.33, geometry.getCoordinates().getLatitude(), 1e-9);
+  }
+
+}
@@ -0,0 +1,32 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestTermDelta {
+
+  @Test
+  public void testMissing() {
+    Map<String, MonolingualTextValue> existing = new HashMap<>();
+    existing.put("sv", Datamodel.makeMonolingualTextValue("Eken vid kyrkan", "sv"));
+    existing.put("en", Datamodel.makeMonolingualTextValue("", "en"));
+
+    Map<String, String> local = new HashMap<>();
+    local.put("sv", "Eken");
+    local.put("en", "Eken");
+    local.put("de", "Eken");
+    local.put("fi", null);
+
+    List<MonolingualTextValue> missing = TermDelta.missing(existing, local);
+    Assert.assertEquals(2, missing.size());
+    Assert.assertTrue(missing.contains(Datamodel.makeMonolingualTextValue("Eken", "en")));
+    Assert.assertTrue(missing.contains(Datamodel.makeMonolingualTextValue("Eken", "de")));
+  }
+
+}
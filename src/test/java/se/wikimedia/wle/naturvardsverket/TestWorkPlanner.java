@@ -0,0 +1,120 @@
+package se.wikimedia.wle.naturvardsverket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.geojson.Feature;
+import org.geojson.LngLatAlt;
+import org.geojson.Point;
+import org.geojson.Polygon;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestWorkPlanner {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /** Feature in force operated by Länsstyrelsen, with a point or a small polygon. Also used by {@link TestCapacityPlanner}. */
+  static Feature feature(String nvrid, boolean point) {
+    Feature feature = new Feature();
+    feature.setProperty("NVRID", nvrid);
+    feature.setProperty("BESLSTATUS", "Gällande");
+    feature.setProperty("NAMN", "Namn " + nvrid);
+    feature.setProperty("FORVALTARE", "Länsstyrelsen");
+    if (point) {
+      feature.setGeometry(new Point(18, 59));
+    } else {
+      feature.setGeometry(new Polygon(new LngLatAlt(18, 59), new LngLatAlt(18.1, 59), new LngLatAlt(18.1, 59.1), new LngLatAlt(18, 59)));
+    }
+    return feature;
+  }
+
+  private Progress.Entity execution(String nvrid, String wikidataIdentity, String error, String fingerprint) {
+    Progress.Entity entity = new Progress.Entity();
+    entity.setNvrid(nvrid);
+    entity.setWikidataIdentity(wikidataIdentity);
+    entity.setError(error);
+    entity.setFeatureFingerprint(fingerprint);
+    entity.setEpochStarted(1000L);
+    return entity;
+  }
+
+  @Test
+  public void testPlan() throws Exception {
+    WorkPlanner planner = new WorkPlanner(new ObjectMapper(), null, 2000L);
+
+    List<Feature> features = new ArrayList<>();
+    Feature verified = feature("verified", false);
+    Feature skipped = feature("skipped", false);
+    Feature changed = feature("changed", false);
+    Feature failed = feature("failed", false);
+    Feature newPolygon = feature("new polygon", false);
+    Feature newPoint = feature("new point", true);
+    features.addAll(Arrays.asList(verified, skipped, changed, failed, newPolygon, newPoint));
+
+    List<NvrFeature> nvrFeatures = NvrFeatureCollection.of(new ObjectMapper(), features).getFeatures();
+    Progress progress = new Progress();
+    progress.add(execution("verified", "Q1", null, planner.fingerprint(nvrFeatures.get(0))));
+    // fingerprint of previous versions, considered unchanged
+    progress.add(execution("skipped", "Q2", null, planner.jsonFingerprint(nvrFeatures.get(1))));
+    progress.getProcessed().get("skipped").setEpochStarted(3000L);
+    progress.add(execution("changed", "Q3", null, "previous fingerprint"));
+    progress.add(execution("failed", "Q4", "java.lang.RuntimeException", null));
+
+    List<String> nvrids = new ArrayList<>();
+    List<WorkPlanner.Reason> reasons = new ArrayList<>();
+    for (WorkPlanner.WorkItem workItem : planner.plan(nvrFeatures, progress)) {
+      nvrids.add(workItem.getNvrid());
+      reasons.add(workItem.getReason());
+    }
+    Assert.assertEquals(Arrays.asList("new point", "new polygon", "changed", "failed", "verified"), nvrids);
+    Assert.assertEquals(Arrays.asList(
+        WorkPlanner.Reason.NEVER_PROCESSED, WorkPlanner.Reason.NEVER_PROCESSED,
+        WorkPlanner.Reason.FEATURE_CHANGED, WorkPlanner.Reason.PREVIOUS_ERROR,
+        WorkPlanner.Reason.VERIFICATION), reasons);
+    Assert.assertEquals(planner.fingerprint(nvrFeatures.get(1)), progress.getProcessed().get("skipped").getFeatureFingerprint());
+  }
+
+  @Test
+  public void testFingerprintIgnoresPropertyOrder() throws Exception {
+    WorkPlanner planner = new WorkPlanner(new ObjectMapper(), null, null);
+    Feature a = new Feature();
+    a.setProperty("A", 1);
+    a.setProperty("B", "2");
+    Feature b = new Feature();
+    b.setProperty("B", "2");
+    b.setProperty("A", 1.0);
+    List<NvrFeature> features = NvrFeatureCollection.of(new ObjectMapper(), Arrays.asList(a, b)).getFeatures();
+    Assert.assertEquals(planner.fingerprint(features.get(0)), planner.fingerprint(features.get(1)));
+    b.setProperty("A", 2);
+    features = NvrFeatureCollection.of(new ObjectMapper(), Arrays.asList(a, b)).getFeatures();
+    Assert.assertNotEquals(planner.fingerprint(features.get(0)), planner.fingerprint(features.get(1)));
+  }
+
+  @Test
+  public void testFingerprintIndependentOfFileFormat() throws Exception {
+    ObjectMapper objectMapper = new ObjectMapper();
+    WorkPlanner planner = new WorkPlanner(objectMapper, null, null);
+    Feature feature = feature("1", false);
+    feature.setProperty("AREA_HA", 12);
+    feature.setProperty("LAND_HA", 10.25);
+    feature.setProperty("URSBESLDAT", "1909/05/24");
+    NvrFeatureCollection geoJson = NvrFeatureCollection.of(objectMapper, Collections.singletonList(feature));
+    String fingerprint = planner.fingerprint(geoJson.getFeatures().get(0));
+
+    for (boolean sweref99Tm : new boolean[]{false, true}) {
+      File shp = new File(folder.getRoot(), (sweref99Tm ? "sweref" : "wgs84") + ".shp");
+      ShapefileWriter.write(geoJson, shp, sweref99Tm);
+      NvrFeature shapefile = NvrFeatureCollection.read(objectMapper, shp).getFeatures().get(0);
+      Assert.assertEquals(fingerprint, planner.fingerprint(shapefile));
+    }
+  }
+
+}